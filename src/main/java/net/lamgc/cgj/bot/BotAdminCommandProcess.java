@@ -3,13 +3,18 @@ package net.lamgc.cgj.bot;
 import com.google.common.base.Strings;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 import net.lamgc.cgj.bot.boot.BotGlobal;
+import net.lamgc.cgj.bot.cache.CacheStoreCentral;
+import net.lamgc.cgj.bot.event.BotEventHandler;
 import net.lamgc.cgj.bot.message.MessageSenderBuilder;
 import net.lamgc.cgj.bot.message.MessageSource;
+import net.lamgc.cgj.http.HttpClientFactory;
 import net.lamgc.cgj.pixiv.PixivDownload;
 import net.lamgc.cgj.pixiv.PixivURL;
+import net.lamgc.cgj.util.ResumableDownloader;
 import net.lamgc.utils.base.runner.Argument;
 import net.lamgc.utils.base.runner.Command;
 import org.slf4j.Logger;
@@ -37,6 +42,22 @@ public class BotAdminCommandProcess {
         return "操作已完成.";
     }
 
+    @Command
+    public static String imageCacheStats() {
+        return "图片缓存统计信息: \n" + CacheStoreCentral.getCentral().getImageStoreStats() +
+                "\n图片下载统计信息: \n" + ResumableDownloader.getDefaultMetrics();
+    }
+
+    @Command
+    public static String httpStats() {
+        return "Http连接池统计信息: \n" + HttpClientFactory.getMetricsSnapshot();
+    }
+
+    @Command
+    public static String eventQueueStats() {
+        return "命令队列统计信息: \n" + BotEventHandler.getSchedulerSnapshot();
+    }
+
     @Command
     public static String setProperty(
             @Argument(name = "group", force = false) long groupId,
@@ -314,13 +335,18 @@ public class BotAdminCommandProcess {
     @Command
     public static String getReportList() {
         SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH:mm:ss");
-        Set<String> keys = BotCommandProcess.reportStore.keys();
+        Iterator<String> keyIterator = BotCommandProcess.reportStore.keyIterator();
         StringBuilder msgBuilder = new StringBuilder();
         msgBuilder.append("当前被报告的作品列表：\n");
         int count = 1;
-        for(String key : keys) {
-            String illustIdStr = key.substring(key.indexOf(".") + 1);
-            JsonObject report = BotCommandProcess.reportStore.getCache(illustIdStr).getAsJsonObject();
+        while(keyIterator.hasNext()) {
+            String illustIdStr = keyIterator.next();
+            JsonElement reportElement = BotCommandProcess.reportStore.getCache(illustIdStr);
+            if(reportElement == null) {
+                // 遍历期间报告已被移除
+                continue;
+            }
+            JsonObject report = reportElement.getAsJsonObject();
             log.debug("{} - Report: {}", illustIdStr, report);
             String reason = report.get("reason").isJsonNull() ? "" : report.get("reason").getAsString();
             msgBuilder.append(count).append(". 作品Id: ").append(illustIdStr)
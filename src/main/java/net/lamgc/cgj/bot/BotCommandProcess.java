@@ -1,6 +1,7 @@
 package net.lamgc.cgj.bot;
 
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -15,6 +16,8 @@ import net.lamgc.cgj.pixiv.PixivDownload;
 import net.lamgc.cgj.pixiv.PixivDownload.PageQuality;
 import net.lamgc.cgj.pixiv.PixivSearchLinkBuilder;
 import net.lamgc.cgj.pixiv.PixivURL;
+import net.lamgc.cgj.pixiv.RankingEntry;
+import net.lamgc.cgj.util.ParallelPrefetcher;
 import net.lamgc.utils.base.runner.Argument;
 import net.lamgc.utils.base.runner.Command;
 import org.slf4j.Logger;
@@ -24,6 +27,9 @@ import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 @SuppressWarnings({"SameParameterValue"})
@@ -79,6 +85,9 @@ public class BotCommandProcess {
                 "\t\t" + "-id - 作品id" + "\n" +
                 "\t\t" + "-quality - 图片质量(original/原图 regular/预览图)" + "\n" +
                 "\t\t" + "-page - 页数" + "\n" +
+                "\t" + "ugoira - 获取指定动图作品的动图" + "\n" +
+                "\t\t" + "-id - 作品id" + "\n" +
+                "\t\t" + "-quality - 动图质量(original/原图 regular/预览图)" + "\n" +
                 "\t" + "report - 报告不当作品" + "\n" +
                 "\t\t" + "-id - 作品Id" + "\n" +
                 "\t\t" + "-msg - 报告原因" + "\n";
@@ -212,30 +221,70 @@ public class BotCommandProcess {
                 log.warn("配置项 {} 的参数值格式有误!", imageLimitPropertyKey);
             }
 
-            List<JsonObject> rankingInfoList = CacheStoreCentral.getCentral()
+            List<RankingEntry> rankingInfoList = CacheStoreCentral.getCentral()
                     .getRankingInfoByCache(type, mode, queryDate, 1, Math.max(0, itemLimit), false);
             if(rankingInfoList.isEmpty()) {
                 return "无法查询排行榜，可能排行榜尚未更新。";
             }
 
-            for (JsonObject rankInfo : rankingInfoList) {
-                index++;
-                int rank = rankInfo.get("rank").getAsInt();
-                int illustId = rankInfo.get("illust_id").getAsInt();
-                int authorId = rankInfo.get("user_id").getAsInt();
-                int pagesCount = rankInfo.get("illust_page_count").getAsInt();
-                String authorName = rankInfo.get("user_name").getAsString();
-                String title = rankInfo.get("title").getAsString();
-                resultBuilder.append(rank).append(". (id: ").append(illustId).append(") ").append(title)
-                        .append("(Author: ").append(authorName).append(",").append(authorId).append(") ")
-                        .append(pagesCount).append("p.\n");
-                if (index <= imageLimit) {
-                    resultBuilder
-                            .append(CacheStoreCentral.getCentral()
-                                    .getImageById(fromGroup, illustId, PixivDownload.PageQuality.REGULAR, 1))
-                            .append("\n");
+            // 批量查询需要发送图片的作品的信息缓存和报告状态, 已确定被屏蔽的作品无需再获取图片
+            int imageCount = Math.min(imageLimit, rankingInfoList.size());
+            List<Integer> imageIllustIds = new ArrayList<>(imageCount);
+            for (int i = 0; i < imageCount; i++) {
+                imageIllustIds.add(rankingInfoList.get(i).getIllustId());
+            }
+            Map<Integer, JsonObject> cachedIllustInfos =
+                    CacheStoreCentral.getCentral().getCachedIllustInfos(imageIllustIds);
+            Set<Integer> reportedIllustIds = getReportedIllustIds(imageIllustIds);
+            Properties settingProp = SettingProperties.getProperties(fromGroup);
+
+            // 并行获取图片, 再按排名顺序组装消息
+            ParallelPrefetcher prefetcher = createPrefetcher(fromGroup, "ranking");
+            List<CompletableFuture<String>> imageFutures = new ArrayList<>();
+            for (int illustId : imageIllustIds) {
+                JsonObject illustInfo = cachedIllustInfos.get(illustId);
+                if(reportedIllustIds.contains(illustId)) {
+                    log.warn("作品Id {} 被报告, 正在等待审核, 跳过该作品.", illustId);
+                    imageFutures.add(CompletableFuture.completedFuture("（该作品已被封印）"));
+                } else if(illustInfo != null && isNoSafe(illustInfo, settingProp, false)) {
+                    log.warn("作品 {} 存在R-18内容且设置\"image.allowR18\"为false，将屏蔽该作品不发送.", illustId);
+                    imageFutures.add(CompletableFuture.completedFuture("（根据设置，该作品已被屏蔽！）"));
+                } else {
+                    imageFutures.add(prefetcher.submit(() -> CacheStoreCentral.getCentral()
+                            .getImageByIdAsync(fromGroup, illustId, PixivDownload.PageQuality.REGULAR, 1)));
                 }
             }
+
+            try {
+                for (RankingEntry rankInfo : rankingInfoList) {
+                    index++;
+                    int rank = rankInfo.getRank();
+                    int illustId = rankInfo.getIllustId();
+                    int authorId = rankInfo.getUserId();
+                    int pagesCount = rankInfo.getPageCount();
+                    String authorName = rankInfo.getUserName();
+                    String title = rankInfo.getTitle();
+                    resultBuilder.append(rank).append(". (id: ").append(illustId).append(") ").append(title)
+                            .append("(Author: ").append(authorName).append(",").append(authorId).append(") ")
+                            .append(pagesCount).append("p.\n");
+                    if (index <= imageLimit) {
+                        String imageMsg;
+                        try {
+                            imageMsg = prefetcher.await(imageFutures.get(index - 1), null);
+                            if(imageMsg == null) {
+                                log.warn("作品 {} 图片未能在期限内获取, 仅发送作品信息.", illustId);
+                                imageMsg = getImageTimeoutMessage(illustId);
+                            }
+                        } catch (ExecutionException e) {
+                            log.error("图片 {} 获取失败:\n{}", illustId, Throwables.getStackTraceAsString(e.getCause()));
+                            imageMsg = "(错误: 图片获取出错)";
+                        }
+                        resultBuilder.append(imageMsg).append("\n");
+                    }
+                }
+            } finally {
+                prefetcher.cancelPending();
+            }
         } catch (IOException e) {
             log.error("消息处理异常", e);
             return "排名榜获取失败！详情请查看机器人控制台。";
@@ -328,87 +377,146 @@ public class BotCommandProcess {
             log.warn("参数转换异常!将使用默认值(" + limit + ")", e);
         }
         int totalCount = 0;
-        for (PixivSearchLinkBuilder.SearchArea searchArea : PixivSearchLinkBuilder.SearchArea.values()) {
-            if (!resultBody.has(searchArea.jsonKey) ||
-                    resultBody.getAsJsonObject(searchArea.jsonKey).getAsJsonArray("data").size() == 0) {
-                log.debug("返回数据不包含 {}", searchArea.jsonKey);
-                continue;
-            }
-            JsonArray illustsArray = resultBody
-                    .getAsJsonObject(searchArea.jsonKey).getAsJsonArray("data");
-            ArrayList<JsonElement> illustsList = new ArrayList<>();
-            illustsArray.forEach(illustsList::add);
-            illustsList.sort(new PreLoadDataAttributeComparator(PreLoadDataAttribute.BOOKMARK));
-
-            log.debug("已找到与 {} 相关插图信息({})：", content, searchArea.name().toLowerCase());
-            int count = 1;
-            for (JsonElement jsonElement : illustsList) {
-                if (count > limit) {
-                    break;
-                }
-                JsonObject illustObj = jsonElement.getAsJsonObject();
-                if (!illustObj.has("illustId")) {
+        ParallelPrefetcher prefetcher = createPrefetcher(fromGroup, "search");
+        try {
+            for (PixivSearchLinkBuilder.SearchArea searchArea : PixivSearchLinkBuilder.SearchArea.values()) {
+                if (!resultBody.has(searchArea.jsonKey) ||
+                        resultBody.getAsJsonObject(searchArea.jsonKey).getAsJsonArray("data").size() == 0) {
+                    log.debug("返回数据不包含 {}", searchArea.jsonKey);
                     continue;
                 }
-                int illustId = illustObj.get("illustId").getAsInt();
-                StringBuilder builder = new StringBuilder("[");
-                illustObj.get("tags").getAsJsonArray().forEach(el -> builder.append(el.getAsString()).append(", "));
-                builder.replace(builder.length() - 2, builder.length(), "]");
-                log.debug("{} ({} / {})\n\t作品id: {}, \n\t作者名(作者id): {} ({}), \n\t" +
-                                "作品标题: {}, \n\t作品Tags: {}, \n\t页数: {}页, \n\t作品链接: {}",
-                        searchArea.name(),
-                        count,
-                        illustsList.size(),
-                        illustId,
-                        illustObj.get("userName").getAsString(),
-                        illustObj.get("userId").getAsInt(),
-                        illustObj.get("illustTitle").getAsString(),
-                        builder,
-                        illustObj.get("pageCount").getAsInt(),
-                        PixivURL.getPixivRefererLink(illustId)
-                );
-
-                String imageMsg;
-                try {
-                    imageMsg = CacheStoreCentral.getCentral()
-                            .getImageById(fromGroup, illustId, PixivDownload.PageQuality.REGULAR, 1);
-                } catch (NoSuchElementException e) {
-                    if(e.getMessage().startsWith("No work found: ")) {
-                        log.warn("作品 {} 不存在, 跳过该作品...", illustId);
-                        continue;
+                JsonArray illustsArray = resultBody
+                        .getAsJsonObject(searchArea.jsonKey).getAsJsonArray("data");
+                ArrayList<JsonElement> illustsList = new ArrayList<>();
+                illustsArray.forEach(illustsList::add);
+                illustsList.sort(new PreLoadDataAttributeComparator(PreLoadDataAttribute.BOOKMARK));
+
+                log.debug("已找到与 {} 相关插图信息({})：", content, searchArea.name().toLowerCase());
+                int count = 1;
+                int candidateIndex = 0;
+                while (count <= limit && candidateIndex < illustsList.size()) {
+                    // 按还需要的作品数量选取一批作品并行预取, 被跳过的作品由下一批补足
+                    List<JsonObject> batchIllusts = new ArrayList<>();
+                    List<Integer> batchIllustIds = new ArrayList<>();
+                    while (batchIllusts.size() <= limit - count && candidateIndex < illustsList.size()) {
+                        JsonObject illustObj = illustsList.get(candidateIndex++).getAsJsonObject();
+                        if (illustObj.has("illustId")) {
+                            batchIllusts.add(illustObj);
+                            batchIllustIds.add(illustObj.get("illustId").getAsInt());
+                        }
+                    }
+
+                    // 一次性查询整批作品的信息、预加载数据缓存和报告状态, 只有缓存未命中的作品才需要单独加载
+                    CacheStoreCentral central = CacheStoreCentral.getCentral();
+                    Map<Integer, JsonObject> cachedIllustInfos = central.getCachedIllustInfos(batchIllustIds);
+                    Map<Integer, JsonObject> cachedPreLoadDatas = central.getCachedIllustPreLoadDatas(batchIllustIds);
+                    Set<Integer> reportedIllustIds = getReportedIllustIds(batchIllustIds);
+                    List<SearchCandidate> candidates = new ArrayList<>(batchIllusts.size());
+                    for (JsonObject illustObj : batchIllusts) {
+                        int illustId = illustObj.get("illustId").getAsInt();
+                        if (reportedIllustIds.contains(illustId)) {
+                            log.warn("作品Id {} 被报告, 正在等待审核, 跳过该作品.", illustId);
+                            continue;
+                        }
+                        // 搜索结果中已带有限制级标记和标签时, 无需等待作品信息即可过滤R-18作品
+                        JsonObject illustInfo = cachedIllustInfos.get(illustId);
+                        JsonObject safetyInfo = illustInfo != null ? illustInfo :
+                                illustObj.has("xRestrict") && illustObj.has("tags") ? illustObj : null;
+                        if (safetyInfo != null && isNoSafe(safetyInfo, SettingProperties.getProperties(fromGroup), false)) {
+                            log.warn("作品Id {} 为R-18作品, 跳过.", illustId);
+                            continue;
+                        }
+                        candidates.add(new SearchCandidate(prefetcher, fromGroup, illustObj,
+                                illustInfo, cachedPreLoadDatas.get(illustId), safetyInfo != null));
+                    }
+
+                    for (SearchCandidate candidate : candidates) {
+                        JsonObject illustObj = candidate.illustObj;
+                        int illustId = candidate.illustId;
+                        StringBuilder builder = new StringBuilder("[");
+                        illustObj.get("tags").getAsJsonArray().forEach(el -> builder.append(el.getAsString()).append(", "));
+                        builder.replace(builder.length() - 2, builder.length(), "]");
+                        log.debug("{} ({} / {})\n\t作品id: {}, \n\t作者名(作者id): {} ({}), \n\t" +
+                                        "作品标题: {}, \n\t作品Tags: {}, \n\t页数: {}页, \n\t作品链接: {}",
+                                searchArea.name(),
+                                count,
+                                illustsList.size(),
+                                illustId,
+                                illustObj.get("userName").getAsString(),
+                                illustObj.get("userId").getAsInt(),
+                                illustObj.get("illustTitle").getAsString(),
+                                builder,
+                                illustObj.get("pageCount").getAsInt(),
+                                PixivURL.getPixivRefererLink(illustId)
+                        );
+
+                        JsonObject illustInfo;
+                        try {
+                            illustInfo = prefetcher.await(candidate.illustInfoFuture, null);
+                            if (illustInfo == null && !candidate.safetyChecked) {
+                                log.warn("作品 {} 信息未能在期限内获取, 无法检查是否为R-18作品, 跳过该作品.", illustId);
+                                continue;
+                            }
+                        } catch (ExecutionException e) {
+                            Throwable cause = e.getCause();
+                            if (cause instanceof NoSuchElementException &&
+                                    Strings.nullToEmpty(cause.getMessage()).startsWith("No work found: ")) {
+                                log.warn("作品 {} 不存在, 跳过该作品...", illustId);
+                                continue;
+                            }
+                            throw unwrapIOException(e);
+                        }
+                        if (illustInfo != null && isNoSafe(illustInfo, SettingProperties.getProperties(fromGroup), false)) {
+                            log.warn("作品Id {} 为R-18作品, 跳过.", illustId);
+                            continue;
+                        }
+
+                        String imageMsg;
+                        try {
+                            imageMsg = prefetcher.await(candidate.imageFuture, null);
+                            if (imageMsg == null) {
+                                log.warn("作品 {} 图片未能在期限内获取, 仅发送作品信息.", illustId);
+                                imageMsg = getImageTimeoutMessage(illustId);
+                            }
+                        } catch (ExecutionException e) {
+                            log.error("图片 {} 获取失败:\n{}", illustId, Throwables.getStackTraceAsString(e.getCause()));
+                            imageMsg = "(错误: 图片获取出错)";
+                        }
+
+                        JsonObject illustPreLoadData;
+                        try {
+                            illustPreLoadData = prefetcher.await(candidate.preLoadDataFuture, null);
+                        } catch (ExecutionException e) {
+                            throw unwrapIOException(e);
+                        }
+                        result.append(searchArea.name()).append(" (").append(count).append(" / ")
+                                .append(limit).append(")\n\t作品id: ").append(illustId)
+                                .append(", \n\t作者名: ").append(illustObj.get("userName").getAsString())
+                                .append("\n\t作品标题: ").append(illustObj.get("illustTitle").getAsString())
+                                .append("\n\t作品页数: ").append(illustObj.get("pageCount").getAsInt()).append("页");
+                        if (illustPreLoadData != null) {
+                            result.append("\n\t点赞数：")
+                                    .append(illustPreLoadData.get(PreLoadDataAttribute.LIKE.attrName).getAsInt())
+                                    .append("\n\t收藏数：")
+                                    .append(illustPreLoadData.get(PreLoadDataAttribute.BOOKMARK.attrName).getAsInt())
+                                    .append("\n\t围观数：")
+                                    .append(illustPreLoadData.get(PreLoadDataAttribute.VIEW.attrName).getAsInt())
+                                    .append("\n\t评论数：")
+                                    .append(illustPreLoadData.get(PreLoadDataAttribute.COMMENT.attrName).getAsInt());
+                        } else {
+                            log.warn("作品 {} 预加载数据未能在期限内获取, 省略作品统计信息.", illustId);
+                        }
+                        result.append("\n").append(imageMsg).append("\n");
+                        count++;
+                        totalCount++;
                     }
-                    throw e;
                 }
-                if (isNoSafe(illustId, SettingProperties.getProperties(fromGroup), false)) {
-                    log.warn("作品Id {} 为R-18作品, 跳过.", illustId);
-                    continue;
-                } else if(isReported(illustId)) {
-                    log.warn("作品Id {} 被报告, 正在等待审核, 跳过该作品.", illustId);
-                    continue;
+                if (count > limit) {
+                    break;
                 }
-
-                JsonObject illustPreLoadData = CacheStoreCentral.getCentral()
-                        .getIllustPreLoadData(illustId, false);
-                result.append(searchArea.name()).append(" (").append(count).append(" / ")
-                        .append(limit).append(")\n\t作品id: ").append(illustId)
-                        .append(", \n\t作者名: ").append(illustObj.get("userName").getAsString())
-                        .append("\n\t作品标题: ").append(illustObj.get("illustTitle").getAsString())
-                        .append("\n\t作品页数: ").append(illustObj.get("pageCount").getAsInt()).append("页")
-                        .append("\n\t点赞数：")
-                        .append(illustPreLoadData.get(PreLoadDataAttribute.LIKE.attrName).getAsInt())
-                        .append("\n\t收藏数：")
-                        .append(illustPreLoadData.get(PreLoadDataAttribute.BOOKMARK.attrName).getAsInt())
-                        .append("\n\t围观数：")
-                        .append(illustPreLoadData.get(PreLoadDataAttribute.VIEW.attrName).getAsInt())
-                        .append("\n\t评论数：")
-                        .append(illustPreLoadData.get(PreLoadDataAttribute.COMMENT.attrName).getAsInt())
-                        .append("\n").append(imageMsg).append("\n");
-                count++;
-                totalCount++;
-            }
-            if (count > limit) {
-                break;
             }
+        } finally {
+            prefetcher.cancelPending();
         }
         return totalCount <= 0 ?
                 "搜索完成，未找到相关作品。" :
@@ -500,6 +608,23 @@ public class BotCommandProcess {
         return CacheStoreCentral.getCentral().getImageById(fromGroup, illustId, quality, pageIndex);
     }
 
+    /**
+     * 获取动图作品的动图
+     * @param fromGroup 来源群(系统提供)
+     * @param illustId 作品Id
+     * @param quality 动图质量, 只区分原图和预览图, 默认为预览图
+     * @return 如果成功, 返回BotCode, 否则返回错误信息
+     */
+    @Command(commandName = "ugoira")
+    public static String getUgoiraById(
+            @Argument(name = "$fromGroup") long fromGroup,
+            @Argument(name = "id") int illustId,
+            @Argument(name = "quality", force = false) PixivDownload.PageQuality quality
+    ) {
+        return CacheStoreCentral.getCentral()
+                .getUgoiraById(fromGroup, illustId, quality == PixivDownload.PageQuality.ORIGINAL);
+    }
+
     /**
      * 举报某一作品
      * @param fromGroup 来源群(系统提供)
@@ -525,6 +650,86 @@ public class BotCommandProcess {
         return "色图姬收到了你的报告，将屏蔽该作品并对作品违规情况进行核实，感谢你的反馈！";
     }
 
+    /**
+     * 根据配置创建命令所使用的并行预取器.
+     * <p>并发上限和总期限分别由配置项 {@code <命令名>.prefetch.concurrency}
+     * 和 {@code <命令名>.prefetch.timeout}(单位毫秒) 设定.</p>
+     * @param fromGroup 来源群
+     * @param commandName 命令名
+     * @return 返回并行预取器
+     */
+    private static ParallelPrefetcher createPrefetcher(long fromGroup, String commandName) {
+        int concurrency = 4;
+        String concurrencyPropertyKey = commandName + ".prefetch.concurrency";
+        try {
+            concurrency = Math.max(1, Integer.parseInt(
+                    SettingProperties.getProperty(fromGroup, concurrencyPropertyKey, "4")));
+        } catch(NumberFormatException e) {
+            log.warn("配置项 {} 的参数值格式有误!", concurrencyPropertyKey);
+        }
+
+        long timeout = 90000;
+        String timeoutPropertyKey = commandName + ".prefetch.timeout";
+        try {
+            timeout = Long.parseLong(SettingProperties.getProperty(fromGroup, timeoutPropertyKey, "90000"));
+        } catch(NumberFormatException e) {
+            log.warn("配置项 {} 的参数值格式有误!", timeoutPropertyKey);
+        }
+        return new ParallelPrefetcher(concurrency, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private static String getImageTimeoutMessage(int illustId) {
+        return "（图片获取超时，可使用\".cgj image -id " + illustId + "\"重新获取）";
+    }
+
+    private static IOException unwrapIOException(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if(cause instanceof IOException) {
+            return (IOException) cause;
+        } else if(cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if(cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * 搜索结果中的候选作品, 构造时即开始并行获取作品信息、预加载数据和图片.
+     * <p>已通过批量查询得到的缓存数据将直接使用, 不再提交加载任务.</p>
+     * <p>尚未检查是否为R-18作品时, 图片在作品信息获取完成且检查通过后才开始获取.</p>
+     */
+    private static class SearchCandidate {
+        private final JsonObject illustObj;
+        private final int illustId;
+        private final boolean safetyChecked;
+        private final CompletableFuture<JsonObject> illustInfoFuture;
+        private final CompletableFuture<JsonObject> preLoadDataFuture;
+        private final CompletableFuture<String> imageFuture;
+
+        SearchCandidate(ParallelPrefetcher prefetcher, long fromGroup, JsonObject illustObj,
+                        JsonObject cachedIllustInfo, JsonObject cachedPreLoadData, boolean safetyChecked) {
+            this.illustObj = illustObj;
+            this.illustId = illustObj.get("illustId").getAsInt();
+            this.safetyChecked = safetyChecked;
+            CacheStoreCentral central = CacheStoreCentral.getCentral();
+            this.illustInfoFuture = cachedIllustInfo != null ? CompletableFuture.completedFuture(cachedIllustInfo) :
+                    prefetcher.submit(() -> central.getIllustInfoAsync(illustId, false));
+            this.preLoadDataFuture = cachedPreLoadData != null ? CompletableFuture.completedFuture(cachedPreLoadData) :
+                    prefetcher.submit(() -> central.getIllustPreLoadDataAsync(illustId, false));
+            if(safetyChecked) {
+                this.imageFuture = prefetcher.submit(() ->
+                        central.getImageByIdAsync(fromGroup, illustId, PixivDownload.PageQuality.REGULAR, 1));
+            } else {
+                this.imageFuture = illustInfoFuture.thenCompose(illustInfo ->
+                        prefetcher.isExpired() || isNoSafe(illustInfo, SettingProperties.getProperties(fromGroup), false) ?
+                                CompletableFuture.completedFuture(null) :
+                                prefetcher.submit(() -> central.getImageByIdAsync(fromGroup, illustId,
+                                        PixivDownload.PageQuality.REGULAR, 1)));
+            }
+        }
+    }
+
     /**
      * 检查某一作品是否被报告
      * @param illustId 作品Id
@@ -534,6 +739,26 @@ public class BotCommandProcess {
         return reportStore.exists(String.valueOf(illustId));
     }
 
+    /**
+     * 批量检查作品是否被报告
+     * @param illustIds 作品Id集合
+     * @return 返回被报告的作品Id
+     */
+    public static Set<Integer> getReportedIllustIds(Collection<Integer> illustIds) {
+        Set<Integer> reportedIllustIds = new HashSet<>();
+        if(illustIds.isEmpty()) {
+            return reportedIllustIds;
+        }
+        List<String> keys = new ArrayList<>(illustIds.size());
+        illustIds.forEach(illustId -> keys.add(String.valueOf(illustId)));
+        reportStore.existsAll(keys).forEach((key, reported) -> {
+            if(reported) {
+                reportedIllustIds.add(Integer.parseInt(key));
+            }
+        });
+        return reportedIllustIds;
+    }
+
     /**
      * Tag过滤表达式
      */
@@ -549,7 +774,17 @@ public class BotCommandProcess {
      */
     public static boolean isNoSafe(int illustId, Properties settingProp, boolean returnRaw)
             throws IOException, NoSuchElementException {
-        JsonObject illustInfo = CacheStoreCentral.getCentral().getIllustInfo(illustId, false);
+        return isNoSafe(CacheStoreCentral.getCentral().getIllustInfo(illustId, false), settingProp, returnRaw);
+    }
+
+    /**
+     * 根据作品信息检查作品是否为r18
+     * @param illustInfo 作品信息
+     * @param settingProp 配置项
+     * @param returnRaw 是否返回原始值
+     * @return 如果为true, 则不为全年龄
+     */
+    public static boolean isNoSafe(JsonObject illustInfo, Properties settingProp, boolean returnRaw) {
         JsonArray tags = illustInfo.getAsJsonArray("tags");
         boolean rawValue = illustInfo.get("xRestrict").getAsInt() != 0;
         if(!rawValue) {
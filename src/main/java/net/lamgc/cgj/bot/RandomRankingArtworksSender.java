@@ -1,16 +1,16 @@
 package net.lamgc.cgj.bot;
 
-import com.google.gson.JsonObject;
 import net.lamgc.cgj.bot.cache.CacheStoreCentral;
 import net.lamgc.cgj.bot.message.MessageSender;
 import net.lamgc.cgj.pixiv.PixivDownload;
 import net.lamgc.cgj.pixiv.PixivURL;
+import net.lamgc.cgj.pixiv.RankingEntry;
+import net.lamgc.cgj.pixiv.RankingSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 import java.util.Random;
 
 /**
@@ -20,6 +20,7 @@ public class RandomRankingArtworksSender extends AutoSender {
 
     private final Logger log;
     private final long groupId;
+    private final Random random = new Random();
     private final int rankingStart;
     private final int rankingStop;
     private final PixivURL.RankingMode mode;
@@ -90,23 +91,21 @@ public class RandomRankingArtworksSender extends AutoSender {
         }
         queryDate = calendar.getTime();
 
-        int selectRanking = rankingStart + new Random().nextInt(rankingStop - rankingStart + 1);
         try {
-            List<JsonObject> rankingList = CacheStoreCentral.getCentral().getRankingInfoByCache(
+            RankingSnapshot snapshot = CacheStoreCentral.getCentral().getRankingSnapshot(
                     contentType,
                     mode,
                     queryDate,
-                    selectRanking,
-                    1, false);
+                    false);
 
-            log.debug("RankingResult.size: {}", rankingList.size());
-            if(rankingList.size() != 1) {
-                log.error("排行榜选取失败!(获取到了多个结果)");
+            log.debug("RankingSnapshot.size: {}", snapshot.size());
+            RankingEntry rankingInfo = snapshot.random(random, rankingStart - 1, rankingStop - 1);
+            if(rankingInfo == null) {
+                log.error("排行榜选取失败!(排行榜中没有位于选取范围内的作品)");
                 return;
             }
 
-            JsonObject rankingInfo = rankingList.get(0);
-            int illustId = rankingInfo.get("illust_id").getAsInt();
+            int illustId = rankingInfo.getIllustId();
             if(BotCommandProcess.isNoSafe(illustId,
                     SettingProperties.getProperties(groupId), false)) {
                 log.warn("作品为r18作品, 取消本次发送.");
@@ -116,9 +115,9 @@ public class RandomRankingArtworksSender extends AutoSender {
                 return;
             }
 
-            String message = "#美图推送 - 今日排行榜 第 " + rankingInfo.get("rank").getAsInt() + " 名\n" +
-                    "标题：" + rankingInfo.get("title").getAsString() + "(" + illustId + ")\n" +
-                    "作者：" + rankingInfo.get("user_name").getAsString() + "\n" +
+            String message = "#美图推送 - 今日排行榜 第 " + rankingInfo.getRank() + " 名\n" +
+                    "标题：" + rankingInfo.getTitle() + "(" + illustId + ")\n" +
+                    "作者：" + rankingInfo.getUserName() + "\n" +
                     CacheStoreCentral.getCentral().getImageById(0, illustId, quality, 1) +
                     "\n如有不当作品，可使用\".cgj report -id " + illustId + "\"向色图姬反馈。";
             getMessageSender().sendMessage(message);
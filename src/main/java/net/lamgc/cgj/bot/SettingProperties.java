@@ -182,6 +182,27 @@ public final class SettingProperties {
         }
     }
 
+    /**
+     * 获取整数类型的配置项.
+     * <p>群组未设置该配置项时使用全局配置项, 配置项值非法时使用默认值.</p>
+     * @param groupId 群组Id, 如为0或负数则为全局配置
+     * @param key 配置项key名
+     * @param defaultValue 默认值
+     * @return 返回配置项的值
+     */
+    public static int getIntProperty(long groupId, String key, int defaultValue) {
+        String propValue = getProperty(groupId, key, getProperty(GLOBAL, key));
+        if(propValue == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(propValue.trim());
+        } catch (NumberFormatException e) {
+            log.warn("配置项 \"{}\" 值非法({}), 已使用默认值: {}", key, propValue, defaultValue);
+            return defaultValue;
+        }
+    }
+
     /**
      * 设置配置项
      * @param groupId 群组Id, 如为0或负数则为全局配置
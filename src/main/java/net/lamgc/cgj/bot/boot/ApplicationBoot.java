@@ -1,15 +1,37 @@
 package net.lamgc.cgj.bot.boot;
 
+import net.lamgc.cgj.bot.SettingProperties;
 import net.lamgc.cgj.bot.event.BotEventHandler;
 import net.lamgc.cgj.util.PropertiesUtils;
 import net.lamgc.utils.base.ArgumentsProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Properties;
+
 public final class ApplicationBoot {
 
     private final static Logger log = LoggerFactory.getLogger(ApplicationBoot.class);
 
+    /**
+     * 启动时读取的全局配置项.
+     * <p>这些配置项决定Http连接池, 线程池等组件的参数, 组件在首次使用时读取参数后不再改变,
+     * 因此需在组件初始化前从全局配置中取出, 存入对应的System Properties("cgj." + 配置项key).</p>
+     */
+    private final static String[] STARTUP_SETTING_KEYS = {
+            "executor.mode",
+            "executor.virtualThreadLimit",
+            "http.maxTotal",
+            "http.maxPerRoute",
+            "http.connectTimeout",
+            "http.socketTimeout",
+            "http.leaseTimeout",
+            "http.keepAlive",
+            "http.idleTimeout",
+            "cache.compressThreshold",
+            "ugoira.parallelism"
+    };
+
     private ApplicationBoot() {}
 
     /**
@@ -33,6 +55,13 @@ public final class ApplicationBoot {
         // 初始化 BotGlobal
         //noinspection ResultOfMethodCallIgnored 这里仅仅是加载BotGlobal而已
         BotGlobal.getGlobal();
+
+        // 在各组件初始化前载入配置, 启动时读取的配置项才能生效
+        SettingProperties.loadProperties();
+        Properties globalProperties = SettingProperties.getProperties(SettingProperties.GLOBAL);
+        for (String key : STARTUP_SETTING_KEYS) {
+            PropertiesUtils.getSettingToSysProp(globalProperties, key);
+        }
     }
 
     /**
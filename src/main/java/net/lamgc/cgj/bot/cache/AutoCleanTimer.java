@@ -1,6 +1,7 @@
 package net.lamgc.cgj.bot.cache;
 
 import com.google.common.base.Throwables;
+import net.lamgc.cgj.util.TimingWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -8,25 +9,35 @@ import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 缓存自动清理.
+ * <p>本地缓存库通过 {@link #getTimingWheel()} 获取的时间轮登记缓存项的过期时间, 到期后逐个清理;
+ * 无法登记过期时间的缓存库可通过 {@link #add(Cleanable)} 加入定时清理, 每 100ms 执行一次全量清理.</p>
+ */
 public class AutoCleanTimer extends TimerTask {
 
     private final static Set<Cleanable> cleanSet = new CopyOnWriteArraySet<>();
 
-    private final static Timer cleanTimer = new Timer("Thread-AutoClean", true);
+    private final static TimingWheel timingWheel = new TimingWheel("AutoClean", 100, TimeUnit.MILLISECONDS);
 
-    private final static Logger log = LoggerFactory.getLogger(AutoCleanTimer.class);
+    private static Timer cleanTimer;
 
-    static {
-        cleanTimer.schedule(new AutoCleanTimer(), 100L, 100L);
-    }
+    private final static Logger log = LoggerFactory.getLogger(AutoCleanTimer.class);
 
     /**
      * 增加需要定时执行清理的缓存库
      * @param store 已实现Cleanable的对象
      */
     public static void add(Cleanable store) {
-        cleanSet.add(store);
+        synchronized (cleanSet) {
+            if(cleanTimer == null) {
+                cleanTimer = new Timer("Thread-AutoClean", true);
+                cleanTimer.schedule(new AutoCleanTimer(), 100L, 100L);
+            }
+            cleanSet.add(store);
+        }
     }
 
     /**
@@ -37,6 +48,14 @@ public class AutoCleanTimer extends TimerTask {
         cleanSet.remove(store);
     }
 
+    /**
+     * 获取缓存过期清理所使用的时间轮, 刻度间隔为 100ms
+     * @return 时间轮对象
+     */
+    public static TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
     private AutoCleanTimer() {}
 
     @Override
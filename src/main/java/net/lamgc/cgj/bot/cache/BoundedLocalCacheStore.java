@@ -0,0 +1,624 @@
+package net.lamgc.cgj.bot.cache;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 有容量上限的本地缓存库.
+ * <p>缓存项存储在 {@link ConcurrentHashMap} 中, 读取不需要加锁;
+ * 淘汰策略采用 W-TinyLFU: 新缓存项先进入窗口区(LRU), 窗口区溢出的缓存项需要与主区(SLRU)中
+ * 最久未访问的缓存项比较访问频率, 频率较低的一方将被淘汰, 以防止一次性的大量访问冲刷掉热点数据.</p>
+ * <p>缓存库同时限制缓存项数量和估算占用字节数, 任意一项超出上限都会触发淘汰.</p>
+ * @param <T> 缓存类型
+ */
+public class BoundedLocalCacheStore<T> implements CacheStore<T>, Cleanable {
+
+    /**
+     * 窗口区占总容量的比例
+     */
+    private final static double WINDOW_RATIO = 0.01;
+    /**
+     * 保护区占主区容量的比例
+     */
+    private final static double PROTECTED_RATIO = 0.8;
+    /**
+     * 访问记录缓冲区大小, 必须为2的幂
+     */
+    private final static int READ_BUFFER_SIZE = 128;
+    /**
+     * 访问记录缓冲区中积压多少记录后尝试处理
+     */
+    private final static int READ_BUFFER_DRAIN_THRESHOLD = 32;
+
+    private final ConcurrentHashMap<String, Node<T>> data;
+    private final long maximumSize;
+    private final long maximumWeight;
+    private final Weigher<T> weigher;
+    private final ExpirationTracker expirationTracker;
+    private final LongSupplier clock;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final AccessQueue<T> window = new AccessQueue<>();
+    private final AccessQueue<T> probation = new AccessQueue<>();
+    private final AccessQueue<T> protectedQueue = new AccessQueue<>();
+    private final long windowMaximumSize;
+    private final long protectedMaximumSize;
+    private long weightedSize;
+    /**
+     * 已进入淘汰策略的缓存项数量, 由evictionLock保护.
+     * <p>缓存项先写入 {@link #data} 再加入淘汰策略, 所以 {@code data.size()} 可能包含尚未加入的缓存项, 不能用于判断容量.</p>
+     */
+    private long entryCount;
+
+    private final AtomicReferenceArray<Node<T>> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong readBufferWriteCount = new AtomicLong();
+    private long readBufferReadCount;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * 构造一个仅限制缓存项数量的本地缓存库
+     * @param maximumSize 最大缓存项数量
+     */
+    public BoundedLocalCacheStore(long maximumSize) {
+        this(maximumSize, Long.MAX_VALUE, value -> 0);
+    }
+
+    /**
+     * 构造一个有容量上限的本地缓存库
+     * @param maximumSize 最大缓存项数量
+     * @param maximumWeight 最大估算占用字节数
+     * @param weigher 缓存值占用估算器, 估算结果不包括键名
+     */
+    public BoundedLocalCacheStore(long maximumSize, long maximumWeight, Weigher<T> weigher) {
+        this(maximumSize, maximumWeight, weigher, false);
+    }
+
+    /**
+     * 构造一个有容量上限的本地缓存库
+     * @param maximumSize 最大缓存项数量
+     * @param maximumWeight 最大估算占用字节数
+     * @param weigher 缓存值占用估算器, 估算结果不包括键名
+     * @param autoClean 是否自动清理过期缓存项, 启用后将通过 {@link AutoCleanTimer#getTimingWheel()} 在缓存项到期时清理
+     */
+    public BoundedLocalCacheStore(long maximumSize, long maximumWeight, Weigher<T> weigher, boolean autoClean) {
+        this(maximumSize, maximumWeight, weigher, autoClean, System::currentTimeMillis);
+    }
+
+    /**
+     * 构造一个使用指定时钟的本地缓存库
+     * @param maximumSize 最大缓存项数量
+     * @param maximumWeight 最大估算占用字节数
+     * @param weigher 缓存值占用估算器, 估算结果不包括键名
+     * @param autoClean 是否自动清理过期缓存项
+     * @param clock 提供当前时间(单位毫秒)的时钟, 用于计算缓存项是否过期
+     */
+    BoundedLocalCacheStore(long maximumSize, long maximumWeight, Weigher<T> weigher, boolean autoClean,
+                           LongSupplier clock) {
+        if(maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be greater than 0: " + maximumSize);
+        } else if(maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximumWeight must be greater than 0: " + maximumWeight);
+        }
+        this.maximumSize = maximumSize;
+        this.maximumWeight = maximumWeight;
+        this.weigher = Objects.requireNonNull(weigher);
+        this.clock = Objects.requireNonNull(clock);
+        this.data = new ConcurrentHashMap<>((int) Math.min(maximumSize, 1 << 16));
+        this.sketch = new FrequencySketch(maximumSize);
+        this.windowMaximumSize = Math.max(1, (long) (maximumSize * WINDOW_RATIO));
+        this.protectedMaximumSize = (long) ((maximumSize - windowMaximumSize) * PROTECTED_RATIO);
+
+        if(autoClean) {
+            expirationTracker = new ExpirationTracker(AutoCleanTimer.getTimingWheel(), this::removeIfExpire);
+        } else {
+            expirationTracker = null;
+        }
+    }
+
+    @Override
+    public void update(String key, T value, long expire) {
+        update(key, value, expire <= 0 ? null : new Date(clock.getAsLong() + expire));
+    }
+
+    @Override
+    public void update(String key, T value, Date expire) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        long expireAt = expire == null ? 0 : expire.getTime();
+        long weight = key.length() * 2L + Math.max(0, weigher.weigh(value));
+
+        Node<T> node = data.get(key);
+        if(node != null && node.weight == weight) {
+            // 权重不变时无需调整淘汰策略的统计, 直接替换缓存值并记录一次访问;
+            // 持有淘汰锁时缓存项不会被淘汰或删除, 确保新值不会写入已被移除的缓存项
+            boolean updated = false;
+            evictionLock.lock();
+            try {
+                if(!node.retired && data.get(key) == node) {
+                    node.value = value;
+                    node.expireAt = expireAt;
+                    onAccess(node);
+                    updated = true;
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+            if(updated) {
+                trackExpiration(key, expireAt);
+                return;
+            }
+        }
+
+        Node<T> newNode = new Node<>(key, value, expireAt, weight);
+        Node<T> oldNode = data.put(key, newNode);
+        evictionLock.lock();
+        try {
+            if(oldNode != null) {
+                retire(oldNode);
+            }
+            if(!newNode.retired) {
+                sketch.increment(key);
+                window.addLast(newNode, QueueType.WINDOW);
+                weightedSize += weight;
+                entryCount++;
+                evictEntries();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        trackExpiration(key, expireAt);
+    }
+
+    @Override
+    public T getCache(String key) {
+        Node<T> node = getAliveNode(key, clock.getAsLong());
+        if(node == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        afterRead(node);
+        return node.value;
+    }
+
+    @Override
+    public T getCache(String key, long index, long length) {
+        return getCache(key);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return getAliveNode(key, clock.getAsLong()) != null;
+    }
+
+    @Override
+    public boolean exists(String key, Date date) {
+        return getAliveNode(key, date == null ? clock.getAsLong() : date.getTime()) != null;
+    }
+
+    @Override
+    public long length(String key) {
+        return -1;
+    }
+
+    @Override
+    public boolean clear() {
+        evictionLock.lock();
+        try {
+            for (String key : data.keySet()) {
+                Node<T> node = data.remove(key);
+                if(node != null) {
+                    retire(node);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        if(expirationTracker != null) {
+            expirationTracker.clear();
+        }
+        return true;
+    }
+
+    @Override
+    public Set<String> keys() {
+        long now = clock.getAsLong();
+        Set<String> keys = new HashSet<>();
+        data.forEach((key, node) -> {
+            if(!node.isExpire(now)) {
+                keys.add(key);
+            }
+        });
+        return keys;
+    }
+
+    @Override
+    public boolean remove(String key) {
+        if(expirationTracker != null) {
+            expirationTracker.untrack(key);
+        }
+        Node<T> node = data.remove(key);
+        if(node == null) {
+            return false;
+        }
+        evictionLock.lock();
+        try {
+            retire(node);
+        } finally {
+            evictionLock.unlock();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean supportedPersistence() {
+        return false;
+    }
+
+    @Override
+    public boolean supportedList() {
+        return false;
+    }
+
+    @Override
+    public void clean() {
+        long now = clock.getAsLong();
+        data.forEach((key, node) -> {
+            if(node.isExpire(now)) {
+                removeNode(node);
+            }
+        });
+    }
+
+    /**
+     * 获取当前缓存项数量
+     * @return 缓存项数量
+     */
+    public long size() {
+        return data.size();
+    }
+
+    /**
+     * 获取当前缓存项估算占用字节数
+     * @return 估算占用字节数
+     */
+    public long weightedSize() {
+        evictionLock.lock();
+        try {
+            return weightedSize;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 获取缓存命中次数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 获取缓存未命中次数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 获取因容量限制被淘汰的缓存项数量
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    private Node<T> getAliveNode(String key, long time) {
+        Node<T> node = data.get(key);
+        if(node == null) {
+            return null;
+        } else if(node.isExpire(time)) {
+            removeNode(node);
+            return null;
+        }
+        return node;
+    }
+
+    private void trackExpiration(String key, long expireAt) {
+        if(expirationTracker != null) {
+            expirationTracker.track(key, expireAt);
+        }
+    }
+
+    /**
+     * 当缓存项已过期时删除缓存项, 由时间轮在缓存项到期时调用.
+     * @param key 键名
+     */
+    private void removeIfExpire(String key) {
+        Node<T> node = data.get(key);
+        if(node != null && node.isExpire(clock.getAsLong())) {
+            removeNode(node);
+        }
+    }
+
+    private void removeNode(Node<T> node) {
+        if(data.remove(node.key, node)) {
+            evictionLock.lock();
+            try {
+                retire(node);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 记录缓存项访问.
+     * <p>访问记录先写入无锁环形缓冲区, 积压到一定数量后再统一处理, 缓冲区溢出时记录会被丢弃.</p>
+     */
+    private void afterRead(Node<T> node) {
+        long writeCount = readBufferWriteCount.getAndIncrement();
+        readBuffer.lazySet((int) (writeCount & (READ_BUFFER_SIZE - 1)), node);
+        if((writeCount & (READ_BUFFER_DRAIN_THRESHOLD - 1)) == 0 && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+        long writeCount = readBufferWriteCount.get();
+        long start = Math.max(readBufferReadCount, writeCount - READ_BUFFER_SIZE);
+        for (long i = start; i < writeCount; i++) {
+            Node<T> node = readBuffer.getAndSet((int) (i & (READ_BUFFER_SIZE - 1)), null);
+            if(node != null) {
+                onAccess(node);
+            }
+        }
+        readBufferReadCount = writeCount;
+    }
+
+    private void onAccess(Node<T> node) {
+        if(node.retired) {
+            return;
+        }
+        sketch.increment(node.key);
+        switch (node.queueType) {
+            case WINDOW:
+                window.moveToBack(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                protectedQueue.addLast(node, QueueType.PROTECTED);
+                while(protectedQueue.size > protectedMaximumSize) {
+                    Node<T> demoted = protectedQueue.pollFirst();
+                    probation.addLast(demoted, QueueType.PROBATION);
+                }
+                break;
+            case PROTECTED:
+                protectedQueue.moveToBack(node);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 将缓存项从淘汰策略中移除, 需持有evictionLock.
+     */
+    private void retire(Node<T> node) {
+        if(node.retired) {
+            return;
+        }
+        node.retired = true;
+        switch (node.queueType) {
+            case WINDOW:
+                window.remove(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedQueue.remove(node);
+                break;
+            default:
+                return;
+        }
+        weightedSize -= node.weight;
+        entryCount--;
+    }
+
+    private boolean isOverCapacity() {
+        return entryCount > maximumSize || weightedSize > maximumWeight;
+    }
+
+    /**
+     * 执行淘汰, 需持有evictionLock.
+     */
+    private void evictEntries() {
+        drainReadBuffer();
+        Node<T> candidate = null;
+        while(window.size > windowMaximumSize) {
+            Node<T> node = window.pollFirst();
+            probation.addLast(node, QueueType.PROBATION);
+            if(candidate == null) {
+                candidate = node;
+            }
+        }
+
+        while(isOverCapacity()) {
+            Node<T> victim = probation.first;
+            Node<T> evictNode;
+            if(candidate == null || victim == null || victim == candidate) {
+                evictNode = victim != null ? victim : (protectedQueue.first != null ?
+                        protectedQueue.first : window.first);
+                if(evictNode == null) {
+                    break;
+                }
+                if(evictNode == candidate) {
+                    candidate = candidate.next;
+                }
+            } else if(sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evictNode = victim;
+            } else {
+                evictNode = candidate;
+                candidate = candidate.next;
+            }
+            data.remove(evictNode.key, evictNode);
+            retire(evictNode);
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 缓存值占用估算器
+     * @param <T> 缓存值类型
+     */
+    @FunctionalInterface
+    public interface Weigher<T> {
+
+        /**
+         * 估算缓存值占用的字节数
+         * @param value 缓存值
+         * @return 估算字节数
+         */
+        long weigh(T value);
+
+        /**
+         * 字符串占用估算器
+         */
+        static Weigher<String> stringWeigher() {
+            return value -> 40 + value.length() * 2L;
+        }
+
+        /**
+         * Json对象占用估算器, 根据Json树的结构进行粗略估算
+         */
+        static <E extends JsonElement> Weigher<E> jsonWeigher() {
+            return BoundedLocalCacheStore::weighJson;
+        }
+
+    }
+
+    private static long weighJson(JsonElement element) {
+        if(element == null || element.isJsonNull()) {
+            return 16;
+        } else if(element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            return primitive.isString() ? 56 + primitive.getAsString().length() * 2L : 32;
+        } else if(element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            long weight = 40 + array.size() * 8L;
+            for (JsonElement item : array) {
+                weight += weighJson(item);
+            }
+            return weight;
+        } else {
+            JsonObject object = element.getAsJsonObject();
+            long weight = 48;
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                weight += 64 + entry.getKey().length() * 2L + weighJson(entry.getValue());
+            }
+            return weight;
+        }
+    }
+
+    private enum QueueType {
+        NONE, WINDOW, PROBATION, PROTECTED
+    }
+
+    private static class Node<T> {
+        private final String key;
+        private final long weight;
+        private volatile T value;
+        private volatile long expireAt;
+
+        // 以下字段由evictionLock保护
+        private boolean retired;
+        private QueueType queueType = QueueType.NONE;
+        private Node<T> prev;
+        private Node<T> next;
+
+        Node(String key, T value, long expireAt, long weight) {
+            this.key = key;
+            this.value = value;
+            this.expireAt = expireAt;
+            this.weight = weight;
+        }
+
+        boolean isExpire(long time) {
+            long expireTime = expireAt;
+            return expireTime != 0 && expireTime < time;
+        }
+    }
+
+    /**
+     * 侵入式双向链表, 按访问顺序排列, 表头为最久未访问的缓存项.
+     */
+    private static class AccessQueue<T> {
+        private Node<T> first;
+        private Node<T> last;
+        private long size;
+
+        void addLast(Node<T> node, QueueType type) {
+            node.queueType = type;
+            node.prev = last;
+            node.next = null;
+            if(last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+            size++;
+        }
+
+        Node<T> pollFirst() {
+            Node<T> node = first;
+            if(node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void remove(Node<T> node) {
+            if(node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if(node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.queueType = QueueType.NONE;
+            size--;
+        }
+
+        void moveToBack(Node<T> node) {
+            if(node != last) {
+                QueueType type = node.queueType;
+                remove(node);
+                addLast(node, type);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+package net.lamgc.cgj.bot.cache;
+
+/**
+ * 缓存项编解码器.
+ * <p>用于将缓存项转换成字节数据存入远端缓存库, 以及将字节数据还原成缓存项.</p>
+ * @param <T> 缓存项类型
+ */
+public interface CacheCodec<T> {
+
+    /**
+     * 编码缓存项
+     * @param value 缓存项, 不为null
+     * @return 返回编码后的字节数据
+     */
+    byte[] encode(T value);
+
+    /**
+     * 解码缓存项
+     * @param data 字节数据, 不为null
+     * @return 返回解码后的缓存项
+     */
+    T decode(byte[] data);
+
+}
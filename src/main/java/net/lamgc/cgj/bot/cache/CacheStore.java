@@ -1,7 +1,6 @@
 package net.lamgc.cgj.bot.cache;
 
-import java.util.Date;
-import java.util.Set;
+import java.util.*;
 
 /**
  * 缓存库接口
@@ -71,10 +70,22 @@ public interface CacheStore<T> {
 
     /**
      * 获取key集合
+     * <p>该方法将一次性收集所有键名, 缓存项较多时应使用 {@link #keyIterator()} 逐个遍历.</p>
      * @return 返回存储缓存库中所有缓存项key的集合
      */
     Set<String> keys();
 
+    /**
+     * 获取key迭代器.
+     * <p>迭代器将按需分批获取键名, 不会一次性加载所有键名;
+     * 遍历期间缓存库发生变化时, 新增或删除的键名可能不会被遍历到, 也可能被重复返回.</p>
+     * <p>默认实现将遍历 {@link #keys()} 的结果, 缓存项较多的缓存库应重写该方法.</p>
+     * @return 返回key迭代器, 键名不包含缓存库的前缀
+     */
+    default Iterator<String> keyIterator() {
+        return keys().iterator();
+    }
+
     /**
      * 删除指定缓存项
      * @param key 缓存项key
@@ -82,6 +93,47 @@ public interface CacheStore<T> {
      */
     boolean remove(String key);
 
+    /**
+     * 批量获取缓存数据.
+     * <p>默认实现将逐个调用 {@link #getCache(String)}, 支持批量操作的缓存库应重写该方法以减少请求次数.</p>
+     * @param keys 键名集合
+     * @return 返回存在的缓存项, 键为缓存键名; 不存在或获取失败的缓存项不会出现在返回结果中
+     */
+    default Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> result = new LinkedHashMap<>();
+        for (String key : keys) {
+            T value = getCache(key);
+            if(value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量更新或添加缓存项.
+     * <p>默认实现将逐个调用 {@link #update(String, Object, long)}, 支持批量操作的缓存库应重写该方法以减少请求次数.</p>
+     * @param values 缓存项, 键为缓存键名
+     * @param expire 有效期, 单位为ms(毫秒), 如不过期传入0或负数
+     */
+    default void updateAll(Map<String, T> values, long expire) {
+        values.forEach((key, value) -> update(key, value, expire));
+    }
+
+    /**
+     * 批量检查缓存项是否存在.
+     * <p>默认实现将逐个调用 {@link #exists(String)}, 支持批量操作的缓存库应重写该方法以减少请求次数.</p>
+     * @param keys 键名集合
+     * @return 返回每个键名的检查结果, 如果存在且未过期则为true
+     */
+    default Map<String, Boolean> existsAll(Collection<String> keys) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        for (String key : keys) {
+            result.put(key, exists(key));
+        }
+        return result;
+    }
+
     /**
      * 是否支持持久化
      * @return 如果支持返回true
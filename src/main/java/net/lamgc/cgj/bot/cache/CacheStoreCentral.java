@@ -2,6 +2,7 @@ package net.lamgc.cgj.bot.cache;
 
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import net.lamgc.cgj.bot.BotCode;
@@ -12,26 +13,37 @@ import net.lamgc.cgj.exception.HttpRequestException;
 import net.lamgc.cgj.pixiv.PixivDownload;
 import net.lamgc.cgj.pixiv.PixivSearchLinkBuilder;
 import net.lamgc.cgj.pixiv.PixivURL;
-import net.lamgc.cgj.util.Locker;
-import net.lamgc.cgj.util.LockerMap;
+import net.lamgc.cgj.pixiv.PixivUgoiraBuilder;
+import net.lamgc.cgj.pixiv.RankingEntry;
+import net.lamgc.cgj.pixiv.RankingSnapshot;
+import net.lamgc.cgj.pixiv.UgoiraMeta;
+import net.lamgc.cgj.pixiv.UgoiraRenderer;
+import net.lamgc.cgj.util.SingleFlight;
 import net.lamgc.cgj.util.URLs;
 import net.lamgc.utils.encrypt.MessageDigestUtils;
 import net.lz1998.cq.utils.CQCode;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.util.EntityUtils;
-import org.apache.tomcat.util.http.fileupload.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
-@SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
 public final class CacheStoreCentral {
 
     private final static Logger log = LoggerFactory.getLogger(CacheStoreCentral.class);
@@ -53,11 +65,70 @@ public final class CacheStoreCentral {
         central = new CacheStoreCentral();
     }
 
-    private final LockerMap<String> lockerMap = new LockerMap<>();
+    /**
+     * 异步接口所使用的I/O线程池.
+     * <p>线程数默认为 CPU 核心数的 4 倍(至少 16 个), 可通过全局配置项 {@code cache.ioThreads} 设定(启动时读取).</p>
+     */
+    private final static ThreadPoolExecutor cacheIoExecutor;
+
+    static {
+        int threads = Math.max(SettingProperties.getIntProperty(SettingProperties.GLOBAL, "cache.ioThreads",
+                Math.max(Runtime.getRuntime().availableProcessors() * 4, 16)), 1);
+        cacheIoExecutor = new ThreadPoolExecutor(
+                threads, threads,
+                30L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(4096),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("CacheIO-%d")
+                        .setDaemon(true)
+                        .build()
+        );
+        cacheIoExecutor.allowCoreThreadTimeOut(true);
+        Thread shutdownThread = new Thread(cacheIoExecutor::shutdownNow);
+        shutdownThread.setName("Thread-CacheIOShutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownThread);
+    }
+
+    /*
+     * 缓存未命中时, 同一Key的并发请求只会有一个执行加载, 其余请求直接获取其加载结果.
+     */
+    private final SingleFlight<String, JsonObject> illustInfoFlight = new SingleFlight<>();
+    private final SingleFlight<String, JsonObject> illustPreLoadDataFlight = new SingleFlight<>();
+    private final SingleFlight<String, List<String>> pagesFlight = new SingleFlight<>();
+    private final SingleFlight<String, RankingSnapshot> rankingFlight = new SingleFlight<>();
+    private final SingleFlight<String, JsonObject> searchBodyFlight = new SingleFlight<>();
+    private final SingleFlight<String, JsonObject> ugoiraInfoFlight = new SingleFlight<>();
+    private final SingleFlight<String, ImageChecksum> ugoiraRenderFlight = new SingleFlight<>();
+
+    private CacheStoreCentral() {
+        File imageStoreDir = BotGlobal.getGlobal().getImageStoreDir();
+        for (ImageIndex.Entry entry : imageIndex.entries()) {
+            imageScrubber.register(new File(imageStoreDir, entry.getFileName()), entry.getChecksum());
+        }
+    }
+
+    /**
+     * 图片缓存索引文件名, 索引文件位于图片缓存目录中
+     */
+    private final static String IMAGE_INDEX_FILE_NAME = ".cgj-image-index";
 
-    private CacheStoreCentral() {}
+    /**
+     * 图片缓存索引 - 持久化, 重启后命中索引的图片无需重新校验
+     */
+    private final ImageIndex imageIndex = openImageIndex();
 
-    private final Hashtable<String, File> imageCache = new Hashtable<>();
+    /**
+     * 图片缓存巡检, 首次获取图片时按全局配置项 {@code image.scrubInterval} 启动
+     */
+    private final ImageScrubber imageScrubber = new ImageScrubber(this::onImageCorrupted);
+
+    /**
+     * 图片缓存目录容量管理, 首次获取图片时启动, 容量上限由全局配置项 {@code image.storeQuota} 设定
+     */
+    private final ImageStoreQuotaManager imageStoreQuotaManager = new ImageStoreQuotaManager(
+            BotGlobal.getGlobal().getImageStoreDir(), imageIndex, CacheStoreCentral::getImageStoreQuota, this::onImageEvicted);
+    private final AtomicBoolean imageStoreTasksStarted = new AtomicBoolean();
 
     private final CacheStore<JsonElement> imageChecksumCache =
             new JsonRedisCacheStore(BotGlobal.getGlobal().getRedisServer(),
@@ -78,12 +149,13 @@ public final class CacheStoreCentral {
                     "illustInfo", BotGlobal.getGlobal().getGson());
 
     /**
-     * 作品信息预加载数据 - 有效期 2 小时, 本地缓存有效期 0.5 ± 0.25 小时
+     * 作品信息预加载数据 - 有效期 2 小时, 本地缓存有效期 0.5 ± 0.25 小时, 本地缓存最多 4096 项 / 64 MB
      */
     private final CacheStore<JsonElement> illustPreLoadDataCache =
-            CacheStoreUtils.hashLocalHotDataStore(
+            CacheStoreUtils.boundedLocalHotDataStore(
                     new JsonRedisCacheStore(BotGlobal.getGlobal().getRedisServer(),
-                            "illustPreLoadData", BotGlobal.getGlobal().getGson()), 600000, 120000);
+                            "illustPreLoadData", BotGlobal.getGlobal().getGson()), 600000, 120000,
+                    4096, 64 * 1024 * 1024, BoundedLocalCacheStore.Weigher.jsonWeigher());
     /**
      * 搜索内容缓存, 有效期 2 小时
      */
@@ -92,11 +164,13 @@ public final class CacheStoreCentral {
                     "searchBody", BotGlobal.getGlobal().getGson());
 
     /**
-     * 排行榜缓存, 不过期
+     * 排行榜快照缓存 - 不过期, 本地缓存有效期 0.5 ± 0.1 小时, 本地缓存最多 128 项 / 8 MB
      */
-    private final CacheStore<List<JsonObject>> rankingCache =
-            new JsonObjectRedisListCacheStore(BotGlobal.getGlobal().getRedisServer(),
-                    "ranking", BotGlobal.getGlobal().getGson());
+    private final CacheStore<RankingSnapshot> rankingCache =
+            CacheStoreUtils.boundedLocalHotDataStore(
+                    new CodecRedisCacheStore<>(BotGlobal.getGlobal().getRedisServer(),
+                            "rankingSnapshot", new RankingSnapshotCodec()), 1800000, 360000,
+                    128, 8 * 1024 * 1024, snapshot -> 64 + snapshot.size() * 96L);
 
     /**
      * 作品页面下载链接缓存 - 不过期
@@ -104,16 +178,25 @@ public final class CacheStoreCentral {
     private final CacheStore<List<String>> pagesCache =
             new StringListRedisCacheStore(BotGlobal.getGlobal().getRedisServer(), "imagePages");
 
+    /**
+     * 动图信息缓存(元数据和尺寸) - 不过期
+     */
+    private final CacheStore<JsonElement> ugoiraInfoCache =
+            new JsonRedisCacheStore(BotGlobal.getGlobal().getRedisServer(),
+                    "ugoiraInfo", BotGlobal.getGlobal().getGson());
+
     /**
      * 清空所有缓存
      */
     public void clearCache() {
-        imageCache.clear();
+        imageIndex.clear();
+        imageScrubber.clear();
         illustInfoCache.clear();
         illustPreLoadDataCache.clear();
         searchBodyCache.clear();
         rankingCache.clear();
         pagesCache.clear();
+        ugoiraInfoCache.clear();
     }
 
     /**
@@ -126,22 +209,15 @@ public final class CacheStoreCentral {
      */
     public String getImageById(long fromGroup, int illustId, PixivDownload.PageQuality quality, int pageIndex) throws InterruptedException {
         log.debug("IllustId: {}, Quality: {}, PageIndex: {}", illustId, quality.name(), pageIndex);
+        startImageStoreTasks();
         if(pageIndex <= 0) {
             log.warn("指定的页数不能小于或等于0: {}", pageIndex);
             return "指定的页数不能小于或等于0！";
         }
 
-        try {
-            if (BotCommandProcess.isNoSafe(illustId, SettingProperties.getProperties(fromGroup), false)) {
-                log.warn("作品 {} 存在R-18内容且设置\"image.allowR18\"为false，将屏蔽该作品不发送.", illustId);
-                return "（根据设置，该作品已被屏蔽！）";
-            } else if(BotCommandProcess.isReported(illustId)) {
-                log.warn("作品Id {} 被报告, 正在等待审核, 跳过该作品.", illustId);
-                return "（该作品已被封印）";
-            }
-        } catch (IOException e) {
-            log.warn("作品信息无法获取!", e);
-            return "（发生网络异常，无法获取图片！）";
+        String unavailableMessage = checkIllustAvailable(fromGroup, illustId);
+        if(unavailableMessage != null) {
+            return unavailableMessage;
         }
 
         List<String> pagesList;
@@ -170,33 +246,21 @@ public final class CacheStoreCentral {
         File imageFile = new File(BotGlobal.getGlobal().getImageStoreDir(),
                 downloadLink.substring(downloadLink.lastIndexOf("/") + 1));
         log.debug("FileName: {}, DownloadLink: {}", fileName, downloadLink);
-        if(!imageCache.containsKey(fileName)) {
-            if(imageFile.exists() && imageFile.isFile()) {
-                ImageChecksum imageChecksum = getImageChecksum(illustId, pageIndex);
-                if(imageChecksum != null) {
-                    try {
-                        log.trace("正在检查作品Id {} 第 {} 页图片文件 {} ...", illustId, pageIndex, imageFile.getName());
-                        if (ImageChecksum.checkFile(imageChecksum, Files.readAllBytes(imageFile.toPath()))) {
-                            imageCache.put(URLs.getResourceName(downloadLink), imageFile);
-                            log.trace("作品Id {} 第 {} 页缓存已补充.", illustId, pageIndex);
-                            return getImageToBotCode(imageFile, false).toString();
-                        } else {
-                            log.warn("图片文件 {} 校验失败, 重新下载图片...", imageFile.getName());
-                        }
-                    } catch(IOException e) {
-                        log.error("文件检验时读取失败, 重新下载文件...(file: {})", imageFile.getPath());
-                    }
-                } else {
-                    log.warn("图片存在但校验不存在, 重新下载图片...");
-                }
+        if(!isImageIndexed(fileName, imageFile)) {
+            if(restoreImageIndex(illustId, pageIndex, fileName, imageFile)) {
+                imageStoreQuotaManager.recordHit();
+                log.trace("作品Id {} 第 {} 页缓存已补充.", illustId, pageIndex);
+                return getImageToBotCode(imageFile, false).toString();
             }
 
+            imageStoreQuotaManager.recordMiss();
             try {
                 Throwable throwable = ImageCacheStore.executeCacheRequest(
-                        new ImageCacheObject(imageCache, illustId, pageIndex, downloadLink, imageFile));
+                        new ImageCacheObject(imageIndex, illustId, pageIndex, downloadLink, imageFile));
                 if(throwable != null) {
                     throw throwable;
                 }
+                imageStoreQuotaManager.onImageAdded(imageFile.length());
             } catch (InterruptedException e) {
                 log.warn("图片缓存被中断", e);
                 throw e;
@@ -205,10 +269,245 @@ public final class CacheStoreCentral {
                 return "(错误: 图片获取出错)";
             }
         } else {
+            imageStoreQuotaManager.recordHit();
             log.trace("图片 {} 缓存命中.", fileName);
         }
 
-        return getImageToBotCode(imageCache.get(fileName), false).toString();
+        return getImageToBotCode(imageFile, false).toString();
+    }
+
+    /**
+     * 通过illustId获取作品动图.
+     * <p>动图格式和编码预设由全局配置项 {@code ugoira.format} 和 {@code ugoira.preset} 设定.
+     * 动图渲染后与静态图片一同保存在图片缓存目录中, 并记录检验信息, 之后的请求直接发送已渲染的文件.
+     * 同一动图同一画质的并发请求只会渲染一次.</p>
+     * @param fromGroup 来源群(系统提供)
+     * @param illustId 作品Id
+     * @param original 是否为原图画质
+     * @return 如果成功, 返回BotCode, 否则返回错误信息.
+     */
+    public String getUgoiraById(long fromGroup, int illustId, boolean original) {
+        log.debug("IllustId: {}, Original: {}", illustId, original);
+        startImageStoreTasks();
+        String unavailableMessage = checkIllustAvailable(fromGroup, illustId);
+        if(unavailableMessage != null) {
+            return unavailableMessage;
+        }
+
+        JsonObject ugoiraInfo;
+        try {
+            ugoiraInfo = getUgoiraInfo(illustId, false);
+        } catch (NoSuchElementException e) {
+            log.warn("作品Id {} 不是动图作品.", illustId);
+            return "该作品不是动图作品！";
+        } catch (IOException e) {
+            log.error("获取动图元数据时发生异常", e);
+            return "发生网络异常，无法获取动图！";
+        }
+
+        UgoiraRenderer.Format format = getEnumProperty("ugoira.format", UgoiraRenderer.Format.GIF);
+        UgoiraRenderer.Preset preset = getEnumProperty("ugoira.preset", UgoiraRenderer.Preset.SPEED);
+        UgoiraMeta ugoiraMeta = UgoiraMeta.fromJson(ugoiraInfo.getAsJsonObject("meta"));
+        String zipName = URLs.getResourceName(ugoiraMeta.getSrc(original));
+        // 不同编码预设的渲染结果不同, 文件名中带上预设, 修改预设后不会继续使用旧预设的缓存
+        String fileName = zipName.substring(0, zipName.lastIndexOf('.')) +
+                "_" + preset.name().toLowerCase() + "." + format.getExtension();
+        File imageFile = new File(BotGlobal.getGlobal().getImageStoreDir(), fileName);
+        int page = getUgoiraPage(format, preset, original);
+        if(!isImageIndexed(fileName, imageFile)) {
+            if(restoreImageIndex(illustId, page, fileName, imageFile)) {
+                imageStoreQuotaManager.recordHit();
+                log.trace("作品Id {} 动图缓存已补充.", illustId);
+                return getImageToBotCode(imageFile, false).toString();
+            }
+
+            imageStoreQuotaManager.recordMiss();
+            try {
+                loadWithSingleFlight(ugoiraRenderFlight, fileName, () -> {
+                    ImageChecksum checksum = renderUgoira(illustId, page, ugoiraMeta,
+                            ugoiraInfo.get("width").getAsInt(), ugoiraInfo.get("height").getAsInt(),
+                            original, format, preset, imageFile);
+                    imageIndex.put(fileName, checksum);
+                    imageStoreQuotaManager.onImageAdded(checksum.getSize());
+                    return checksum;
+                }, "ugoira.renderWaitTimeout", 300000);
+            } catch (IOException | RuntimeException e) {
+                log.error("动图 {} 获取失败:\n{}", illustId, Throwables.getStackTraceAsString(e));
+                return "(错误: 动图获取出错)";
+            }
+        } else {
+            imageStoreQuotaManager.recordHit();
+            log.trace("动图 {} 缓存命中.", fileName);
+        }
+
+        return getImageToBotCode(imageFile, false).toString();
+    }
+
+    /**
+     * 获取动图信息.
+     * <p>返回的对象中, {@code meta} 为动图元数据, {@code width} 和 {@code height} 为动图尺寸.
+     * 尺寸取自作品信息, 与元数据一同缓存, 渲染动图时无需再次查询.</p>
+     * @param illustId 作品Id
+     * @param flushCache 是否刷新缓存
+     * @return 返回动图信息
+     * @throws IOException 当Http请求发生异常时抛出
+     * @throws NoSuchElementException 当作品未找到或不是动图作品时抛出
+     */
+    public JsonObject getUgoiraInfo(int illustId, boolean flushCache) throws IOException, NoSuchElementException {
+        String illustIdStr = Integer.toString(illustId);
+        if(!flushCache) {
+            JsonElement cacheElement = ugoiraInfoCache.getCache(illustIdStr);
+            if(cacheElement != null) {
+                log.trace("作品Id {} UgoiraInfo缓存命中.", illustId);
+                return cacheElement.getAsJsonObject();
+            }
+        }
+
+        return loadWithSingleFlight(ugoiraInfoFlight, illustIdStr, () -> {
+            JsonObject illustInfo = getIllustInfo(illustId, false);
+            if(!illustInfo.has("illustType") || illustInfo.get("illustType").getAsInt() != 2) {
+                throw new NoSuchElementException("Not an ugoira work: " + illustId);
+            }
+            PixivUgoiraBuilder builder =
+                    new PixivUgoiraBuilder(BotGlobal.getGlobal().getPixivDownload().getHttpClient(), illustId);
+            JsonObject ugoiraInfo = new JsonObject();
+            ugoiraInfo.add("meta", builder.getUgoiraMeta());
+            ugoiraInfo.addProperty("width", illustInfo.get("width").getAsInt());
+            ugoiraInfo.addProperty("height", illustInfo.get("height").getAsInt());
+            ugoiraInfoCache.update(illustIdStr, ugoiraInfo, null);
+            return ugoiraInfo;
+        });
+    }
+
+    /**
+     * 渲染动图并保存到图片缓存目录.
+     * <p>动图先写入同目录下的临时文件, 同时计算检验信息, 完成后再移动到目标文件.</p>
+     * @return 返回动图文件的检验信息
+     */
+    private ImageChecksum renderUgoira(int illustId, int page, UgoiraMeta ugoiraMeta, int width, int height,
+                                       boolean original, UgoiraRenderer.Format format,
+                                       UgoiraRenderer.Preset preset, File imageFile) throws IOException {
+        log.debug("正在渲染动图 {} (Path: {})", imageFile.getName(), imageFile.getAbsolutePath());
+        File tempFile = new File(imageFile.getParentFile(), imageFile.getName() + ".tmp");
+        MessageDigest digest = ImageChecksum.newDigest();
+        try {
+            PixivUgoiraBuilder builder = new PixivUgoiraBuilder(
+                    BotGlobal.getGlobal().getPixivDownload().getHttpClient(), illustId, ugoiraMeta)
+                    .setImageSize(width, height)
+                    .setOutputFormat(format, preset);
+            try (OutputStream output = new DigestOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024), digest)) {
+                builder.buildUgoira(output, original);
+            }
+            Files.move(tempFile.toPath(), imageFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+        ImageChecksum imageChecksum = ImageChecksum.create(illustId, page, imageFile.getName(),
+                imageFile.length(), digest.digest());
+        imageChecksum.setLastModified(imageFile.lastModified());
+        setImageChecksum(imageChecksum);
+        log.trace("动图 {} 渲染完成(Size: {}KB)", imageFile.getName(), imageChecksum.getSize() / 1024);
+        return imageChecksum;
+    }
+
+    /**
+     * 获取动图检验信息所使用的页码.
+     * <p>动图没有分页, 使用负数页码与静态图片的检验信息区分, 每种格式和预设的原图和预览图分别记录.</p>
+     */
+    private static int getUgoiraPage(UgoiraRenderer.Format format, UgoiraRenderer.Preset preset, boolean original) {
+        int variant = format.ordinal() * UgoiraRenderer.Preset.values().length + preset.ordinal();
+        return -(variant * 2 + (original ? 2 : 1));
+    }
+
+    /**
+     * 读取枚举类型的全局配置项, 不区分大小写
+     */
+    private static <E extends Enum<E>> E getEnumProperty(String key, E defaultValue) {
+        String propValue = SettingProperties.getProperty(SettingProperties.GLOBAL, key, defaultValue.name());
+        try {
+            return Enum.valueOf(defaultValue.getDeclaringClass(), propValue.trim().toUpperCase());
+        } catch (Exception e) {
+            log.warn("全局配置项 \"{}\" 值非法({}), 已使用默认值: {}", key, propValue, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 检查作品是否可以发送
+     * @return 如果可以发送, 返回null, 否则返回提示信息
+     */
+    private static String checkIllustAvailable(long fromGroup, int illustId) {
+        try {
+            if (BotCommandProcess.isNoSafe(illustId, SettingProperties.getProperties(fromGroup), false)) {
+                log.warn("作品 {} 存在R-18内容且设置\"image.allowR18\"为false，将屏蔽该作品不发送.", illustId);
+                return "（根据设置，该作品已被屏蔽！）";
+            } else if(BotCommandProcess.isReported(illustId)) {
+                log.warn("作品Id {} 被报告, 正在等待审核, 跳过该作品.", illustId);
+                return "（该作品已被封印）";
+            }
+        } catch (IOException e) {
+            log.warn("作品信息无法获取!", e);
+            return "（发生网络异常，无法获取图片！）";
+        }
+        return null;
+    }
+
+    /**
+     * 检查图片是否已在缓存索引中.
+     * <p>索引中存在但文件已不存在时(例如被手动删除), 移除该索引项, 由调用方重新获取图片.</p>
+     * @return 如果图片在索引中且文件存在, 返回true
+     */
+    private boolean isImageIndexed(String fileName, File imageFile) {
+        if(imageIndex.get(fileName) == null) {
+            return false;
+        } else if(imageFile.isFile()) {
+            return true;
+        }
+        log.warn("图片 {} 在缓存索引中, 但文件已不存在, 重新获取图片...", imageFile.getName());
+        imageIndex.remove(fileName);
+        imageScrubber.unregister(imageFile);
+        return false;
+    }
+
+    /**
+     * 图片文件存在但不在索引中时(例如索引丢失或重启前的旧文件), 按检验信息检查文件, 通过后重新加入索引.
+     * @return 如果文件通过检查并已加入索引, 返回true, 否则需要重新获取图片
+     */
+    private boolean restoreImageIndex(int illustId, int pageIndex, String fileName, File imageFile) {
+        if(!imageFile.exists() || !imageFile.isFile()) {
+            return false;
+        }
+        ImageChecksum imageChecksum = getImageChecksum(illustId, pageIndex);
+        if(imageChecksum == null) {
+            log.warn("图片存在但校验不存在, 重新下载图片...");
+            return false;
+        }
+        try {
+            log.trace("正在检查作品Id {} 第 {} 页图片文件 {} ...", illustId, pageIndex, imageFile.getName());
+            boolean passed = ImageChecksum.matchesFileAttributes(imageChecksum, imageFile);
+            if(passed) {
+                // 大小和修改时间均与记录一致, 文件损坏交由后台巡检发现
+                log.trace("图片文件 {} 大小和修改时间与记录一致, 跳过校验.", imageFile.getName());
+            } else {
+                passed = ImageChecksum.checkFile(imageChecksum, imageFile);
+                if(passed) {
+                    // 记录当前的修改时间, 下次可直接通过快速检查
+                    imageChecksum.setLastModified(imageFile.lastModified());
+                    setImageChecksum(imageChecksum);
+                }
+            }
+            if (passed) {
+                imageScrubber.register(imageFile, imageChecksum);
+                imageIndex.put(fileName, imageChecksum);
+                return true;
+            } else {
+                log.warn("图片文件 {} 校验失败, 重新下载图片...", imageFile.getName());
+            }
+        } catch(IOException e) {
+            log.error("文件检验时读取失败, 重新下载文件...(file: {})", imageFile.getPath());
+        }
+        return false;
     }
 
     /**
@@ -238,28 +537,20 @@ public final class CacheStoreCentral {
      */
     public JsonObject getIllustInfo(int illustId, boolean flushCache)
             throws IOException, NoSuchElementException {
-        Locker<String> locker = buildSyncKey(Integer.toString(illustId));
-        String illustIdStr = locker.getKey();
-        JsonObject illustInfoObj = null;
-        if (!illustInfoCache.exists(illustIdStr) || flushCache) {
-            try {
-                locker.lock();
-                synchronized (locker) {
-                    if (!illustInfoCache.exists(illustIdStr) || flushCache) {
-                        illustInfoObj = BotGlobal.getGlobal().getPixivDownload().getIllustInfoByIllustId(illustId);
-                        illustInfoCache.update(illustIdStr, illustInfoObj, null);
-                    }
-                }
-            } finally {
-                locker.unlock();
+        String illustIdStr = Integer.toString(illustId);
+        if(!flushCache) {
+            JsonElement cacheElement = illustInfoCache.getCache(illustIdStr);
+            if(cacheElement != null) {
+                log.trace("作品Id {} IllustInfo缓存命中.", illustId);
+                return cacheElement.getAsJsonObject();
             }
         }
 
-        if(Objects.isNull(illustInfoObj)) {
-            illustInfoObj = illustInfoCache.getCache(illustIdStr).getAsJsonObject();
-            log.trace("作品Id {} IllustInfo缓存命中.", illustId);
-        }
-        return illustInfoObj;
+        return loadWithSingleFlight(illustInfoFlight, illustIdStr, () -> {
+            JsonObject illustInfoObj = BotGlobal.getGlobal().getPixivDownload().getIllustInfoByIllustId(illustId);
+            illustInfoCache.update(illustIdStr, illustInfoObj, null);
+            return illustInfoObj;
+        });
     }
 
     /**
@@ -271,75 +562,93 @@ public final class CacheStoreCentral {
      * @throws IOException 当Http请求处理发生异常时抛出
      */
     public JsonObject getIllustPreLoadData(int illustId, boolean flushCache) throws IOException {
-        Locker<String> locker = buildSyncKey(Integer.toString(illustId));
-        String illustIdStr = locker.getKey();
-        JsonObject result = null;
-        if (!illustPreLoadDataCache.exists(illustIdStr) || flushCache) {
-            try {
-                locker.lock();
-                synchronized (locker) {
-                    if (!illustPreLoadDataCache.exists(illustIdStr) || flushCache) {
-                        log.trace("IllustId {} 缓存失效, 正在更新...", illustId);
-                        JsonObject preLoadDataObj = BotGlobal.getGlobal().getPixivDownload()
-                                .getIllustPreLoadDataById(illustId)
-                                .getAsJsonObject("illust")
-                                .getAsJsonObject(Integer.toString(illustId));
-
-                        long expire = 7200 * 1000;
-                        String propValue = SettingProperties.
-                                getProperty(SettingProperties.GLOBAL, "cache.illustPreLoadData.expire", "7200000");
-                        log.debug("PreLoadData有效时间设定: {}", propValue);
-                        try {
-                            expire = Long.parseLong(propValue);
-                        } catch (Exception e) {
-                            log.warn("全局配置项 \"{}\" 值非法, 已使用默认值: {}", propValue, expire);
-                        }
-
-                        result = preLoadDataObj;
-                        illustPreLoadDataCache.update(illustIdStr, preLoadDataObj, expire);
-                        log.trace("作品Id {} preLoadData缓存已更新(有效时间: {})", illustId, expire);
-                    }
-                }
-            } finally {
-                locker.unlock();
+        String illustIdStr = Integer.toString(illustId);
+        if(!flushCache) {
+            JsonElement cacheElement = illustPreLoadDataCache.getCache(illustIdStr);
+            if(cacheElement != null) {
+                log.trace("作品Id {} PreLoadData缓存命中.", illustId);
+                return cacheElement.getAsJsonObject();
             }
         }
 
-        if(Objects.isNull(result)) {
-            result = illustPreLoadDataCache.getCache(illustIdStr).getAsJsonObject();
-            log.trace("作品Id {} PreLoadData缓存命中.", illustId);
+        return loadWithSingleFlight(illustPreLoadDataFlight, illustIdStr, () -> {
+            log.trace("IllustId {} 缓存失效, 正在更新...", illustId);
+            JsonObject preLoadDataObj = BotGlobal.getGlobal().getPixivDownload()
+                    .getIllustPreLoadDataById(illustId)
+                    .getAsJsonObject("illust")
+                    .getAsJsonObject(illustIdStr);
+
+            long expire = 7200 * 1000;
+            String propValue = SettingProperties.
+                    getProperty(SettingProperties.GLOBAL, "cache.illustPreLoadData.expire", "7200000");
+            log.debug("PreLoadData有效时间设定: {}", propValue);
+            try {
+                expire = Long.parseLong(propValue);
+            } catch (Exception e) {
+                log.warn("全局配置项 \"{}\" 值非法, 已使用默认值: {}", propValue, expire);
+            }
+
+            illustPreLoadDataCache.update(illustIdStr, preLoadDataObj, expire);
+            log.trace("作品Id {} preLoadData缓存已更新(有效时间: {})", illustId, expire);
+            return preLoadDataObj;
+        });
+    }
+
+    /**
+     * 批量获取已缓存的作品信息.
+     * <p>仅查询缓存(一次请求), 不会发起Http请求, 未命中的作品不会出现在返回结果中.</p>
+     * @param illustIds 作品Id集合
+     * @return 返回已缓存的作品信息, 键为作品Id
+     */
+    public Map<Integer, JsonObject> getCachedIllustInfos(Collection<Integer> illustIds) {
+        return getCachedElements(illustInfoCache, illustIds);
+    }
+
+    /**
+     * 批量获取已缓存的作品预加载数据.
+     * <p>仅查询缓存(一次请求), 不会发起Http请求, 未命中的作品不会出现在返回结果中.</p>
+     * @param illustIds 作品Id集合
+     * @return 返回已缓存的作品预加载数据, 键为作品Id
+     */
+    public Map<Integer, JsonObject> getCachedIllustPreLoadDatas(Collection<Integer> illustIds) {
+        return getCachedElements(illustPreLoadDataCache, illustIds);
+    }
+
+    private static Map<Integer, JsonObject> getCachedElements(CacheStore<JsonElement> cacheStore,
+                                                              Collection<Integer> illustIds) {
+        Map<Integer, JsonObject> result = new HashMap<>();
+        if(illustIds.isEmpty()) {
+            return result;
         }
+        Set<String> keys = new LinkedHashSet<>();
+        illustIds.forEach(illustId -> keys.add(Integer.toString(illustId)));
+        cacheStore.getAll(keys).forEach((key, element) -> {
+            if(element.isJsonObject()) {
+                result.put(Integer.parseInt(key), element.getAsJsonObject());
+            }
+        });
+        log.trace("批量缓存查询完成. (查询数量: {}, 命中数量: {})", keys.size(), result.size());
         return result;
     }
 
     public List<String> getIllustPages(int illustId, PixivDownload.PageQuality quality, boolean flushCache)
             throws IOException {
-        Locker<String> locker
-                = buildSyncKey(Integer.toString(illustId), ".", quality.name());
-        String pagesSign = locker.getKey();
-        List<String> result = null;
-        if (!pagesCache.exists(pagesSign) || flushCache) {
-            try {
-                locker.lock();
-                synchronized (locker) {
-                    if (!pagesCache.exists(pagesSign) || flushCache) {
-                        List<String> linkList = PixivDownload
-                                .getIllustAllPageDownload(BotGlobal.getGlobal().getPixivDownload().getHttpClient(),
-                                        BotGlobal.getGlobal().getPixivDownload().getCookieStore(), illustId, quality);
-                        result = linkList;
-                        pagesCache.update(pagesSign, linkList, null);
-                    }
-                }
-            } finally {
-                locker.unlock();
+        String pagesSign = illustId + "." + quality.name();
+        if(!flushCache) {
+            List<String> cacheList = pagesCache.getCache(pagesSign);
+            if(cacheList != null && !cacheList.isEmpty()) {
+                log.trace("作品Id {} Pages缓存命中.", illustId);
+                return cacheList;
             }
         }
 
-        if(Objects.isNull(result)) {
-            result = pagesCache.getCache(pagesSign);
-            log.trace("作品Id {} Pages缓存命中.", illustId);
-        }
-        return result;
+        return loadWithSingleFlight(pagesFlight, pagesSign, () -> {
+            List<String> linkList = PixivDownload
+                    .getIllustAllPageDownload(BotGlobal.getGlobal().getPixivDownload().getHttpClient(),
+                            BotGlobal.getGlobal().getPixivDownload().getCookieStore(), illustId, quality);
+            pagesCache.update(pagesSign, linkList, null);
+            return linkList;
+        });
     }
 
     private final Random expireTimeFloatRandom = new Random();
@@ -354,9 +663,25 @@ public final class CacheStoreCentral {
      * @return 成功返回有值List, 失败且无异常返回空
      * @throws IOException 获取异常时抛出
      */
-    public List<JsonObject> getRankingInfoByCache(PixivURL.RankingContentType contentType,
-                                                         PixivURL.RankingMode mode,
-                                                         Date queryDate, int start, int range, boolean flushCache)
+    public List<RankingEntry> getRankingInfoByCache(PixivURL.RankingContentType contentType,
+                                                    PixivURL.RankingMode mode,
+                                                    Date queryDate, int start, int range, boolean flushCache)
+            throws IOException {
+        return getRankingSnapshot(contentType, mode, queryDate, flushCache).getEntries(start - 1, range);
+    }
+
+    /**
+     * 获取完整的排行榜快照(前 500 名)
+     * @param contentType 排行榜类型
+     * @param mode 排行榜模式
+     * @param queryDate 查询时间
+     * @param flushCache 是否强制刷新缓存
+     * @return 返回排行榜快照, 如果排行榜类型与模式不兼容, 返回空快照
+     * @throws IOException 获取异常时抛出
+     */
+    public RankingSnapshot getRankingSnapshot(PixivURL.RankingContentType contentType,
+                                              PixivURL.RankingMode mode,
+                                              Date queryDate, boolean flushCache)
             throws IOException {
         if(!contentType.isSupportedMode(mode)) {
             log.warn("试图获取不支持的排行榜类型已拒绝.(ContentType: {}, RankingMode: {})", contentType.name(), mode.name());
@@ -367,42 +692,32 @@ public final class CacheStoreCentral {
                     log.debug("本次非法请求的堆栈信息如下: \n{}", Throwables.getStackTraceAsString(e));
                 }
             }
-            return new ArrayList<>(0);
+            return RankingSnapshot.empty();
         }
 
         String date = new SimpleDateFormat("yyyyMMdd").format(queryDate);
-        Locker<String> locker
-                = buildSyncKey(contentType.name(), ".", mode.name(), ".", date);
-        String requestSign = locker.getKey();
-        List<JsonObject> result = null;
-        if(!rankingCache.exists(requestSign) || flushCache) {
-            try {
-                locker.lock();
-                synchronized (locker) {
-                    if (!rankingCache.exists(requestSign) || flushCache) {
-                        log.trace("Ranking缓存失效, 正在更新...(RequestSign: {})", requestSign);
-                        List<JsonObject> rankingResult = BotGlobal.getGlobal().getPixivDownload()
-                                .getRanking(contentType, mode, queryDate, 1, 500);
-                        long expireTime = 0;
-                        if (rankingResult.size() == 0) {
-                            expireTime = 5400000 + expireTimeFloatRandom.nextInt(1800000);
-                            log.warn("数据获取失败, 将设置浮动有效时间以准备下次更新. (ExpireTime: {}ms)", expireTime);
-                        }
-                        result = new ArrayList<>(rankingResult).subList(start - 1, start + range - 1);
-                        rankingCache.update(requestSign, rankingResult, expireTime);
-                        log.trace("Ranking缓存更新完成.(RequestSign: {})", requestSign);
-                    }
-                }
-            } finally {
-                locker.unlock();
+        String requestSign = contentType.name() + "." + mode.name() + "." + date;
+        if(!flushCache) {
+            RankingSnapshot snapshot = rankingCache.getCache(requestSign);
+            if(snapshot != null) {
+                log.trace("RequestSign [{}] 缓存命中.", requestSign);
+                return snapshot;
             }
         }
 
-        if (Objects.isNull(result)) {
-            result = rankingCache.getCache(requestSign, start - 1, range);
-            log.trace("RequestSign [{}] 缓存命中.", requestSign);
-        }
-        return PixivDownload.getRanking(result, start - 1, range);
+        return loadWithSingleFlight(rankingFlight, requestSign, () -> {
+            log.trace("Ranking缓存失效, 正在更新...(RequestSign: {})", requestSign);
+            RankingSnapshot snapshot = BotGlobal.getGlobal().getPixivDownload()
+                    .getRankingSnapshot(contentType, mode, queryDate, 1, 500);
+            long expireTime = 0;
+            if (snapshot.isEmpty()) {
+                expireTime = 5400000 + expireTimeFloatRandom.nextInt(1800000);
+                log.warn("数据获取失败, 将设置浮动有效时间以准备下次更新. (ExpireTime: {}ms)", expireTime);
+            }
+            rankingCache.update(requestSign, snapshot, expireTime);
+            log.trace("Ranking缓存更新完成.(RequestSign: {}, Size: {})", requestSign, snapshot.size());
+            return snapshot;
+        });
     }
 
     /**
@@ -470,58 +785,43 @@ public final class CacheStoreCentral {
 
         log.debug("正在搜索作品, 条件: {}", searchBuilder.getSearchCondition());
 
-        Locker<String> locker
-                = buildSyncKey(searchBuilder.buildURL());
-        String requestUrl = locker.getKey();
+        String requestUrl = searchBuilder.buildURL();
         log.debug("RequestUrl: {}", requestUrl);
-        JsonObject resultBody = null;
-        if(!searchBodyCache.exists(requestUrl)) {
-            try {
-                locker.lock();
-                synchronized (locker) {
-                    if (!searchBodyCache.exists(requestUrl)) {
-                        log.trace("searchBody缓存失效, 正在更新...");
-                        JsonObject jsonObject;
-                        HttpGet httpGetRequest = BotGlobal.getGlobal().getPixivDownload().
-                                createHttpGetRequest(requestUrl);
-                        HttpResponse response = BotGlobal.getGlobal().getPixivDownload().
-                                getHttpClient().execute(httpGetRequest);
-
-                        String responseBody = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
-                        log.trace("ResponseBody: {}", responseBody);
-                        jsonObject = BotGlobal.getGlobal().getGson().fromJson(responseBody, JsonObject.class);
-
-                        if (jsonObject.get("error").getAsBoolean()) {
-                            log.error("接口请求错误, 错误信息: {}", jsonObject.get("message").getAsString());
-                            throw new HttpRequestException(response.getStatusLine(), responseBody);
-                        }
-
-                        long expire = 7200 * 1000;
-                        String propValue = SettingProperties
-                                .getProperty(SettingProperties.GLOBAL, "cache.searchBody.expire", "7200000");
-                        try {
-                            expire = Long.parseLong(propValue);
-                        } catch (Exception e) {
-                            log.warn("全局配置项 \"{}\" 值非法, 已使用默认值: {}", propValue, expire);
-                        }
-                        resultBody = jsonObject.getAsJsonObject().getAsJsonObject("body");
-                        searchBodyCache.update(requestUrl, jsonObject, expire);
-                        log.trace("searchBody缓存已更新(有效时间: {})", expire);
-                    } else {
-                        log.trace("搜索缓存命中.");
-                    }
-                }
-            } finally {
-                locker.unlock();
-            }
-        } else {
+        JsonElement cacheElement = searchBodyCache.getCache(requestUrl);
+        if(cacheElement != null) {
             log.trace("搜索缓存命中.");
+            return cacheElement.getAsJsonObject().getAsJsonObject("body");
         }
 
-        if(Objects.isNull(resultBody)) {
-            resultBody = searchBodyCache.getCache(requestUrl).getAsJsonObject().getAsJsonObject("body");
-        }
-        return resultBody;
+        return loadWithSingleFlight(searchBodyFlight, requestUrl, () -> {
+            log.trace("searchBody缓存失效, 正在更新...");
+            JsonObject jsonObject;
+            HttpGet httpGetRequest = BotGlobal.getGlobal().getPixivDownload().
+                    createHttpGetRequest(requestUrl);
+            HttpResponse response = BotGlobal.getGlobal().getPixivDownload().
+                    getHttpClient().execute(httpGetRequest);
+
+            String responseBody = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            log.trace("ResponseBody: {}", responseBody);
+            jsonObject = BotGlobal.getGlobal().getGson().fromJson(responseBody, JsonObject.class);
+
+            if (jsonObject.get("error").getAsBoolean()) {
+                log.error("接口请求错误, 错误信息: {}", jsonObject.get("message").getAsString());
+                throw new HttpRequestException(response.getStatusLine(), responseBody);
+            }
+
+            long expire = 7200 * 1000;
+            String propValue = SettingProperties
+                    .getProperty(SettingProperties.GLOBAL, "cache.searchBody.expire", "7200000");
+            try {
+                expire = Long.parseLong(propValue);
+            } catch (Exception e) {
+                log.warn("全局配置项 \"{}\" 值非法, 已使用默认值: {}", propValue, expire);
+            }
+            searchBodyCache.update(requestUrl, jsonObject, expire);
+            log.trace("searchBody缓存已更新(有效时间: {})", expire);
+            return jsonObject.getAsJsonObject("body");
+        });
     }
 
     protected ImageChecksum getImageChecksum(int illustId, int pageIndex) {
@@ -536,19 +836,227 @@ public final class CacheStoreCentral {
     protected void setImageChecksum(ImageChecksum checksum) {
         String cacheKey = checksum.getIllustId() + ":" + checksum.getPage();
         imageChecksumCache.update(cacheKey, ImageChecksum.toJsonObject(checksum), 0);
+        imageScrubber.register(new File(BotGlobal.getGlobal().getImageStoreDir(), checksum.getFileName()), checksum);
+    }
+
+    protected void removeImageChecksum(int illustId, int pageIndex) {
+        imageChecksumCache.remove(illustId + ":" + pageIndex);
+    }
+
+    /**
+     * 启动图片缓存后台巡检和容量管理, 只有首次调用有效.
+     * <p>巡检周期由全局配置项 {@code image.scrubInterval} 设定, 单位毫秒, 默认 24 小时, 设为0则不巡检.</p>
+     */
+    private void startImageStoreTasks() {
+        if(imageStoreTasksStarted.compareAndSet(false, true)) {
+            imageStoreQuotaManager.start();
+            long interval = 86400000;
+            String propValue = SettingProperties
+                    .getProperty(SettingProperties.GLOBAL, "image.scrubInterval", "86400000");
+            try {
+                interval = Long.parseLong(propValue);
+            } catch (Exception e) {
+                log.warn("全局配置项 \"{}\" 值非法, 已使用默认值: {}", propValue, interval);
+            }
+            imageScrubber.start(interval);
+        }
+    }
+
+    private static ImageIndex openImageIndex() {
+        File indexFile = new File(BotGlobal.getGlobal().getImageStoreDir(), IMAGE_INDEX_FILE_NAME);
+        try {
+            return ImageIndex.open(indexFile);
+        } catch (IOException e) {
+            log.error("图片缓存索引加载失败, 本次运行期间索引将不会被保存:\n{}", Throwables.getStackTraceAsString(e));
+            return ImageIndex.inMemory();
+        }
+    }
+
+    /**
+     * 获取图片缓存目录的容量上限.
+     * <p>由全局配置项 {@code image.storeQuota} 设定, 单位MB, 默认为0, 即不限制.</p>
+     * @return 返回容量上限, 单位字节, 小于等于0表示不限制
+     */
+    private static long getImageStoreQuota() {
+        long quota = 0;
+        String propValue = SettingProperties
+                .getProperty(SettingProperties.GLOBAL, "image.storeQuota", "0");
+        try {
+            quota = Long.parseLong(propValue);
+        } catch (Exception e) {
+            log.warn("全局配置项 \"{}\" 值非法, 已使用默认值: {}", propValue, quota);
+        }
+        return quota * 1024 * 1024;
+    }
+
+    /**
+     * 图片因超出容量上限被淘汰, 或因损坏被删除后, 清理与之关联的校验信息.
+     */
+    private void onImageEvicted(ImageIndex.Entry entry) {
+        ImageChecksum checksum = entry.getChecksum();
+        imageScrubber.unregister(new File(BotGlobal.getGlobal().getImageStoreDir(), entry.getFileName()));
+        removeImageChecksum(checksum.getIllustId(), checksum.getPage());
+    }
+
+    /**
+     * 获取图片缓存统计信息
+     */
+    public ImageStoreQuotaManager.Stats getImageStoreStats() {
+        return imageStoreQuotaManager.getStats();
+    }
+
+    /**
+     * 巡检发现图片损坏时, 移除缓存并删除文件, 下次获取时将重新下载.
+     */
+    private void onImageCorrupted(File imageFile, ImageChecksum checksum) {
+        // 与淘汰图片使用相同的清理流程, 同时更新索引, 容量统计和检验信息
+        if(imageStoreQuotaManager.removeImage(imageFile)) {
+            log.warn("已删除损坏的图片文件 {}, 将在下次获取时重新下载.", imageFile.getName());
+        }
+        // 文件未被索引时不会通知淘汰监听器, 检验信息需单独移除
+        removeImageChecksum(checksum.getIllustId(), checksum.getPage());
+    }
+
+    /**
+     * 异步获取作品图片
+     * @return 返回图片获取结果的 {@link CompletableFuture}
+     * @see #getImageById(long, int, PixivDownload.PageQuality, int)
+     */
+    public CompletableFuture<String> getImageByIdAsync(long fromGroup, int illustId,
+                                                       PixivDownload.PageQuality quality, int pageIndex) {
+        return executeAsync(() -> getImageById(fromGroup, illustId, quality, pageIndex));
+    }
+
+    /**
+     * 异步获取作品信息
+     * @return 返回作品信息的 {@link CompletableFuture}
+     * @see #getIllustInfo(int, boolean)
+     */
+    public CompletableFuture<JsonObject> getIllustInfoAsync(int illustId, boolean flushCache) {
+        return executeAsync(() -> getIllustInfo(illustId, flushCache));
+    }
+
+    /**
+     * 异步获取作品预加载数据
+     * @return 返回作品预加载数据的 {@link CompletableFuture}
+     * @see #getIllustPreLoadData(int, boolean)
+     */
+    public CompletableFuture<JsonObject> getIllustPreLoadDataAsync(int illustId, boolean flushCache) {
+        return executeAsync(() -> getIllustPreLoadData(illustId, flushCache));
+    }
+
+    /**
+     * 异步获取作品页面下载链接
+     * @return 返回下载链接列表的 {@link CompletableFuture}
+     * @see #getIllustPages(int, PixivDownload.PageQuality, boolean)
+     */
+    public CompletableFuture<List<String>> getIllustPagesAsync(int illustId, PixivDownload.PageQuality quality,
+                                                               boolean flushCache) {
+        return executeAsync(() -> getIllustPages(illustId, quality, flushCache));
+    }
+
+    /**
+     * 异步获取排行榜
+     * @return 返回排行榜的 {@link CompletableFuture}
+     * @see #getRankingInfoByCache(PixivURL.RankingContentType, PixivURL.RankingMode, Date, int, int, boolean)
+     */
+    public CompletableFuture<List<RankingEntry>> getRankingInfoAsync(PixivURL.RankingContentType contentType,
+                                                                     PixivURL.RankingMode mode,
+                                                                     Date queryDate, int start, int range,
+                                                                     boolean flushCache) {
+        return executeAsync(() -> getRankingInfoByCache(contentType, mode, queryDate, start, range, flushCache));
+    }
+
+    /**
+     * 异步获取搜索结果
+     * @return 返回搜索结果的 {@link CompletableFuture}
+     * @see #getSearchBody(String, String, String, String, String, String, int)
+     */
+    public CompletableFuture<JsonObject> getSearchBodyAsync(String content, String type, String area,
+                                                            String includeKeywords, String excludeKeywords,
+                                                            String contentOption, int pageIndex) {
+        return executeAsync(() ->
+                getSearchBody(content, type, area, includeKeywords, excludeKeywords, contentOption, pageIndex));
     }
 
     /**
-     * 合并String并存取到常量池, 以保证对象一致
-     * @param keys String对象
-     * @return 合并后, 如果常量池存在合并后的结果, 则返回常量池中的对象, 否则存入常量池后返回.
+     * 在I/O线程池中执行任务.
+     * <p>任务抛出的异常将原样传递给返回的 {@link CompletableFuture};
+     * 如果任务执行前 CompletableFuture 已被取消, 则任务不会执行.</p>
+     * @param task 任务
+     * @param <V> 任务返回值类型
+     * @return 返回任务执行结果的 {@link CompletableFuture}
      */
-    private Locker<String> buildSyncKey(String... keys) {
-        StringBuilder sb = new StringBuilder();
-        for (String string : keys) {
-            sb.append(string);
+    private static <V> CompletableFuture<V> executeAsync(Callable<V> task) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        try {
+            cacheIoExecutor.execute(() -> {
+                if(future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("缓存I/O线程池已满, 任务已被拒绝.");
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 通过 {@link SingleFlight} 执行加载, 同一Key的并发加载只会执行一次.
+     * <p>等待其他请求加载的最长时间由全局配置项 {@code cache.loadWaitTimeout} 设定, 单位毫秒.</p>
+     * @param singleFlight 请求合并加载器
+     * @param key 缓存键名
+     * @param loader 加载过程
+     * @param <V> 加载结果类型
+     * @return 返回加载结果
+     * @throws IOException 当加载过程抛出IOException, 或等待超时、被中断时抛出
+     */
+    private <V> V loadWithSingleFlight(SingleFlight<String, V> singleFlight, String key, Callable<V> loader)
+            throws IOException {
+        return loadWithSingleFlight(singleFlight, key, loader, "cache.loadWaitTimeout", 60000);
+    }
+
+    /**
+     * 通过 {@link SingleFlight} 执行加载, 等待时间由指定的全局配置项设定
+     * @param timeoutPropertyKey 等待时间的全局配置项名, 单位毫秒
+     * @param defaultTimeout 配置项未设置或非法时的默认等待时间
+     * @see #loadWithSingleFlight(SingleFlight, String, Callable)
+     */
+    private <V> V loadWithSingleFlight(SingleFlight<String, V> singleFlight, String key, Callable<V> loader,
+                                       String timeoutPropertyKey, long defaultTimeout) throws IOException {
+        long timeout = defaultTimeout;
+        String propValue = SettingProperties
+                .getProperty(SettingProperties.GLOBAL, timeoutPropertyKey, String.valueOf(defaultTimeout));
+        try {
+            timeout = Long.parseLong(propValue);
+        } catch (Exception e) {
+            log.warn("全局配置项 \"{}\" 值非法, 已使用默认值: {}", propValue, timeout);
+        }
+
+        try {
+            return singleFlight.execute(key, loader, timeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待缓存加载时被中断: " + key);
+        } catch (TimeoutException e) {
+            throw new IOException("等待缓存加载超时(" + timeout + "ms): " + key, e);
         }
-        return lockerMap.createLocker(sb.toString(), true);
     }
 
     /**
@@ -558,6 +1066,8 @@ public final class CacheStoreCentral {
         
         private final static MessageDigestUtils.Algorithm ALGORITHM = MessageDigestUtils.Algorithm.SHA256;
 
+        private final static String DIGEST_ALGORITHM = "SHA-256";
+
         private ImageChecksum() {}
         
         private int illustId;
@@ -570,6 +1080,8 @@ public final class CacheStoreCentral {
 
         private byte[] checksum;
 
+        private long lastModified;
+
         public long getSize() {
             return size;
         }
@@ -582,6 +1094,18 @@ public final class CacheStoreCentral {
             return checksum;
         }
 
+        /**
+         * 获取记录的文件修改时间
+         * @return 文件修改时间, 如果没有记录(旧版本生成的检验信息), 返回0
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public void setLastModified(long lastModified) {
+            this.lastModified = lastModified;
+        }
+
         public void setChecksum(byte[] checksum) {
             this.checksum = checksum;
         }
@@ -610,18 +1134,55 @@ public final class CacheStoreCentral {
             this.page = page;
         }
 
+        /**
+         * 构造图片检验信息
+         * @param illustId 作品Id
+         * @param pageIndex 页面索引
+         * @param fileName 图片文件名
+         * @param size 图片大小
+         * @param checksum 图片数据的摘要, 摘要算法须与 {@link #newDigest()} 一致
+         * @return 返回图片检验信息对象
+         */
+        public static ImageChecksum create(int illustId, int pageIndex, String fileName,
+                                           long size, byte[] checksum) {
+            ImageChecksum imageChecksum = new ImageChecksum();
+            imageChecksum.setIllustId(illustId);
+            imageChecksum.setPage(pageIndex);
+            imageChecksum.setFileName(fileName);
+            imageChecksum.setSize(size);
+            imageChecksum.setChecksum(checksum);
+            return imageChecksum;
+        }
+
+        /**
+         * 创建用于计算图片摘要的 {@link MessageDigest}, 可配合 {@link java.security.DigestInputStream} 边读取边计算.
+         * @return 返回与检验信息所用算法一致的摘要对象
+         */
+        public static MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance(DIGEST_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                // 所有Java平台都必须支持 SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * 从输入流构造图片检验信息.
+         * <p>数据将边读取边计算摘要, 不会在内存中缓存整个图片.</p>
+         */
         public static ImageChecksum buildImageChecksumFromStream(
                 int illustId, int pageIndex,
                 String fileName, InputStream imageStream) throws IOException {
-            ImageChecksum checksum = new ImageChecksum();
-            checksum.setIllustId(illustId);
-            checksum.setPage(pageIndex);
-            checksum.setFileName(fileName);
-            ByteArrayOutputStream bufferStream = new ByteArrayOutputStream();
-            checksum.setSize(IOUtils.copyLarge(imageStream, bufferStream));
-            checksum.setChecksum(
-                    MessageDigestUtils.encrypt(bufferStream.toByteArray(), ALGORITHM));
-            return checksum;
+            MessageDigest digest = newDigest();
+            byte[] buffer = new byte[8192];
+            long size = 0;
+            int length;
+            while((length = imageStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, length);
+                size += length;
+            }
+            return create(illustId, pageIndex, fileName, size, digest.digest());
         }
 
         /**
@@ -636,6 +1197,9 @@ public final class CacheStoreCentral {
             result.addProperty("fileName", checksum.getFileName());
             result.addProperty("size", checksum.getSize());
             result.addProperty("checksum", Base64.getEncoder().encodeToString(checksum.getChecksum()));
+            if(checksum.getLastModified() > 0) {
+                result.addProperty("lastModified", checksum.getLastModified());
+            }
             return result;
         }
 
@@ -651,6 +1215,9 @@ public final class CacheStoreCentral {
             checksum.setFileName(checksumObject.get("fileName").getAsString());
             checksum.setSize(checksumObject.get("size").getAsLong());
             checksum.setChecksum(Base64.getDecoder().decode(checksumObject.get("checksum").getAsString()));
+            if(checksumObject.has("lastModified")) {
+                checksum.setLastModified(checksumObject.get("lastModified").getAsLong());
+            }
             return checksum;
         }
 
@@ -666,6 +1233,47 @@ public final class CacheStoreCentral {
                    Arrays.equals(checksum.getChecksum(), sha256Checksum);
         }
 
+        /**
+         * 比对图片文件是否完整.
+         * <p>文件内容将分块读取并计算摘要, 不会将整个文件读入内存.
+         * (没有使用内存映射, 因为映射区域在被GC回收前无法解除, 在部分系统上会导致文件无法被替换或删除)</p>
+         * @param checksum 图片检验信息
+         * @param imageFile 图片文件
+         * @return 如果检验成功, 则返回true
+         * @throws IOException 当读取文件发生异常时抛出
+         */
+        public static boolean checkFile(ImageChecksum checksum, File imageFile) throws IOException {
+            try (FileChannel channel = FileChannel.open(imageFile.toPath(), StandardOpenOption.READ)) {
+                if(channel.size() != checksum.getSize()) {
+                    return false;
+                }
+                MessageDigest digest = newDigest();
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                long size = 0;
+                int length;
+                while((length = channel.read(buffer)) != -1) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                    size += length;
+                }
+                return size == checksum.getSize() && MessageDigest.isEqual(checksum.getChecksum(), digest.digest());
+            }
+        }
+
+        /**
+         * 快速比对图片文件的大小和修改时间是否与检验信息记录的一致.
+         * <p>一致时可认为文件写入后未被改动, 无需重新计算摘要; 检验信息没有记录修改时间时总是返回false.</p>
+         * @param checksum 图片检验信息
+         * @param imageFile 图片文件
+         * @return 如果大小和修改时间均一致, 返回true
+         */
+        public static boolean matchesFileAttributes(ImageChecksum checksum, File imageFile) {
+            return checksum.getLastModified() > 0 &&
+                    imageFile.length() == checksum.getSize() &&
+                    imageFile.lastModified() == checksum.getLastModified();
+        }
+
         @Override
         public String toString() {
             return "ImageChecksum{" +
@@ -674,6 +1282,7 @@ public final class CacheStoreCentral {
                     ", fileName='" + fileName + '\'' +
                     ", size=" + size +
                     ", checksum=" + Base64.getEncoder().encodeToString(getChecksum()) +
+                    ", lastModified=" + lastModified +
                     '}';
         }
 
@@ -685,13 +1294,14 @@ public final class CacheStoreCentral {
             return illustId == checksum1.illustId &&
                     page == checksum1.page &&
                     size == checksum1.size &&
+                    lastModified == checksum1.lastModified &&
                     Objects.equals(fileName, checksum1.fileName) &&
                     Arrays.equals(checksum, checksum1.checksum);
         }
 
         @Override
         public int hashCode() {
-            int result = Objects.hash(illustId, page, fileName, size);
+            int result = Objects.hash(illustId, page, fileName, size, lastModified);
             result = 31 * result + Arrays.hashCode(checksum);
             return result;
         }
@@ -31,5 +31,26 @@ public final class CacheStoreUtils {
         return new HotDataCacheStore<>(cacheStore, new LocalHashCacheStore<>(), expireTime, floatRange, autoClean);
     }
 
+    /**
+     * 将 CacheStore 转换成 基于 {@link BoundedLocalCacheStore} 的 {@link HotDataCacheStore}
+     * <p>通过该方法转换, 会自动启用 自动清理</p>
+     * @param cacheStore 上游缓存库
+     * @param expireTime 热点缓存最小有效期
+     * @param floatRange 缓存浮动最大范围
+     * @param maximumSize 热点缓存最大缓存项数量
+     * @param maximumWeight 热点缓存最大估算占用字节数
+     * @param weigher 缓存值占用估算器
+     * @param <T> 缓存库数据类型
+     * @return 返回 {@link HotDataCacheStore}
+     */
+    public static <T> CacheStore<T> boundedLocalHotDataStore(CacheStore<T> cacheStore,
+                                                             long expireTime, int floatRange,
+                                                             long maximumSize, long maximumWeight,
+                                                             BoundedLocalCacheStore.Weigher<T> weigher) {
+        return new HotDataCacheStore<>(cacheStore,
+                new BoundedLocalCacheStore<>(maximumSize, maximumWeight, weigher),
+                expireTime, floatRange, true);
+    }
+
 
 }
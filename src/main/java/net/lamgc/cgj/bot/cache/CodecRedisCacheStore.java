@@ -0,0 +1,36 @@
+package net.lamgc.cgj.bot.cache;
+
+import redis.clients.jedis.JedisPool;
+
+import java.net.URI;
+import java.util.Objects;
+
+/**
+ * 通过 {@link CacheCodec} 编解码缓存项的Redis缓存库.
+ * @param <T> 缓存项类型
+ */
+public class CodecRedisCacheStore<T> extends RedisPoolCacheStore<T> {
+
+    private final CacheCodec<T> codec;
+
+    public CodecRedisCacheStore(URI redisServerUri, String prefix, CacheCodec<T> codec) {
+        super(redisServerUri, prefix);
+        this.codec = Objects.requireNonNull(codec);
+    }
+
+    public CodecRedisCacheStore(JedisPool jedisPool, String prefix, CacheCodec<T> codec) {
+        super(jedisPool, prefix);
+        this.codec = Objects.requireNonNull(codec);
+    }
+
+    @Override
+    protected byte[] encode(T dataObj) {
+        return codec.encode(dataObj);
+    }
+
+    @Override
+    protected T decode(byte[] data) {
+        return codec.decode(data);
+    }
+
+}
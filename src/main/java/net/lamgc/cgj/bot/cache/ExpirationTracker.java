@@ -0,0 +1,115 @@
+package net.lamgc.cgj.bot.cache;
+
+import net.lamgc.cgj.util.TimingWheel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 基于时间轮的缓存项过期跟踪器.
+ * <p>缓存库在更新缓存项时登记过期时间, 缓存项到期后由时间轮回调过期处理器,
+ * 清理时只会接触到期的缓存项, 无需遍历整个缓存库.</p>
+ * <p>当缓存项的过期时间被延后时(例如热点缓存被访问后续期), 不会重新登记定时任务,
+ * 而是在原定时任务到期时检查实际过期时间并重新登记, 以降低频繁续期的开销.</p>
+ */
+final class ExpirationTracker {
+
+    private final TimingWheel timingWheel;
+    private final Consumer<String> expireHandler;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 构造过期跟踪器
+     * @param timingWheel 时间轮
+     * @param expireHandler 过期处理器, 参数为已过期的键名, 将在时间轮线程中执行
+     */
+    ExpirationTracker(TimingWheel timingWheel, Consumer<String> expireHandler) {
+        this.timingWheel = timingWheel;
+        this.expireHandler = expireHandler;
+    }
+
+    /**
+     * 登记缓存项的过期时间
+     * @param key 键名
+     * @param expireAt 过期时间戳, 如为0或负数则表示永不过期
+     */
+    void track(String key, long expireAt) {
+        if(expireAt <= 0) {
+            untrack(key);
+            return;
+        }
+        entries.compute(key, (k, entry) -> {
+            if(entry == null) {
+                entry = new Entry(k);
+            }
+            entry.expireAt = expireAt;
+            if(entry.timeout == null || entry.scheduledAt > expireAt) {
+                if(entry.timeout != null) {
+                    entry.timeout.cancel();
+                }
+                entry.schedule(expireAt);
+            }
+            return entry;
+        });
+    }
+
+    /**
+     * 取消缓存项的过期跟踪
+     * @param key 键名
+     */
+    void untrack(String key) {
+        Entry entry = entries.remove(key);
+        if(entry != null && entry.timeout != null) {
+            entry.timeout.cancel();
+        }
+    }
+
+    /**
+     * 取消所有缓存项的过期跟踪
+     */
+    void clear() {
+        for (String key : entries.keySet()) {
+            untrack(key);
+        }
+    }
+
+    private final class Entry implements Runnable {
+        private final String key;
+        private long expireAt;
+        private long scheduledAt;
+        private TimingWheel.Timeout timeout;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        void schedule(long time) {
+            scheduledAt = time;
+            timeout = timingWheel.newTimeout(this,
+                    time - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            boolean[] expired = new boolean[1];
+            entries.computeIfPresent(key, (k, entry) -> {
+                if(entry != this) {
+                    return entry;
+                }
+                if(expireAt >= System.currentTimeMillis()) {
+                    // 过期时间已被延后, 按新的过期时间重新登记
+                    schedule(expireAt);
+                    return this;
+                }
+                expired[0] = true;
+                return null;
+            });
+            if(expired[0]) {
+                expireHandler.accept(key);
+            }
+        }
+    }
+
+}
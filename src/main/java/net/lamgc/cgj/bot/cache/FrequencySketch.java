@@ -0,0 +1,104 @@
+package net.lamgc.cgj.bot.cache;
+
+/**
+ * 基于 Count-Min Sketch 的访问频率估算器.
+ * <p>每个计数器占 4 bit, 最大值为 15, 当累计采样次数达到阈值时, 所有计数器减半(老化),
+ * 以保证频率能反映近期的访问情况.</p>
+ * <p>本类非线程安全, 需要由调用方保证同步.</p>
+ */
+final class FrequencySketch {
+
+    private final static long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private final static long RESET_MASK = 0x7777777777777777L;
+    private final static long ONE_MASK = 0x1111111111111111L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    /**
+     * 构造频率估算器
+     * @param maximumSize 缓存库最大容量, 用于确定计数表大小和老化周期
+     */
+    FrequencySketch(long maximumSize) {
+        int capacity = (int) Math.max(1, Math.min(maximumSize, Integer.MAX_VALUE >>> 2));
+        table = new long[Math.max(ceilingPowerOfTwo(capacity), 8)];
+        tableMask = table.length - 1;
+        sampleSize = 10 * capacity;
+    }
+
+    /**
+     * 获取元素的估算访问频率
+     * @param element 元素
+     * @return 估算频率, 范围 0 ~ 15
+     */
+    int frequency(Object element) {
+        int hash = spread(element.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xFL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 记录一次元素访问
+     * @param element 元素
+     */
+    void increment(Object element) {
+        int hash = spread(element.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counterIndex) {
+        int offset = counterIndex << 2;
+        long mask = 0xFL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 将所有计数器减半
+     */
+    private void reset() {
+        int oddCount = 0;
+        for (int i = 0; i < table.length; i++) {
+            oddCount += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (oddCount >>> 2);
+    }
+
+    private int indexOf(int item, int depth) {
+        long hash = (item + SEED[depth]) * SEED[depth];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    private static int ceilingPowerOfTwo(int x) {
+        return 1 << -Integer.numberOfLeadingZeros(x - 1);
+    }
+
+}
@@ -17,6 +17,7 @@ public class HotDataCacheStore<T> implements CacheStore<T>, Cleanable {
     private final long expireTime;
     private final int expireFloatRange;
     private final Random random = new Random();
+    private final ExpirationTracker expirationTracker;
     private final Logger log = LoggerFactory.getLogger(this.toString());
 
     /**
@@ -28,7 +29,8 @@ public class HotDataCacheStore<T> implements CacheStore<T>, Cleanable {
  *                   {@code expireTime + new Random().nextInt(expireFloatRange)}
      * @param expireFloatRange 过期时间的浮动范围(单位毫秒), 用于防止短时间内大量缓存项失效导致的缓存雪崩,
      *                         如设置为0或负数, 则不启用浮动范围.
-     * @param autoClean 是否交由{@link AutoCleanTimer}自动执行清理, 启用后, AutoCleanTimer会自动检查过期Key并进行删除.
+     * @param autoClean 是否自动执行清理, 启用后, 写入Current缓存库的缓存项将登记到
+     *                  {@link AutoCleanTimer#getTimingWheel()}, 到期后自动从Current缓存库删除.
      */
     public HotDataCacheStore(CacheStore<T> parent, CacheStore<T> current, long expireTime, int expireFloatRange, boolean autoClean) {
         this.parent = parent;
@@ -36,7 +38,9 @@ public class HotDataCacheStore<T> implements CacheStore<T>, Cleanable {
         this.expireTime = expireTime;
         this.expireFloatRange = expireFloatRange;
         if(autoClean) {
-            AutoCleanTimer.add(this);
+            expirationTracker = new ExpirationTracker(AutoCleanTimer.getTimingWheel(), this::removeIfExpire);
+        } else {
+            expirationTracker = null;
         }
 
         log.trace("HotDataCacheStore初始化完成. " +
@@ -53,6 +57,7 @@ public class HotDataCacheStore<T> implements CacheStore<T>, Cleanable {
     public void update(String key, T value, Date expire) {
         parent.update(key, value, expire);
         current.update(key, value, expire);
+        trackExpiration(key, expire == null ? 0 : expire.getTime());
     }
 
     @Override
@@ -70,14 +75,12 @@ public class HotDataCacheStore<T> implements CacheStore<T>, Cleanable {
                 return null;
             }
             log.trace("Parent缓存命中, 正在更新Current缓存库...");
-            current.update(key, parentResult,
-                    expireTime + (expireFloatRange <= 0 ? 0 : random.nextInt(expireFloatRange)));
+            updateCurrent(key, parentResult);
             log.trace("Current缓存库更新完成.");
             result = parentResult;
         } else {
             // 更新该Key的过期时间
-            current.update(key, result,
-                    expireTime + (expireFloatRange <= 0 ? 0 : random.nextInt(expireFloatRange)));
+            updateCurrent(key, result);
             log.trace("Current缓存库缓存命中.");
         }
         return result;
@@ -98,6 +101,64 @@ public class HotDataCacheStore<T> implements CacheStore<T>, Cleanable {
         return current.exists(key, date) || parent.exists(key, date);
     }
 
+    /**
+     * 批量获取缓存.
+     * <p>先从Current缓存库批量获取, 未命中的键名再一次性向Parent缓存库查询,
+     * Parent命中的缓存项将写回Current缓存库.</p>
+     */
+    @Override
+    public Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> currentResult = current.getAll(keys);
+        List<String> missingKeys = new ArrayList<>();
+        for (String key : keys) {
+            if(!currentResult.containsKey(key)) {
+                missingKeys.add(key);
+            }
+        }
+        Map<String, T> parentResult = missingKeys.isEmpty() ? Collections.emptyMap() : parent.getAll(missingKeys);
+        log.trace("批量查询完成. (Current命中: {}, Parent命中: {}, 未命中: {})",
+                currentResult.size(), parentResult.size(), missingKeys.size() - parentResult.size());
+
+        Map<String, T> result = new LinkedHashMap<>();
+        for (String key : keys) {
+            T value = currentResult.get(key);
+            if(value == null) {
+                value = parentResult.get(key);
+            }
+            if(value != null) {
+                // 命中Current时更新过期时间, 命中Parent时写回Current
+                updateCurrent(key, value);
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void updateAll(Map<String, T> values, long expire) {
+        parent.updateAll(values, expire);
+        current.updateAll(values, expire);
+        long expireAt = expire <= 0 ? 0 : System.currentTimeMillis() + expire;
+        for (String key : values.keySet()) {
+            trackExpiration(key, expireAt);
+        }
+    }
+
+    @Override
+    public Map<String, Boolean> existsAll(Collection<String> keys) {
+        Map<String, Boolean> result = current.existsAll(keys);
+        List<String> missingKeys = new ArrayList<>();
+        result.forEach((key, exists) -> {
+            if(!exists) {
+                missingKeys.add(key);
+            }
+        });
+        if(!missingKeys.isEmpty()) {
+            result.putAll(parent.existsAll(missingKeys));
+        }
+        return result;
+    }
+
     @Override
     public long length(String key) {
         return -1;
@@ -105,6 +166,9 @@ public class HotDataCacheStore<T> implements CacheStore<T>, Cleanable {
 
     @Override
     public boolean clear() {
+        if(expirationTracker != null) {
+            expirationTracker.clear();
+        }
         return current.clear();
     }
 
@@ -116,10 +180,56 @@ public class HotDataCacheStore<T> implements CacheStore<T>, Cleanable {
         return keys;
     }
 
+    /**
+     * 获取key迭代器.
+     * <p>先遍历Current缓存库的键名, 再逐批遍历Parent缓存库的键名, 并跳过Current中已返回的键名.</p>
+     */
+    @Override
+    public Iterator<String> keyIterator() {
+        Set<String> currentKeys = new HashSet<>(current.keys());
+        Iterator<String> parentIterator = parent.keyIterator();
+        Iterator<String> currentIterator = currentKeys.iterator();
+        return new Iterator<String>() {
+            private String nextKey;
+
+            @Override
+            public boolean hasNext() {
+                if(nextKey != null) {
+                    return true;
+                }
+                if(currentIterator.hasNext()) {
+                    nextKey = currentIterator.next();
+                    return true;
+                }
+                while(parentIterator.hasNext()) {
+                    String key = parentIterator.next();
+                    if(!currentKeys.contains(key)) {
+                        nextKey = key;
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public String next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String key = nextKey;
+                nextKey = null;
+                return key;
+            }
+        };
+    }
+
     @Override
     public boolean remove(String key) {
         parent.remove(key);
         current.remove(key);
+        if(expirationTracker != null) {
+            expirationTracker.untrack(key);
+        }
         return true;
     }
 
@@ -136,6 +246,28 @@ public class HotDataCacheStore<T> implements CacheStore<T>, Cleanable {
         return current.supportedList() && parent.supportedList();
     }
 
+    private void updateCurrent(String key, T value) {
+        long expire = expireTime + (expireFloatRange <= 0 ? 0 : random.nextInt(expireFloatRange));
+        current.update(key, value, expire);
+        trackExpiration(key, System.currentTimeMillis() + expire);
+    }
+
+    private void trackExpiration(String key, long expireAt) {
+        if(expirationTracker != null) {
+            expirationTracker.track(key, expireAt);
+        }
+    }
+
+    /**
+     * 当Current缓存库中的缓存项已过期时删除缓存项, 由时间轮在缓存项到期时调用.
+     * @param key 键名
+     */
+    private void removeIfExpire(String key) {
+        if(!current.exists(key)) {
+            current.remove(key);
+        }
+    }
+
     /**
      * 检查并清理已过期的Entry.
      * <p>该方法仅清理Current缓存库, 不会对上游缓存库造成影响.</p>
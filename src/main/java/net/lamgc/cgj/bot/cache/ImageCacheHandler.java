@@ -1,19 +1,20 @@
 package net.lamgc.cgj.bot.cache;
 
+import net.lamgc.cgj.bot.SettingProperties;
 import net.lamgc.cgj.bot.boot.BotGlobal;
 import net.lamgc.cgj.exception.HttpRequestException;
+import net.lamgc.cgj.http.HttpClientFactory;
 import net.lamgc.cgj.pixiv.PixivURL;
+import net.lamgc.cgj.util.ResumableDownloader;
 import net.lamgc.cgj.util.URLs;
 import net.lamgc.utils.event.EventHandler;
-import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.tomcat.util.http.fileupload.util.Streams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -22,7 +23,7 @@ public class ImageCacheHandler implements EventHandler {
 
     private final static Logger log = LoggerFactory.getLogger(ImageCacheHandler.class);
 
-    private final static HttpClient httpClient = HttpClientBuilder.create()
+    private final static HttpClient httpClient = HttpClientFactory.builder()
             .setProxy(BotGlobal.getGlobal().getProxy())
             .build();
 
@@ -41,51 +42,62 @@ public class ImageCacheHandler implements EventHandler {
             log.debug("图片 {} Event正在进行...({})", event.getStoreFile().getName(), Integer.toHexString(event.hashCode()));
             File storeFile = event.getStoreFile();
             log.debug("正在缓存图片 {} (Path: {})", storeFile.getName(), storeFile.getAbsolutePath());
-            try {
-                if(!storeFile.exists() && !storeFile.createNewFile()) {
-                    log.error("无法创建文件(Path: {})", storeFile.getAbsolutePath());
-                    throw new IOException("Failed to create file");
-                }
-            } catch (IOException e) {
-                log.error("无法创建文件(Path: {})", storeFile.getAbsolutePath());
-                throw e;
+
+            int maxRetries = SettingProperties.getIntProperty(SettingProperties.GLOBAL, "image.download.maxRetries", 3);
+            int chunkCount = SettingProperties.getIntProperty(SettingProperties.GLOBAL, "image.download.chunkCount", 4);
+            int chunkThreshold =
+                    SettingProperties.getIntProperty(SettingProperties.GLOBAL, "image.download.chunkThreshold", 4);
+            ResumableDownloader downloader = new ResumableDownloader(httpClient)
+                    .addHeader("Referer", PixivURL.getPixivRefererLink(event.getIllustId()))
+                    .setRetry(maxRetries, 1000)
+                    .setChunking(chunkCount, chunkThreshold * 1024L * 1024L);
+            // 之前下载过的图片(例如被巡检删除的损坏文件), 下载结果须与已记录的检验信息一致
+            CacheStoreCentral.ImageChecksum storedChecksum = CacheStoreCentral.getCentral()
+                    .getImageChecksum(event.getIllustId(), event.getPageIndex());
+            boolean checksumExpected = storedChecksum != null && storeFile.getName().equals(storedChecksum.getFileName());
+            if(checksumExpected) {
+                downloader.setExpected(storedChecksum.getSize(), storedChecksum.getChecksum());
             }
 
-            HttpGet request = new HttpGet(event.getDownloadLink());
-            request.addHeader("Referer", PixivURL.getPixivRefererLink(event.getIllustId()));
-            HttpResponse response;
+            // 边下载边计算校验信息, 下载中断时保留已下载的数据, 下次从中断处继续
+            MessageDigest digest = CacheStoreCentral.ImageChecksum.newDigest();
+            long size;
             try {
-                response = httpClient.execute(request);
-            } catch (IOException e) {
-                log.error("Http请求时发生异常", e);
+                ResumableDownloader.Result result;
+                try {
+                    result = downloader.download(event.getDownloadLink(), storeFile, digest);
+                } catch (ResumableDownloader.VerificationException e) {
+                    if(!checksumExpected) {
+                        throw e;
+                    }
+                    // 作品图片可能已被替换, 记录的检验信息已过期, 清除后重新下载, 以新的图片为准
+                    log.warn("图片 {} 与记录的检验信息不一致, 已清除检验信息并重新下载.", storeFile.getName());
+                    CacheStoreCentral.getCentral().removeImageChecksum(event.getIllustId(), event.getPageIndex());
+                    digest.reset();
+                    result = downloader.setExpected(-1, null).download(event.getDownloadLink(), storeFile, digest);
+                }
+                size = result.getSize();
+                log.trace("图片 {} 已下载(Transferred: {}KB, Resumed: {}KB, Retries: {}, Chunked: {})",
+                        storeFile.getName(), result.getTransferredBytes() / 1024, result.getResumedBytes() / 1024,
+                        result.getRetries(), result.isChunked());
+            } catch (HttpRequestException e) {
+                log.warn("Http请求异常：{}", e.getStatusLine());
                 throw e;
-            }
-            if(response.getStatusLine().getStatusCode() != 200) {
-                HttpRequestException requestException = new HttpRequestException(response);
-                log.warn("Http请求异常：{}", requestException.getStatusLine());
-                throw requestException;
-            }
-
-            log.trace("正在下载...(Content-Length: {}KB)", response.getEntity().getContentLength() / 1024);
-            ByteArrayOutputStream bufferOutputStream = new ByteArrayOutputStream();
-            try(FileOutputStream fileOutputStream = new FileOutputStream(storeFile)) {
-                Streams.copy(response.getEntity().getContent(), bufferOutputStream, false);
-                ByteArrayInputStream bufferInputStream = new ByteArrayInputStream(bufferOutputStream.toByteArray());
-                CacheStoreCentral.ImageChecksum imageChecksum = CacheStoreCentral.ImageChecksum
-                        .buildImageChecksumFromStream(
-                                event.getIllustId(),
-                                event.getPageIndex(),
-                                event.getStoreFile().getName(),
-                                bufferInputStream
-                            );
-                bufferInputStream.reset();
-                Streams.copy(bufferInputStream, fileOutputStream, false);
-                CacheStoreCentral.getCentral().setImageChecksum(imageChecksum);
             } catch (IOException e) {
                 log.error("下载图片时发生异常", e);
                 throw e;
             }
-            event.getImageCache().put(URLs.getResourceName(event.getDownloadLink()), storeFile);
+            CacheStoreCentral.ImageChecksum imageChecksum = CacheStoreCentral.ImageChecksum.create(
+                    event.getIllustId(),
+                    event.getPageIndex(),
+                    storeFile.getName(),
+                    size,
+                    digest.digest()
+            );
+            imageChecksum.setLastModified(storeFile.lastModified());
+            CacheStoreCentral.getCentral().setImageChecksum(imageChecksum);
+            log.trace("图片 {} 下载完成(Size: {}KB)", storeFile.getName(), size / 1024);
+            event.getImageIndex().put(URLs.getResourceName(event.getDownloadLink()), imageChecksum);
         } finally {
             log.debug("图片 {} Event结束({})", event.getStoreFile().getName(), Integer.toHexString(event.hashCode()));
             cacheQueue.remove(event);
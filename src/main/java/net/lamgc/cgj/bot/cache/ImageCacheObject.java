@@ -3,12 +3,11 @@ package net.lamgc.cgj.bot.cache;
 import net.lamgc.utils.event.EventObject;
 
 import java.io.File;
-import java.util.Map;
 import java.util.Objects;
 
 public class ImageCacheObject implements EventObject {
 
-    private final Map<String, File> imageCache;
+    private final ImageIndex imageIndex;
 
     private final int illustId;
 
@@ -18,16 +17,16 @@ public class ImageCacheObject implements EventObject {
 
     private final File storeFile;
 
-    public ImageCacheObject(Map<String, File> imageCache, int illustId, int pageIndex, String downloadLink, File storeFile) {
-        this.imageCache = imageCache;
+    public ImageCacheObject(ImageIndex imageIndex, int illustId, int pageIndex, String downloadLink, File storeFile) {
+        this.imageIndex = imageIndex;
         this.illustId = illustId;
         this.pageIndex = pageIndex;
         this.downloadLink = downloadLink;
         this.storeFile = storeFile;
     }
 
-    public Map<String, File> getImageCache() {
-        return imageCache;
+    public ImageIndex getImageIndex() {
+        return imageIndex;
     }
 
     public String getDownloadLink() {
@@ -53,20 +52,20 @@ public class ImageCacheObject implements EventObject {
         ImageCacheObject that = (ImageCacheObject) o;
         return illustId == that.illustId &&
                 pageIndex == that.pageIndex &&
-                Objects.equals(imageCache, that.imageCache) &&
+                imageIndex == that.imageIndex &&
                 Objects.equals(downloadLink, that.downloadLink) &&
                 Objects.equals(storeFile, that.storeFile);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(imageCache, illustId, pageIndex, downloadLink, storeFile);
+        return Objects.hash(System.identityHashCode(imageIndex), illustId, pageIndex, downloadLink, storeFile);
     }
 
     @Override
     public String toString() {
         return "ImageCacheObject{" +
-                "imageCache=" + imageCache +
+                "imageIndex=" + imageIndex +
                 ", illustId=" + illustId +
                 ", pageIndex=" + pageIndex +
                 ", downloadLink='" + downloadLink + '\'' +
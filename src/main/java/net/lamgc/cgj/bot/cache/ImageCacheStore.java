@@ -1,6 +1,5 @@
 package net.lamgc.cgj.bot.cache;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
@@ -8,6 +7,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.lamgc.cgj.exception.HttpRequestException;
+import net.lamgc.cgj.util.ExecutorMode;
 
 import java.util.Hashtable;
 import java.util.Map;
@@ -22,13 +22,12 @@ public final class ImageCacheStore {
     private final static Map<ImageCacheObject, Task> cacheMap = new Hashtable<>();
 
     private final static ThreadPoolExecutor imageCacheExecutor = new ThreadPoolExecutor(
-            4, 6,
+            ExecutorMode.current().corePoolSize(4),
+            ExecutorMode.current().maximumPoolSize(6),
             30L,
             TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(100),
-            new ThreadFactoryBuilder()
-                    .setNameFormat("ImageCacheThread-%d")
-                    .build()
+            ExecutorMode.current().workQueue(100),
+            ExecutorMode.current().threadFactory("ImageCacheThread-%d")
     );
 
     private final static ImageCacheHandler handler = new ImageCacheHandler();
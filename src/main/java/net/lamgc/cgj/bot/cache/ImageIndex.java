@@ -0,0 +1,464 @@
+package net.lamgc.cgj.bot.cache;
+
+import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * 持久化的图片缓存索引.
+ * <p>索引记录资源名对应的图片文件名、大小、校验信息和最后访问时间, 以追加写入的日志文件保存在图片缓存目录中,
+ * 启动时只需顺序读取一次日志即可恢复索引, 命中索引的图片无需再次查询校验信息或计算摘要.</p>
+ * <p>日志中的每条记录都带有长度和CRC32校验, 写入中途断电等原因产生的不完整记录会在加载时被丢弃;
+ * 当日志中的失效记录过多时, 将重写一份只包含有效记录的日志并原子替换原日志.</p>
+ * <p>最后访问时间只在内存中实时更新, 与已写入的时间相差超过 {@link #ACCESS_PERSIST_INTERVAL} 时才会追加记录,
+ * 以免每次命中都产生磁盘写入.</p>
+ */
+public class ImageIndex implements Closeable {
+
+    private final static Logger log = LoggerFactory.getLogger(ImageIndex.class);
+
+    private final static int MAGIC = 0x43474A49;
+    private final static int VERSION = 1;
+
+    private final static byte OP_PUT = 1;
+    private final static byte OP_REMOVE = 2;
+    private final static byte OP_ACCESS = 3;
+
+    /**
+     * 单条记录的最大长度, 超出的记录视为损坏
+     */
+    private final static int MAX_RECORD_LENGTH = 64 * 1024;
+
+    /**
+     * 最后访问时间的持久化间隔, 单位毫秒
+     */
+    public final static long ACCESS_PERSIST_INTERVAL = 3600000;
+
+    /**
+     * 失效记录数量超过该值且超过有效记录数量时, 将压缩日志
+     */
+    private final static int COMPACT_THRESHOLD = 1024;
+
+    private final File indexFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private FileChannel channel;
+    private int staleRecords;
+
+    private ImageIndex(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * 打开索引, 如果索引文件不存在, 将创建新的索引文件.
+     * @param indexFile 索引文件
+     * @return 返回已加载的索引
+     * @throws IOException 当读取或创建索引文件失败时抛出
+     */
+    public static ImageIndex open(File indexFile) throws IOException {
+        ImageIndex index = new ImageIndex(Objects.requireNonNull(indexFile));
+        index.load();
+        return index;
+    }
+
+    /**
+     * 创建只保存在内存中的索引, 用于索引文件无法使用的情况.
+     * @return 返回不会持久化的索引
+     */
+    public static ImageIndex inMemory() {
+        return new ImageIndex(null);
+    }
+
+    /**
+     * 获取索引项, 并更新最后访问时间
+     * @param resourceName 资源名
+     * @return 如果索引中存在该资源, 返回索引项, 否则返回null
+     */
+    public Entry get(String resourceName) {
+        Entry entry = entries.get(resourceName);
+        if(entry == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        entry.lastAccess = now;
+        if(now - entry.persistedAccess >= ACCESS_PERSIST_INTERVAL) {
+            synchronized (this) {
+                if(entries.get(resourceName) == entry && now - entry.persistedAccess >= ACCESS_PERSIST_INTERVAL) {
+                    entry.persistedAccess = now;
+                    appendSilently(encodeAccess(resourceName, now));
+                    staleRecords++;
+                }
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * 添加或替换索引项
+     * @param resourceName 资源名
+     * @param checksum 图片检验信息, 其中的文件名为图片在缓存目录中的文件名
+     */
+    public synchronized void put(String resourceName, CacheStoreCentral.ImageChecksum checksum) {
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(resourceName, checksum, now);
+        if(entries.put(resourceName, entry) != null) {
+            staleRecords++;
+        }
+        appendSilently(encodePut(entry));
+        compactIfNecessary();
+    }
+
+    /**
+     * 移除索引项
+     * @param resourceName 资源名
+     * @return 如果存在该索引项, 返回被移除的索引项
+     */
+    public synchronized Entry remove(String resourceName) {
+        Entry entry = entries.remove(resourceName);
+        if(entry != null) {
+            appendSilently(encodeRemove(resourceName));
+            // 被移除的 PUT 记录和 REMOVE 记录本身都是失效记录
+            staleRecords += 2;
+            compactIfNecessary();
+        }
+        return entry;
+    }
+
+    /**
+     * 当索引项自指定时间后未被访问或替换时移除索引项.
+     * <p>用于淘汰图片, 避免移除在选出淘汰对象之后又被访问或重新写入的图片.</p>
+     * @param entry 选出淘汰对象时获取的索引项
+     * @param lastAccess 选出淘汰对象时索引项的最后访问时间
+     * @return 如果索引项已被移除, 返回true
+     */
+    public synchronized boolean removeIfIdle(Entry entry, long lastAccess) {
+        String resourceName = entry.getResourceName();
+        if(entries.get(resourceName) != entry || entry.lastAccess != lastAccess) {
+            return false;
+        }
+        return remove(resourceName) != null;
+    }
+
+    /**
+     * 获取所有索引项的快照
+     */
+    public List<Entry> entries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * 获取索引项数量
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 清空索引
+     */
+    public synchronized void clear() {
+        entries.clear();
+        if(channel != null) {
+            try {
+                rewrite();
+            } catch (IOException e) {
+                log.error("清空图片缓存索引时发生异常:\n{}", Throwables.getStackTraceAsString(e));
+            }
+        }
+    }
+
+    /**
+     * 压缩日志, 只保留有效记录
+     * @throws IOException 当重写日志失败时抛出
+     */
+    public synchronized void compact() throws IOException {
+        if(channel != null) {
+            rewrite();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if(channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void load() throws IOException {
+        Path indexPath = indexFile.toPath();
+        if(!Files.exists(indexPath)) {
+            Files.createDirectories(indexPath.toAbsolutePath().getParent());
+            rewrite();
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        int records = 0;
+        long validLength;
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(indexPath), 64 * 1024))) {
+            if(!readHeader(input)) {
+                log.warn("图片缓存索引文件格式不正确, 将重建索引(Path: {})", indexFile.getAbsolutePath());
+                validLength = -1;
+            } else {
+                validLength = 8;
+            }
+            CRC32 crc = new CRC32();
+            while(validLength > 0) {
+                byte[] record;
+                try {
+                    int length = input.readInt();
+                    if(length <= 0 || length > MAX_RECORD_LENGTH) {
+                        break;
+                    }
+                    record = new byte[length];
+                    input.readFully(record);
+                    crc.reset();
+                    crc.update(record, 0, record.length);
+                    if(input.readInt() != (int) crc.getValue()) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                applyRecord(record);
+                records++;
+                validLength += 8 + record.length;
+            }
+        }
+        if(validLength < 0) {
+            rewrite();
+            return;
+        }
+        staleRecords = records - entries.size();
+
+        channel = FileChannel.open(indexPath, StandardOpenOption.WRITE);
+        if(channel.size() > validLength) {
+            log.warn("图片缓存索引末尾存在不完整的记录, 已丢弃({} Bytes).", channel.size() - validLength);
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        log.info("图片缓存索引已加载(索引项: {}, 记录数: {}, 耗时: {}ms)",
+                entries.size(), records, System.currentTimeMillis() - startTime);
+        compactIfNecessary();
+    }
+
+    private static boolean readHeader(DataInputStream input) throws IOException {
+        try {
+            return input.readInt() == MAGIC && input.readInt() == VERSION;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private void applyRecord(byte[] record) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(record));
+        byte op = input.readByte();
+        String resourceName = input.readUTF();
+        if(op == OP_PUT) {
+            int illustId = input.readInt();
+            int page = input.readInt();
+            String fileName = input.readUTF();
+            long size = input.readLong();
+            long lastModified = input.readLong();
+            byte[] checksumData = new byte[input.readUnsignedShort()];
+            input.readFully(checksumData);
+            long lastAccess = input.readLong();
+            CacheStoreCentral.ImageChecksum checksum =
+                    CacheStoreCentral.ImageChecksum.create(illustId, page, fileName, size, checksumData);
+            checksum.setLastModified(lastModified);
+            entries.put(resourceName, new Entry(resourceName, checksum, lastAccess));
+        } else if(op == OP_REMOVE) {
+            entries.remove(resourceName);
+        } else if(op == OP_ACCESS) {
+            long lastAccess = input.readLong();
+            Entry entry = entries.get(resourceName);
+            if(entry != null) {
+                entry.lastAccess = lastAccess;
+                entry.persistedAccess = lastAccess;
+            }
+        } else {
+            throw new IOException("Unknown record type: " + op);
+        }
+    }
+
+    private void compactIfNecessary() {
+        if(channel == null || staleRecords <= COMPACT_THRESHOLD || staleRecords <= entries.size()) {
+            return;
+        }
+        try {
+            rewrite();
+        } catch (IOException e) {
+            log.error("压缩图片缓存索引时发生异常:\n{}", Throwables.getStackTraceAsString(e));
+        }
+    }
+
+    /**
+     * 将当前所有有效记录写入临时文件, 然后原子替换索引文件
+     */
+    private void rewrite() throws IOException {
+        Path indexPath = indexFile.toPath().toAbsolutePath();
+        Path tempPath = Files.createTempFile(indexPath.getParent(), indexPath.getFileName().toString() + ".", ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempPath), 64 * 1024))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                for (Entry entry : entries.values()) {
+                    entry.persistedAccess = entry.lastAccess;
+                    output.write(encodePut(entry));
+                }
+            }
+            if(channel != null) {
+                channel.close();
+                channel = null;
+            }
+            try {
+                Files.move(tempPath, indexPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+        channel = FileChannel.open(indexPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        staleRecords = 0;
+        log.debug("图片缓存索引已重写(索引项: {})", entries.size());
+    }
+
+    /**
+     * 追加记录, 写入失败时只记录日志, 内存中的索引仍然有效.
+     */
+    private void appendSilently(byte[] record) {
+        if(channel == null) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            log.error("写入图片缓存索引时发生异常:\n{}", Throwables.getStackTraceAsString(e));
+        }
+    }
+
+    private static byte[] encodePut(Entry entry) {
+        CacheStoreCentral.ImageChecksum checksum = entry.checksum;
+        return encodeRecord(output -> {
+            output.writeByte(OP_PUT);
+            output.writeUTF(entry.resourceName);
+            output.writeInt(checksum.getIllustId());
+            output.writeInt(checksum.getPage());
+            output.writeUTF(checksum.getFileName());
+            output.writeLong(checksum.getSize());
+            output.writeLong(checksum.getLastModified());
+            output.writeShort(checksum.getChecksum().length);
+            output.write(checksum.getChecksum());
+            output.writeLong(entry.lastAccess);
+        });
+    }
+
+    private static byte[] encodeRemove(String resourceName) {
+        return encodeRecord(output -> {
+            output.writeByte(OP_REMOVE);
+            output.writeUTF(resourceName);
+        });
+    }
+
+    private static byte[] encodeAccess(String resourceName, long lastAccess) {
+        return encodeRecord(output -> {
+            output.writeByte(OP_ACCESS);
+            output.writeUTF(resourceName);
+            output.writeLong(lastAccess);
+        });
+    }
+
+    /**
+     * 编码一条完整的记录: 长度 + 记录内容 + CRC32
+     */
+    private static byte[] encodeRecord(RecordWriter writer) {
+        try {
+            ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(128);
+            writer.write(new DataOutputStream(recordBuffer));
+            byte[] record = recordBuffer.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, record.length);
+            ByteBuffer buffer = ByteBuffer.allocate(record.length + 8);
+            buffer.putInt(record.length).put(record).putInt((int) crc.getValue());
+            return buffer.array();
+        } catch (IOException e) {
+            // 写入内存缓冲区不会发生 I/O 异常
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    /**
+     * 索引项
+     */
+    public final static class Entry {
+
+        private final String resourceName;
+        private final CacheStoreCentral.ImageChecksum checksum;
+        private volatile long lastAccess;
+        private volatile long persistedAccess;
+
+        private Entry(String resourceName, CacheStoreCentral.ImageChecksum checksum, long lastAccess) {
+            this.resourceName = Objects.requireNonNull(resourceName);
+            this.checksum = Objects.requireNonNull(checksum);
+            this.lastAccess = lastAccess;
+            this.persistedAccess = lastAccess;
+        }
+
+        public String getResourceName() {
+            return resourceName;
+        }
+
+        /**
+         * 获取图片检验信息
+         */
+        public CacheStoreCentral.ImageChecksum getChecksum() {
+            return checksum;
+        }
+
+        /**
+         * 获取图片在缓存目录中的文件名
+         */
+        public String getFileName() {
+            return checksum.getFileName();
+        }
+
+        public long getSize() {
+            return checksum.getSize();
+        }
+
+        /**
+         * 获取最后访问时间
+         * @return 最后访问时间戳, 单位毫秒
+         */
+        public long getLastAccess() {
+            return lastAccess;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "resourceName='" + resourceName + '\'' +
+                    ", checksum=" + checksum +
+                    ", lastAccess=" + lastAccess +
+                    '}';
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package net.lamgc.cgj.bot.cache;
+
+import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * 图片缓存后台巡检.
+ * <p>获取图片时, 如果文件大小和修改时间与检验信息一致, 将直接信任该文件而不重新计算摘要;
+ * 为了发现此类文件在磁盘上发生的损坏, 巡检会按设定的周期在后台线程中逐个重新计算已登记图片的摘要,
+ * 校验失败或已丢失的文件将交由损坏处理方法处理.</p>
+ */
+public class ImageScrubber {
+
+    private final static Logger log = LoggerFactory.getLogger(ImageScrubber.class);
+
+    private final Map<File, CacheStoreCentral.ImageChecksum> images = new ConcurrentHashMap<>();
+
+    private final BiConsumer<File, CacheStoreCentral.ImageChecksum> corruptedHandler;
+
+    private Timer scrubTimer;
+
+    /**
+     * 构造一个巡检
+     * @param corruptedHandler 损坏处理方法, 参数为校验失败的文件及其登记的检验信息
+     */
+    public ImageScrubber(BiConsumer<File, CacheStoreCentral.ImageChecksum> corruptedHandler) {
+        this.corruptedHandler = Objects.requireNonNull(corruptedHandler);
+    }
+
+    /**
+     * 登记需要巡检的图片
+     * @param imageFile 图片文件
+     * @param checksum 图片检验信息
+     */
+    public void register(File imageFile, CacheStoreCentral.ImageChecksum checksum) {
+        images.put(imageFile.getAbsoluteFile(), Objects.requireNonNull(checksum));
+    }
+
+    /**
+     * 取消登记
+     * @param imageFile 图片文件
+     */
+    public void unregister(File imageFile) {
+        images.remove(imageFile.getAbsoluteFile());
+    }
+
+    /**
+     * 取消登记所有图片
+     */
+    public void clear() {
+        images.clear();
+    }
+
+    /**
+     * 获取已登记的图片数量
+     */
+    public int size() {
+        return images.size();
+    }
+
+    /**
+     * 按指定周期启动巡检, 如果已经启动, 将按新的周期重新启动.
+     * @param interval 巡检周期, 单位毫秒, 小于等于0则停止巡检
+     */
+    public synchronized void start(long interval) {
+        stop();
+        if(interval <= 0) {
+            log.info("图片缓存巡检已关闭.");
+            return;
+        }
+        scrubTimer = new Timer("Thread-ImageScrub", true);
+        scrubTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    scrub();
+                } catch (Exception e) {
+                    log.error("图片缓存巡检时发生异常:\n{}", Throwables.getStackTraceAsString(e));
+                }
+            }
+        }, interval, interval);
+        log.debug("图片缓存巡检已启动(周期: {}ms)", interval);
+    }
+
+    /**
+     * 停止巡检
+     */
+    public synchronized void stop() {
+        if(scrubTimer != null) {
+            scrubTimer.cancel();
+            scrubTimer = null;
+        }
+    }
+
+    /**
+     * 立即对所有已登记的图片执行一次巡检.
+     * <p>校验失败或已被删除的文件在取消登记后交由损坏处理方法处理.</p>
+     * @return 返回校验失败或已被删除的文件数量
+     */
+    public int scrub() {
+        List<Map.Entry<File, CacheStoreCentral.ImageChecksum>> entries = new ArrayList<>(images.entrySet());
+        log.debug("正在巡检图片缓存(数量: {})...", entries.size());
+        int corruptedCount = 0;
+        for (Map.Entry<File, CacheStoreCentral.ImageChecksum> entry : entries) {
+            File imageFile = entry.getKey();
+            boolean passed = false;
+            if(!imageFile.isFile()) {
+                log.warn("图片文件 {} 已丢失.", imageFile.getName());
+            } else {
+                try {
+                    passed = CacheStoreCentral.ImageChecksum.checkFile(entry.getValue(), imageFile);
+                } catch (IOException e) {
+                    log.warn("巡检时读取图片文件失败(Path: {}): {}", imageFile.getPath(), e.getMessage());
+                }
+            }
+            if(!passed && images.remove(imageFile, entry.getValue())) {
+                corruptedCount++;
+                log.warn("图片文件 {} 巡检校验失败.", imageFile.getName());
+                corruptedHandler.accept(imageFile, entry.getValue());
+            }
+        }
+        log.debug("图片缓存巡检完成(数量: {}, 校验失败: {})", entries.size(), corruptedCount);
+        return corruptedCount;
+    }
+
+}
@@ -0,0 +1,370 @@
+package net.lamgc.cgj.bot.cache;
+
+import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 图片缓存目录容量管理.
+ * <p>当图片缓存目录的占用超出容量上限时, 按最后访问时间从早到晚(LRU)删除图片, 直到占用降至上限的 90% 以下.
+ * 最后访问时间来自 {@link ImageIndex}, 没有被索引的文件(例如索引建立之前缓存的图片)以文件修改时间作为最后访问时间.</p>
+ * <p>被删除的图片将同时从索引中移除, 并通知淘汰监听器, 以便清理与之关联的校验信息等数据.</p>
+ * <p>下载中断后留下的续传文件计入占用但不参与淘汰, 超过一天未被修改的续传文件视为已放弃的下载, 在统计时删除.</p>
+ * <p>容量检查在后台线程中进行: 定时检查一次, 新图片加入后如果估算占用超出上限, 将立即安排一次检查.</p>
+ */
+public class ImageStoreQuotaManager {
+
+    private final static Logger log = LoggerFactory.getLogger(ImageStoreQuotaManager.class);
+
+    /**
+     * 淘汰后的目标占用比例
+     */
+    private final static double LOW_WATERMARK = 0.9;
+
+    private final static long CHECK_INTERVAL = 10 * 60 * 1000;
+
+    /**
+     * 续传文件超过该时间未被修改, 视为已放弃的下载
+     */
+    private final static long PART_FILE_EXPIRE = 24 * 60 * 60 * 1000;
+
+    private final File storeDir;
+    private final ImageIndex imageIndex;
+    private final LongSupplier quotaSupplier;
+    private final Consumer<ImageIndex.Entry> evictionListener;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong evictedBytes = new AtomicLong();
+    private final AtomicLong usedBytes = new AtomicLong(-1);
+    private final AtomicBoolean checkScheduled = new AtomicBoolean();
+
+    private Timer checkTimer;
+
+    /**
+     * 构造容量管理器
+     * @param storeDir 图片缓存目录
+     * @param imageIndex 图片缓存索引
+     * @param quotaSupplier 容量上限提供方法, 单位字节, 小于等于0表示不限制
+     * @param evictionListener 淘汰监听器, 参数为被淘汰或删除图片的索引项, 未被索引的文件不会通知
+     */
+    public ImageStoreQuotaManager(File storeDir, ImageIndex imageIndex, LongSupplier quotaSupplier,
+                                  Consumer<ImageIndex.Entry> evictionListener) {
+        this.storeDir = Objects.requireNonNull(storeDir);
+        this.imageIndex = Objects.requireNonNull(imageIndex);
+        this.quotaSupplier = Objects.requireNonNull(quotaSupplier);
+        this.evictionListener = Objects.requireNonNull(evictionListener);
+    }
+
+    /**
+     * 启动后台容量检查
+     */
+    public synchronized void start() {
+        if(checkTimer != null) {
+            return;
+        }
+        checkTimer = new Timer("Thread-ImageStoreQuota", true);
+        checkTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                runCheck();
+            }
+        }, 0, CHECK_INTERVAL);
+    }
+
+    /**
+     * 停止后台容量检查
+     */
+    public synchronized void stop() {
+        if(checkTimer != null) {
+            checkTimer.cancel();
+            checkTimer = null;
+        }
+    }
+
+    /**
+     * 记录一次命中(无需下载即可发送图片)
+     */
+    public void recordHit() {
+        hitCount.increment();
+    }
+
+    /**
+     * 记录一次未命中(需要下载图片)
+     */
+    public void recordMiss() {
+        missCount.increment();
+    }
+
+    /**
+     * 新图片加入缓存目录后调用, 如果估算占用超出上限, 将安排一次容量检查.
+     * @param size 图片大小
+     */
+    public void onImageAdded(long size) {
+        long used = usedBytes.get();
+        if(used < 0) {
+            return;
+        }
+        used = usedBytes.addAndGet(size);
+        long quota = quotaSupplier.getAsLong();
+        if(quota > 0 && used > quota) {
+            scheduleCheck();
+        }
+    }
+
+    /**
+     * 删除缓存目录中的图片(例如巡检发现图片损坏).
+     * <p>与淘汰图片相同, 将移除索引项, 扣除占用统计, 并通知淘汰监听器清理关联的信息, 但不计入淘汰统计.</p>
+     * @param imageFile 图片文件
+     * @return 如果文件已删除或已不存在, 返回true
+     */
+    public synchronized boolean removeImage(File imageFile) {
+        ImageIndex.Entry entry = imageIndex.remove(imageFile.getName());
+        long size = imageFile.length();
+        if(!imageFile.delete() && imageFile.exists()) {
+            log.warn("图片文件 {} 删除失败.", imageFile.getPath());
+            return false;
+        }
+        usedBytes.updateAndGet(used -> used < 0 ? used : Math.max(0, used - size));
+        if(entry != null) {
+            try {
+                evictionListener.accept(entry);
+            } catch (Exception e) {
+                log.error("处理图片删除时发生异常:\n{}", Throwables.getStackTraceAsString(e));
+            }
+        }
+        return true;
+    }
+
+    private void scheduleCheck() {
+        synchronized (this) {
+            if(checkTimer == null || !checkScheduled.compareAndSet(false, true)) {
+                return;
+            }
+            checkTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    checkScheduled.set(false);
+                    runCheck();
+                }
+            }, 0);
+        }
+    }
+
+    private void runCheck() {
+        try {
+            evictIfNecessary();
+        } catch (Exception e) {
+            log.error("检查图片缓存目录容量时发生异常:\n{}", Throwables.getStackTraceAsString(e));
+        }
+    }
+
+    /**
+     * 立即统计缓存目录占用, 超出上限时淘汰图片.
+     * @return 返回本次淘汰的图片数量
+     */
+    public synchronized int evictIfNecessary() {
+        List<Candidate> candidates = scanStoreDir();
+        long used = 0;
+        for (Candidate candidate : candidates) {
+            used += candidate.size;
+        }
+        usedBytes.set(used);
+
+        long quota = quotaSupplier.getAsLong();
+        if(quota <= 0 || used <= quota) {
+            return 0;
+        }
+        long target = (long) (quota * LOW_WATERMARK);
+        log.info("图片缓存目录占用 {} Bytes, 超出容量上限 {} Bytes, 正在淘汰图片...", used, quota);
+        candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+
+        int evicted = 0;
+        for (Candidate candidate : candidates) {
+            if(used <= target) {
+                break;
+            } else if(candidate.partial) {
+                continue;
+            }
+            ImageIndex.Entry entry = candidate.entry;
+            if(entry != null && !imageIndex.removeIfIdle(entry, candidate.lastAccess)) {
+                log.debug("图片 {} 在淘汰前被访问或更新, 跳过该图片.", candidate.file.getName());
+                continue;
+            }
+            if(!candidate.file.delete() && candidate.file.exists()) {
+                log.warn("图片文件 {} 删除失败.", candidate.file.getPath());
+                continue;
+            }
+            used -= candidate.size;
+            evicted++;
+            evictionCount.incrementAndGet();
+            evictedBytes.addAndGet(candidate.size);
+            if(entry != null) {
+                try {
+                    evictionListener.accept(entry);
+                } catch (Exception e) {
+                    log.error("处理图片淘汰时发生异常:\n{}", Throwables.getStackTraceAsString(e));
+                }
+            }
+            log.debug("图片 {} 已淘汰(Size: {}, LastAccess: {})", candidate.file.getName(), candidate.size,
+                    new Date(candidate.lastAccess));
+        }
+        usedBytes.set(used);
+        log.info("图片淘汰完成(淘汰数量: {}, 当前占用: {} Bytes)", evicted, used);
+        return evicted;
+    }
+
+    private List<Candidate> scanStoreDir() {
+        Map<String, ImageIndex.Entry> entryByFileName = new HashMap<>();
+        for (ImageIndex.Entry entry : imageIndex.entries()) {
+            entryByFileName.put(entry.getFileName(), entry);
+        }
+        File[] files = storeDir.listFiles();
+        if(files == null) {
+            return new ArrayList<>();
+        }
+        List<Candidate> candidates = new ArrayList<>(files.length);
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            String name = file.getName();
+            // 跳过索引等内部文件, 以及正在写入的临时文件
+            if(name.startsWith(".") || name.endsWith(".tmp") || !file.isFile()) {
+                continue;
+            }
+            if(name.contains(".part")) {
+                long lastModified = file.lastModified();
+                if(now - lastModified >= PART_FILE_EXPIRE) {
+                    if(file.delete()) {
+                        log.debug("已删除过期的续传文件 {} (LastModified: {})", name, new Date(lastModified));
+                        continue;
+                    }
+                    log.warn("过期的续传文件 {} 删除失败.", file.getPath());
+                }
+                candidates.add(new Candidate(file, file.length(), lastModified, null, true));
+                continue;
+            }
+            ImageIndex.Entry entry = entryByFileName.get(name);
+            long lastAccess = entry != null ? entry.getLastAccess() : file.lastModified();
+            candidates.add(new Candidate(file, file.length(), lastAccess, entry, false));
+        }
+        return candidates;
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public Stats getStats() {
+        return new Stats(hitCount.sum(), missCount.sum(), Math.max(usedBytes.get(), 0),
+                quotaSupplier.getAsLong(), evictionCount.get(), evictedBytes.get(), imageIndex.size());
+    }
+
+    private final static class Candidate {
+        private final File file;
+        private final long size;
+        private final long lastAccess;
+        private final ImageIndex.Entry entry;
+        /**
+         * 是否为续传文件, 续传文件计入占用但不参与淘汰
+         */
+        private final boolean partial;
+
+        private Candidate(File file, long size, long lastAccess, ImageIndex.Entry entry, boolean partial) {
+            this.file = file;
+            this.size = size;
+            this.lastAccess = lastAccess;
+            this.entry = entry;
+            this.partial = partial;
+        }
+    }
+
+    /**
+     * 图片缓存统计信息
+     */
+    public final static class Stats {
+
+        private final long hitCount;
+        private final long missCount;
+        private final long usedBytes;
+        private final long quotaBytes;
+        private final long evictionCount;
+        private final long evictedBytes;
+        private final int indexedCount;
+
+        private Stats(long hitCount, long missCount, long usedBytes, long quotaBytes,
+                      long evictionCount, long evictedBytes, int indexedCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.usedBytes = usedBytes;
+            this.quotaBytes = quotaBytes;
+            this.evictionCount = evictionCount;
+            this.evictedBytes = evictedBytes;
+            this.indexedCount = indexedCount;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * 获取命中率
+         * @return 命中率, 没有请求时返回0
+         */
+        public double getHitRatio() {
+            long total = hitCount + missCount;
+            return total == 0 ? 0 : (double) hitCount / total;
+        }
+
+        /**
+         * 获取最近一次统计的缓存目录占用, 单位字节
+         */
+        public long getUsedBytes() {
+            return usedBytes;
+        }
+
+        /**
+         * 获取容量上限, 单位字节
+         * @return 容量上限, 小于等于0表示不限制
+         */
+        public long getQuotaBytes() {
+            return quotaBytes;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        public long getEvictedBytes() {
+            return evictedBytes;
+        }
+
+        public int getIndexedCount() {
+            return indexedCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("命中次数: %d, 未命中次数: %d, 命中率: %.2f%%\n" +
+                            "已用空间: %.2fMB / %s\n" +
+                            "已索引图片: %d\n" +
+                            "淘汰次数: %d, 已淘汰: %.2fMB",
+                    hitCount, missCount, getHitRatio() * 100,
+                    usedBytes / 1048576.0, quotaBytes > 0 ? String.format("%.2fMB", quotaBytes / 1048576.0) : "无限制",
+                    indexedCount,
+                    evictionCount, evictedBytes / 1048576.0);
+        }
+    }
+
+}
@@ -0,0 +1,487 @@
+package net.lamgc.cgj.bot.cache;
+
+import com.google.gson.*;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Json紧凑二进制编解码器.
+ * <p>编码格式: 4 字节头部({@code 0x00 'C' 'J' 标志位}), 紧接着是带类型标记的值序列;
+ * 对象的键名在首次出现时写入字典, 之后只写字典索引. 字典仅在单个缓存项内有效,
+ * 所以只有在同一缓存项中包含大量同构对象(例如搜索结果中的作品列表)时才能明显缩小体积.
+ * 编码后的数据超过压缩阈值时将使用 Deflate 压缩, 压缩后更大则不压缩.</p>
+ * <p>解码时如果数据没有头部, 将视为旧版本写入的Json文本, 通过Gson解析, 以便缓存在过期前仍可读取.</p>
+ * <p>通过 {@link #decode(byte[], Set)} 可以只解码对象中指定的字段, 未选中的字段将被跳过, 不会创建对应的对象.</p>
+ */
+public class JsonBinaryCodec implements CacheCodec<JsonElement> {
+
+    /**
+     * 默认压缩阈值, 单位字节, 0或负数为不压缩.
+     * 可通过全局配置项 {@code cache.compressThreshold} 设置, 配置项在启动时存入系统属性 {@code cgj.cache.compressThreshold}
+     */
+    private final static int DEFAULT_COMPRESS_THRESHOLD = Integer.getInteger("cgj.cache.compressThreshold", 1024);
+
+    private final static byte[] MAGIC = {0x00, 'C', 'J'};
+    private final static int HEADER_LENGTH = MAGIC.length + 1;
+    private final static int FLAG_DEFLATE = 1;
+
+    private final static int TYPE_NULL = 0;
+    private final static int TYPE_FALSE = 1;
+    private final static int TYPE_TRUE = 2;
+    private final static int TYPE_LONG = 3;
+    private final static int TYPE_DOUBLE = 4;
+    private final static int TYPE_STRING = 5;
+    private final static int TYPE_ARRAY = 6;
+    private final static int TYPE_OBJECT = 7;
+    /**
+     * 无法以 long 或 double 无损表示的数字, 以文本形式存储
+     */
+    private final static int TYPE_NUMBER_TEXT = 8;
+
+    private final Gson gson;
+    private final int compressThreshold;
+
+    /**
+     * 使用默认压缩阈值构造编解码器
+     * @param gson 用于解析旧版本Json文本的Gson对象
+     */
+    public JsonBinaryCodec(Gson gson) {
+        this(gson, DEFAULT_COMPRESS_THRESHOLD);
+    }
+
+    /**
+     * 构造编解码器
+     * @param gson 用于解析旧版本Json文本的Gson对象
+     * @param compressThreshold 压缩阈值, 编码后超过该长度(字节)的数据将被压缩, 0或负数为不压缩
+     */
+    public JsonBinaryCodec(Gson gson, int compressThreshold) {
+        this.gson = Objects.requireNonNull(gson);
+        this.compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public byte[] encode(JsonElement value) {
+        Writer writer = new Writer();
+        writer.writeValue(value == null ? JsonNull.INSTANCE : value);
+        if(compressThreshold <= 0 || writer.length < compressThreshold) {
+            return writer.toEncoded(0);
+        }
+        byte[] compressed = deflate(writer.buffer, writer.length);
+        if(compressed == null) {
+            return writer.toEncoded(0);
+        }
+        Writer compressedWriter = new Writer();
+        compressedWriter.writeVarInt(writer.length);
+        compressedWriter.writeBytes(compressed, 0, compressed.length);
+        return compressedWriter.toEncoded(FLAG_DEFLATE);
+    }
+
+    @Override
+    public JsonElement decode(byte[] data) {
+        return decode(data, null);
+    }
+
+    /**
+     * 解码缓存项, 仅保留顶层对象中的指定字段.
+     * <p>如果顶层不是对象, 将完整解码.</p>
+     * @param data 字节数据
+     * @param fields 需要保留的字段, 为null时完整解码
+     * @return 返回解码后的缓存项
+     */
+    public JsonElement decode(byte[] data, Set<String> fields) {
+        if(!isEncoded(data)) {
+            JsonElement element = gson.fromJson(new String(data, StandardCharsets.UTF_8), JsonElement.class);
+            return fields == null ? element : project(element, fields);
+        }
+        byte[] payload = data;
+        int offset = HEADER_LENGTH;
+        if((data[MAGIC.length] & FLAG_DEFLATE) != 0) {
+            Reader lengthReader = new Reader(data, offset);
+            int length = lengthReader.readVarInt();
+            payload = inflate(data, lengthReader.position, data.length - lengthReader.position, length);
+            offset = 0;
+        }
+        Reader reader = new Reader(payload, offset);
+        return fields == null ? reader.readValue() : reader.readProjected(fields);
+    }
+
+    /**
+     * 检查数据是否由该编解码器编码
+     * @param data 字节数据
+     * @return 如果数据带有编码头部, 返回true
+     */
+    public static boolean isEncoded(byte[] data) {
+        if(data.length < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if(data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static JsonElement project(JsonElement element, Set<String> fields) {
+        if(!element.isJsonObject()) {
+            return element;
+        }
+        JsonObject source = element.getAsJsonObject();
+        JsonObject result = new JsonObject();
+        for (String field : fields) {
+            if(source.has(field)) {
+                result.add(field, source.get(field));
+            }
+        }
+        return result;
+    }
+
+    private static byte[] deflate(byte[] data, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            // 压缩后不小于原数据时放弃压缩
+            byte[] output = new byte[length];
+            int outputLength = 0;
+            while(!deflater.finished()) {
+                if(outputLength == output.length) {
+                    return null;
+                }
+                outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+            }
+            return Arrays.copyOf(output, outputLength);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int offset, int length, int originalLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            byte[] output = new byte[originalLength];
+            int outputLength = 0;
+            while(outputLength < originalLength) {
+                int count = inflater.inflate(output, outputLength, originalLength - outputLength);
+                if(count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                outputLength += count;
+            }
+            if(outputLength != originalLength) {
+                throw new JsonParseException("Compressed data is truncated: " + outputLength + " / " + originalLength);
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new JsonParseException("Compressed data is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private final static class Writer {
+        private byte[] buffer = new byte[256];
+        private int length;
+        private final Map<String, Integer> keyIndexes = new HashMap<>();
+
+        void writeValue(JsonElement element) {
+            if(element.isJsonNull()) {
+                writeByte(TYPE_NULL);
+            } else if(element.isJsonObject()) {
+                Set<Map.Entry<String, JsonElement>> entries = element.getAsJsonObject().entrySet();
+                writeByte(TYPE_OBJECT);
+                writeVarInt(entries.size());
+                for (Map.Entry<String, JsonElement> entry : entries) {
+                    writeKey(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else if(element.isJsonArray()) {
+                JsonArray array = element.getAsJsonArray();
+                writeByte(TYPE_ARRAY);
+                writeVarInt(array.size());
+                for (JsonElement item : array) {
+                    writeValue(item);
+                }
+            } else {
+                writePrimitive(element.getAsJsonPrimitive());
+            }
+        }
+
+        private void writePrimitive(JsonPrimitive primitive) {
+            if(primitive.isBoolean()) {
+                writeByte(primitive.getAsBoolean() ? TYPE_TRUE : TYPE_FALSE);
+            } else if(primitive.isString()) {
+                writeByte(TYPE_STRING);
+                writeString(primitive.getAsString());
+            } else {
+                writeNumber(primitive.getAsNumber());
+            }
+        }
+
+        private void writeNumber(Number number) {
+            String text = number.toString();
+            boolean decimal = text.indexOf('.') != -1 || text.indexOf('e') != -1 || text.indexOf('E') != -1;
+            if(!decimal) {
+                try {
+                    long value = Long.parseLong(text);
+                    writeByte(TYPE_LONG);
+                    writeVarLong((value << 1) ^ (value >> 63));
+                    return;
+                } catch (NumberFormatException ignored) {
+                    // 超出 long 范围的整数以文本形式存储
+                }
+            } else {
+                double value = Double.parseDouble(text);
+                if(Double.toString(value).equals(text)) {
+                    writeByte(TYPE_DOUBLE);
+                    long bits = Double.doubleToRawLongBits(value);
+                    for (int i = 0; i < 8; i++) {
+                        writeByte((int) (bits >>> (i * 8)));
+                    }
+                    return;
+                }
+            }
+            writeByte(TYPE_NUMBER_TEXT);
+            writeString(text);
+        }
+
+        /**
+         * 写入键名, 0 表示新键名(紧接着是键名文本), 否则为字典索引 + 1
+         */
+        private void writeKey(String key) {
+            Integer index = keyIndexes.get(key);
+            if(index != null) {
+                writeVarInt(index + 1);
+                return;
+            }
+            keyIndexes.put(key, keyIndexes.size());
+            writeVarInt(0);
+            writeString(key);
+        }
+
+        private void writeString(String str) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeVarLong(long value) {
+            while((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        private void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[length++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int count) {
+            ensureCapacity(count);
+            System.arraycopy(bytes, offset, buffer, length, count);
+            length += count;
+        }
+
+        private void ensureCapacity(int count) {
+            if(length + count > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + count));
+            }
+        }
+
+        byte[] toEncoded(int flags) {
+            byte[] result = new byte[HEADER_LENGTH + length];
+            System.arraycopy(MAGIC, 0, result, 0, MAGIC.length);
+            result[MAGIC.length] = (byte) flags;
+            System.arraycopy(buffer, 0, result, HEADER_LENGTH, length);
+            return result;
+        }
+    }
+
+    private final static class Reader {
+        private final byte[] data;
+        private int position;
+        private final List<String> keys = new ArrayList<>();
+
+        Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        JsonElement readValue() {
+            int type = readByte();
+            switch (type) {
+                case TYPE_NULL:
+                    return JsonNull.INSTANCE;
+                case TYPE_FALSE:
+                    return new JsonPrimitive(false);
+                case TYPE_TRUE:
+                    return new JsonPrimitive(true);
+                case TYPE_LONG:
+                    return new JsonPrimitive(readZigZagLong());
+                case TYPE_DOUBLE:
+                    return new JsonPrimitive(readDouble());
+                case TYPE_STRING:
+                    return new JsonPrimitive(readString());
+                case TYPE_NUMBER_TEXT:
+                    return new JsonPrimitive(new BigDecimal(readString()));
+                case TYPE_ARRAY: {
+                    int size = readVarInt();
+                    JsonArray array = new JsonArray();
+                    for (int i = 0; i < size; i++) {
+                        array.add(readValue());
+                    }
+                    return array;
+                }
+                case TYPE_OBJECT: {
+                    int size = readVarInt();
+                    JsonObject object = new JsonObject();
+                    for (int i = 0; i < size; i++) {
+                        String key = readKey();
+                        object.add(key, readValue());
+                    }
+                    return object;
+                }
+                default:
+                    throw new JsonParseException("Unknown value type " + type + " at position " + (position - 1));
+            }
+        }
+
+        /**
+         * 读取顶层值, 如果是对象则仅解码指定字段
+         */
+        JsonElement readProjected(Set<String> fields) {
+            if((data[position] & 0xFF) != TYPE_OBJECT) {
+                return readValue();
+            }
+            position++;
+            int size = readVarInt();
+            JsonObject object = new JsonObject();
+            for (int i = 0; i < size; i++) {
+                String key = readKey();
+                if(fields.contains(key)) {
+                    object.add(key, readValue());
+                } else {
+                    skipValue();
+                }
+            }
+            return object;
+        }
+
+        /**
+         * 跳过一个值, 只会登记其中出现的新键名, 不会创建对象
+         */
+        private void skipValue() {
+            int type = readByte();
+            switch (type) {
+                case TYPE_NULL:
+                case TYPE_FALSE:
+                case TYPE_TRUE:
+                    return;
+                case TYPE_LONG:
+                    readZigZagLong();
+                    return;
+                case TYPE_DOUBLE:
+                    position += 8;
+                    return;
+                case TYPE_STRING:
+                case TYPE_NUMBER_TEXT: {
+                    int length = readVarInt();
+                    position += length;
+                    return;
+                }
+                case TYPE_ARRAY: {
+                    int size = readVarInt();
+                    for (int i = 0; i < size; i++) {
+                        skipValue();
+                    }
+                    return;
+                }
+                case TYPE_OBJECT: {
+                    int size = readVarInt();
+                    for (int i = 0; i < size; i++) {
+                        readKey();
+                        skipValue();
+                    }
+                    return;
+                }
+                default:
+                    throw new JsonParseException("Unknown value type " + type + " at position " + (position - 1));
+            }
+        }
+
+        private String readKey() {
+            int index = readVarInt();
+            if(index == 0) {
+                String key = readString();
+                keys.add(key);
+                return key;
+            }
+            if(index > keys.size()) {
+                throw new JsonParseException("Invalid key index " + index + " at position " + position);
+            }
+            return keys.get(index - 1);
+        }
+
+        private String readString() {
+            int length = readVarInt();
+            if(length < 0 || position + length > data.length) {
+                throw new JsonParseException("Invalid string length " + length + " at position " + position);
+            }
+            String str = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return str;
+        }
+
+        private double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits |= ((long) readByte()) << (i * 8);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        private long readZigZagLong() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if(shift >= 64) {
+                    throw new JsonParseException("Malformed variable-length integer at position " + position);
+                }
+                b = readByte();
+                value |= ((long) (b & 0x7F)) << shift;
+                shift += 7;
+            } while((b & 0x80) != 0);
+            return value;
+        }
+
+        private int readByte() {
+            if(position >= data.length) {
+                throw new JsonParseException("Unexpected end of data at position " + position);
+            }
+            return data[position++] & 0xFF;
+        }
+    }
+
+}
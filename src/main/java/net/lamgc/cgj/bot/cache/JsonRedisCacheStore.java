@@ -6,27 +6,31 @@ import redis.clients.jedis.JedisPool;
 
 import java.net.URI;
 
+/**
+ * Json缓存库.
+ * <p>缓存项通过 {@link JsonBinaryCodec} 以紧凑二进制格式存储, 旧版本以Json文本存储的缓存项仍可正常读取.</p>
+ */
 public class JsonRedisCacheStore extends RedisPoolCacheStore<JsonElement> {
 
-    private final Gson gson;
+    private final JsonBinaryCodec codec;
 
     public JsonRedisCacheStore(URI redisServerUri, String prefix, Gson gson) {
         super(redisServerUri, prefix);
-        this.gson = gson;
+        this.codec = new JsonBinaryCodec(gson);
     }
 
     public JsonRedisCacheStore(JedisPool jedisPool, String prefix, Gson gson) {
         super(jedisPool, prefix);
-        this.gson = gson;
+        this.codec = new JsonBinaryCodec(gson);
     }
 
     @Override
-    protected String parse(JsonElement data) {
-        return this.gson.toJson(data);
+    protected byte[] encode(JsonElement dataObj) {
+        return codec.encode(dataObj);
     }
 
     @Override
-    protected JsonElement analysis(String dataStr) {
-        return this.gson.fromJson(dataStr, JsonElement.class);
+    protected JsonElement decode(byte[] data) {
+        return codec.decode(data);
     }
 }
@@ -12,6 +12,7 @@ import java.util.concurrent.atomic.AtomicReference;
 public class LocalHashCacheStore<T> implements CacheStore<T>, Cleanable {
 
     private final Hashtable<String, CacheObject<T>> cache;
+    private final ExpirationTracker expirationTracker;
 
     /**
      * 构造一个基于Hashtable的本地缓存库
@@ -44,7 +45,7 @@ public class LocalHashCacheStore<T> implements CacheStore<T>, Cleanable {
      * 构造一个基于Hashtable的本地缓存库
      * @param initialCapacity 初始容量
      * @param loadFactor 重载因子
-     * @param autoClean 是否自动清理
+     * @param autoClean 是否自动清理, 启用后将通过 {@link AutoCleanTimer#getTimingWheel()} 在缓存项到期时清理
      * @see Hashtable
      */
     public LocalHashCacheStore(int initialCapacity, float loadFactor, boolean autoClean) {
@@ -59,7 +60,9 @@ public class LocalHashCacheStore<T> implements CacheStore<T>, Cleanable {
         }
 
         if(autoClean) {
-            AutoCleanTimer.add(this);
+            expirationTracker = new ExpirationTracker(AutoCleanTimer.getTimingWheel(), this::removeIfExpire);
+        } else {
+            expirationTracker = null;
         }
     }
 
@@ -76,6 +79,9 @@ public class LocalHashCacheStore<T> implements CacheStore<T>, Cleanable {
             CacheObject<T> cacheObject = new CacheObject<>(value, expire);
             cache.put(key, cacheObject);
         }
+        if(expirationTracker != null) {
+            expirationTracker.track(key, expire == null ? 0 : expire.getTime());
+        }
     }
 
     @Override
@@ -122,6 +128,9 @@ public class LocalHashCacheStore<T> implements CacheStore<T>, Cleanable {
     @Override
     public boolean clear() {
         cache.clear();
+        if(expirationTracker != null) {
+            expirationTracker.clear();
+        }
         return true;
     }
 
@@ -132,6 +141,9 @@ public class LocalHashCacheStore<T> implements CacheStore<T>, Cleanable {
 
     @Override
     public boolean remove(String key) {
+        if(expirationTracker != null) {
+            expirationTracker.untrack(key);
+        }
         return cache.remove(key) != null;
     }
 
@@ -158,6 +170,17 @@ public class LocalHashCacheStore<T> implements CacheStore<T>, Cleanable {
         expireKeySet.forEach(cache::remove);
     }
 
+    /**
+     * 当缓存项已过期时删除缓存项, 由时间轮在缓存项到期时调用.
+     * @param key 键名
+     */
+    private void removeIfExpire(String key) {
+        CacheObject<T> cacheObject = cache.get(key);
+        if(cacheObject != null && cacheObject.isExpire(new Date())) {
+            cache.remove(key, cacheObject);
+        }
+    }
+
     private static class CacheObject<T> implements Comparable<CacheObject<T>> {
 
         private final AtomicReference<T> value;
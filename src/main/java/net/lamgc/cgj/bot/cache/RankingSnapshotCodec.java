@@ -0,0 +1,144 @@
+package net.lamgc.cgj.bot.cache;
+
+import net.lamgc.cgj.pixiv.RankingSnapshot;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * 排行榜快照编解码器.
+ * <p>编码格式: 2 字节头部({@code 'R' 'S'}), 1 字节版本号, 条目数量, 去重后的字符串表,
+ * 之后按列依次写入各字段, 字符串字段只写字符串表索引.</p>
+ */
+public class RankingSnapshotCodec implements CacheCodec<RankingSnapshot> {
+
+    private final static int MAGIC = ('R' << 8) | 'S';
+    private final static int VERSION = 1;
+
+    @Override
+    public byte[] encode(RankingSnapshot snapshot) {
+        int size = snapshot.size();
+        Map<String, Integer> stringIndexes = new LinkedHashMap<>();
+        int[] titleIndexes = new int[size];
+        int[] userNameIndexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            titleIndexes[i] = indexOf(stringIndexes, snapshot.getTitle(i));
+            userNameIndexes[i] = indexOf(stringIndexes, snapshot.getUserName(i));
+        }
+
+        ByteArrayOutputStream byteOutput = new ByteArrayOutputStream(64 + size * 24);
+        try (DataOutputStream output = new DataOutputStream(byteOutput)) {
+            output.writeShort(MAGIC);
+            output.writeByte(VERSION);
+            output.writeInt(size);
+            output.writeInt(stringIndexes.size());
+            for (String str : stringIndexes.keySet()) {
+                output.writeUTF(str);
+            }
+            for (int i = 0; i < size; i++) {
+                output.writeShort(snapshot.getRank(i));
+            }
+            for (int i = 0; i < size; i++) {
+                output.writeInt(snapshot.getIllustId(i));
+            }
+            for (int i = 0; i < size; i++) {
+                output.writeInt(titleIndexes[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                output.writeInt(snapshot.getUserId(i));
+            }
+            for (int i = 0; i < size; i++) {
+                output.writeInt(userNameIndexes[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                output.writeShort(snapshot.getPageCount(i));
+            }
+            for (int i = 0; i < size; i++) {
+                output.writeByte(snapshot.getIllustType(i));
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream 不会抛出 IOException
+            throw new UncheckedIOException(e);
+        }
+        return byteOutput.toByteArray();
+    }
+
+    @Override
+    public RankingSnapshot decode(byte[] data) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(data))) {
+            int magic = input.readUnsignedShort();
+            int version = input.readUnsignedByte();
+            if(magic != MAGIC || version != VERSION) {
+                throw new IllegalArgumentException("Unsupported ranking snapshot data (magic: " +
+                        Integer.toHexString(magic) + ", version: " + version + ")");
+            }
+            int size = readCount(input, data.length);
+            String[] strings = new String[readCount(input, data.length)];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = input.readUTF();
+            }
+            int[] ranks = new int[size];
+            int[] illustIds = new int[size];
+            int[] titleIndexes = new int[size];
+            int[] userIds = new int[size];
+            int[] userNameIndexes = new int[size];
+            int[] pageCounts = new int[size];
+            for (int i = 0; i < size; i++) {
+                ranks[i] = input.readUnsignedShort();
+            }
+            for (int i = 0; i < size; i++) {
+                illustIds[i] = input.readInt();
+            }
+            for (int i = 0; i < size; i++) {
+                titleIndexes[i] = readStringIndex(input, strings.length);
+            }
+            for (int i = 0; i < size; i++) {
+                userIds[i] = input.readInt();
+            }
+            for (int i = 0; i < size; i++) {
+                userNameIndexes[i] = readStringIndex(input, strings.length);
+            }
+            for (int i = 0; i < size; i++) {
+                pageCounts[i] = input.readUnsignedShort();
+            }
+            RankingSnapshot.Builder builder = new RankingSnapshot.Builder(size);
+            for (int i = 0; i < size; i++) {
+                builder.add(ranks[i], illustIds[i], strings[titleIndexes[i]], userIds[i],
+                        strings[userNameIndexes[i]], pageCounts[i], input.readUnsignedByte());
+            }
+            return builder.build();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Ranking snapshot data is truncated", e);
+        }
+    }
+
+    /**
+     * 读取数量, 数量不会超过数据本身的长度, 超出则说明数据已损坏
+     */
+    private static int readCount(DataInput input, int dataLength) throws IOException {
+        int count = input.readInt();
+        if(count < 0 || count > dataLength) {
+            throw new IllegalArgumentException("Invalid count in ranking snapshot data: " + count);
+        }
+        return count;
+    }
+
+    private static int readStringIndex(DataInput input, int stringCount) throws IOException {
+        int index = input.readInt();
+        if(index < 0 || index >= stringCount) {
+            throw new IllegalArgumentException("String index out of range in ranking snapshot data: " +
+                    index + " (string count: " + stringCount + ")");
+        }
+        return index;
+    }
+
+    private static int indexOf(Map<String, Integer> stringIndexes, String str) {
+        Integer index = stringIndexes.get(str);
+        if(index == null) {
+            index = stringIndexes.size();
+            stringIndexes.put(str, index);
+        }
+        return index;
+    }
+
+}
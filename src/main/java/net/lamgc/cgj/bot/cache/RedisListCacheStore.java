@@ -2,11 +2,11 @@ package net.lamgc.cgj.bot.cache;
 
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 
 public abstract class RedisListCacheStore<T> extends RedisPoolCacheStore<List<T>> {
 
@@ -27,29 +27,88 @@ public abstract class RedisListCacheStore<T> extends RedisPoolCacheStore<List<T>
         keyPrefix = prefix.endsWith(".") ? prefix : prefix + ".";
     }
 
+    /**
+     * 更新列表缓存, 原有列表将被替换.
+     * <p>删除原列表、写入新列表和设置过期时间将通过 Pipeline 一次性提交.</p>
+     */
     @Override
     public void update(String key, List<T> value, Date expire) {
         executeJedisCommand(jedis -> {
-            String[] arr = new String[value.size()];
-            for (int i = 0; i < value.size(); i++) {
-                arr[i] = parseData(value.get(i));
-            }
-            jedis.rpush(keyPrefix + key, arr);
-            if(expire != null) {
-                jedis.pexpireAt(keyPrefix + key, expire.getTime());
-            }
+            Pipeline pipeline = jedis.pipelined();
+            appendUpdateCommands(pipeline, key, value, expire == null ? 0 : expire.getTime());
+            pipeline.sync();
         });
     }
 
+    @Override
+    public void updateAll(Map<String, List<T>> values, long expire) {
+        if(values.isEmpty()) {
+            return;
+        }
+        long expireAt = expire <= 0 ? 0 : System.currentTimeMillis() + expire;
+        executeJedisCommand(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            values.forEach((key, value) -> appendUpdateCommands(pipeline, key, value, expireAt));
+            pipeline.sync();
+        });
+    }
+
+    private void appendUpdateCommands(Pipeline pipeline, String key, List<T> value, long expireAt) {
+        pipeline.del(keyPrefix + key);
+        if(value.isEmpty()) {
+            return;
+        }
+        String[] arr = new String[value.size()];
+        for (int i = 0; i < value.size(); i++) {
+            arr[i] = parseData(value.get(i));
+        }
+        pipeline.rpush(keyPrefix + key, arr);
+        if(expireAt > 0) {
+            pipeline.pexpireAt(keyPrefix + key, expireAt);
+        }
+    }
+
     @Override
     public List<T> getCache(String key) {
-        return getCache(key, 0, length(key));
+        return getCache(key, 0, -1);
+    }
+
+    /**
+     * 通过 Pipeline 批量获取列表缓存
+     * @param keys 键名集合
+     * @return 返回存在的列表缓存
+     */
+    @Override
+    public Map<String, List<T>> getAll(Collection<String> keys) {
+        Map<String, List<T>> result = new LinkedHashMap<>();
+        if(keys.isEmpty()) {
+            return result;
+        }
+        Map<String, Response<List<String>>> responses = new LinkedHashMap<>();
+        executeJedisCommand(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            for (String key : keys) {
+                responses.put(key, pipeline.lrange(keyPrefix + key, 0, -1));
+            }
+            pipeline.sync();
+        });
+        responses.forEach((key, response) -> {
+            List<String> strings = response.get();
+            if(strings != null && !strings.isEmpty()) {
+                List<T> list = new ArrayList<>(strings.size());
+                strings.forEach(item -> list.add(analysisData(item)));
+                result.put(key, list);
+            }
+        });
+        return result;
     }
 
     @Override
     public List<T> getCache(String key, long index, long length) {
         return executeJedisCommand(jedis -> {
-            List<String> strings = jedis.lrange(keyPrefix + key, Math.max(0, index), Math.max(0, index + length - 1));
+            // 长度为负数时选取到列表末尾
+            long end = length < 0 ? -1 : Math.max(0, index + length - 1);
+            List<String> strings = jedis.lrange(keyPrefix + key, Math.max(0, index), end);
             List<T> results = new ArrayList<>(strings.size());
             strings.forEach(item -> results.add(analysisData(item)));
             return results;
@@ -63,14 +122,22 @@ public abstract class RedisListCacheStore<T> extends RedisPoolCacheStore<List<T>
         });
     }
 
+    /**
+     * 列表缓存以Redis列表存储, 读写均已重写为列表命令, 每个元素通过 {@link #parseData(Object)} 单独转换, 不使用单值编码.
+     * @throws UnsupportedOperationException 总是抛出
+     */
     @Override
-    protected String parse(List<T> dataObj) {
-        return null;
+    protected byte[] encode(List<T> dataObj) {
+        throw new UnsupportedOperationException("List cache is stored as a Redis list");
     }
 
+    /**
+     * 列表缓存以Redis列表存储, 每个元素通过 {@link #analysisData(String)} 单独转换, 不使用单值解码.
+     * @throws UnsupportedOperationException 总是抛出
+     */
     @Override
-    protected List<T> analysis(String dataStr) {
-        return null;
+    protected List<T> decode(byte[] data) {
+        throw new UnsupportedOperationException("List cache is stored as a Redis list");
     }
 
     /**
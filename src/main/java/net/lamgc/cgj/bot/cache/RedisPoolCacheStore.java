@@ -5,19 +5,29 @@ import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.*;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.util.SafeEncoder;
 
 import java.net.URI;
-import java.util.Date;
-import java.util.Objects;
-import java.util.Set;
+import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 abstract class RedisPoolCacheStore<T> implements CacheStore<T> {
 
+    /**
+     * 每次 SCAN 建议返回的键名数量, 同时也是每次 UNLINK 删除的键名数量上限
+     */
+    private final static int SCAN_BATCH_SIZE = 500;
+
     private final JedisPool jedisPool;
     private final String keyPrefix;
     private final Logger log;
+    /**
+     * Redis 服务端是否支持 UNLINK 命令(4.0 起支持), 不支持时将使用 DEL 命令
+     */
+    private volatile boolean unlinkSupported = true;
 
     public RedisPoolCacheStore(URI redisServerUri, String prefix) {
         this(redisServerUri, null, 0, null, prefix);
@@ -52,9 +62,16 @@ abstract class RedisPoolCacheStore<T> implements CacheStore<T> {
     @Override
     public void update(String key, T value, Date expire) {
         executeJedisCommand(jedis -> {
-            jedis.set(keyPrefix + key, parse(value));
-            if(expire != null) {
-                jedis.pexpireAt(keyPrefix + key, expire.getTime());
+            if(expire == null) {
+                jedis.set(SafeEncoder.encode(keyPrefix + key), encode(value));
+                return;
+            }
+            long ttl = expire.getTime() - System.currentTimeMillis();
+            if(ttl <= 0) {
+                // 过期时间已过, 该缓存项不应存在
+                jedis.del(keyPrefix + key);
+            } else {
+                jedis.set(SafeEncoder.encode(keyPrefix + key), encode(value), SetParams.setParams().px(ttl));
                 log.debug("已设置Key {} 的过期时间(Expire: {})", key, expire.getTime());
             }
         });
@@ -62,9 +79,96 @@ abstract class RedisPoolCacheStore<T> implements CacheStore<T> {
 
     @Override
     public T getCache(String key) {
+        byte[] data = getRawCache(key);
+        return data == null ? null : decode(data);
+    }
+
+    /**
+     * 获取缓存项未经解码的字节数据
+     * @param key 键名
+     * @return 如果缓存项不存在, 返回null
+     */
+    protected byte[] getRawCache(String key) {
         return executeJedisCommand(jedis -> {
-            return analysis(jedis.get(keyPrefix + key));
+            return jedis.get(SafeEncoder.encode(keyPrefix + key));
+        });
+    }
+
+    /**
+     * 通过 MGET 批量获取缓存数据
+     * @param keys 键名集合
+     * @return 返回存在的缓存项
+     */
+    @Override
+    public Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> result = new LinkedHashMap<>();
+        if(keys.isEmpty()) {
+            return result;
+        }
+        List<String> keyList = new ArrayList<>(keys);
+        byte[][] fullKeys = new byte[keyList.size()][];
+        for (int i = 0; i < fullKeys.length; i++) {
+            fullKeys[i] = SafeEncoder.encode(keyPrefix + keyList.get(i));
+        }
+        List<byte[]> values = executeJedisCommand(jedis -> {
+            return jedis.mget(fullKeys);
+        });
+        for (int i = 0; i < keyList.size(); i++) {
+            byte[] value = values.get(i);
+            if(value != null) {
+                T data = decode(value);
+                if(data != null) {
+                    result.put(keyList.get(i), data);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 通过 Pipeline 批量更新缓存项
+     * @param values 缓存项
+     * @param expire 有效期, 单位为ms(毫秒), 如不过期传入0或负数
+     */
+    @Override
+    public void updateAll(Map<String, T> values, long expire) {
+        if(values.isEmpty()) {
+            return;
+        }
+        executeJedisCommand(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            values.forEach((key, value) -> {
+                if(expire > 0) {
+                    pipeline.set(SafeEncoder.encode(keyPrefix + key), encode(value), SetParams.setParams().px(expire));
+                } else {
+                    pipeline.set(SafeEncoder.encode(keyPrefix + key), encode(value));
+                }
+            });
+            pipeline.sync();
+        });
+    }
+
+    /**
+     * 通过 Pipeline 批量检查缓存项是否存在
+     * @param keys 键名集合
+     * @return 返回每个键名的检查结果
+     */
+    @Override
+    public Map<String, Boolean> existsAll(Collection<String> keys) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        if(keys.isEmpty()) {
+            return result;
+        }
+        Map<String, Response<Boolean>> responses = new LinkedHashMap<>();
+        executeJedisCommand(jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            for (String key : keys) {
+                responses.put(key, pipeline.exists(keyPrefix + key));
+            }
+            pipeline.sync();
         });
+        responses.forEach((key, response) -> result.put(key, Boolean.TRUE.equals(response.get())));
+        return result;
     }
 
     @Override
@@ -79,18 +183,59 @@ abstract class RedisPoolCacheStore<T> implements CacheStore<T> {
         return exists(key);
     }
 
+    /**
+     * 清空缓存库.
+     * <p>仅删除本缓存库前缀下的缓存项, 通过 SCAN 分批获取键名, 并以 UNLINK 分批删除,
+     * 不会长时间阻塞 Redis 服务端, 也不会影响共用同一数据库的其他缓存库.</p>
+     */
     @Override
     public boolean clear() {
+        List<String> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+        long deletedCount = 0;
+        Iterator<String> iterator = new ScanIterator();
+        while(iterator.hasNext()) {
+            batch.add(keyPrefix + iterator.next());
+            if(batch.size() >= SCAN_BATCH_SIZE) {
+                deletedCount += deleteKeys(batch);
+                batch.clear();
+            }
+        }
+        if(!batch.isEmpty()) {
+            deletedCount += deleteKeys(batch);
+        }
+        log.debug("缓存库已清空, 共删除 {} 个缓存项.", deletedCount);
+        return true;
+    }
+
+    private long deleteKeys(List<String> keys) {
+        String[] keyArray = keys.toArray(new String[0]);
         return executeJedisCommand(jedis -> {
-            return jedis.flushDB().equalsIgnoreCase("ok");
+            if(unlinkSupported) {
+                try {
+                    return jedis.unlink(keyArray);
+                } catch (JedisDataException e) {
+                    log.warn("Redis服务端不支持UNLINK命令, 将使用DEL命令删除缓存项. ({})", e.getMessage());
+                    unlinkSupported = false;
+                }
+            }
+            return jedis.del(keyArray);
         });
     }
 
     @Override
     public Set<String> keys() {
-        return executeJedisCommand(jedis -> {
-            return jedis.keys(keyPrefix + "*");
-        });
+        Set<String> keys = new HashSet<>();
+        keyIterator().forEachRemaining(keys::add);
+        return keys;
+    }
+
+    /**
+     * 获取key迭代器.
+     * <p>通过 SCAN 命令分批获取键名, 每批键名获取时才会从连接池借出连接, 遍历期间不占用连接.</p>
+     */
+    @Override
+    public Iterator<String> keyIterator() {
+        return new ScanIterator();
     }
 
     @Override
@@ -99,18 +244,20 @@ abstract class RedisPoolCacheStore<T> implements CacheStore<T> {
     }
 
     /**
-     * 转换方法
-     * @param dataObj 原数据
-     * @return 文本型数据
+     * 将缓存项编码为存入Redis的字节数据.
+     * <p>以文本形式存储的缓存库可继承 {@link StringRedisPoolCacheStore}, 其他缓存库可通过 {@link CacheCodec} 等方式编码.</p>
+     * @param dataObj 缓存项
+     * @return 字节数据
      */
-    protected abstract String parse(T dataObj);
+    protected abstract byte[] encode(T dataObj);
 
     /**
-     * 将String数据转换成指定类型的对象
-     * @param dataStr String数据
-     * @return 泛型指定类型的对象
+     * 将从Redis获取的字节数据解码为缓存项.
+     * @param data 字节数据, 不为null
+     * @return 缓存项
+     * @see #encode(Object)
      */
-    protected abstract T analysis(String dataStr);
+    protected abstract T decode(byte[] data);
 
     @Override
     public boolean supportedPersistence() {
@@ -139,6 +286,56 @@ abstract class RedisPoolCacheStore<T> implements CacheStore<T> {
         }
     }
 
+    /**
+     * 转义 SCAN MATCH 模式中的特殊字符
+     * @param str 原字符串
+     * @return 转义后的字符串
+     */
+    private static String escapeGlob(String str) {
+        StringBuilder builder = new StringBuilder(str.length());
+        for (char c : str.toCharArray()) {
+            if(c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 基于 SCAN 游标的键名迭代器, 返回的键名不包含前缀
+     */
+    private final class ScanIterator implements Iterator<String> {
+
+        private final ScanParams scanParams = new ScanParams()
+                .match(escapeGlob(keyPrefix) + "*").count(SCAN_BATCH_SIZE);
+        private String cursor = ScanParams.SCAN_POINTER_START;
+        private Iterator<String> currentBatch = Collections.emptyIterator();
+        private boolean finished;
+
+        @Override
+        public boolean hasNext() {
+            // SCAN 可能返回空批次, 需要持续获取直到有键名或遍历结束
+            while(!currentBatch.hasNext() && !finished) {
+                ScanResult<String> result = executeJedisCommand(jedis -> {
+                    return jedis.scan(cursor, scanParams);
+                });
+                cursor = result.getCursor();
+                finished = ScanParams.SCAN_POINTER_START.equals(cursor);
+                currentBatch = result.getResult().iterator();
+            }
+            return currentBatch.hasNext();
+        }
+
+        @Override
+        public String next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return currentBatch.next().substring(keyPrefix.length());
+        }
+    }
+
     @Override
     public T getCache(String key, long index, long length) {
         return getCache(key);
@@ -5,7 +5,7 @@ import redis.clients.jedis.JedisPoolConfig;
 
 import java.net.URI;
 
-public class StringRedisCacheStore extends RedisPoolCacheStore<String> {
+public class StringRedisCacheStore extends StringRedisPoolCacheStore<String> {
     public StringRedisCacheStore(URI redisServerUri, String prefix) {
         super(redisServerUri, prefix);
     }
@@ -0,0 +1,52 @@
+package net.lamgc.cgj.bot.cache;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.net.URI;
+
+/**
+ * 以文本形式存储缓存项的Redis缓存库.
+ * <p>缓存项通过 {@link #parse(Object)} 转换为文本后以UTF-8编码存储, 读取时通过 {@link #analysis(String)} 转换回缓存项.</p>
+ * @param <T> 缓存项类型
+ */
+abstract class StringRedisPoolCacheStore<T> extends RedisPoolCacheStore<T> {
+
+    public StringRedisPoolCacheStore(URI redisServerUri, String prefix) {
+        super(redisServerUri, prefix);
+    }
+
+    public StringRedisPoolCacheStore(URI redisServerUri, JedisPoolConfig config, int timeout, String password, String prefix) {
+        super(redisServerUri, config, timeout, password, prefix);
+    }
+
+    public StringRedisPoolCacheStore(JedisPool pool, String keyPrefix) {
+        super(pool, keyPrefix);
+    }
+
+    /**
+     * 转换方法
+     * @param dataObj 原数据
+     * @return 文本型数据
+     */
+    protected abstract String parse(T dataObj);
+
+    /**
+     * 将String数据转换成指定类型的对象
+     * @param dataStr String数据
+     * @return 泛型指定类型的对象
+     */
+    protected abstract T analysis(String dataStr);
+
+    @Override
+    protected byte[] encode(T dataObj) {
+        return SafeEncoder.encode(parse(dataObj));
+    }
+
+    @Override
+    protected T decode(byte[] data) {
+        return analysis(SafeEncoder.encode(data));
+    }
+
+}
@@ -2,12 +2,12 @@ package net.lamgc.cgj.bot.event;
 
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import net.lamgc.cgj.bot.BotAdminCommandProcess;
 import net.lamgc.cgj.bot.BotCommandProcess;
 import net.lamgc.cgj.bot.MessageEventExecutionDebugger;
 import net.lamgc.cgj.bot.SettingProperties;
 import net.lamgc.cgj.util.DateParser;
+import net.lamgc.cgj.util.ExecutorMode;
 import net.lamgc.cgj.util.PagesQualityParser;
 import net.lamgc.cgj.util.TimeLimitThreadPoolExecutor;
 import net.lamgc.utils.base.runner.ArgumentsRunner;
@@ -24,7 +24,6 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.Method;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
@@ -43,19 +42,53 @@ public class BotEventHandler implements EventHandler {
     private final static Map<Long, AtomicBoolean> muteStateMap = new Hashtable<>();
 
     /**
-     * 消息事件执行器
+     * 命令的默认执行时间限制, 单位毫秒
+     */
+    private final static long COMMAND_TIME_LIMIT = 180000; // 3min
+
+    /**
+     * 命令处理线程池
      */
-    private final static EventExecutor executor = new EventExecutor(new TimeLimitThreadPoolExecutor(
-            180000, // 3minThr
-            Math.max(Runtime.getRuntime().availableProcessors(), 4),
-            Math.min(Math.max(Runtime.getRuntime().availableProcessors(), 4), 32),
+    private final static TimeLimitThreadPoolExecutor commandThreadPool = new TimeLimitThreadPoolExecutor(
+            COMMAND_TIME_LIMIT,
+            ExecutorMode.current().corePoolSize(Math.max(Runtime.getRuntime().availableProcessors(), 4)),
+            ExecutorMode.current().maximumPoolSize(
+                    Math.min(Math.max(Runtime.getRuntime().availableProcessors(), 4), 32)),
             30L,
             TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(1536),
-            new ThreadFactoryBuilder()
-                    .setNameFormat("CommandProcess-%d")
-                    .build()
-    ));
+            ExecutorMode.current().workQueue(1536),
+            ExecutorMode.current().threadFactory("CommandProcess-%d")
+    );
+
+    /**
+     * 消息事件执行器
+     */
+    private final static EventExecutor executor = new EventExecutor(commandThreadPool);
+
+    /**
+     * 消息事件调度器.
+     * <p>同时执行的命令数与线程池常驻线程数相同(虚拟线程模式下为线程数上限), 其余命令按来源在调度器中排队.</p>
+     * <p>来源Id为 0 的事件由机器人内部投递(如排行榜定时更新的虚拟负载事件), 不受单来源队列容量限制.</p>
+     */
+    private final static FairEventScheduler scheduler = new FairEventScheduler(
+            ExecutorMode.current() == ExecutorMode.VIRTUAL ?
+                    commandThreadPool.getMaximumPoolSize() : commandThreadPool.getCorePoolSize(),
+            1536,
+            BotEventHandler.executor::executor,
+            sourceId -> sourceId == 0 ? Integer.MAX_VALUE :
+                    SettingProperties.getIntProperty(sourceId, "event.queue.groupCapacity", 32),
+            sourceId -> SettingProperties.getIntProperty(sourceId, "event.queue.weight", 1)
+    );
+
+    /**
+     * 拒绝事件后提示用户的最短间隔, 单位毫秒
+     */
+    private final static long REJECT_REPLY_INTERVAL = 30000;
+
+    /**
+     * 各来源最近一次提示事件被拒绝的时间
+     */
+    private final static Map<Long, Long> lastRejectReplyTime = new Hashtable<>();
 
     private static boolean initialled = false;
 
@@ -136,6 +169,10 @@ public class BotEventHandler implements EventHandler {
      */
     @NotAccepted
     public static void executeMessageEvent(MessageEvent event, boolean sync) throws InterruptedException {
+        if(mismatch(event.getMessage())) {
+            // 非命令消息无需处理, 不占用调度器的队列名额
+            return;
+        }
         String debuggerName = SettingProperties.getProperty(0, "debug.debugger");
         if(!event.getMessage().startsWith(ADMIN_COMMAND_PREFIX) &&
                 !Strings.isNullOrEmpty(debuggerName)) {
@@ -151,18 +188,64 @@ public class BotEventHandler implements EventHandler {
         } else {
             if(sync) {
                 BotEventHandler.executor.executorSync(event);
-            } else {
+            } else if(event.getMessage().startsWith(ADMIN_COMMAND_PREFIX)) {
+                // 管理员命令不参与排队
                 BotEventHandler.executor.executor(event);
+            } else {
+                FairEventScheduler.SubmitResult result = scheduler.submit(event);
+                if(!result.isAccepted()) {
+                    log.warn("命令队列已满, 已拒绝事件.(Result: {}, Event: {})", result, event);
+                    replyRejected(event, result);
+                }
             }
         }
     }
 
+    /**
+     * 提示用户事件已被拒绝.
+     * <p>同一来源在 {@link #REJECT_REPLY_INTERVAL} 内只提示一次, 以免拒绝提示本身造成刷屏.</p>
+     * @param event 被拒绝的事件
+     * @param result 提交结果
+     */
+    private static void replyRejected(MessageEvent event, FairEventScheduler.SubmitResult result) {
+        long sourceId = FairEventScheduler.getSourceId(event);
+        long currentTime = System.currentTimeMillis();
+        Long lastTime = lastRejectReplyTime.get(sourceId);
+        if((lastTime != null && currentTime - lastTime < REJECT_REPLY_INTERVAL) || isMute(event.getFromGroup())) {
+            return;
+        }
+        lastRejectReplyTime.put(sourceId, currentTime);
+        try {
+            event.sendMessage(result == FairEventScheduler.SubmitResult.GROUP_QUEUE_FULL ?
+                    "色图姬还有好多命令没处理完呢，请稍后再试！" : "色图姬忙不过来了，请稍后再试！");
+        } catch (Exception e) {
+            log.error("发送拒绝提示时发生异常", e);
+        }
+    }
+
+    /**
+     * 获取消息事件调度器的统计信息快照
+     */
+    @NotAccepted
+    public static FairEventScheduler.Snapshot getSchedulerSnapshot() {
+        return scheduler.getSnapshot();
+    }
+
     /**
      * 以事件形式处理消息事件
      * @param event 消息事件对象
      */
     @SuppressWarnings("unused")
     public void processMessage(MessageEvent event) {
+        try {
+            handleMessage(event);
+        } finally {
+            scheduler.complete(event);
+        }
+    }
+
+    @NotAccepted
+    private void handleMessage(MessageEvent event) {
         String msg = event.getMessage();
         log.debug(event.toString());
         if(mismatch(msg)) {
@@ -215,6 +298,7 @@ public class BotEventHandler implements EventHandler {
                     result = adminRunner.run(args.length <= 1 ? new String[0] : Arrays.copyOfRange(args, 1, args.length));
                 }
             } else {
+                applyCommandTimeLimit(args.length <= 1 ? "" : args[1]);
                 result = processRunner.run(args.length <= 1 ? new String[0] : Arrays.copyOfRange(args, 1, args.length));
             }
         } catch(NoSuchCommandException e) {
@@ -257,6 +341,32 @@ public class BotEventHandler implements EventHandler {
                 String.format("%.3f", ((double) (totalTime - processTime) / (double)totalTime) * 100F), totalTime - processTime);
     }
 
+    /**
+     * 按全局配置项 {@code command.timeLimit.<命令名>} 调整当前命令的执行时间限制.
+     * <p>未配置时使用命令处理线程池的默认限制时间.</p>
+     * @param commandName 命令名
+     */
+    private static void applyCommandTimeLimit(String commandName) {
+        if(Strings.isNullOrEmpty(commandName) || commandName.startsWith("-")) {
+            return;
+        }
+        String key = "command.timeLimit." + commandName;
+        String propValue = SettingProperties.getProperty(SettingProperties.GLOBAL, key);
+        if(propValue == null) {
+            return;
+        }
+        long timeLimit;
+        try {
+            timeLimit = Long.parseLong(propValue.trim());
+        } catch (NumberFormatException e) {
+            log.warn("全局配置项 \"{}\" 值非法, 已使用默认值: {}", key, COMMAND_TIME_LIMIT);
+            return;
+        }
+        if(TimeLimitThreadPoolExecutor.setCurrentTaskTimeLimit(timeLimit)) {
+            log.debug("命令 {} 的执行时间限制已调整为 {}ms", commandName, timeLimit);
+        }
+    }
+
     /**
      * 检查消息是否需要提交
      * @param message 要检查的消息
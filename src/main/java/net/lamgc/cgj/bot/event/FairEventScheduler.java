@@ -0,0 +1,379 @@
+package net.lamgc.cgj.bot.event;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * 按消息来源公平调度的消息事件队列.
+ * <p>每个群组(私聊消息按发送者区分)拥有独立的等待队列, 同时执行的事件数达到上限后,
+ * 新的事件进入各自来源的队列中等待, 有事件执行完成时, 按差额轮询(Deficit Round Robin)从各队列中选出下一个事件.
+ * 每一轮中各来源可执行的事件数与其权重成正比, 因此单个来源大量提交的命令不会拖慢其他来源的命令.</p>
+ * <p>单个来源的队列已满, 或所有队列中等待的事件总数已达上限时, 新的事件将被拒绝, 由调用方决定如何告知用户.</p>
+ * <p>调度器不执行事件, 而是将选出的事件交给分派器; 事件执行完成后(无论成功与否), 必须调用 {@link #complete(MessageEvent)}.</p>
+ */
+public class FairEventScheduler {
+
+    private final int concurrency;
+    private final int totalCapacity;
+    private final Consumer<MessageEvent> dispatcher;
+    private final ToIntFunction<Long> groupCapacityFunction;
+    private final ToIntFunction<Long> groupWeightFunction;
+
+    private final Map<Long, GroupQueue> groupQueues = new HashMap<>();
+    /**
+     * 有事件等待中的队列, 按轮询顺序排列
+     */
+    private final Deque<GroupQueue> activeQueues = new ArrayDeque<>();
+    /**
+     * 已分派但尚未完成的事件, 按对象标识比较
+     */
+    private final Set<MessageEvent> runningEvents = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int queuedCount = 0;
+
+    /**
+     * 构造一个调度器
+     * @param concurrency 同时执行的事件数上限
+     * @param totalCapacity 所有队列中等待的事件总数上限
+     * @param dispatcher 事件分派器, 负责将选出的事件提交执行, 不应阻塞
+     * @param groupCapacityFunction 获取指定来源的队列容量, 参数为来源Id
+     * @param groupWeightFunction 获取指定来源的权重(每轮可执行的事件数), 参数为来源Id
+     */
+    public FairEventScheduler(int concurrency, int totalCapacity, Consumer<MessageEvent> dispatcher,
+                              ToIntFunction<Long> groupCapacityFunction, ToIntFunction<Long> groupWeightFunction) {
+        if(concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be greater than 0: " + concurrency);
+        }
+        this.concurrency = concurrency;
+        this.totalCapacity = totalCapacity;
+        this.dispatcher = Objects.requireNonNull(dispatcher);
+        this.groupCapacityFunction = Objects.requireNonNull(groupCapacityFunction);
+        this.groupWeightFunction = Objects.requireNonNull(groupWeightFunction);
+    }
+
+    /**
+     * 获取消息事件的来源Id.
+     * @param event 消息事件
+     * @return 群组消息返回群组号, 私聊消息返回发送者QQ号的相反数.
+     */
+    public static long getSourceId(MessageEvent event) {
+        return event.getFromGroup() > 0 ? event.getFromGroup() : -event.getFromQQ();
+    }
+
+    /**
+     * 提交事件.
+     * <p>如果有空闲的执行名额, 且没有其他事件在等待, 事件将立即交给分派器.</p>
+     * @param event 消息事件
+     * @return 返回提交结果
+     */
+    public SubmitResult submit(MessageEvent event) {
+        Objects.requireNonNull(event);
+        long sourceId = getSourceId(event);
+        int groupCapacity = groupCapacityFunction.applyAsInt(sourceId);
+        synchronized (this) {
+            GroupQueue queue = groupQueues.computeIfAbsent(sourceId, GroupQueue::new);
+            queue.submittedCount++;
+            if(runningEvents.size() < concurrency && queuedCount == 0) {
+                runningEvents.add(event);
+                queue.recordDispatch(0);
+            } else if(queue.events.size() >= groupCapacity) {
+                queue.rejectedCount++;
+                return SubmitResult.GROUP_QUEUE_FULL;
+            } else if(queuedCount >= totalCapacity) {
+                queue.rejectedCount++;
+                return SubmitResult.QUEUE_FULL;
+            } else {
+                queue.events.addLast(new QueuedEvent(event, System.nanoTime()));
+                queue.maxDepth = Math.max(queue.maxDepth, queue.events.size());
+                if(queue.events.size() == 1) {
+                    queue.weight = Math.max(groupWeightFunction.applyAsInt(sourceId), 1);
+                    activeQueues.addLast(queue);
+                }
+                queuedCount++;
+                return SubmitResult.QUEUED;
+            }
+        }
+        dispatch(event);
+        return SubmitResult.DISPATCHED;
+    }
+
+    /**
+     * 通知调度器事件已执行完成, 并分派下一个等待中的事件.
+     * <p>对于未经调度器分派的事件(或重复通知), 该方法不做任何操作.</p>
+     * @param event 已完成的事件
+     */
+    public void complete(MessageEvent event) {
+        MessageEvent next;
+        synchronized (this) {
+            if(!runningEvents.remove(event)) {
+                return;
+            }
+            next = pollNext();
+        }
+        if(next != null) {
+            dispatch(next);
+        }
+    }
+
+    private void dispatch(MessageEvent event) {
+        try {
+            dispatcher.accept(event);
+        } catch (RuntimeException e) {
+            // 分派失败时释放名额, 以免等待中的事件无法执行
+            complete(event);
+            throw e;
+        }
+    }
+
+    /**
+     * 按差额轮询选出下一个事件, 并占用执行名额.
+     * @return 如果没有等待中的事件, 返回null.
+     */
+    private MessageEvent pollNext() {
+        while(!activeQueues.isEmpty()) {
+            GroupQueue queue = activeQueues.peekFirst();
+            if(!queue.inRound) {
+                // 轮到该队列时增加额度
+                queue.deficit += queue.weight;
+                queue.inRound = true;
+            }
+            if(queue.deficit >= 1) {
+                queue.deficit--;
+                QueuedEvent queued = queue.events.pollFirst();
+                queuedCount--;
+                if(queue.events.isEmpty()) {
+                    // 队列已空, 剩余额度不保留到下次
+                    activeQueues.pollFirst();
+                    queue.deficit = 0;
+                    queue.inRound = false;
+                }
+                runningEvents.add(queued.event);
+                queue.recordDispatch(System.nanoTime() - queued.enqueueTime);
+                return queued.event;
+            }
+            activeQueues.addLast(activeQueues.pollFirst());
+            queue.inRound = false;
+        }
+        return null;
+    }
+
+    /**
+     * 获取正在执行的事件数
+     */
+    public synchronized int getRunningCount() {
+        return runningEvents.size();
+    }
+
+    /**
+     * 获取所有队列中等待的事件数
+     */
+    public synchronized int getQueuedCount() {
+        return queuedCount;
+    }
+
+    /**
+     * 获取各来源的队列统计信息快照, 按来源Id排序
+     */
+    public synchronized Snapshot getSnapshot() {
+        List<GroupStats> stats = new ArrayList<>(groupQueues.size());
+        for (GroupQueue queue : new TreeMap<>(groupQueues).values()) {
+            stats.add(new GroupStats(queue.sourceId, queue.events.size(), queue.maxDepth, queue.submittedCount,
+                    queue.dispatchedCount, queue.rejectedCount, queue.totalWaitNanos, queue.maxWaitNanos));
+        }
+        return new Snapshot(runningEvents.size(), concurrency, queuedCount, totalCapacity, stats);
+    }
+
+    /**
+     * 事件提交结果
+     */
+    public enum SubmitResult {
+        /**
+         * 已立即分派执行
+         */
+        DISPATCHED,
+        /**
+         * 已进入队列等待
+         */
+        QUEUED,
+        /**
+         * 事件来源的队列已满, 已拒绝
+         */
+        GROUP_QUEUE_FULL,
+        /**
+         * 等待中的事件总数已达上限, 已拒绝
+         */
+        QUEUE_FULL;
+
+        /**
+         * 事件是否被接受
+         */
+        public boolean isAccepted() {
+            return this == DISPATCHED || this == QUEUED;
+        }
+    }
+
+    private final static class QueuedEvent {
+        private final MessageEvent event;
+        private final long enqueueTime;
+
+        private QueuedEvent(MessageEvent event, long enqueueTime) {
+            this.event = event;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+
+    private final static class GroupQueue {
+        private final long sourceId;
+        private final Deque<QueuedEvent> events = new ArrayDeque<>();
+        private int weight = 1;
+        private int deficit = 0;
+        private boolean inRound = false;
+
+        private int maxDepth;
+        private long submittedCount;
+        private long dispatchedCount;
+        private long rejectedCount;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+
+        private GroupQueue(long sourceId) {
+            this.sourceId = sourceId;
+        }
+
+        private void recordDispatch(long waitNanos) {
+            dispatchedCount++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        }
+    }
+
+    /**
+     * 调度器统计信息快照
+     */
+    public final static class Snapshot {
+        private final int runningCount;
+        private final int concurrency;
+        private final int queuedCount;
+        private final int totalCapacity;
+        private final List<GroupStats> groupStats;
+
+        private Snapshot(int runningCount, int concurrency, int queuedCount, int totalCapacity,
+                         List<GroupStats> groupStats) {
+            this.runningCount = runningCount;
+            this.concurrency = concurrency;
+            this.queuedCount = queuedCount;
+            this.totalCapacity = totalCapacity;
+            this.groupStats = Collections.unmodifiableList(groupStats);
+        }
+
+        public int getRunningCount() {
+            return runningCount;
+        }
+
+        public int getQueuedCount() {
+            return queuedCount;
+        }
+
+        /**
+         * 获取各来源的统计信息, 按来源Id排序
+         */
+        public List<GroupStats> getGroupStats() {
+            return groupStats;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(String.format("执行中 %d/%d, 等待中 %d/%d",
+                    runningCount, concurrency, queuedCount, totalCapacity));
+            for (GroupStats stats : groupStats) {
+                builder.append('\n').append(stats);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * 单个来源的队列统计信息
+     */
+    public final static class GroupStats {
+        private final long sourceId;
+        private final int depth;
+        private final int maxDepth;
+        private final long submittedCount;
+        private final long dispatchedCount;
+        private final long rejectedCount;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        private GroupStats(long sourceId, int depth, int maxDepth, long submittedCount, long dispatchedCount,
+                           long rejectedCount, long totalWaitNanos, long maxWaitNanos) {
+            this.sourceId = sourceId;
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.submittedCount = submittedCount;
+            this.dispatchedCount = dispatchedCount;
+            this.rejectedCount = rejectedCount;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        /**
+         * 获取来源Id, 群组消息为群组号, 私聊消息为发送者QQ号的相反数
+         */
+        public long getSourceId() {
+            return sourceId;
+        }
+
+        /**
+         * 获取当前等待中的事件数
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * 获取等待事件数的历史最大值
+         */
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        public long getSubmittedCount() {
+            return submittedCount;
+        }
+
+        public long getDispatchedCount() {
+            return dispatchedCount;
+        }
+
+        /**
+         * 获取因队列已满被拒绝的事件数
+         */
+        public long getRejectedCount() {
+            return rejectedCount;
+        }
+
+        /**
+         * 获取平均等待时间
+         * @return 平均等待时间, 单位毫秒, 没有记录时返回0
+         */
+        public double getAverageWaitMillis() {
+            return dispatchedCount == 0 ? 0 : totalWaitNanos / 1e6 / dispatchedCount;
+        }
+
+        /**
+         * 获取最长等待时间, 单位毫秒
+         */
+        public double getMaxWaitMillis() {
+            return maxWaitNanos / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %d: 等待中 %d(最多 %d), 提交 %d, 执行 %d, 拒绝 %d, 平均等待 %.2fms, 最长等待 %.2fms",
+                    sourceId > 0 ? "群组" : "私聊", Math.abs(sourceId), depth, maxDepth, submittedCount,
+                    dispatchedCount, rejectedCount, getAverageWaitMillis(), getMaxWaitMillis());
+        }
+    }
+
+}
@@ -3,9 +3,9 @@ package net.lamgc.cgj.bot.framework.mirai.message;
 import com.google.common.base.Strings;
 import net.lamgc.cgj.bot.BotCode;
 import net.lamgc.cgj.bot.boot.BotGlobal;
+import net.lamgc.cgj.bot.cache.BoundedLocalCacheStore;
 import net.lamgc.cgj.bot.cache.CacheStore;
 import net.lamgc.cgj.bot.cache.HotDataCacheStore;
-import net.lamgc.cgj.bot.cache.LocalHashCacheStore;
 import net.lamgc.cgj.bot.cache.StringRedisCacheStore;
 import net.lamgc.cgj.bot.message.MessageSender;
 import net.lamgc.cgj.bot.message.MessageSource;
@@ -29,7 +29,7 @@ public class MiraiMessageSender implements MessageSender {
     private final static Logger log = LoggerFactory.getLogger(MiraiMessageSender.class);
     private final static CacheStore<String> imageIdCache = new HotDataCacheStore<>(
             new StringRedisCacheStore(BotGlobal.getGlobal().getRedisServer(), "mirai.imageId"),
-            new LocalHashCacheStore<>(),
+            new BoundedLocalCacheStore<>(16384, 4 * 1024 * 1024, BoundedLocalCacheStore.Weigher.stringWeigher()),
             5400000, 1800000, true);
 
     /**
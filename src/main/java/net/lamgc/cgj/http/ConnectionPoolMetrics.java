@@ -0,0 +1,207 @@
+package net.lamgc.cgj.http;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接池统计信息.
+ * <p>按目标主机(主机名和端口)统计从连接池获取连接的次数, 等待时间, 需要排队等待的次数(连接池已饱和)和获取超时的次数.</p>
+ */
+public final class ConnectionPoolMetrics {
+
+    private final Map<String, HostCounter> counters = new ConcurrentHashMap<>();
+
+    ConnectionPoolMetrics() {}
+
+    /**
+     * 记录一次成功获取连接
+     * @param host 目标主机
+     * @param waitNanos 等待时间, 单位纳秒
+     * @param saturated 获取时连接池是否已饱和
+     */
+    void recordLease(HttpHost host, long waitNanos, boolean saturated) {
+        HostCounter counter = getCounter(host);
+        counter.leaseCount.increment();
+        counter.waitNanos.add(waitNanos);
+        counter.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        if(saturated) {
+            counter.saturatedCount.increment();
+        }
+    }
+
+    /**
+     * 记录一次获取连接超时
+     * @param host 目标主机
+     * @param waitNanos 等待时间, 单位纳秒
+     */
+    void recordLeaseTimeout(HttpHost host, long waitNanos) {
+        HostCounter counter = getCounter(host);
+        counter.timeoutCount.increment();
+        counter.waitNanos.add(waitNanos);
+        counter.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private HostCounter getCounter(HttpHost host) {
+        return counters.computeIfAbsent(host.toHostString(), key -> new HostCounter());
+    }
+
+    /**
+     * 生成统计信息快照, 并附带各主机在连接池中的当前连接状态
+     * @param connectionManager 连接池
+     * @return 返回快照
+     */
+    Snapshot snapshot(PoolingHttpClientConnectionManager connectionManager) {
+        Map<String, PoolStats> poolStats = new HashMap<>();
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            PoolStats stats = connectionManager.getStats(route);
+            poolStats.merge(route.getTargetHost().toHostString(), stats, (a, b) -> new PoolStats(
+                    a.getLeased() + b.getLeased(), a.getPending() + b.getPending(),
+                    a.getAvailable() + b.getAvailable(), a.getMax() + b.getMax()));
+        }
+        Set<String> hosts = new TreeSet<>(counters.keySet());
+        hosts.addAll(poolStats.keySet());
+        List<HostStats> hostStats = new ArrayList<>(hosts.size());
+        for (String host : hosts) {
+            HostCounter counter = counters.get(host);
+            PoolStats stats = poolStats.getOrDefault(host, new PoolStats(0, 0, 0, 0));
+            hostStats.add(counter == null ?
+                    new HostStats(host, 0, 0, 0, 0, 0, stats) :
+                    new HostStats(host, counter.leaseCount.sum(), counter.saturatedCount.sum(),
+                            counter.timeoutCount.sum(), counter.waitNanos.sum(), counter.maxWaitNanos.get(), stats));
+        }
+        return new Snapshot(connectionManager.getTotalStats(), hostStats);
+    }
+
+    private final static class HostCounter {
+        private final LongAdder leaseCount = new LongAdder();
+        private final LongAdder saturatedCount = new LongAdder();
+        private final LongAdder timeoutCount = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+    }
+
+    /**
+     * 连接池统计信息快照
+     */
+    public final static class Snapshot {
+        private final PoolStats totalStats;
+        private final List<HostStats> hostStats;
+
+        private Snapshot(PoolStats totalStats, List<HostStats> hostStats) {
+            this.totalStats = totalStats;
+            this.hostStats = Collections.unmodifiableList(hostStats);
+        }
+
+        /**
+         * 获取整个连接池的当前连接状态
+         */
+        public PoolStats getTotalStats() {
+            return totalStats;
+        }
+
+        /**
+         * 获取各主机的统计信息, 按主机名排序
+         */
+        public List<HostStats> getHostStats() {
+            return hostStats;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(String.format("连接池: 使用中 %d, 空闲 %d, 等待中 %d, 上限 %d",
+                    totalStats.getLeased(), totalStats.getAvailable(), totalStats.getPending(), totalStats.getMax()));
+            for (HostStats stats : hostStats) {
+                builder.append('\n').append(stats);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * 单个主机的统计信息
+     */
+    public final static class HostStats {
+        private final String host;
+        private final long leaseCount;
+        private final long saturatedCount;
+        private final long timeoutCount;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+        private final PoolStats poolStats;
+
+        private HostStats(String host, long leaseCount, long saturatedCount, long timeoutCount,
+                          long totalWaitNanos, long maxWaitNanos, PoolStats poolStats) {
+            this.host = host;
+            this.leaseCount = leaseCount;
+            this.saturatedCount = saturatedCount;
+            this.timeoutCount = timeoutCount;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.poolStats = poolStats;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        /**
+         * 获取成功获取连接的次数
+         */
+        public long getLeaseCount() {
+            return leaseCount;
+        }
+
+        /**
+         * 获取连接池已饱和, 需要排队等待连接的次数
+         */
+        public long getSaturatedCount() {
+            return saturatedCount;
+        }
+
+        /**
+         * 获取等待连接超时的次数
+         */
+        public long getTimeoutCount() {
+            return timeoutCount;
+        }
+
+        /**
+         * 获取平均等待时间
+         * @return 平均等待时间, 单位毫秒, 没有记录时返回0
+         */
+        public double getAverageWaitMillis() {
+            long count = leaseCount + timeoutCount;
+            return count == 0 ? 0 : totalWaitNanos / 1e6 / count;
+        }
+
+        /**
+         * 获取最长等待时间, 单位毫秒
+         */
+        public double getMaxWaitMillis() {
+            return maxWaitNanos / 1e6;
+        }
+
+        /**
+         * 获取该主机在连接池中的当前连接状态
+         */
+        public PoolStats getPoolStats() {
+            return poolStats;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: 获取连接 %d 次, 排队 %d 次, 超时 %d 次, 平均等待 %.2fms, 最长等待 %.2fms, " +
+                            "使用中 %d/%d, 等待中 %d",
+                    host, leaseCount, saturatedCount, timeoutCount, getAverageWaitMillis(), getMaxWaitMillis(),
+                    poolStats.getLeased(), poolStats.getMax(), poolStats.getPending());
+        }
+    }
+
+}
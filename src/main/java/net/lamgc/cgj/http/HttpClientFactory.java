@@ -0,0 +1,167 @@
+package net.lamgc.cgj.http;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Http客户端工厂.
+ * <p>所有通过本工厂创建的 {@link HttpClient} 共享同一个连接池, 连接池按路由(目标主机, 代理)限制连接数,
+ * 连接在服务端允许的时间内保持复用, 空闲连接由后台线程定期关闭. 默认启用 gzip 压缩.</p>
+ * <p>连接池及超时等参数通过以下全局配置项设置, 配置项在启动时由 {@link net.lamgc.cgj.bot.boot.ApplicationBoot}
+ * 存入对应的系统属性("cgj." + 配置项key), 也可直接设置系统属性:</p>
+ * <ul>
+ *     <li>{@code http.maxTotal}: 连接池最大连接数, 默认64</li>
+ *     <li>{@code http.maxPerRoute}: 每个路由的最大连接数, 默认16</li>
+ *     <li>{@code http.connectTimeout}: 连接超时, 单位毫秒, 默认10000</li>
+ *     <li>{@code http.socketTimeout}: 读取超时, 单位毫秒, 默认30000</li>
+ *     <li>{@code http.leaseTimeout}: 从连接池获取连接的超时, 单位毫秒, 默认30000</li>
+ *     <li>{@code http.keepAlive}: 服务端未指定时连接的保持时间, 单位毫秒, 默认60000</li>
+ *     <li>{@code http.idleTimeout}: 空闲连接的最长保留时间, 单位毫秒, 默认30000</li>
+ * </ul>
+ */
+public final class HttpClientFactory {
+
+    private final static Logger log = LoggerFactory.getLogger(HttpClientFactory.class);
+
+    private final static int MAX_TOTAL = Integer.getInteger("cgj.http.maxTotal", 64);
+    private final static int MAX_PER_ROUTE = Integer.getInteger("cgj.http.maxPerRoute", 16);
+    private final static int CONNECT_TIMEOUT = Integer.getInteger("cgj.http.connectTimeout", 10000);
+    private final static int SOCKET_TIMEOUT = Integer.getInteger("cgj.http.socketTimeout", 30000);
+    private final static int LEASE_TIMEOUT = Integer.getInteger("cgj.http.leaseTimeout", 30000);
+    private final static long KEEP_ALIVE = Long.getLong("cgj.http.keepAlive", 60000);
+    private final static long IDLE_TIMEOUT = Long.getLong("cgj.http.idleTimeout", 30000);
+
+    private final static ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+
+    private final static MeteredConnectionManager connectionManager = new MeteredConnectionManager();
+
+    private final static RequestConfig defaultRequestConfig = RequestConfig.custom()
+            .setConnectTimeout(CONNECT_TIMEOUT)
+            .setSocketTimeout(SOCKET_TIMEOUT)
+            .setConnectionRequestTimeout(LEASE_TIMEOUT)
+            .build();
+
+    private final static ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+        HeaderElementIterator iterator = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+        while(iterator.hasNext()) {
+            HeaderElement element = iterator.nextElement();
+            if("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                try {
+                    return Long.parseLong(element.getValue()) * 1000;
+                } catch (NumberFormatException ignored) {
+                    // 使用默认保持时间
+                }
+            }
+        }
+        return KEEP_ALIVE;
+    };
+
+    private final static HttpClient defaultClient = builder().build();
+
+    static {
+        connectionManager.setMaxTotal(MAX_TOTAL);
+        connectionManager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        connectionManager.setValidateAfterInactivity(2000);
+        IdleConnectionEvictor evictor = new IdleConnectionEvictor(connectionManager,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("HttpIdleConnectionEvictor-%d")
+                        .setDaemon(true)
+                        .build(),
+                Math.max(IDLE_TIMEOUT / 2, 1000), TimeUnit.MILLISECONDS,
+                IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+        evictor.start();
+        Thread shutdownThread = new Thread(() -> {
+            evictor.shutdown();
+            connectionManager.shutdown();
+        });
+        shutdownThread.setName("Thread-HttpConnectionPoolShutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownThread);
+        log.debug("Http连接池已初始化(MaxTotal: {}, MaxPerRoute: {})", MAX_TOTAL, MAX_PER_ROUTE);
+    }
+
+    private HttpClientFactory() {}
+
+    /**
+     * 创建使用共享连接池的 {@link HttpClientBuilder}.
+     * <p>返回的构造器已设置连接池, 超时, 连接保持策略, 调用方可继续设置代理, Cookie和默认请求头等.
+     * 由于连接池是共享的, 关闭构造出的客户端不会关闭连接池.</p>
+     * @return 返回HttpClientBuilder对象
+     */
+    public static HttpClientBuilder builder() {
+        return HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(defaultRequestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy);
+    }
+
+    /**
+     * 获取不带代理和Cookie的默认客户端
+     */
+    public static HttpClient getDefaultClient() {
+        return defaultClient;
+    }
+
+    /**
+     * 获取各主机当前的连接池统计信息快照
+     */
+    public static ConnectionPoolMetrics.Snapshot getMetricsSnapshot() {
+        return metrics.snapshot(connectionManager);
+    }
+
+    /**
+     * 记录连接获取等待时间的连接池
+     */
+    private final static class MeteredConnectionManager extends PoolingHttpClientConnectionManager {
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            ConnectionRequest request = super.requestConnection(route, state);
+            HttpHost targetHost = route.getTargetHost();
+            return new ConnectionRequest() {
+                @Override
+                public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    PoolStats stats = getStats(route);
+                    // 所有连接都已被占用, 本次获取必须等待其他请求归还连接
+                    boolean saturated = stats.getLeased() + stats.getPending() >= stats.getMax();
+                    long startTime = System.nanoTime();
+                    try {
+                        HttpClientConnection connection = request.get(timeout, timeUnit);
+                        metrics.recordLease(targetHost, System.nanoTime() - startTime, saturated);
+                        return connection;
+                    } catch (ConnectionPoolTimeoutException e) {
+                        metrics.recordLeaseTimeout(targetHost, System.nanoTime() - startTime);
+                        throw e;
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,336 @@
+package net.lamgc.cgj.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * APNG动图写入器.
+ * <p>以24位真彩色(不含Alpha通道)依次写入帧, 每帧可以只覆盖画布中的一部分(子矩形帧),
+ * 帧的处置方式固定为"保留", 混合方式为"覆盖", 即子矩形区域直接替换画布中的像素.</p>
+ * <p>帧数据的过滤和压缩可以通过 {@link #encode(int[], int, int, int, int, int, int, boolean)} 在其他线程中提前完成,
+ * 写入器只负责按顺序写入数据块. 写入器不是线程安全的, 帧须按顺序写入.</p>
+ */
+public final class ApngWriter {
+
+    private final static byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    /**
+     * 单个图像数据块的最大长度, 较大的帧将拆分为多个数据块
+     */
+    private final static int MAX_CHUNK_LENGTH = 1024 * 1024;
+
+    private final static int BYTES_PER_PIXEL = 3;
+
+    private final OutputStream output;
+    private final int width;
+    private final int height;
+    private final int frameCount;
+    private final CRC32 crc = new CRC32();
+
+    private int writtenFrames = 0;
+    private int sequenceNumber = 0;
+    private int originRgb = 0;
+    private boolean finished = false;
+
+    /**
+     * 构造写入器, 并写入文件头
+     * @param output 输出流, 写入器不会关闭该流
+     * @param width 画布宽度
+     * @param height 画布高度
+     * @param frameCount 帧数, APNG须在文件头中声明帧数, 实际写入的帧数不能超过该值
+     * @param playCount 播放次数, 0为无限循环
+     * @throws IOException 写入失败时抛出
+     */
+    public ApngWriter(OutputStream output, int width, int height, int frameCount, int playCount) throws IOException {
+        if(width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid canvas size: " + width + "x" + height);
+        }
+        if(frameCount <= 0) {
+            throw new IllegalArgumentException("frameCount must be greater than 0: " + frameCount);
+        }
+        this.output = Objects.requireNonNull(output);
+        this.width = width;
+        this.height = height;
+        this.frameCount = frameCount;
+
+        output.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        // 位深度8, 颜色类型2(真彩色), 标准压缩和过滤方式, 不交错
+        header[8] = 8;
+        header[9] = 2;
+        writeChunk("IHDR", header, 0, header.length);
+        byte[] animationControl = new byte[8];
+        putInt(animationControl, 0, frameCount);
+        putInt(animationControl, 4, Math.max(playCount, 0));
+        writeChunk("acTL", animationControl, 0, animationControl.length);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 过滤并压缩图像中的一个矩形区域, 得到可写入的帧数据.
+     * <p>本方法没有状态, 可以在多个线程中同时调用.</p>
+     * @param rgb 按行排列的RGB像素
+     * @param scanWidth 源图像宽度
+     * @param left 区域左边界
+     * @param top 区域上边界
+     * @param width 区域宽度
+     * @param height 区域高度
+     * @param compressionLevel 压缩等级, 见 {@link Deflater}
+     * @param adaptiveFilter 是否为每行选择最合适的过滤方式, 为false时所有行均使用Sub过滤
+     * @return 返回帧数据
+     */
+    public static EncodedFrame encode(int[] rgb, int scanWidth, int left, int top, int width, int height,
+                                      int compressionLevel, boolean adaptiveFilter) {
+        int rowLength = width * BYTES_PER_PIXEL;
+        byte[] previousRow = new byte[rowLength];
+        byte[] currentRow = new byte[rowLength];
+        byte[][] filteredRows = new byte[adaptiveFilter ? 5 : 1][rowLength + 1];
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(rowLength * height / 4, 1024));
+        Deflater deflater = new Deflater(compressionLevel);
+        try (DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(compressed, deflater, 64 * 1024)) {
+            for (int y = top; y < top + height; y++) {
+                int offset = y * scanWidth + left;
+                for (int x = 0, i = 0; x < width; x++) {
+                    int pixel = rgb[offset + x];
+                    currentRow[i++] = (byte) (pixel >> 16);
+                    currentRow[i++] = (byte) (pixel >> 8);
+                    currentRow[i++] = (byte) pixel;
+                }
+                byte[] filtered = adaptiveFilter ?
+                        filterAdaptive(currentRow, previousRow, y == top, filteredRows) :
+                        filter(1, currentRow, previousRow, filteredRows[0]);
+                deflaterOutput.write(filtered);
+                byte[] swap = previousRow;
+                previousRow = currentRow;
+                currentRow = swap;
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream不会抛出IOException
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+        return new EncodedFrame(width, height, rgb[top * scanWidth + left] & 0xFFFFFF, compressed.toByteArray());
+    }
+
+    /**
+     * 分别尝试五种过滤方式, 选出过滤后字节绝对值之和最小的一种
+     */
+    private static byte[] filterAdaptive(byte[] row, byte[] previousRow, boolean firstRow, byte[][] filteredRows) {
+        byte[] best = null;
+        long bestSum = Long.MAX_VALUE;
+        // 第一行没有上一行, Up与None相同, Average和Paeth与Sub相近, 只比较None和Sub
+        int filterCount = firstRow ? 2 : 5;
+        for (int type = 0; type < filterCount; type++) {
+            byte[] filtered = filter(type, row, previousRow, filteredRows[type]);
+            long sum = 0;
+            for (int i = 1; i < filtered.length; i++) {
+                sum += Math.abs(filtered[i]);
+            }
+            if(sum < bestSum) {
+                best = filtered;
+                bestSum = sum;
+            }
+        }
+        return best;
+    }
+
+    private static byte[] filter(int type, byte[] row, byte[] previousRow, byte[] filtered) {
+        filtered[0] = (byte) type;
+        for (int i = 0; i < row.length; i++) {
+            int current = row[i] & 0xFF;
+            int leftValue = i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 0xFF : 0;
+            int up = previousRow[i] & 0xFF;
+            int predictor;
+            switch (type) {
+                case 1:
+                    predictor = leftValue;
+                    break;
+                case 2:
+                    predictor = up;
+                    break;
+                case 3:
+                    predictor = (leftValue + up) >> 1;
+                    break;
+                case 4:
+                    int upLeft = i >= BYTES_PER_PIXEL ? previousRow[i - BYTES_PER_PIXEL] & 0xFF : 0;
+                    predictor = paeth(leftValue, up, upLeft);
+                    break;
+                default:
+                    predictor = 0;
+                    break;
+            }
+            filtered[i + 1] = (byte) (current - predictor);
+        }
+        return filtered;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if(pa <= pb && pa <= pc) {
+            return a;
+        } else if(pb <= pc) {
+            return b;
+        }
+        return c;
+    }
+
+    /**
+     * 写入一帧.
+     * <p>第一帧须覆盖整个画布.</p>
+     * @param frame 由 {@link #encode(int[], int, int, int, int, int, int, boolean)} 得到的帧数据
+     * @param left 帧在画布中的左边界
+     * @param top 帧在画布中的上边界
+     * @param delayMillis 帧的显示时间, 单位毫秒
+     * @throws IOException 写入失败时抛出
+     */
+    public void writeFrame(EncodedFrame frame, int left, int top, long delayMillis) throws IOException {
+        Objects.requireNonNull(frame);
+        if(finished) {
+            throw new IllegalStateException("ApngWriter has been finished");
+        } else if(writtenFrames >= frameCount) {
+            throw new IllegalStateException("Frame count exceeds the declared count: " + frameCount);
+        }
+        if(left < 0 || top < 0 || left + frame.width > width || top + frame.height > height) {
+            throw new IllegalArgumentException("Frame is out of canvas: " + left + "," + top + " " +
+                    frame.width + "x" + frame.height);
+        } else if(writtenFrames == 0 && (left != 0 || top != 0 || frame.width != width || frame.height != height)) {
+            throw new IllegalArgumentException("The first frame must cover the whole canvas");
+        }
+
+        byte[] frameControl = new byte[26];
+        putInt(frameControl, 0, sequenceNumber++);
+        putInt(frameControl, 4, frame.width);
+        putInt(frameControl, 8, frame.height);
+        putInt(frameControl, 12, left);
+        putInt(frameControl, 16, top);
+        long delay = Math.max(delayMillis, 0);
+        if(delay <= 0xFFFF) {
+            putShort(frameControl, 20, (int) delay);
+            putShort(frameControl, 22, 1000);
+        } else {
+            putShort(frameControl, 20, (int) Math.min(delay / 10, 0xFFFF));
+            putShort(frameControl, 22, 100);
+        }
+        // 处置方式: 保留(0), 混合方式: 覆盖(0)
+        writeChunk("fcTL", frameControl, 0, frameControl.length);
+
+        byte[] data = frame.data;
+        for (int offset = 0; offset < data.length || offset == 0; offset += MAX_CHUNK_LENGTH) {
+            int length = Math.min(data.length - offset, MAX_CHUNK_LENGTH);
+            if(writtenFrames == 0) {
+                writeChunk("IDAT", data, offset, length);
+            } else {
+                byte[] frameData = new byte[length + 4];
+                putInt(frameData, 0, sequenceNumber++);
+                System.arraycopy(data, offset, frameData, 4, length);
+                writeChunk("fdAT", frameData, 0, frameData.length);
+            }
+        }
+        if(left == 0 && top == 0) {
+            originRgb = frame.originRgb;
+        }
+        writtenFrames++;
+    }
+
+    /**
+     * 写入文件结束标记.
+     * <p>实际写入的帧数少于声明的帧数时(例如压缩包中缺少部分帧), 将补充不改变画面且不占用显示时间的空白帧.
+     * 写入器不会关闭输出流.</p>
+     * @throws IOException 写入失败时抛出
+     */
+    public void finish() throws IOException {
+        if(finished) {
+            return;
+        } else if(writtenFrames == 0) {
+            throw new IllegalStateException("No frame has been written");
+        }
+        if(writtenFrames < frameCount) {
+            EncodedFrame padding = encode(new int[] {originRgb}, 1, 0, 0, 1, 1, Deflater.BEST_SPEED, false);
+            while(writtenFrames < frameCount) {
+                writeFrame(padding, 0, 0, 0);
+            }
+        }
+        finished = true;
+        writeChunk("IEND", new byte[0], 0, 0);
+        output.flush();
+    }
+
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] lengthBytes = new byte[4];
+        putInt(lengthBytes, 0, length);
+        output.write(lengthBytes);
+        output.write(typeBytes);
+        output.write(data, offset, length);
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        byte[] crcBytes = new byte[4];
+        putInt(crcBytes, 0, (int) crc.getValue());
+        output.write(crcBytes);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private static void putShort(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 8);
+        buffer[offset + 1] = (byte) value;
+    }
+
+    /**
+     * 已过滤和压缩的帧数据
+     */
+    public final static class EncodedFrame {
+        private final int width;
+        private final int height;
+        private final int originRgb;
+        private final byte[] data;
+
+        private EncodedFrame(int width, int height, int originRgb, byte[] data) {
+            this.width = width;
+            this.height = height;
+            this.originRgb = originRgb;
+            this.data = data;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * 获取压缩后的数据长度
+         */
+        public int getDataLength() {
+            return data.length;
+        }
+    }
+
+}
@@ -0,0 +1,274 @@
+package net.lamgc.cgj.image;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * GIF动图写入器.
+ * <p>按GIF89a格式依次写入已量化的帧, 每帧使用局部调色板, 可以只覆盖画布中的一部分(子矩形帧),
+ * 并可指定透明色. 帧的处置方式固定为"保留"(Do not dispose), 即后一帧绘制在前一帧之上.</p>
+ * <p>写入器不是线程安全的, 帧须按顺序写入.</p>
+ */
+public final class GifWriter {
+
+    private final OutputStream output;
+    private final int width;
+    private final int height;
+    private final LzwEncoder lzwEncoder = new LzwEncoder();
+
+    private boolean finished = false;
+
+    /**
+     * 构造写入器, 并写入文件头
+     * @param output 输出流, 写入器不会关闭该流
+     * @param width 画布宽度
+     * @param height 画布高度
+     * @param loopCount 循环次数, 0为无限循环, 小于0则不循环
+     * @throws IOException 写入失败时抛出
+     */
+    public GifWriter(OutputStream output, int width, int height, int loopCount) throws IOException {
+        if(width <= 0 || height <= 0 || width > 0xFFFF || height > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid canvas size: " + width + "x" + height);
+        }
+        this.output = Objects.requireNonNull(output);
+        this.width = width;
+        this.height = height;
+
+        writeAscii("GIF89a");
+        // 逻辑屏幕描述符, 不使用全局调色板
+        writeShort(width);
+        writeShort(height);
+        output.write(0);
+        output.write(0);
+        output.write(0);
+        if(loopCount >= 0) {
+            // NETSCAPE2.0 循环扩展
+            output.write(0x21);
+            output.write(0xFF);
+            output.write(11);
+            writeAscii("NETSCAPE2.0");
+            output.write(3);
+            output.write(1);
+            writeShort(Math.min(loopCount, 0xFFFF));
+            output.write(0);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 写入一帧
+     * @param image 帧图像
+     * @param left 帧在画布中的左边界
+     * @param top 帧在画布中的上边界
+     * @param delayMillis 帧的显示时间, 单位毫秒, 将按GIF格式取整到10毫秒
+     * @throws IOException 写入失败时抛出
+     */
+    public void writeFrame(IndexedImage image, int left, int top, long delayMillis) throws IOException {
+        Objects.requireNonNull(image);
+        if(finished) {
+            throw new IllegalStateException("GifWriter has been finished");
+        }
+        if(left < 0 || top < 0 || left + image.getWidth() > width || top + image.getHeight() > height) {
+            throw new IllegalArgumentException("Frame is out of canvas: " + left + "," + top + " " +
+                    image.getWidth() + "x" + image.getHeight());
+        }
+        int[] palette = image.getPalette();
+        int tableBits = 1;
+        while((1 << tableBits) < palette.length) {
+            tableBits++;
+        }
+
+        // 图形控制扩展
+        output.write(0x21);
+        output.write(0xF9);
+        output.write(4);
+        int transparentIndex = image.getTransparentIndex();
+        output.write((1 << 2) | (transparentIndex >= 0 ? 1 : 0));
+        writeShort((int) Math.min(Math.max(Math.round(delayMillis / 10D), 0), 0xFFFF));
+        output.write(Math.max(transparentIndex, 0));
+        output.write(0);
+
+        // 图像描述符, 使用局部调色板
+        output.write(0x2C);
+        writeShort(left);
+        writeShort(top);
+        writeShort(image.getWidth());
+        writeShort(image.getHeight());
+        output.write(0x80 | (tableBits - 1));
+        byte[] colorTable = new byte[3 << tableBits];
+        for (int i = 0; i < palette.length; i++) {
+            colorTable[i * 3] = (byte) (palette[i] >> 16);
+            colorTable[i * 3 + 1] = (byte) (palette[i] >> 8);
+            colorTable[i * 3 + 2] = (byte) palette[i];
+        }
+        output.write(colorTable);
+
+        lzwEncoder.encode(image.getIndices(), Math.max(tableBits, 2), output);
+    }
+
+    /**
+     * 写入文件结束标记.
+     * <p>写入器不会关闭输出流.</p>
+     * @throws IOException 写入失败时抛出
+     */
+    public void finish() throws IOException {
+        if(!finished) {
+            finished = true;
+            output.write(0x3B);
+            output.flush();
+        }
+    }
+
+    private void writeShort(int value) throws IOException {
+        output.write(value & 0xFF);
+        output.write((value >> 8) & 0xFF);
+    }
+
+    private void writeAscii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            output.write(value.charAt(i));
+        }
+    }
+
+    /**
+     * GIF LZW编码器, 使用开放寻址的散列表查找字符串前缀
+     */
+    private final static class LzwEncoder {
+
+        private final static int MAX_BITS = 12;
+        private final static int MAX_CODE = 1 << MAX_BITS;
+        private final static int HASH_SIZE = 5003;
+
+        private final int[] hashTable = new int[HASH_SIZE];
+        private final int[] codeTable = new int[HASH_SIZE];
+        private final byte[] block = new byte[256];
+
+        private OutputStream output;
+        private int blockLength;
+        private int bitBuffer;
+        private int bitCount;
+        private int initBits;
+        private int codeBits;
+        private int maxCode;
+        private int clearCode;
+        private int nextCode;
+        private boolean clearFlag;
+
+        private void encode(byte[] indices, int minCodeSize, OutputStream output) throws IOException {
+            this.output = output;
+            output.write(minCodeSize);
+            blockLength = 0;
+            bitBuffer = 0;
+            bitCount = 0;
+            initBits = minCodeSize + 1;
+            codeBits = initBits;
+            maxCode = (1 << codeBits) - 1;
+            clearCode = 1 << minCodeSize;
+            nextCode = clearCode + 2;
+            clearFlag = false;
+            Arrays.fill(hashTable, -1);
+
+            int hashShift = 0;
+            for (int size = HASH_SIZE; size < 65536; size *= 2) {
+                hashShift++;
+            }
+            hashShift = 8 - hashShift;
+
+            writeCode(clearCode);
+            int prefix = indices[0] & 0xFF;
+            for (int p = 1; p < indices.length; p++) {
+                int c = indices[p] & 0xFF;
+                int key = (c << MAX_BITS) + prefix;
+                int i = (c << hashShift) ^ prefix;
+                if(hashTable[i] == key) {
+                    prefix = codeTable[i];
+                    continue;
+                } else if(hashTable[i] >= 0) {
+                    int displacement = i == 0 ? 1 : HASH_SIZE - i;
+                    boolean found = false;
+                    do {
+                        i -= displacement;
+                        if(i < 0) {
+                            i += HASH_SIZE;
+                        }
+                        if(hashTable[i] == key) {
+                            found = true;
+                            break;
+                        }
+                    } while(hashTable[i] >= 0);
+                    if(found) {
+                        prefix = codeTable[i];
+                        continue;
+                    }
+                }
+                writeCode(prefix);
+                prefix = c;
+                if(nextCode < MAX_CODE) {
+                    codeTable[i] = nextCode++;
+                    hashTable[i] = key;
+                } else {
+                    // 编码表已满, 清空后重新开始
+                    Arrays.fill(hashTable, -1);
+                    nextCode = clearCode + 2;
+                    clearFlag = true;
+                    writeCode(clearCode);
+                }
+            }
+            writeCode(prefix);
+            writeCode(clearCode + 1);
+            if(bitCount > 0) {
+                writeByte(bitBuffer & 0xFF);
+                bitBuffer = 0;
+                bitCount = 0;
+            }
+            flushBlock();
+            output.write(0);
+            this.output = null;
+        }
+
+        private void writeCode(int code) throws IOException {
+            bitBuffer |= code << bitCount;
+            bitCount += codeBits;
+            while(bitCount >= 8) {
+                writeByte(bitBuffer & 0xFF);
+                bitBuffer >>>= 8;
+                bitCount -= 8;
+            }
+            // 解码器在读取下一个编码前增加位数, 编码器需保持一致
+            if(nextCode > maxCode || clearFlag) {
+                if(clearFlag) {
+                    codeBits = initBits;
+                    clearFlag = false;
+                } else {
+                    codeBits++;
+                }
+                maxCode = codeBits == MAX_BITS ? MAX_CODE : (1 << codeBits) - 1;
+            }
+        }
+
+        private void writeByte(int value) throws IOException {
+            block[blockLength++] = (byte) value;
+            if(blockLength == 255) {
+                flushBlock();
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if(blockLength > 0) {
+                output.write(blockLength);
+                output.write(block, 0, blockLength);
+                blockLength = 0;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package net.lamgc.cgj.image;
+
+import java.util.Objects;
+
+/**
+ * 索引色图像.
+ * <p>每个像素以一个字节保存其在调色板中的索引, 调色板最多256种颜色.</p>
+ */
+public final class IndexedImage {
+
+    private final int width;
+    private final int height;
+    private final int[] palette;
+    private final byte[] indices;
+    private final int transparentIndex;
+
+    /**
+     * 构造索引色图像
+     * @param width 宽度
+     * @param height 高度
+     * @param palette 调色板, 每项为RGB颜色(0xRRGGBB), 最多256项
+     * @param indices 按行排列的像素索引, 长度须为 width * height
+     * @param transparentIndex 透明色的索引, 没有透明色时为-1
+     */
+    public IndexedImage(int width, int height, int[] palette, byte[] indices, int transparentIndex) {
+        if(width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+        }
+        Objects.requireNonNull(palette);
+        Objects.requireNonNull(indices);
+        if(palette.length == 0 || palette.length > 256) {
+            throw new IllegalArgumentException("Palette size must be between 1 and 256: " + palette.length);
+        }
+        if(indices.length != width * height) {
+            throw new IllegalArgumentException("Indices length does not match image size: " + indices.length);
+        }
+        if(transparentIndex >= palette.length) {
+            throw new IllegalArgumentException("Transparent index out of palette: " + transparentIndex);
+        }
+        this.width = width;
+        this.height = height;
+        this.palette = palette;
+        this.indices = indices;
+        this.transparentIndex = Math.max(transparentIndex, -1);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 获取调色板, 返回的数组直接引用图像数据
+     */
+    public int[] getPalette() {
+        return palette;
+    }
+
+    /**
+     * 获取像素索引, 返回的数组直接引用图像数据
+     */
+    public byte[] getIndices() {
+        return indices;
+    }
+
+    /**
+     * 获取透明色索引
+     * @return 没有透明色时返回-1
+     */
+    public int getTransparentIndex() {
+        return transparentIndex;
+    }
+
+    /**
+     * 获取指定像素的RGB颜色
+     * @param x 横坐标
+     * @param y 纵坐标
+     * @return 返回RGB颜色(0xRRGGBB), 透明像素返回-1
+     */
+    public int getRgb(int x, int y) {
+        int index = indices[y * width + x] & 0xFF;
+        return index == transparentIndex ? -1 : palette[index];
+    }
+
+}
@@ -0,0 +1,233 @@
+package net.lamgc.cgj.image;
+
+import java.util.Arrays;
+
+/**
+ * 中位切分颜色量化器.
+ * <p>先将像素按每通道5位统计到颜色直方图中, 再反复选出像素最多且颜色跨度最大的颜色盒,
+ * 沿跨度最大的通道在像素数的中位处切分, 直到颜色盒数量达到上限, 每个颜色盒的加权平均色即为调色板中的一项.
+ * 像素映射到其所在颜色盒对应的调色板颜色, 不进行抖动处理.</p>
+ * <p>量化器没有状态, 可以在多个线程中同时使用.</p>
+ */
+public final class MedianCutQuantizer {
+
+    private final static int CHANNEL_BITS = 5;
+    private final static int CHANNEL_SIZE = 1 << CHANNEL_BITS;
+    private final static int HISTOGRAM_SIZE = 1 << (CHANNEL_BITS * 3);
+
+    private final int maxColors;
+
+    /**
+     * 构造量化器
+     * @param maxColors 调色板最大颜色数, 范围为 2 ~ 256
+     */
+    public MedianCutQuantizer(int maxColors) {
+        if(maxColors < 2 || maxColors > 256) {
+            throw new IllegalArgumentException("maxColors must be between 2 and 256: " + maxColors);
+        }
+        this.maxColors = maxColors;
+    }
+
+    /**
+     * 获取调色板最大颜色数
+     */
+    public int getMaxColors() {
+        return maxColors;
+    }
+
+    /**
+     * 量化整幅图像
+     * @param rgb 按行排列的RGB像素
+     * @param width 宽度
+     * @param height 高度
+     * @return 返回量化后的索引色图像
+     */
+    public IndexedImage quantize(int[] rgb, int width, int height) {
+        return quantize(rgb, width, 0, 0, width, height);
+    }
+
+    /**
+     * 量化图像中的一个矩形区域
+     * @param rgb 按行排列的RGB像素
+     * @param scanWidth 源图像宽度
+     * @param left 区域左边界
+     * @param top 区域上边界
+     * @param width 区域宽度
+     * @param height 区域高度
+     * @return 返回量化后的索引色图像, 尺寸为区域尺寸
+     */
+    public IndexedImage quantize(int[] rgb, int scanWidth, int left, int top, int width, int height) {
+        int[] histogram = new int[HISTOGRAM_SIZE];
+        for (int y = top; y < top + height; y++) {
+            int offset = y * scanWidth;
+            for (int x = left; x < left + width; x++) {
+                histogram[toCell(rgb[offset + x])]++;
+            }
+        }
+
+        int colorCount = 0;
+        for (int count : histogram) {
+            if(count != 0) {
+                colorCount++;
+            }
+        }
+        int[] cells = new int[colorCount];
+        for (int cell = 0, i = 0; cell < HISTOGRAM_SIZE; cell++) {
+            if(histogram[cell] != 0) {
+                cells[i++] = cell;
+            }
+        }
+
+        Box[] boxes = split(cells, histogram);
+        int[] palette = new int[boxes.length];
+        // 复用直方图, 保存每个颜色单元对应的调色板索引
+        int[] cellIndex = histogram;
+        for (int i = 0; i < boxes.length; i++) {
+            palette[i] = boxes[i].averageColor(cells, histogram);
+            for (int j = boxes[i].start; j < boxes[i].end; j++) {
+                cellIndex[cells[j]] = i;
+            }
+        }
+
+        byte[] indices = new byte[width * height];
+        int index = 0;
+        for (int y = top; y < top + height; y++) {
+            int offset = y * scanWidth;
+            for (int x = left; x < left + width; x++) {
+                indices[index++] = (byte) cellIndex[toCell(rgb[offset + x])];
+            }
+        }
+        return new IndexedImage(width, height, palette, indices, -1);
+    }
+
+    private Box[] split(int[] cells, int[] histogram) {
+        Box[] boxes = new Box[Math.min(maxColors, Math.max(cells.length, 1))];
+        int boxCount = 1;
+        boxes[0] = new Box(0, cells.length);
+        boxes[0].shrink(cells, histogram);
+        while(boxCount < boxes.length) {
+            Box target = null;
+            long targetScore = 0;
+            for (int i = 0; i < boxCount; i++) {
+                Box box = boxes[i];
+                long score = box.end - box.start > 1 ? box.population * (box.maxRange() + 1L) : 0;
+                if(score > targetScore) {
+                    target = box;
+                    targetScore = score;
+                }
+            }
+            if(target == null) {
+                break;
+            }
+            boxes[boxCount++] = target.splitAtMedian(cells, histogram);
+        }
+        return Arrays.copyOf(boxes, Math.max(boxCount, 1));
+    }
+
+    private static int toCell(int rgb) {
+        return ((rgb >> 9) & 0x7C00) | ((rgb >> 6) & 0x3E0) | ((rgb >> 3) & 0x1F);
+    }
+
+    private static int channel(int cell, int channel) {
+        return (cell >> (CHANNEL_BITS * (2 - channel))) & (CHANNEL_SIZE - 1);
+    }
+
+    /**
+     * 颜色盒, 包含 cells[start, end) 范围内的颜色单元
+     */
+    private final static class Box {
+        private final int start;
+        private int end;
+        private long population;
+        private final int[] min = new int[3];
+        private final int[] max = new int[3];
+
+        private Box(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * 重新计算颜色范围和像素数
+         */
+        private void shrink(int[] cells, int[] histogram) {
+            Arrays.fill(min, CHANNEL_SIZE);
+            Arrays.fill(max, -1);
+            population = 0;
+            for (int i = start; i < end; i++) {
+                int cell = cells[i];
+                population += histogram[cell];
+                for (int c = 0; c < 3; c++) {
+                    int value = channel(cell, c);
+                    min[c] = Math.min(min[c], value);
+                    max[c] = Math.max(max[c], value);
+                }
+            }
+        }
+
+        private int maxRange() {
+            return Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2]));
+        }
+
+        /**
+         * 沿跨度最大的通道在像素数中位处切分, 本颜色盒保留前半部分
+         * @return 返回后半部分的颜色盒
+         */
+        private Box splitAtMedian(int[] cells, int[] histogram) {
+            int axis = 0;
+            for (int c = 1; c < 3; c++) {
+                if(max[c] - min[c] > max[axis] - min[axis]) {
+                    axis = c;
+                }
+            }
+            // 颜色单元按 "切分通道, 其余通道" 的顺序排列
+            int shift = CHANNEL_BITS * (2 - axis);
+            int[] keys = new int[end - start];
+            for (int i = start; i < end; i++) {
+                keys[i - start] = (((cells[i] >> shift) & (CHANNEL_SIZE - 1)) << 15) | cells[i];
+            }
+            Arrays.sort(keys);
+            for (int i = start; i < end; i++) {
+                cells[i] = keys[i - start] & (HISTOGRAM_SIZE - 1);
+            }
+
+            long half = population / 2;
+            long accumulated = 0;
+            int splitIndex = start + 1;
+            for (int i = start; i < end - 1; i++) {
+                accumulated += histogram[cells[i]];
+                splitIndex = i + 1;
+                if(accumulated >= half) {
+                    break;
+                }
+            }
+            Box upper = new Box(splitIndex, end);
+            this.end = splitIndex;
+            this.shrink(cells, histogram);
+            upper.shrink(cells, histogram);
+            return upper;
+        }
+
+        private int averageColor(int[] cells, int[] histogram) {
+            if(population == 0) {
+                return 0;
+            }
+            long r = 0;
+            long g = 0;
+            long b = 0;
+            for (int i = start; i < end; i++) {
+                int cell = cells[i];
+                long count = histogram[cell];
+                r += count * expand(channel(cell, 0));
+                g += count * expand(channel(cell, 1));
+                b += count * expand(channel(cell, 2));
+            }
+            return (int) (r / population) << 16 | (int) (g / population) << 8 | (int) (b / population);
+        }
+
+        private static int expand(int value) {
+            return (value << 3) | (value >> 2);
+        }
+    }
+
+}
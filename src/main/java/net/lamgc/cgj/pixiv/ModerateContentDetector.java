@@ -2,10 +2,10 @@ package net.lamgc.cgj.pixiv;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import net.lamgc.cgj.http.HttpClientFactory;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
@@ -16,7 +16,7 @@ import java.io.IOException;
  */
 public class ModerateContentDetector implements AdultContentDetector {
 
-    private final static HttpClient httpClient = HttpClientBuilder.create().build();
+    private final static HttpClient httpClient = HttpClientFactory.getDefaultClient();
     private final static Gson gson = new Gson();
     private final String requestUrl;
 
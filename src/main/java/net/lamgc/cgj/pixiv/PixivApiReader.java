@@ -0,0 +1,374 @@
+package net.lamgc.cgj.pixiv;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import net.lamgc.cgj.exception.HttpRequestException;
+import org.apache.http.StatusLine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pixiv接口响应的流式解析器.
+ * <p>通过 {@link JsonReader} 直接读取响应内容, 只提取需要的字段,
+ * 不会将响应内容整个读取为字符串, 也不会构建完整的Json树(body 出现在 error 之前时除外).</p>
+ */
+public final class PixivApiReader {
+
+    private final static Gson gson = new Gson();
+
+    private PixivApiReader() {}
+
+    /**
+     * 获取共享的Gson对象.
+     * <p>Gson对象是线程安全的, 无需每次解析时重新创建.</p>
+     */
+    public static Gson getGson() {
+        return gson;
+    }
+
+    /**
+     * 以 UTF-8 编码创建 JsonReader
+     * @param input 响应内容输入流
+     * @return 返回 JsonReader 对象, 关闭该对象将同时关闭输入流
+     */
+    public static JsonReader newReader(InputStream input) {
+        return new JsonReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 读取Pixiv接口标准返回格式的响应
+     * @param input 响应内容, 方法返回后不会关闭
+     * @param bodyReader body 部分的读取方法
+     * @param <T> body 类型
+     * @return 返回接口响应对象
+     * @throws IOException 当读取发生异常, 或响应内容格式不正确时抛出
+     */
+    public static <T> PixivApiResponse<T> readResponse(Reader input, BodyReader<T> bodyReader) throws IOException {
+        JsonReader reader = new JsonReader(input);
+        boolean error = false;
+        boolean errorKnown = false;
+        String message = null;
+        T body = null;
+        JsonElement bufferedBody = null;
+        reader.beginObject();
+        while(reader.hasNext()) {
+            String name = reader.nextName();
+            if(reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "error":
+                    error = reader.nextBoolean();
+                    errorKnown = true;
+                    break;
+                case "message":
+                    message = reader.nextString();
+                    break;
+                case "body":
+                    // 接口报错时 body 通常为空数组, 与正常返回的类型不同;
+                    // body 出现在 error 之前时无法确定类型, 先暂存为Json树, 读取完 error 后再解析
+                    if(!errorKnown) {
+                        bufferedBody = gson.fromJson(reader, JsonElement.class);
+                    } else if(error) {
+                        reader.skipValue();
+                    } else {
+                        body = bodyReader.read(reader);
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if(!error && bufferedBody != null) {
+            body = bodyReader.read(new JsonReader(new StringReader(gson.toJson(bufferedBody))));
+        }
+        return new PixivApiResponse<>(error, message, error ? null : body);
+    }
+
+    /**
+     * 将接口返回的错误转换为 {@link HttpRequestException}
+     * @param statusLine Http状态行
+     * @param response 接口响应
+     * @return 返回异常对象, 异常内容为仅包含 error 和 message 的Json
+     */
+    public static HttpRequestException toRequestException(StatusLine statusLine, PixivApiResponse<?> response) {
+        JsonObject content = new JsonObject();
+        content.addProperty("error", response.isError());
+        content.addProperty("message", response.getMessage());
+        return new HttpRequestException(statusLine, gson.toJson(content));
+    }
+
+    /**
+     * 作品页面接口的 body 读取方法, 只提取指定画质的下载链接
+     * @param qualityType 画质类型, 即 urls 对象中的字段名
+     */
+    public static BodyReader<List<String>> pageUrls(String qualityType) {
+        return reader -> {
+            List<String> urls = new ArrayList<>();
+            reader.beginArray();
+            while(reader.hasNext()) {
+                String url = null;
+                reader.beginObject();
+                while(reader.hasNext()) {
+                    if("urls".equals(reader.nextName())) {
+                        url = readStringField(reader, qualityType);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                if(url == null) {
+                    throw new IOException("页面信息缺少下载链接: " + qualityType);
+                }
+                urls.add(url);
+            }
+            reader.endArray();
+            return urls;
+        };
+    }
+
+    /**
+     * 作品信息接口的 body 读取方法, 只将 illusts 数组中的元素解析为 JsonObject
+     */
+    public static BodyReader<List<JsonObject>> illusts() {
+        return reader -> {
+            List<JsonObject> illusts = new ArrayList<>();
+            reader.beginObject();
+            while(reader.hasNext()) {
+                if("illusts".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while(reader.hasNext()) {
+                        illusts.add(gson.fromJson(reader, JsonObject.class));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return illusts;
+        };
+    }
+
+    /**
+     * 动图元数据接口的 body 读取方法
+     */
+    public static BodyReader<UgoiraMeta> ugoiraMeta() {
+        return reader -> {
+            String src = null;
+            String originalSrc = null;
+            String mimeType = null;
+            List<UgoiraMeta.Frame> frames = new ArrayList<>();
+            reader.beginObject();
+            while(reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "src":
+                        src = reader.nextString();
+                        break;
+                    case "originalSrc":
+                        originalSrc = reader.nextString();
+                        break;
+                    case "mime_type":
+                        mimeType = reader.nextString();
+                        break;
+                    case "frames":
+                        reader.beginArray();
+                        while(reader.hasNext()) {
+                            frames.add(readUgoiraFrame(reader));
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if(src == null) {
+                throw new IOException("动图元数据缺少 src 字段, 可能接口发生改变!");
+            }
+            return new UgoiraMeta(src, originalSrc, mimeType, frames);
+        };
+    }
+
+    private static UgoiraMeta.Frame readUgoiraFrame(JsonReader reader) throws IOException {
+        String file = null;
+        long delay = 0;
+        reader.beginObject();
+        while(reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "file":
+                    file = reader.nextString();
+                    break;
+                case "delay":
+                    delay = reader.nextLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if(file == null) {
+            throw new IOException("动图帧信息缺少 file 字段");
+        }
+        return new UgoiraMeta.Frame(file, delay);
+    }
+
+    /**
+     * 流式读取排行榜的一页, 只提取 {@link RankingEntry} 所需的字段
+     * @param rankStart 开始排名(包括)
+     * @param rankEnd 结束排名(包括)
+     * @return 如果存在下一页, 返回true
+     */
+    public static boolean readRankingPage(JsonReader reader, RankingSnapshot.Builder builder,
+                                          int rankStart, int rankEnd) throws IOException {
+        boolean hasNext = false;
+        reader.beginObject();
+        while(reader.hasNext()) {
+            String name = reader.nextName();
+            if("contents".equals(name)) {
+                reader.beginArray();
+                while(reader.hasNext()) {
+                    readRankingEntry(reader, builder, rankStart, rankEnd);
+                }
+                reader.endArray();
+            } else if("next".equals(name)) {
+                hasNext = readHasNext(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return hasNext;
+    }
+
+    /**
+     * 流式读取排行榜的一页, 将指定范围内的条目解析为 JsonObject, 范围外的条目将被跳过.
+     * @param skip 跳过的条目数量
+     * @param limit 最多读取的条目数量
+     * @param results 存放结果的列表
+     * @return 如果存在下一页, 返回true
+     */
+    public static boolean readRankingContents(JsonReader reader, int skip, int limit,
+                                              List<JsonObject> results) throws IOException {
+        boolean hasNext = false;
+        reader.beginObject();
+        while(reader.hasNext()) {
+            String name = reader.nextName();
+            if("contents".equals(name)) {
+                reader.beginArray();
+                int index = 0;
+                int count = 0;
+                while(reader.hasNext()) {
+                    if(index++ < skip || count >= limit) {
+                        reader.skipValue();
+                    } else {
+                        results.add(gson.fromJson(reader, JsonObject.class));
+                        count++;
+                    }
+                }
+                reader.endArray();
+            } else if("next".equals(name)) {
+                hasNext = readHasNext(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return hasNext;
+    }
+
+    private static boolean readHasNext(JsonReader reader) throws IOException {
+        // 没有下一页时该字段为 false
+        boolean hasNext = reader.peek() == JsonToken.NUMBER;
+        reader.skipValue();
+        return hasNext;
+    }
+
+    private static void readRankingEntry(JsonReader reader, RankingSnapshot.Builder builder,
+                                         int rankStart, int rankEnd) throws IOException {
+        int rank = 0;
+        int illustId = 0;
+        String title = "";
+        int userId = 0;
+        String userName = "";
+        int pageCount = 1;
+        int illustType = 0;
+        reader.beginObject();
+        while(reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "rank":
+                    rank = reader.nextInt();
+                    break;
+                case "illust_id":
+                    illustId = reader.nextInt();
+                    break;
+                case "title":
+                    title = reader.nextString();
+                    break;
+                case "user_id":
+                    userId = reader.nextInt();
+                    break;
+                case "user_name":
+                    userName = reader.nextString();
+                    break;
+                case "illust_page_count":
+                    // 该字段以字符串形式返回, JsonReader 可直接将其转换为数字
+                    pageCount = reader.nextInt();
+                    break;
+                case "illust_type":
+                    illustType = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if(rank >= rankStart && rank <= rankEnd) {
+            builder.add(rank, illustId, title, userId, userName, pageCount, illustType);
+        }
+    }
+
+    private static String readStringField(JsonReader reader, String fieldName) throws IOException {
+        String value = null;
+        reader.beginObject();
+        while(reader.hasNext()) {
+            if(fieldName.equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                value = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return value;
+    }
+
+    /**
+     * body 部分的读取方法
+     * @param <T> 读取结果类型
+     */
+    @FunctionalInterface
+    public interface BodyReader<T> {
+
+        /**
+         * 读取 body 部分
+         * @param reader JsonReader 对象, 下一个值即为 body
+         * @return 返回读取结果
+         * @throws IOException 当读取发生异常时抛出
+         */
+        T read(JsonReader reader) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,53 @@
+package net.lamgc.cgj.pixiv;
+
+/**
+ * Pixiv接口标准返回格式.
+ * <p>标准格式包含 {@code error}, {@code message}, {@code body} 三个字段,
+ * body 部分由 {@link PixivApiReader.BodyReader} 流式读取为指定的类型.</p>
+ * @param <T> body 类型
+ * @see PixivApiReader#readResponse(java.io.Reader, PixivApiReader.BodyReader)
+ */
+public final class PixivApiResponse<T> {
+
+    private final boolean error;
+    private final String message;
+    private final T body;
+
+    PixivApiResponse(boolean error, String message, T body) {
+        this.error = error;
+        this.message = message == null ? "" : message;
+        this.body = body;
+    }
+
+    /**
+     * 接口是否返回错误
+     */
+    public boolean isError() {
+        return error;
+    }
+
+    /**
+     * 获取接口返回的信息
+     * @return 返回信息, 如果接口没有返回, 则返回空字符串
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * 获取 body 部分
+     * @return 如果接口没有返回 body 或 body 为null, 则返回null
+     */
+    public T getBody() {
+        return body;
+    }
+
+    @Override
+    public String toString() {
+        return "PixivApiResponse{" +
+                "error=" + error +
+                ", message='" + message + '\'' +
+                ", body=" + body +
+                '}';
+    }
+}
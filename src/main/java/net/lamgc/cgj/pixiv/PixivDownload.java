@@ -1,12 +1,14 @@
 package net.lamgc.cgj.pixiv;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import net.lamgc.cgj.exception.HttpRequestException;
+import net.lamgc.cgj.http.HttpClientFactory;
+import net.lamgc.cgj.util.ResumableDownloader;
 import org.apache.http.Header;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
@@ -27,6 +29,8 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -37,6 +41,9 @@ public class PixivDownload {
 
     private final static Logger log = LoggerFactory.getLogger(PixivDownload.class);
 
+    private final static String USER_AGENT =
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/80.0.3987.122 Safari/537.36";
+
     private final HttpClient httpClient;
 
     private final CookieStore cookieStore;
@@ -56,12 +63,11 @@ public class PixivDownload {
      */
     public PixivDownload(CookieStore cookieStore, HttpHost proxy) {
         this.cookieStore = cookieStore;
-        HttpClientBuilder builder = HttpClientBuilder.create();
+        HttpClientBuilder builder = HttpClientFactory.builder();
         builder.setDefaultCookieStore(cookieStore);
         // UA: Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/80.0.3987.122 Safari/537.36
         ArrayList<Header> defaultHeaders = new ArrayList<>(2);
-        defaultHeaders.add(new BasicHeader("User-Agent",
-                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/80.0.3987.122 Safari/537.36"));
+        defaultHeaders.add(new BasicHeader("User-Agent", USER_AGENT));
         builder.setDefaultHeaders(defaultHeaders);
         builder.setProxy(proxy);
         httpClient = builder.build();
@@ -99,22 +105,21 @@ public class PixivDownload {
                 break;
             }
 
-            Gson gson = new Gson();
+            PixivApiReader.BodyReader<List<String>> pageUrlsReader =
+                    PixivApiReader.pageUrls((quality == null ? PageQuality.ORIGINAL : quality).toString().toLowerCase());
             for (String href : hrefList) {
                 HttpGet linkApiRequest = createHttpGetRequest(PixivURL.PIXIV_ILLUST_API_URL.replace("{illustId}", href.substring(href.lastIndexOf("/") + 1)));
                 log.debug(linkApiRequest.getURI().toString());
                 HttpResponse httpResponse = httpClient.execute(linkApiRequest);
-                JsonObject linkResult = gson.fromJson(EntityUtils.toString(httpResponse.getEntity()), JsonObject.class);
-                if(linkResult.get("error").getAsBoolean()) {
-                    log.error("接口返回错误信息: {}", linkResult.get("message").getAsString());
-                    continue;
+                PixivApiResponse<List<String>> linkResult;
+                try (Reader reader = new InputStreamReader(httpResponse.getEntity().getContent(), StandardCharsets.UTF_8)) {
+                    linkResult = PixivApiReader.readResponse(reader, pageUrlsReader);
                 }
-
-                JsonArray linkArray = linkResult.get("body").getAsJsonArray();
-                for (int i = 0; i < linkArray.size(); i++) {
-                    JsonObject linkObject = linkArray.get(i).getAsJsonObject().get("urls").getAsJsonObject();
-                    linkList.add(linkObject.get((quality == null ? PageQuality.ORIGINAL : quality).toString().toLowerCase()).getAsString());
+                if(linkResult.isError()) {
+                    log.error("接口返回错误信息: {}", linkResult.getMessage());
+                    continue;
                 }
+                linkList.addAll(linkResult.getBody());
             }
         } while(!document.select(".pager-container>.next").isEmpty());
         log.trace("获取完成.");
@@ -154,7 +159,7 @@ public class PixivDownload {
         HttpResponse response = httpClient.execute(createHttpGetRequest(PixivURL.PIXIV_INDEX_URL));
         Document document = Jsoup.parse(EntityUtils.toString(response.getEntity()));
 
-        HttpClient imageClient = HttpClientBuilder.create().build();
+        HttpClient imageClient = HttpClientFactory.getDefaultClient();
         Elements elements = document.select(".gtm-illust-recommend-zone>.image-item>.gtm-illust-recommend-thumbnail-link");
         for(int illustIndex = 0; illustIndex < elements.size(); illustIndex++){
             String href = elements.get(illustIndex).attr("href");
@@ -238,7 +243,7 @@ public class PixivDownload {
             for (int pageIndex = 0; pageIndex < linkList.size(); pageIndex++) {
                 String downloadLink = linkList.get(pageIndex);
                 log.trace("当前Page: {}/{}", pageIndex + 1, linkList.size());
-                try(InputStream imageInputStream = new BufferedInputStream(getImageAsInputStream(HttpClientBuilder.create().build(), downloadLink), 256 * 1024)) {
+                try(InputStream imageInputStream = new BufferedInputStream(getImageAsInputStream(HttpClientFactory.getDefaultClient(), downloadLink), 256 * 1024)) {
                     fn.download(rank, downloadLink, rankInfo.deepCopy(), imageInputStream);
                 } catch(IOException e) {
                     log.error("下载插画时发生异常", e);
@@ -282,7 +287,7 @@ public class PixivDownload {
      * @return 返回List对象
      */
     public static List<JsonObject> getRanking(JsonArray rankingArray, int rankStart, int range) {
-        List<JsonObject> list = new Gson().fromJson(rankingArray, new TypeToken<List<JsonObject>>(){}.getType());
+        List<JsonObject> list = PixivApiReader.getGson().fromJson(rankingArray, new TypeToken<List<JsonObject>>(){}.getType());
         return getRanking(list, rankStart, range);
     }
 
@@ -316,25 +321,18 @@ public class PixivDownload {
         int startPages = (int) Math.max(1, Math.floor(rankStart / 50F));
         int endPages = (int) Math.min(10, Math.ceil((rankStart + range) / 50F));
         int startIndex = rankStart - 1;
-        int count = 0;
-        Gson gson = new Gson();
         ArrayList<JsonObject> results = new ArrayList<>(range);
         boolean canNext = true;
-        for (int pageIndex = startPages; canNext && pageIndex <= endPages && count < range; pageIndex++) {
+        for (int pageIndex = startPages; canNext && pageIndex <= endPages && results.size() < range; pageIndex++) {
             HttpGet request = createHttpGetRequest(PixivURL.getRankingLink(contentType, mode, time, pageIndex, true));
             log.trace("RequestUri: {}", request.getURI());
             HttpResponse response = httpClient.execute(request);
-            String responseBody = EntityUtils.toString(response.getEntity());
-            log.trace("ResponseBody: {}", responseBody);
             if(response.getStatusLine().getStatusCode() != 200) {
-                throw new HttpRequestException(response.getStatusLine(), responseBody);
+                throw new HttpRequestException(response.getStatusLine(), EntityUtils.toString(response.getEntity()));
             }
 
-            JsonObject resultObject = gson.fromJson(responseBody, JsonObject.class);
-            canNext = resultObject.get("next").getAsJsonPrimitive().isNumber();
-            JsonArray resultArray = resultObject.getAsJsonArray("contents");
-            for (int resultIndex = startIndex; resultIndex < resultArray.size() && count < range; resultIndex++, count++) {
-                results.add(resultArray.get(resultIndex).getAsJsonObject());
+            try (JsonReader reader = PixivApiReader.newReader(response.getEntity().getContent())) {
+                canNext = PixivApiReader.readRankingContents(reader, startIndex, range - results.size(), results);
             }
 
             // 重置索引
@@ -343,6 +341,53 @@ public class PixivDownload {
         return results;
     }
 
+    /**
+     * 获取排行榜快照.
+     * <p>响应内容将通过 {@link JsonReader} 流式解析, 只提取 {@link RankingEntry} 所需的字段, 不会构建完整的Json树.</p>
+     * @param contentType 排行榜类型
+     * @param mode 排行榜模式
+     * @param time 查询时间
+     * @param rankStart 开始排名, 从1开始
+     * @param range 取范围
+     * @return 返回排行榜快照, 如果排行榜不足, 快照中的条目数量将少于请求的数量
+     * @throws IllegalArgumentException 当{@linkplain net.lamgc.cgj.pixiv.PixivURL.RankingContentType RankingContentType}
+     *                                  与{@linkplain net.lamgc.cgj.pixiv.PixivURL.RankingMode RankingMode}互不兼容时抛出
+     * @throws IndexOutOfBoundsException 当排行榜选取范围超出排行榜范围时抛出(排行榜范围为 1 ~ 500 名)
+     * @throws IOException 当Http请求发生异常时抛出, 或Http请求响应码非200时抛出
+     * @see #getRanking(PixivURL.RankingContentType, PixivURL.RankingMode, Date, int, int)
+     */
+    public RankingSnapshot getRankingSnapshot(PixivURL.RankingContentType contentType, PixivURL.RankingMode mode,
+                                              Date time, int rankStart, int range) throws IOException {
+        Objects.requireNonNull(time);
+        if(!Objects.requireNonNull(contentType).isSupportedMode(Objects.requireNonNull(mode))) {
+            throw new IllegalArgumentException("ContentType不支持指定的RankingMode: ContentType: " + contentType.name() + ", Mode: " + mode.name());
+        } else if(rankStart <= 0) {
+            throw new IndexOutOfBoundsException("rankStart cannot be less than or equal to zero: " + rankStart);
+        } else if(range <= 0) {
+            throw new IndexOutOfBoundsException("range cannot be less than or equal to zero:" + range);
+        } else if(rankStart + range - 1 > 500) {
+            throw new IndexOutOfBoundsException("排名选取范围超出了排行榜范围: rankStart=" + rankStart + ", range=" + range + ", length:" + (rankStart + range - 1));
+        }
+
+        int startPages = (rankStart - 1) / 50 + 1;
+        int endPages = (rankStart + range - 2) / 50 + 1;
+        int rankEnd = rankStart + range - 1;
+        RankingSnapshot.Builder builder = new RankingSnapshot.Builder(range);
+        boolean canNext = true;
+        for (int pageIndex = startPages; canNext && pageIndex <= endPages; pageIndex++) {
+            HttpGet request = createHttpGetRequest(PixivURL.getRankingLink(contentType, mode, time, pageIndex, true));
+            log.trace("RequestUri: {}", request.getURI());
+            HttpResponse response = httpClient.execute(request);
+            if(response.getStatusLine().getStatusCode() != 200) {
+                throw new HttpRequestException(response.getStatusLine(), EntityUtils.toString(response.getEntity()));
+            }
+            try (JsonReader reader = PixivApiReader.newReader(response.getEntity().getContent())) {
+                canNext = PixivApiReader.readRankingPage(reader, builder, rankStart, rankEnd);
+            }
+        }
+        return builder.build();
+    }
+
     /**
      * 获取作品的预加载数据
      * @param illustId 作品id
@@ -363,7 +408,7 @@ public class PixivDownload {
             return null;
         }
 
-        return new Gson().fromJson(selectElements.attr("content"), JsonObject.class);
+        return PixivApiReader.getGson().fromJson(selectElements.attr("content"), JsonObject.class);
     }
 
 
@@ -397,25 +442,19 @@ public class PixivDownload {
         HttpGet linkApiRequest = new HttpGet(PixivURL.PIXIV_ILLUST_API_URL.replace("{illustId}", Integer.toString(illustId)));
         setCookieInRequest(linkApiRequest, cookieStore);
         HttpResponse response = httpClient.execute(linkApiRequest);
-        JsonObject resultObject = new Gson().fromJson(EntityUtils.toString(response.getEntity()), JsonObject.class);
-
-        if(resultObject.get("error").getAsBoolean()) {
-            String message = resultObject.get("message").getAsString();
-            log.warn("作品页面接口请求错误, 错误信息: {}", message);
-            throw new HttpRequestException(response);
-        }
-
-        JsonArray linkArray = resultObject.getAsJsonArray("body");
-
-        ArrayList<String> resultList = new ArrayList<>();
         String qualityType = quality == null ? "original" : quality.toString().toLowerCase();
         log.debug("已选择插画类型: {}", qualityType);
-        linkArray.forEach(el -> {
-            JsonObject urlObj = el.getAsJsonObject().getAsJsonObject("urls");
-            resultList.add(urlObj.get(qualityType).getAsString());
-        });
+        PixivApiResponse<List<String>> result;
+        try (Reader reader = new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8)) {
+            result = PixivApiReader.readResponse(reader, PixivApiReader.pageUrls(qualityType));
+        }
 
-        return resultList;
+        if(result.isError()) {
+            log.warn("作品页面接口请求错误, 错误信息: {}", result.getMessage());
+            throw PixivApiReader.toRequestException(response.getStatusLine(), result);
+        }
+
+        return result.getBody() == null ? new ArrayList<>() : result.getBody();
     }
 
     /**
@@ -456,7 +495,8 @@ public class PixivDownload {
 
 
     /**
-     * 获取Pixiv图片
+     * 获取Pixiv图片.
+     * <p>读取过程中连接中断时, 将通过 Range 请求从中断处自动续传.</p>
      * @param httpClient HttpClient对象
      * @param link Pixiv图片链接
      * @return 返回图片InputStream，注意关闭InputStream
@@ -464,23 +504,9 @@ public class PixivDownload {
      * @throws IllegalArgumentException 当链接无法处理时抛出
      */
     public static InputStream getImageAsInputStream(HttpClient httpClient, String link) throws IOException {
-        HttpGet request = new HttpGet(link);
-        int startIndex = link.lastIndexOf("/");
-        int endIndex = link.lastIndexOf("_");
-        if(startIndex == -1 || endIndex == -1) {
-            throw new IllegalArgumentException("无法从链接获取illustID: " + link);
-        }
-
-        String referer = PixivURL.getPixivRefererLink(link.substring(startIndex + 1, endIndex));
-        request.addHeader(HttpHeaderNames.REFERER.toString(), referer);
-
-        HttpResponse response = httpClient.execute(request);
-        log.trace("response: {}", response);
-        log.trace("Content Length: {}KB",
-                Float.parseFloat(response.getFirstHeader(HttpHeaderNames.CONTENT_LENGTH.toString()).getValue()) / 1024F
-        );
-        log.trace(response.getFirstHeader(HttpHeaderNames.CONTENT_TYPE.toString()).toString());
-        return response.getEntity().getContent();
+        return new ResumableDownloader(httpClient)
+                .addHeader(HttpHeaderNames.REFERER.toString(), getRefererByImageLink(link))
+                .openStream(link);
     }
 
     /**
@@ -512,23 +538,34 @@ public class PixivDownload {
     public JsonObject getIllustInfoByIllustId(int illustId) throws IOException, NoSuchElementException {
         HttpGet request = createHttpGetRequest(PixivURL.getPixivIllustInfoAPI(illustId));
         HttpResponse response = httpClient.execute(request);
-        String responseStr = EntityUtils.toString(response.getEntity());
-        log.trace("Response Content: {}", responseStr);
-        JsonObject responseObj = new Gson().fromJson(responseStr, JsonObject.class);
+        PixivApiResponse<List<JsonObject>> result;
+        try (Reader reader = new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8)) {
+            result = PixivApiReader.readResponse(reader, PixivApiReader.illusts());
+        }
+        log.trace("Response: {}", result);
 
-        if(responseObj.get("error").getAsBoolean()) {
-            throw new HttpRequestException(response.getStatusLine(), responseStr);
+        if(result.isError()) {
+            throw PixivApiReader.toRequestException(response.getStatusLine(), result);
         }
 
-        JsonArray illustsArray = responseObj.getAsJsonObject("body").getAsJsonArray("illusts");
-        if(illustsArray.size() == 1) {
-            return illustsArray.get(0).getAsJsonObject();
+        List<JsonObject> illusts = result.getBody();
+        if(illusts != null && illusts.size() == 1) {
+            return illusts.get(0);
         } else {
             throw new NoSuchElementException("No work found: " + illustId);
         }
     }
 
 
+    private static String getRefererByImageLink(String link) {
+        int startIndex = link.lastIndexOf("/");
+        int endIndex = link.lastIndexOf("_");
+        if(startIndex == -1 || endIndex == -1) {
+            throw new IllegalArgumentException("无法从链接获取illustID: " + link);
+        }
+        return PixivURL.getPixivRefererLink(link.substring(startIndex + 1, endIndex));
+    }
+
     public static void setCookieInRequest(HttpRequest request, CookieStore cookieStore) {
         StringBuilder builder = new StringBuilder();
         cookieStore.getCookies().forEach(cookie -> builder.append(cookie.getName()).append("=").append(cookie.getValue()).append("; "));
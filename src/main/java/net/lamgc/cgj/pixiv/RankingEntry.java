@@ -0,0 +1,108 @@
+package net.lamgc.cgj.pixiv;
+
+import java.util.Objects;
+
+/**
+ * 排行榜条目.
+ * <p>不可变对象, 仅包含排行榜消息和推送所需的字段.</p>
+ * @see RankingSnapshot
+ */
+public final class RankingEntry {
+
+    private final int rank;
+    private final int illustId;
+    private final String title;
+    private final int userId;
+    private final String userName;
+    private final int pageCount;
+    private final int illustType;
+
+    /**
+     * 构造排行榜条目
+     * @param rank 排名, 从1开始
+     * @param illustId 作品Id
+     * @param title 作品标题
+     * @param userId 画师用户Id
+     * @param userName 画师用户名
+     * @param pageCount 作品页数
+     * @param illustType 作品类型, 参见 {@link PixivDownload.PixivIllustType}
+     */
+    public RankingEntry(int rank, int illustId, String title, int userId, String userName,
+                        int pageCount, int illustType) {
+        this.rank = rank;
+        this.illustId = illustId;
+        this.title = Objects.requireNonNull(title);
+        this.userId = userId;
+        this.userName = Objects.requireNonNull(userName);
+        this.pageCount = pageCount;
+        this.illustType = illustType;
+    }
+
+    /**
+     * 获取排名
+     * @return 排名, 从1开始
+     */
+    public int getRank() {
+        return rank;
+    }
+
+    public int getIllustId() {
+        return illustId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public int getIllustType() {
+        return illustType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RankingEntry that = (RankingEntry) o;
+        return rank == that.rank &&
+                illustId == that.illustId &&
+                userId == that.userId &&
+                pageCount == that.pageCount &&
+                illustType == that.illustType &&
+                title.equals(that.title) &&
+                userName.equals(that.userName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(rank, illustId, title, userId, userName, pageCount, illustType);
+    }
+
+    @Override
+    public String toString() {
+        return "RankingEntry{" +
+                "rank=" + rank +
+                ", illustId=" + illustId +
+                ", title='" + title + '\'' +
+                ", userId=" + userId +
+                ", userName='" + userName + '\'' +
+                ", pageCount=" + pageCount +
+                ", illustType=" + illustType +
+                '}';
+    }
+}
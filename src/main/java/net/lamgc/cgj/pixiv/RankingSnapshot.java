@@ -0,0 +1,249 @@
+package net.lamgc.cgj.pixiv;
+
+import java.util.*;
+
+/**
+ * 排行榜快照.
+ * <p>以基本类型数组按列存储一整个排行榜, 字符串在构造时去重(同一画师的用户名只保留一份),
+ * 不会为每个条目保留对象; 通过 {@link #get(int)} 获取条目时才会创建 {@link RankingEntry}.</p>
+ * <p>快照是不可变的, 可以安全地在多个线程之间共享.</p>
+ */
+public final class RankingSnapshot {
+
+    private final static RankingSnapshot EMPTY = new Builder(0).build();
+
+    private final int[] ranks;
+    private final int[] illustIds;
+    private final String[] titles;
+    private final int[] userIds;
+    private final String[] userNames;
+    private final int[] pageCounts;
+    private final int[] illustTypes;
+
+    private RankingSnapshot(Builder builder) {
+        int size = builder.size;
+        this.ranks = Arrays.copyOf(builder.ranks, size);
+        this.illustIds = Arrays.copyOf(builder.illustIds, size);
+        this.titles = Arrays.copyOf(builder.titles, size);
+        this.userIds = Arrays.copyOf(builder.userIds, size);
+        this.userNames = Arrays.copyOf(builder.userNames, size);
+        this.pageCounts = Arrays.copyOf(builder.pageCounts, size);
+        this.illustTypes = Arrays.copyOf(builder.illustTypes, size);
+    }
+
+    /**
+     * 获取空的排行榜快照
+     */
+    public static RankingSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 获取条目数量
+     */
+    public int size() {
+        return ranks.length;
+    }
+
+    public boolean isEmpty() {
+        return ranks.length == 0;
+    }
+
+    /**
+     * 获取指定位置的条目
+     * @param index 索引, 从0开始
+     * @return 返回条目对象
+     * @throws IndexOutOfBoundsException 当索引超出范围时抛出
+     */
+    public RankingEntry get(int index) {
+        return new RankingEntry(ranks[index], illustIds[index], titles[index],
+                userIds[index], userNames[index], pageCounts[index], illustTypes[index]);
+    }
+
+    /**
+     * 获取指定位置条目的作品Id, 不会创建条目对象
+     * @param index 索引, 从0开始
+     * @return 返回作品Id
+     */
+    public int getIllustId(int index) {
+        return illustIds[index];
+    }
+
+    /**
+     * 获取指定位置条目的排名, 不会创建条目对象
+     * @param index 索引, 从0开始
+     * @return 返回排名
+     */
+    public int getRank(int index) {
+        return ranks[index];
+    }
+
+    public String getTitle(int index) {
+        return titles[index];
+    }
+
+    public int getUserId(int index) {
+        return userIds[index];
+    }
+
+    public String getUserName(int index) {
+        return userNames[index];
+    }
+
+    public int getPageCount(int index) {
+        return pageCounts[index];
+    }
+
+    public int getIllustType(int index) {
+        return illustTypes[index];
+    }
+
+    /**
+     * 获取指定范围内的条目
+     * @param start 开始索引, 从0开始(包括)
+     * @param range 数量, 超出快照范围的部分将被忽略
+     * @return 返回条目列表
+     */
+    public List<RankingEntry> getEntries(int start, int range) {
+        int from = Math.max(0, Math.min(start, size()));
+        int to = Math.max(from, Math.min(from + Math.max(0, range), size()));
+        List<RankingEntry> entries = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            entries.add(get(i));
+        }
+        return entries;
+    }
+
+    /**
+     * 随机选取一个条目
+     * @param random 随机数生成器
+     * @param start 选取范围的开始索引(包括)
+     * @param end 选取范围的结束索引(包括), 超出快照范围的部分将被忽略
+     * @return 返回条目对象, 如果范围内没有条目, 返回null
+     */
+    public RankingEntry random(Random random, int start, int end) {
+        int from = Math.max(0, start);
+        int to = Math.min(end, size() - 1);
+        if(from > to) {
+            return null;
+        }
+        return get(from + random.nextInt(to - from + 1));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RankingSnapshot that = (RankingSnapshot) o;
+        return Arrays.equals(ranks, that.ranks) &&
+                Arrays.equals(illustIds, that.illustIds) &&
+                Arrays.equals(titles, that.titles) &&
+                Arrays.equals(userIds, that.userIds) &&
+                Arrays.equals(userNames, that.userNames) &&
+                Arrays.equals(pageCounts, that.pageCounts) &&
+                Arrays.equals(illustTypes, that.illustTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(illustIds);
+    }
+
+    @Override
+    public String toString() {
+        return "RankingSnapshot{size=" + size() + "}";
+    }
+
+    /**
+     * 排行榜快照构造器
+     */
+    public final static class Builder {
+
+        private int size;
+        private int[] ranks;
+        private int[] illustIds;
+        private String[] titles;
+        private int[] userIds;
+        private String[] userNames;
+        private int[] pageCounts;
+        private int[] illustTypes;
+        private final Map<String, String> stringPool = new HashMap<>();
+
+        /**
+         * 构造一个构造器
+         * @param expectedSize 预计条目数量
+         */
+        public Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 0);
+            ranks = new int[capacity];
+            illustIds = new int[capacity];
+            titles = new String[capacity];
+            userIds = new int[capacity];
+            userNames = new String[capacity];
+            pageCounts = new int[capacity];
+            illustTypes = new int[capacity];
+        }
+
+        /**
+         * 添加条目
+         * @return 返回构造器本身
+         */
+        public Builder add(int rank, int illustId, String title, int userId, String userName,
+                           int pageCount, int illustType) {
+            if(size == ranks.length) {
+                grow();
+            }
+            ranks[size] = rank;
+            illustIds[size] = illustId;
+            titles[size] = pool(Objects.requireNonNull(title));
+            userIds[size] = userId;
+            userNames[size] = pool(Objects.requireNonNull(userName));
+            pageCounts[size] = pageCount;
+            illustTypes[size] = illustType;
+            size++;
+            return this;
+        }
+
+        /**
+         * 添加条目
+         * @param entry 条目对象
+         * @return 返回构造器本身
+         */
+        public Builder add(RankingEntry entry) {
+            return add(entry.getRank(), entry.getIllustId(), entry.getTitle(), entry.getUserId(),
+                    entry.getUserName(), entry.getPageCount(), entry.getIllustType());
+        }
+
+        /**
+         * 获取已添加的条目数量
+         */
+        public int size() {
+            return size;
+        }
+
+        public RankingSnapshot build() {
+            return new RankingSnapshot(this);
+        }
+
+        private String pool(String str) {
+            String pooled = stringPool.putIfAbsent(str, str);
+            return pooled == null ? str : pooled;
+        }
+
+        private void grow() {
+            int capacity = Math.max(16, ranks.length * 2);
+            ranks = Arrays.copyOf(ranks, capacity);
+            illustIds = Arrays.copyOf(illustIds, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            userIds = Arrays.copyOf(userIds, capacity);
+            userNames = Arrays.copyOf(userNames, capacity);
+            pageCounts = Arrays.copyOf(pageCounts, capacity);
+            illustTypes = Arrays.copyOf(illustTypes, capacity);
+        }
+    }
+
+}
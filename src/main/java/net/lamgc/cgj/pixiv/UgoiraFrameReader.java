@@ -0,0 +1,268 @@
+package net.lamgc.cgj.pixiv;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 动图帧读取器.
+ * <p>在后台线程中边接收帧压缩包边将帧交给处理器(如解码和量化), 处理器在指定的执行器中运行, 多个帧可以并行处理,
+ * 处理结果按元数据中的帧顺序输出. 已提交处理但尚未取出的帧数量不超过预读数量,
+ * 所以同一时间内存中只有少数几帧的数据.</p>
+ * <p>压缩包中的帧顺序与元数据不同时, 提前到达的帧将以压缩数据的形式暂存, 直到轮到该帧时再处理.</p>
+ * @param <T> 帧处理结果类型
+ */
+final class UgoiraFrameReader<T> implements Closeable {
+
+    private final static Logger log = LoggerFactory.getLogger(UgoiraFrameReader.class);
+
+    private final static ExecutorService receiveExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("UgoiraFrameReceiver-%d")
+            .setDaemon(true)
+            .build());
+
+    /**
+     * 帧队列结束标记
+     */
+    private final static CompletableFuture<Object> END = CompletableFuture.completedFuture(null);
+
+    private final InputStream input;
+    private final List<UgoiraMeta.Frame> frames;
+    private final FrameProcessor<T> processor;
+    private final Executor processExecutor;
+    private final BlockingQueue<CompletableFuture<?>> processingFrames;
+    private final Future<?> receiveFuture;
+
+    private boolean ended = false;
+
+    /**
+     * 构造帧读取器, 并开始在后台接收帧
+     * @param input 帧压缩包输入流, 关闭读取器时将一同关闭
+     * @param frames 元数据中的帧信息
+     * @param lookAhead 预读帧数, 即已提交处理但尚未被取出的最大帧数
+     * @param processor 帧处理器
+     * @param processExecutor 运行帧处理器的执行器
+     */
+    UgoiraFrameReader(InputStream input, List<UgoiraMeta.Frame> frames, int lookAhead,
+                      FrameProcessor<T> processor, Executor processExecutor) {
+        if(lookAhead <= 0) {
+            throw new IllegalArgumentException("lookAhead must be greater than 0: " + lookAhead);
+        }
+        this.input = Objects.requireNonNull(input);
+        this.frames = new ArrayList<>(Objects.requireNonNull(frames));
+        this.processor = Objects.requireNonNull(processor);
+        this.processExecutor = Objects.requireNonNull(processExecutor);
+        this.processingFrames = new ArrayBlockingQueue<>(lookAhead);
+        this.receiveFuture = receiveExecutor.submit(this::receiveAll);
+    }
+
+    /**
+     * 获取下一帧的处理结果.
+     * @return 返回下一帧的处理结果, 如果所有帧均已读取, 返回null.
+     * @throws IOException 当接收或处理帧时发生异常时抛出.
+     * @throws InterruptedIOException 当等待时线程被中断时抛出.
+     */
+    @SuppressWarnings("unchecked")
+    T next() throws IOException {
+        if(ended) {
+            return null;
+        }
+        try {
+            CompletableFuture<?> future = processingFrames.take();
+            if(future == END) {
+                ended = true;
+                return null;
+            }
+            return (T) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for ugoira frame");
+        } catch (ExecutionException e) {
+            ended = true;
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null ?
+                    e.getCause().getCause() : e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        receiveFuture.cancel(true);
+        CompletableFuture<?> future;
+        while((future = processingFrames.poll()) != null) {
+            future.cancel(true);
+        }
+        input.close();
+    }
+
+    private void receiveAll() {
+        try (ZipInputStream zipInput = new ZipInputStream(new BufferedInputStream(input, 64 * 1024))) {
+            Set<String> frameNames = new HashSet<>();
+            for (UgoiraMeta.Frame frame : frames) {
+                frameNames.add(frame.getFile());
+            }
+            Map<String, byte[]> pendingEntries = new HashMap<>();
+            ByteArrayOutputStream entryBuffer = new ByteArrayOutputStream(64 * 1024);
+            byte[] buffer = new byte[8192];
+            int nextIndex = 0;
+            ZipEntry entry;
+            while(nextIndex < frames.size() && (entry = zipInput.getNextEntry()) != null) {
+                if(!frameNames.contains(entry.getName())) {
+                    log.debug("忽略不在元数据中的ZipEntry: {}", entry.getName());
+                    continue;
+                }
+                entryBuffer.reset();
+                int length;
+                while((length = zipInput.read(buffer)) != -1) {
+                    entryBuffer.write(buffer, 0, length);
+                }
+                pendingEntries.put(entry.getName(), entryBuffer.toByteArray());
+                while(nextIndex < frames.size() && pendingEntries.containsKey(frames.get(nextIndex).getFile())) {
+                    UgoiraMeta.Frame frame = frames.get(nextIndex++);
+                    submit(frame, pendingEntries.remove(frame.getFile()));
+                }
+            }
+            for (; nextIndex < frames.size(); nextIndex++) {
+                UgoiraMeta.Frame frame = frames.get(nextIndex);
+                byte[] data = pendingEntries.remove(frame.getFile());
+                if(data == null) {
+                    log.warn("帧压缩包中缺少帧 {}, 已跳过.", frame.getFile());
+                    continue;
+                }
+                submit(frame, data);
+            }
+            processingFrames.put(END);
+        } catch (InterruptedException | InterruptedIOException e) {
+            log.trace("帧接收已取消.");
+        } catch (Throwable e) {
+            if(Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            CompletableFuture<Object> failure = new CompletableFuture<>();
+            failure.completeExceptionally(e);
+            try {
+                processingFrames.put(failure);
+            } catch (InterruptedException ignored) {
+                // 读取器已关闭
+            }
+        }
+    }
+
+    private void submit(UgoiraMeta.Frame frame, byte[] data) throws InterruptedException {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return processor.process(frame, data);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, processExecutor);
+        try {
+            processingFrames.put(future);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * 将帧解码到 {@link BufferedImage#TYPE_INT_RGB} 类型的图像中
+     * @param name 帧文件名
+     * @param data 帧图片数据
+     * @param reusableImage 可重复使用的图像, 尺寸不符时将创建新的图像, 可以为null
+     * @return 返回解码后的图像
+     */
+    static BufferedImage decode(String name, byte[] data, BufferedImage reusableImage) throws IOException {
+        try (ImageInputStream imageInput = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if(!readers.hasNext()) {
+                throw new IOException("Unsupported frame image format: " + name);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                BufferedImage destination = reusableImage != null &&
+                        reusableImage.getWidth() == width && reusableImage.getHeight() == height ?
+                        reusableImage : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setDestination(destination);
+                try {
+                    return reader.read(0, param);
+                } catch (IOException | IllegalArgumentException e) {
+                    // 部分图片(如灰度JPEG)无法直接解码到RGB图像中, 先解码再绘制
+                    BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+                    if(image == null) {
+                        throw new IOException("Unable to decode frame: " + name, e);
+                    }
+                    Graphics2D graphics = destination.createGraphics();
+                    graphics.drawImage(image, 0, 0, null);
+                    graphics.dispose();
+                    return destination;
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 解码图像池.
+     * <p>在一次渲染中复用解码图像的像素缓冲区, 池中的图像数量不超过同时解码的帧数.
+     * 图像池随渲染结束而释放, 不会在线程中长期保留完整尺寸的帧.</p>
+     */
+    static final class ImagePool {
+
+        private final Queue<BufferedImage> images = new ConcurrentLinkedQueue<>();
+
+        /**
+         * 将帧解码到池中的图像.
+         * <p>使用完毕后须调用 {@link #release(BufferedImage)} 将图像归还到池中.</p>
+         * @param name 帧文件名
+         * @param data 帧图片数据
+         * @return 返回解码后的图像
+         */
+        BufferedImage decode(String name, byte[] data) throws IOException {
+            return UgoiraFrameReader.decode(name, data, images.poll());
+        }
+
+        /**
+         * 归还图像, 归还后不能再使用该图像
+         * @param image 由 {@link #decode(String, byte[])} 返回的图像
+         */
+        void release(BufferedImage image) {
+            images.offer(Objects.requireNonNull(image));
+        }
+
+    }
+
+    /**
+     * 帧处理器
+     * @param <T> 处理结果类型
+     */
+    @FunctionalInterface
+    interface FrameProcessor<T> {
+        /**
+         * 处理一帧.
+         * <p>处理器可能在多个线程中同时被调用.</p>
+         * @param frame 元数据中的帧信息
+         * @param data 帧图片数据
+         * @return 返回处理结果, 不能为null
+         * @throws IOException 处理失败时抛出
+         */
+        T process(UgoiraMeta.Frame frame, byte[] data) throws IOException;
+    }
+
+}
@@ -0,0 +1,160 @@
+package net.lamgc.cgj.pixiv;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 动图元数据.
+ * <p>不可变对象, 仅包含构建动图所需的字段.</p>
+ * @see PixivApiReader#ugoiraMeta()
+ */
+public final class UgoiraMeta {
+
+    private final String src;
+    private final String originalSrc;
+    private final String mimeType;
+    private final List<Frame> frames;
+
+    /**
+     * 构造动图元数据
+     * @param src 普通画质帧压缩包地址
+     * @param originalSrc 原图画质帧压缩包地址
+     * @param mimeType 帧图片类型
+     * @param frames 帧列表
+     */
+    public UgoiraMeta(String src, String originalSrc, String mimeType, List<Frame> frames) {
+        this.src = Objects.requireNonNull(src);
+        this.originalSrc = originalSrc == null ? src : originalSrc;
+        this.mimeType = mimeType;
+        this.frames = Collections.unmodifiableList(new ArrayList<>(Objects.requireNonNull(frames)));
+    }
+
+    /**
+     * 从Json形式的元数据转换
+     * @param metaObject 元数据, 即接口返回的 body 部分
+     * @return 返回动图元数据对象
+     */
+    public static UgoiraMeta fromJson(JsonObject metaObject) {
+        JsonArray frameArray = metaObject.getAsJsonArray("frames");
+        List<Frame> frames = new ArrayList<>(frameArray.size());
+        for (JsonElement element : frameArray) {
+            JsonObject frameObject = element.getAsJsonObject();
+            frames.add(new Frame(frameObject.get("file").getAsString(), frameObject.get("delay").getAsLong()));
+        }
+        return new UgoiraMeta(metaObject.get("src").getAsString(),
+                metaObject.has("originalSrc") ? metaObject.get("originalSrc").getAsString() : null,
+                metaObject.has("mime_type") ? metaObject.get("mime_type").getAsString() : null,
+                frames);
+    }
+
+    /**
+     * 转换为Json形式的元数据, 字段名与接口返回的 body 部分一致
+     */
+    public JsonObject toJson() {
+        JsonObject metaObject = new JsonObject();
+        metaObject.addProperty("src", src);
+        metaObject.addProperty("originalSrc", originalSrc);
+        if(mimeType != null) {
+            metaObject.addProperty("mime_type", mimeType);
+        }
+        JsonArray frameArray = new JsonArray();
+        for (Frame frame : frames) {
+            JsonObject frameObject = new JsonObject();
+            frameObject.addProperty("file", frame.getFile());
+            frameObject.addProperty("delay", frame.getDelay());
+            frameArray.add(frameObject);
+        }
+        metaObject.add("frames", frameArray);
+        return metaObject;
+    }
+
+    /**
+     * 获取帧压缩包地址
+     * @param original 是否为原图画质
+     */
+    public String getSrc(boolean original) {
+        return original ? originalSrc : src;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * 获取帧列表
+     * @return 返回不可修改的帧列表
+     */
+    public List<Frame> getFrames() {
+        return frames;
+    }
+
+    @Override
+    public String toString() {
+        return "UgoiraMeta{" +
+                "src='" + src + '\'' +
+                ", originalSrc='" + originalSrc + '\'' +
+                ", mimeType='" + mimeType + '\'' +
+                ", frames=" + frames.size() +
+                '}';
+    }
+
+    /**
+     * 动图帧信息
+     */
+    public final static class Frame {
+
+        private final String file;
+        private final long delay;
+
+        /**
+         * 构造帧信息
+         * @param file 帧图片在压缩包中的文件名
+         * @param delay 帧延迟, 单位为毫秒
+         */
+        public Frame(String file, long delay) {
+            this.file = Objects.requireNonNull(file);
+            this.delay = delay;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        /**
+         * 获取帧延迟
+         * @return 帧延迟, 单位为毫秒
+         */
+        public long getDelay() {
+            return delay;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Frame frame = (Frame) o;
+            return delay == frame.delay && file.equals(frame.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, delay);
+        }
+
+        @Override
+        public String toString() {
+            return "Frame{file='" + file + "', delay=" + delay + '}';
+        }
+    }
+
+}
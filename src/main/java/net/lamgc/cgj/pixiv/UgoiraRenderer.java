@@ -0,0 +1,565 @@
+package net.lamgc.cgj.pixiv;
+
+import net.lamgc.cgj.image.ApngWriter;
+import net.lamgc.cgj.image.GifWriter;
+import net.lamgc.cgj.image.IndexedImage;
+import net.lamgc.cgj.image.MedianCutQuantizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * 动图渲染器.
+ * <p>将动图帧压缩包渲染为GIF或APNG动图. 帧的解码, 颜色量化(GIF)和压缩(APNG)在 {@link ForkJoinPool} 中并行进行,
+ * 处理完成的帧按顺序交给单线程的 {@link GifWriter} 或 {@link ApngWriter} 写入.</p>
+ * <p>默认渲染器的并行度默认为处理器数量, 可通过全局配置项 {@code ugoira.parallelism} 设置,
+ * 配置项在启动时存入系统属性 {@code cgj.ugoira.parallelism}.</p>
+ */
+public final class UgoiraRenderer implements Closeable {
+
+    private final static Logger log = LoggerFactory.getLogger(UgoiraRenderer.class);
+
+    private final static UgoiraRenderer defaultRenderer = new UgoiraRenderer(
+            Math.max(Integer.getInteger("cgj.ugoira.parallelism", Runtime.getRuntime().availableProcessors()), 1));
+
+    private final int parallelism;
+    private final int lookAhead;
+    private final ForkJoinPool framePool;
+    /**
+     * 保留一个调色板颜色, 供裁剪后的帧作为透明色使用
+     */
+    private final MedianCutQuantizer quantizer = new MedianCutQuantizer(255);
+
+    /**
+     * 构造渲染器
+     * @param parallelism 并行处理帧的线程数
+     */
+    public UgoiraRenderer(int parallelism) {
+        this(parallelism, parallelism * 2);
+    }
+
+    /**
+     * 构造渲染器
+     * @param parallelism 并行处理帧的线程数
+     * @param lookAhead 预读帧数, 即已提交处理但尚未写入的最大帧数, 不应小于并行度
+     */
+    public UgoiraRenderer(int parallelism, int lookAhead) {
+        if(parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be greater than 0: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.lookAhead = Math.max(lookAhead, 1);
+        this.framePool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("UgoiraFrameWorker-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * 获取默认渲染器
+     */
+    public static UgoiraRenderer getDefault() {
+        return defaultRenderer;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 将帧压缩包渲染为GIF动图.
+     * @see #render(InputStream, List, OutputStream, Format, Preset)
+     */
+    public Result renderGif(InputStream zipInput, List<UgoiraMeta.Frame> frames, OutputStream output)
+            throws IOException {
+        return render(zipInput, frames, output, Format.GIF, Preset.SPEED);
+    }
+
+    /**
+     * 将帧压缩包渲染为动图.
+     * <p>帧压缩包在接收的同时处理, 画布尺寸以第一帧的实际尺寸为准.</p>
+     * @param zipInput 帧压缩包输入流, 渲染结束后将被关闭
+     * @param frames 元数据中的帧信息
+     * @param output 动图输出流, 渲染器不会关闭该流
+     * @param format 动图格式
+     * @param preset 编码预设
+     * @return 返回渲染结果
+     * @throws IOException 当接收或处理帧, 以及写入动图时发生异常时抛出
+     */
+    public Result render(InputStream zipInput, List<UgoiraMeta.Frame> frames, OutputStream output,
+                         Format format, Preset preset) throws IOException {
+        Objects.requireNonNull(zipInput);
+        Objects.requireNonNull(frames);
+        Objects.requireNonNull(output);
+        Objects.requireNonNull(format);
+        Objects.requireNonNull(preset);
+        long startTime = System.nanoTime();
+        Result result;
+        if(format == Format.APNG) {
+            result = renderApng(zipInput, frames, output, preset, startTime);
+        } else {
+            result = renderGif(zipInput, frames, output, preset, startTime);
+        }
+        log.debug("动图渲染完成(Format: {}, Preset: {}): {}", format, preset, result);
+        return result;
+    }
+
+    /**
+     * 渲染GIF动图.
+     * <p>帧处理线程负责解码和量化, 写入前由 {@link GifFrameOptimizer} 按顺序将每帧裁剪为变化的区域.</p>
+     */
+    private Result renderGif(InputStream zipInput, List<UgoiraMeta.Frame> frames, OutputStream output,
+                             Preset preset, long startTime) throws IOException {
+        UgoiraFrameReader.ImagePool imagePool = new UgoiraFrameReader.ImagePool();
+        try (UgoiraFrameReader<QuantizedFrame> frameReader = new UgoiraFrameReader<>(zipInput, frames, lookAhead,
+                (frame, data) -> quantizeFrame(imagePool, frame, data), framePool)) {
+            GifFrameOptimizer optimizer = null;
+            QuantizedFrame frame;
+            while((frame = frameReader.next()) != null) {
+                if(optimizer == null) {
+                    optimizer = new GifFrameOptimizer(new GifWriter(output,
+                            frame.image.getWidth(), frame.image.getHeight(), 0), preset.gifTolerance);
+                }
+                optimizer.add(frame.image, frame.frame.getDelay());
+            }
+            if(optimizer == null) {
+                throw new IOException("帧压缩包中没有可用的帧");
+            }
+            optimizer.finish();
+            GifWriter writer = optimizer.writer;
+            log.trace("GIF帧优化完成(Written: {}, Merged: {})",
+                    optimizer.writtenFrames, optimizer.mergedFrames);
+            return new Result(writer.getWidth(), writer.getHeight(), optimizer.writtenFrames,
+                    System.nanoTime() - startTime);
+        }
+    }
+
+    private QuantizedFrame quantizeFrame(UgoiraFrameReader.ImagePool imagePool,
+                                         UgoiraMeta.Frame frame, byte[] data) throws IOException {
+        BufferedImage image = imagePool.decode(frame.getFile(), data);
+        try {
+            int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            return new QuantizedFrame(frame, quantizer.quantize(rgb, image.getWidth(), image.getHeight()));
+        } finally {
+            imagePool.release(image);
+        }
+    }
+
+    /**
+     * 渲染APNG动图.
+     * <p>不裁剪帧时, 帧的解码和压缩均在帧处理线程中完成;
+     * 裁剪帧时, 帧处理线程只负责解码, 变化区域须按顺序与画布比较得出, 之后再交给帧处理线程压缩.</p>
+     */
+    private Result renderApng(InputStream zipInput, List<UgoiraMeta.Frame> frames, OutputStream output,
+                              Preset preset, long startTime) throws IOException {
+        boolean cropFrames = preset.cropTolerance >= 0;
+        UgoiraFrameReader.ImagePool imagePool = new UgoiraFrameReader.ImagePool();
+        UgoiraFrameReader.FrameProcessor<ApngFrame> processor = cropFrames ?
+                (frame, data) -> decodeFrame(imagePool, frame, data) :
+                (frame, data) -> decodeFrame(imagePool, frame, data).encode(preset);
+        try (UgoiraFrameReader<ApngFrame> frameReader = new UgoiraFrameReader<>(zipInput, frames, lookAhead,
+                processor, framePool)) {
+            ApngWriter writer = null;
+            int[] canvas = null;
+            Deque<CompletableFuture<ApngFrame>> encodingFrames = new ArrayDeque<>();
+            int frameCount = 0;
+            ApngFrame frame;
+            while((frame = frameReader.next()) != null) {
+                if(writer == null) {
+                    writer = new ApngWriter(output, frame.width, frame.height, frames.size(), 0);
+                    canvas = cropFrames ? frame.rgb.clone() : null;
+                } else if(frame.width != writer.getWidth() || frame.height != writer.getHeight()) {
+                    throw new IOException("动图帧尺寸不一致: " + frame.frame.getFile());
+                }
+                if(cropFrames) {
+                    if(frameCount != 0) {
+                        frame.cropTo(canvas, preset.cropTolerance);
+                    }
+                    ApngFrame croppedFrame = frame;
+                    encodingFrames.add(CompletableFuture.supplyAsync(() -> croppedFrame.encode(preset), framePool));
+                    while(encodingFrames.size() > lookAhead) {
+                        writeApngFrame(writer, encodingFrames.poll());
+                    }
+                } else {
+                    writer.writeFrame(frame.encoded, 0, 0, frame.frame.getDelay());
+                }
+                frameCount++;
+            }
+            while(!encodingFrames.isEmpty()) {
+                writeApngFrame(writer, encodingFrames.poll());
+            }
+            if(writer == null) {
+                throw new IOException("帧压缩包中没有可用的帧");
+            }
+            writer.finish();
+            return new Result(writer.getWidth(), writer.getHeight(), frameCount, System.nanoTime() - startTime);
+        }
+    }
+
+    private static void writeApngFrame(ApngWriter writer, CompletableFuture<ApngFrame> future) throws IOException {
+        ApngFrame frame;
+        try {
+            frame = future.join();
+        } catch (CompletionException e) {
+            throw new IOException("帧压缩失败", e.getCause());
+        }
+        writer.writeFrame(frame.encoded, frame.left, frame.top, frame.frame.getDelay());
+    }
+
+    private ApngFrame decodeFrame(UgoiraFrameReader.ImagePool imagePool,
+                                  UgoiraMeta.Frame frame, byte[] data) throws IOException {
+        BufferedImage image = imagePool.decode(frame.getFile(), data);
+        try {
+            // 解码图像将归还到图像池中复用, 须复制像素
+            int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData().clone();
+            return new ApngFrame(frame, rgb, image.getWidth(), image.getHeight());
+        } finally {
+            imagePool.release(image);
+        }
+    }
+
+    private final static class QuantizedFrame {
+        private final UgoiraMeta.Frame frame;
+        private final IndexedImage image;
+
+        private QuantizedFrame(UgoiraMeta.Frame frame, IndexedImage image) {
+            this.frame = frame;
+            this.image = image;
+        }
+    }
+
+    /**
+     * GIF帧优化器.
+     * <p>维护当前显示的画面(画布), 每帧只写入与画布相比发生变化的最小矩形区域, 区域内未变化的像素写为透明色,
+     * 使LZW编码得到更长的重复序列; 与画布相同的帧不再写入, 而是将其显示时间合并到上一帧.
+     * 为了合并重复帧, 优化器会暂存一帧, 直到下一个不同的帧出现.</p>
+     * <p>比较使用量化后实际显示的颜色, 各通道差值不超过容差的像素视为未变化, 所以画布与原始帧的误差不会累积.</p>
+     */
+    private final static class GifFrameOptimizer {
+        private final GifWriter writer;
+        private final int tolerance;
+        private final int width;
+        private final int height;
+        private final int[] canvas;
+
+        private IndexedImage pendingImage;
+        private int pendingLeft;
+        private int pendingTop;
+        private long pendingDelay;
+
+        private int writtenFrames = 0;
+        private int mergedFrames = 0;
+
+        private GifFrameOptimizer(GifWriter writer, int tolerance) {
+            this.writer = writer;
+            this.tolerance = tolerance;
+            this.width = writer.getWidth();
+            this.height = writer.getHeight();
+            this.canvas = new int[width * height];
+        }
+
+        private void add(IndexedImage image, long delay) throws IOException {
+            if(image.getWidth() != width || image.getHeight() != height) {
+                throw new IOException("动图帧尺寸不一致: " + image.getWidth() + "x" + image.getHeight());
+            }
+            int[] palette = image.getPalette();
+            byte[] indices = image.getIndices();
+            if(pendingImage == null) {
+                for (int i = 0; i < indices.length; i++) {
+                    canvas[i] = palette[indices[i] & 0xFF];
+                }
+                setPending(image, 0, 0, delay);
+                return;
+            }
+
+            int minX = width;
+            int minY = height;
+            int maxX = -1;
+            int maxY = -1;
+            for (int y = 0; y < height; y++) {
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    if(!isSimilar(canvas[offset + x], palette[indices[offset + x] & 0xFF])) {
+                        minX = Math.min(minX, x);
+                        maxX = Math.max(maxX, x);
+                        minY = Math.min(minY, y);
+                        maxY = y;
+                    }
+                }
+            }
+            if(maxX < 0) {
+                pendingDelay += delay;
+                mergedFrames++;
+                return;
+            }
+
+            int regionWidth = maxX - minX + 1;
+            int regionHeight = maxY - minY + 1;
+            int transparentIndex = palette.length;
+            byte[] regionIndices = new byte[regionWidth * regionHeight];
+            boolean hasTransparent = false;
+            for (int y = minY, i = 0; y <= maxY; y++) {
+                int offset = y * width;
+                for (int x = minX; x <= maxX; x++, i++) {
+                    int index = indices[offset + x] & 0xFF;
+                    int color = palette[index];
+                    if(isSimilar(canvas[offset + x], color)) {
+                        regionIndices[i] = (byte) transparentIndex;
+                        hasTransparent = true;
+                    } else {
+                        regionIndices[i] = (byte) index;
+                        canvas[offset + x] = color;
+                    }
+                }
+            }
+            IndexedImage region = hasTransparent ?
+                    new IndexedImage(regionWidth, regionHeight,
+                            Arrays.copyOf(palette, palette.length + 1), regionIndices, transparentIndex) :
+                    new IndexedImage(regionWidth, regionHeight, palette, regionIndices, -1);
+            setPending(region, minX, minY, delay);
+        }
+
+        private void setPending(IndexedImage image, int left, int top, long delay) throws IOException {
+            writePending();
+            pendingImage = image;
+            pendingLeft = left;
+            pendingTop = top;
+            pendingDelay = delay;
+        }
+
+        private void writePending() throws IOException {
+            if(pendingImage != null) {
+                writer.writeFrame(pendingImage, pendingLeft, pendingTop, pendingDelay);
+                writtenFrames++;
+            }
+        }
+
+        private void finish() throws IOException {
+            writePending();
+            pendingImage = null;
+            writer.finish();
+        }
+
+        private boolean isSimilar(int a, int b) {
+            if(a == b) {
+                return true;
+            }
+            return Math.abs(((a >> 16) & 0xFF) - ((b >> 16) & 0xFF)) <= tolerance &&
+                    Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF)) <= tolerance &&
+                    Math.abs((a & 0xFF) - (b & 0xFF)) <= tolerance;
+        }
+    }
+
+    private final static class ApngFrame {
+        private final UgoiraMeta.Frame frame;
+        private final int[] rgb;
+        private final int width;
+        private final int height;
+
+        private int left = 0;
+        private int top = 0;
+        private int regionWidth;
+        private int regionHeight;
+        private ApngWriter.EncodedFrame encoded;
+
+        private ApngFrame(UgoiraMeta.Frame frame, int[] rgb, int width, int height) {
+            this.frame = frame;
+            this.rgb = rgb;
+            this.width = width;
+            this.height = height;
+            this.regionWidth = width;
+            this.regionHeight = height;
+        }
+
+        /**
+         * 找出与画布相比发生变化的最小矩形区域, 并将该区域绘制到画布上.
+         * <p>各通道差值均不超过容差的像素视为未变化. 没有变化时保留左上角的一个像素, 只用于延长显示时间.</p>
+         */
+        private void cropTo(int[] canvas, int tolerance) {
+            int minX = width;
+            int minY = height;
+            int maxX = -1;
+            int maxY = -1;
+            for (int y = 0; y < height; y++) {
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    if(!isSimilar(canvas[offset + x], rgb[offset + x], tolerance)) {
+                        minX = Math.min(minX, x);
+                        maxX = Math.max(maxX, x);
+                        minY = Math.min(minY, y);
+                        maxY = y;
+                    }
+                }
+            }
+            if(maxX < 0) {
+                minX = 0;
+                minY = 0;
+                maxX = 0;
+                maxY = 0;
+            }
+            left = minX;
+            top = minY;
+            regionWidth = maxX - minX + 1;
+            regionHeight = maxY - minY + 1;
+            for (int y = top; y < top + regionHeight; y++) {
+                System.arraycopy(rgb, y * width + left, canvas, y * width + left, regionWidth);
+            }
+        }
+
+        private ApngFrame encode(Preset preset) {
+            encoded = ApngWriter.encode(rgb, width, left, top, regionWidth, regionHeight,
+                    preset.compressionLevel, preset.adaptiveFilter);
+            return this;
+        }
+
+        private static boolean isSimilar(int a, int b, int tolerance) {
+            if(a == b) {
+                return true;
+            }
+            return Math.abs(((a >> 16) & 0xFF) - ((b >> 16) & 0xFF)) <= tolerance &&
+                    Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF)) <= tolerance &&
+                    Math.abs((a & 0xFF) - (b & 0xFF)) <= tolerance;
+        }
+    }
+
+    /**
+     * 关闭渲染器, 停止帧处理线程
+     */
+    @Override
+    public void close() {
+        framePool.shutdownNow();
+    }
+
+    /**
+     * 动图格式
+     */
+    public enum Format {
+        /**
+         * GIF动图, 每帧最多256色
+         */
+        GIF("gif"),
+        /**
+         * APNG动图, 24位真彩色
+         */
+        APNG("png");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * 获取文件扩展名(不含".")
+         */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * 编码预设
+     */
+    public enum Preset {
+        /**
+         * 编码速度优先.
+         * <p>APNG: 最快压缩, 固定使用Sub过滤, 每帧均为完整画面, 压缩可以并行进行.
+         * GIF: 各通道差值不超过4的像素视为未变化.</p>
+         */
+        SPEED(Deflater.BEST_SPEED, false, -1, 4),
+        /**
+         * 文件大小优先.
+         * <p>APNG: 最高压缩, 按行选择过滤方式, 只编码与上一帧相比发生变化的区域.
+         * GIF: 各通道差值不超过8的像素视为未变化.
+         * 较大的容差可以忽略更多JPEG压缩噪点, 得到更小的变化区域.</p>
+         */
+        SIZE(Deflater.BEST_COMPRESSION, true, 8, 8);
+
+        private final int compressionLevel;
+        private final boolean adaptiveFilter;
+        private final int cropTolerance;
+        private final int gifTolerance;
+
+        Preset(int compressionLevel, boolean adaptiveFilter, int cropTolerance, int gifTolerance) {
+            this.compressionLevel = compressionLevel;
+            this.adaptiveFilter = adaptiveFilter;
+            this.cropTolerance = cropTolerance;
+            this.gifTolerance = gifTolerance;
+        }
+    }
+
+    /**
+     * 渲染结果
+     */
+    public final static class Result {
+        private final int width;
+        private final int height;
+        private final int frameCount;
+        private final long elapsedNanos;
+
+        private Result(int width, int height, int frameCount, long elapsedNanos) {
+            this.width = width;
+            this.height = height;
+            this.frameCount = frameCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * 获取画布宽度
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * 获取画布高度
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * 获取已写入的帧数, GIF中与上一帧相同而被合并的帧不计入
+         */
+        public int getFrameCount() {
+            return frameCount;
+        }
+
+        /**
+         * 获取渲染耗时, 单位毫秒
+         */
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "width=" + width +
+                    ", height=" + height +
+                    ", frameCount=" + frameCount +
+                    ", elapsed=" + getElapsedMillis() + "ms" +
+                    '}';
+        }
+    }
+
+}
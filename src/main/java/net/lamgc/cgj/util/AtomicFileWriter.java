@@ -0,0 +1,90 @@
+package net.lamgc.cgj.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+
+/**
+ * 原子文件写入工具.
+ * <p>数据先写入目标文件同目录下的临时文件, 写入完成后再通过重命名替换目标文件,
+ * 因此目标文件要么是完整的旧文件, 要么是完整的新文件, 不会出现写了一半的文件.</p>
+ */
+public final class AtomicFileWriter {
+
+    private final static String TEMP_FILE_SUFFIX = ".tmp";
+
+    /**
+     * 单次从输入流传输到文件的最大字节数
+     */
+    private final static long TRANSFER_CHUNK_SIZE = 1024 * 1024;
+
+    private AtomicFileWriter() {}
+
+    /**
+     * 将输入流写入文件, 并在写入的同时计算摘要.
+     * <p>数据经 {@link DigestInputStream} 直接传输到 {@link FileChannel}, 内存占用与文件大小无关.</p>
+     * @param input 输入流, 方法返回后不会关闭
+     * @param target 目标文件
+     * @param digest 摘要对象, 写入完成后可通过 {@link MessageDigest#digest()} 获取摘要, 为null时不计算摘要
+     * @param expectedLength 预期的数据长度, 如果实际长度与预期不符, 将抛出异常且不会替换目标文件; 小于0则不检查
+     * @return 返回写入的字节数
+     * @throws IOException 当读取或写入发生异常, 或数据长度与预期不符时抛出
+     */
+    public static long write(InputStream input, File target, MessageDigest digest, long expectedLength)
+            throws IOException {
+        Path targetPath = target.toPath().toAbsolutePath();
+        Path directory = targetPath.getParent();
+        Files.createDirectories(directory);
+        Path tempPath = Files.createTempFile(directory, targetPath.getFileName().toString() + ".", TEMP_FILE_SUFFIX);
+        boolean completed = false;
+        try {
+            long size;
+            InputStream source = digest == null ? input : new DigestInputStream(input, digest);
+            ReadableByteChannel sourceChannel = Channels.newChannel(source);
+            try (FileChannel fileChannel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                size = 0;
+                long transferred;
+                // 阻塞输入流转换成的通道只有在读到末尾时才会使 transferFrom 返回0
+                while((transferred = fileChannel.transferFrom(sourceChannel, size, TRANSFER_CHUNK_SIZE)) > 0) {
+                    size += transferred;
+                }
+            }
+            if(expectedLength >= 0 && size != expectedLength) {
+                throw new IOException("Incomplete data (expected " + expectedLength + " bytes, got " + size + "): " + target);
+            }
+            moveAtomically(tempPath, targetPath);
+            completed = true;
+            return size;
+        } finally {
+            if(!completed) {
+                Files.deleteIfExists(tempPath);
+            }
+        }
+    }
+
+    /**
+     * 用已写入完成的文件替换目标文件.
+     * <p>文件系统支持时使用原子重命名, 源文件应与目标文件位于同一目录下.</p>
+     * @param source 已写入完成的文件
+     * @param target 目标文件
+     * @throws IOException 当移动文件失败时抛出
+     */
+    public static void replace(File source, File target) throws IOException {
+        moveAtomically(source.toPath().toAbsolutePath(), target.toPath().toAbsolutePath());
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+package net.lamgc.cgj.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+
+/**
+ * 线程池执行模式.
+ * <p>决定命令处理和图片缓存等线程池使用的线程类型及排队方式:</p>
+ * <ul>
+ *     <li>{@link #PLATFORM}: 默认模式, 使用固定上限的平台线程, 超出上限的任务在有界队列中排队;</li>
+ *     <li>{@link #VIRTUAL}: 每个任务直接交给一个虚拟线程执行, 不在队列中排队,
+ *     同时存在的虚拟线程数量受全局配置项 {@code executor.virtualThreadLimit} 限制(默认10000).
+ *     仅在支持虚拟线程的JDK(21及以上)中可用, 否则将回退到 {@link #PLATFORM} 模式.</li>
+ * </ul>
+ * <p>两种模式下构造出的均为 {@link ThreadPoolExecutor}, 因此 {@link TimeLimitThreadPoolExecutor} 的执行时间限制依然有效.</p>
+ * <p>通过全局配置项 {@code executor.mode} 选择模式, 可选值为 "platform" 和 "virtual".
+ * 配置项在启动时由 {@link net.lamgc.cgj.bot.boot.ApplicationBoot} 存入系统属性 {@code cgj.executor.mode},
+ * 也可直接设置该系统属性.</p>
+ */
+public enum ExecutorMode {
+    /**
+     * 平台线程模式
+     */
+    PLATFORM,
+    /**
+     * 虚拟线程模式
+     */
+    VIRTUAL;
+
+    private final static Logger log = LoggerFactory.getLogger(ExecutorMode.class);
+
+    private final static int VIRTUAL_THREAD_LIMIT = Integer.getInteger("cgj.executor.virtualThreadLimit", 10000);
+
+    /**
+     * Thread.ofVirtual(), 不支持虚拟线程时为null
+     */
+    private final static Method ofVirtualMethod;
+    private final static Method builderNameMethod;
+    private final static Method builderFactoryMethod;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            name = builderClass.getMethod("name", String.class, long.class);
+            factory = builderClass.getMethod("factory");
+            // 预览版JDK在未启用预览特性时会抛出UnsupportedOperationException
+            ofVirtual.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            ofVirtual = null;
+        }
+        ofVirtualMethod = ofVirtual;
+        builderNameMethod = name;
+        builderFactoryMethod = factory;
+    }
+
+    private final static ExecutorMode currentMode = resolve(System.getProperty("cgj.executor.mode"));
+
+    /**
+     * 获取配置项 {@code executor.mode} 指定的执行模式.
+     * @return 未指定或值非法时返回 {@link #PLATFORM}, 当前JDK不支持虚拟线程时同样返回 {@link #PLATFORM}.
+     */
+    public static ExecutorMode current() {
+        return currentMode;
+    }
+
+    /**
+     * 解析执行模式.
+     * @param value 模式名称, 不区分大小写
+     * @return 返回对应的执行模式, 如果名称为空, 非法或不受支持, 返回 {@link #PLATFORM}.
+     */
+    static ExecutorMode resolve(String value) {
+        if(value == null || value.trim().isEmpty()) {
+            return PLATFORM;
+        }
+        ExecutorMode mode;
+        try {
+            mode = valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("执行模式 \"{}\" 非法, 已使用默认模式: {}", value, PLATFORM);
+            return PLATFORM;
+        }
+        if(mode == VIRTUAL && !isVirtualThreadSupported()) {
+            log.warn("当前JDK({})不支持虚拟线程, 已回退到默认模式: {}", System.getProperty("java.version"), PLATFORM);
+            return PLATFORM;
+        }
+        return mode;
+    }
+
+    /**
+     * 当前JDK是否支持虚拟线程
+     */
+    public static boolean isVirtualThreadSupported() {
+        return ofVirtualMethod != null;
+    }
+
+    /**
+     * 获取线程池的核心线程数.
+     * @param platformCorePoolSize 平台线程模式下的核心线程数
+     * @return 虚拟线程模式下不保留空闲线程, 返回0.
+     */
+    public int corePoolSize(int platformCorePoolSize) {
+        return this == VIRTUAL ? 0 : platformCorePoolSize;
+    }
+
+    /**
+     * 获取线程池的最大线程数.
+     * @param platformMaximumPoolSize 平台线程模式下的最大线程数
+     * @return 虚拟线程模式下返回虚拟线程数量上限.
+     */
+    public int maximumPoolSize(int platformMaximumPoolSize) {
+        return this == VIRTUAL ? VIRTUAL_THREAD_LIMIT : platformMaximumPoolSize;
+    }
+
+    /**
+     * 创建线程池的任务队列.
+     * @param platformCapacity 平台线程模式下的队列容量
+     * @return 虚拟线程模式下返回 {@link SynchronousQueue}, 任务将直接交给新的虚拟线程执行.
+     */
+    public BlockingQueue<Runnable> workQueue(int platformCapacity) {
+        return this == VIRTUAL ? new SynchronousQueue<>() : new LinkedBlockingQueue<>(platformCapacity);
+    }
+
+    /**
+     * 创建线程工厂.
+     * @param nameFormat 线程名格式, 如 "CommandProcess-%d", 格式同 {@link ThreadFactoryBuilder#setNameFormat(String)}
+     * @return 返回对应模式的线程工厂
+     */
+    public ThreadFactory threadFactory(String nameFormat) {
+        if(this == VIRTUAL) {
+            return newVirtualThreadFactory(nameFormat.replace("%d", ""));
+        }
+        return new ThreadFactoryBuilder()
+                .setNameFormat(nameFormat)
+                .build();
+    }
+
+    private static ThreadFactory newVirtualThreadFactory(String namePrefix) {
+        if(!isVirtualThreadSupported()) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by the current JDK");
+        }
+        try {
+            Object builder = ofVirtualMethod.invoke(null);
+            builder = builderNameMethod.invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderFactoryMethod.invoke(builder);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+}
@@ -2,6 +2,10 @@ package net.lamgc.cgj.util;
 
 import java.util.HashMap;
 
+/**
+ * @deprecated 缓存加载的并发控制已由 {@link SingleFlight} 代替, 该类非线程安全, 请勿继续使用.
+ */
+@Deprecated
 public class LockerMap<K> {
 
     private final HashMap<K, Locker<K>> lockerHashMap = new HashMap<>();
@@ -0,0 +1,147 @@
+package net.lamgc.cgj.util;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 有并发上限和总期限的并行预取器.
+ * <p>通过 {@link #submit(Supplier)} 提交的异步任务最多同时运行 {@code maxConcurrency} 个,
+ * 超出上限的任务将排队等待, 在有任务完成后按提交顺序启动.</p>
+ * <p>所有任务共享同一个期限, 期限从预取器构造时开始计算;
+ * 通过 {@link #await(CompletableFuture, Object)} 获取结果时, 如果期限已过而任务尚未完成, 将返回指定的替代值.</p>
+ */
+public class ParallelPrefetcher {
+
+    private final int maxConcurrency;
+    private final long deadline;
+    private final Queue<PendingTask<?>> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger runningCount = new AtomicInteger();
+
+    /**
+     * 构造一个并行预取器
+     * @param maxConcurrency 最大并发数
+     * @param timeout 总期限
+     * @param unit 总期限的时间单位
+     */
+    public ParallelPrefetcher(int maxConcurrency, long timeout, TimeUnit unit) {
+        if(maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be greater than 0: " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.deadline = System.nanoTime() + unit.toNanos(timeout);
+    }
+
+    /**
+     * 提交一个异步任务
+     * @param taskStarter 启动任务的方法, 返回任务的 {@link CompletableFuture}
+     * @param <V> 任务结果类型
+     * @return 返回任务结果的 {@link CompletableFuture}
+     */
+    public <V> CompletableFuture<V> submit(Supplier<CompletableFuture<V>> taskStarter) {
+        PendingTask<V> task = new PendingTask<>(taskStarter);
+        pendingTasks.offer(task);
+        startPendingTasks();
+        return task.result;
+    }
+
+    /**
+     * 在期限内等待任务结果
+     * @param future 任务的 {@link CompletableFuture}
+     * @param timeoutValue 期限已过而任务尚未完成时返回的替代值
+     * @param <V> 任务结果类型
+     * @return 返回任务结果, 如果期限已过而任务尚未完成, 则返回 timeoutValue
+     * @throws InterruptedException 当等待过程中线程被中断时抛出
+     * @throws ExecutionException 当任务执行失败时抛出
+     */
+    public <V> V await(CompletableFuture<V> future, V timeoutValue)
+            throws InterruptedException, ExecutionException {
+        long remaining = deadline - System.nanoTime();
+        if(remaining <= 0) {
+            return future.isDone() ? future.get() : timeoutValue;
+        }
+        try {
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return timeoutValue;
+        }
+    }
+
+    /**
+     * 期限是否已过
+     */
+    public boolean isExpired() {
+        return deadline - System.nanoTime() <= 0;
+    }
+
+    /**
+     * 取消所有尚未启动的任务, 已启动的任务不受影响.
+     * @return 被取消的任务数量
+     */
+    public int cancelPending() {
+        int count = 0;
+        PendingTask<?> task;
+        while((task = pendingTasks.poll()) != null) {
+            task.result.cancel(false);
+            count++;
+        }
+        return count;
+    }
+
+    private void startPendingTasks() {
+        while(!pendingTasks.isEmpty()) {
+            int running = runningCount.get();
+            if(running >= maxConcurrency) {
+                return;
+            } else if(!runningCount.compareAndSet(running, running + 1)) {
+                continue;
+            }
+            PendingTask<?> task = pendingTasks.poll();
+            if(task == null) {
+                runningCount.decrementAndGet();
+                continue;
+            }
+            task.start();
+        }
+    }
+
+    private final class PendingTask<V> {
+        private final Supplier<CompletableFuture<V>> taskStarter;
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+
+        PendingTask(Supplier<CompletableFuture<V>> taskStarter) {
+            this.taskStarter = taskStarter;
+        }
+
+        void start() {
+            CompletableFuture<V> future;
+            try {
+                future = result.isDone() ? null : taskStarter.get();
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+                future = null;
+            }
+            if(future == null) {
+                result.completeExceptionally(new NullPointerException("The task returned a null future"));
+                onTaskFinished();
+                return;
+            }
+            future.whenComplete((value, cause) -> {
+                if(cause != null) {
+                    result.completeExceptionally(cause instanceof CompletionException && cause.getCause() != null ?
+                            cause.getCause() : cause);
+                } else {
+                    result.complete(value);
+                }
+                onTaskFinished();
+            });
+        }
+
+        private void onTaskFinished() {
+            runningCount.decrementAndGet();
+            startPendingTasks();
+        }
+    }
+
+}
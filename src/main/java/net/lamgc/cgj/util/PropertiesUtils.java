@@ -4,6 +4,8 @@ import net.lamgc.utils.base.ArgumentsProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Properties;
+
 public final class PropertiesUtils {
 
     private final static Logger log = LoggerFactory.getLogger(PropertiesUtils.class);
@@ -30,6 +32,23 @@ public final class PropertiesUtils {
         }
     }
 
+    /**
+     * 从配置项获取设置项到System Properties.
+     * <p>已存在的System Properties(例如通过 -D 参数设置的)不会被覆盖.</p>
+     * @param prop 配置项
+     * @param key 设置项key, 对应的System Properties Key为 "cgj." + key
+     * @return 如果成功从配置项获得设置项, 返回true, 如配置项中不存在或System Properties已存在, 返回false
+     */
+    public static boolean getSettingToSysProp(Properties prop, String key) {
+        String value = prop.getProperty(key);
+        if(value == null || System.getProperty("cgj." + key) != null) {
+            return false;
+        }
+        log.info("{}: {}", key, value);
+        System.setProperty("cgj." + key, value.trim());
+        return true;
+    }
+
     /**
      * 将环境变量的值读取并存入System Properties.
      * @param envKey 待获取的环境变量Key
@@ -0,0 +1,786 @@
+package net.lamgc.cgj.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.lamgc.cgj.exception.HttpRequestException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 支持断点续传的下载器.
+ * <p>下载数据先写入目标文件同目录下的 "文件名.part" 文件, 下载中断(网络异常, 线程被中断等)时保留该文件,
+ * 之后的重试, 以及下一次对同一目标文件的下载, 都将通过 HTTP Range 请求从已下载的位置继续.
+ * 下载完成后, 数据以 {@link AtomicFileWriter} 相同的方式替换目标文件.</p>
+ * <p>设置了分块下载后, 对于支持 Range 请求且大小超过分块阈值的文件, 将拆分为多个分块并行下载,
+ * 每个分块写入单独的 "文件名.part序号-分块数" 文件并可各自续传, 全部完成后合并为目标文件.</p>
+ * <p>下载器对象不是线程安全的, 设置项应在下载前设置完毕; 统计信息对象可在多个下载器之间共享.</p>
+ */
+public class ResumableDownloader {
+
+    private final static Logger log = LoggerFactory.getLogger(ResumableDownloader.class);
+
+    private final static String PART_FILE_SUFFIX = ".part";
+
+    /**
+     * 传输缓冲区大小, 每写入一次缓冲区的数据都会检查线程中断状态
+     */
+    private final static int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    private final static Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private final static Metrics defaultMetrics = new Metrics();
+
+    private final static ThreadPoolExecutor chunkExecutor = new ThreadPoolExecutor(
+            8, 8,
+            30L,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                    .setNameFormat("DownloadChunkThread-%d")
+                    .setDaemon(true)
+                    .build()
+    );
+
+    static {
+        chunkExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private final HttpClient httpClient;
+    private final Metrics metrics;
+    private final List<Header> headers = new ArrayList<>();
+
+    private int maxRetries = 3;
+    private long retryDelay = 1000;
+    private int chunkCount = 1;
+    private long chunkThreshold = Long.MAX_VALUE;
+    private long expectedSize = -1;
+    private byte[] expectedDigest;
+
+    /**
+     * 构造下载器, 统计信息将记录到默认统计信息对象中.
+     * @param httpClient 用于下载的HttpClient
+     * @see #getDefaultMetrics()
+     */
+    public ResumableDownloader(HttpClient httpClient) {
+        this(httpClient, defaultMetrics);
+    }
+
+    /**
+     * 构造下载器
+     * @param httpClient 用于下载的HttpClient
+     * @param metrics 统计信息对象
+     */
+    public ResumableDownloader(HttpClient httpClient, Metrics metrics) {
+        this.httpClient = Objects.requireNonNull(httpClient);
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * 获取默认统计信息对象
+     */
+    public static Metrics getDefaultMetrics() {
+        return defaultMetrics;
+    }
+
+    /**
+     * 添加每个请求都携带的请求头
+     */
+    public ResumableDownloader addHeader(String name, String value) {
+        headers.add(new BasicHeader(name, value));
+        return this;
+    }
+
+    /**
+     * 设置重试策略
+     * @param maxRetries 最大重试次数, 为0则不重试
+     * @param retryDelay 首次重试前的等待时间, 单位毫秒, 之后每次重试等待时间递增
+     */
+    public ResumableDownloader setRetry(int maxRetries, long retryDelay) {
+        if(maxRetries < 0 || retryDelay < 0) {
+            throw new IllegalArgumentException("maxRetries and retryDelay must not be negative");
+        }
+        this.maxRetries = maxRetries;
+        this.retryDelay = retryDelay;
+        return this;
+    }
+
+    /**
+     * 设置分块下载
+     * @param chunkCount 分块数量, 小于等于1则不分块
+     * @param chunkThreshold 文件大小达到该值时才分块下载, 单位字节
+     */
+    public ResumableDownloader setChunking(int chunkCount, long chunkThreshold) {
+        this.chunkCount = Math.max(chunkCount, 1);
+        this.chunkThreshold = Math.max(chunkThreshold, 1);
+        return this;
+    }
+
+    /**
+     * 设置预期的文件大小和摘要.
+     * <p>下载完成后, 如果数据与预期不符, 将删除已下载的数据并抛出异常, 目标文件不会被替换.
+     * 摘要与 {@link #download(String, File, MessageDigest)} 传入的摘要对象使用相同算法计算.</p>
+     * @param size 预期大小, 小于0则不检查
+     * @param digest 预期摘要, 为null则不检查
+     */
+    public ResumableDownloader setExpected(long size, byte[] digest) {
+        this.expectedSize = size;
+        this.expectedDigest = digest == null ? null : digest.clone();
+        return this;
+    }
+
+    /**
+     * 获取目标文件对应的续传文件
+     */
+    public static File getPartFile(File target) {
+        return new File(target.getAbsoluteFile().getParentFile(), target.getName() + PART_FILE_SUFFIX);
+    }
+
+    /**
+     * 下载文件.
+     * @param url 下载链接
+     * @param target 目标文件
+     * @param digest 摘要对象, 下载完成后可通过 {@link MessageDigest#digest()} 获取摘要;
+     *               为null时不计算摘要, 此时设置的预期摘要将被忽略
+     * @return 返回下载结果
+     * @throws InterruptedIOException 当线程被中断时抛出, 已下载的数据将保留用于续传
+     * @throws HttpRequestException 当服务端返回无法重试的错误状态码时抛出
+     * @throws VerificationException 当下载的数据与预期不符时抛出, 已下载的数据将被删除
+     * @throws IOException 当重试次数用尽后仍下载失败时抛出
+     */
+    public Result download(String url, File target, MessageDigest digest) throws IOException {
+        long startTime = System.nanoTime();
+        Progress progress = new Progress();
+        metrics.downloadCount.increment();
+        try {
+            File partFile = getPartFile(target);
+            long size = -1;
+            if(chunkCount > 1 && !(partFile.isFile() && partFile.length() > 0)) {
+                long length = probeRangeSupport(url);
+                if(length >= chunkThreshold) {
+                    size = downloadChunked(url, target, length, digest, progress);
+                }
+            }
+            if(size < 0) {
+                size = downloadSequential(url, target, partFile, digest, progress);
+            }
+            long elapsed = System.nanoTime() - startTime;
+            metrics.elapsedNanos.add(elapsed);
+            log.trace("{} 下载完成(Size: {}, Transferred: {}, Resumed: {}, Retries: {}, Time: {}ms)",
+                    target.getName(), size, progress.transferred.get(), progress.resumedBytes,
+                    progress.retries.get(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+            return new Result(size, progress.transferred.get(), progress.resumedBytes,
+                    progress.retries.get(), progress.chunked, elapsed);
+        } catch (IOException | RuntimeException e) {
+            metrics.elapsedNanos.add(System.nanoTime() - startTime);
+            metrics.failureCount.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * 打开下载流.
+     * <p>读取时如果发生网络异常, 将通过 Range 请求从已读取的位置重新打开连接并继续读取,
+     * 因此调用方无需处理读到一半的数据. 服务端不支持 Range 请求时, 异常将直接抛出.</p>
+     * @param url 下载链接
+     * @return 返回输入流, 注意关闭
+     * @throws IOException 当请求失败时抛出
+     */
+    public InputStream openStream(String url) throws IOException {
+        metrics.downloadCount.increment();
+        Progress progress = new Progress();
+        HttpResponse response;
+        try {
+            response = withRetry(() -> execute(url, 0, -1), progress);
+        } catch (IOException e) {
+            metrics.failureCount.increment();
+            throw e;
+        }
+        return new ResumingInputStream(url, response, progress);
+    }
+
+    private long downloadSequential(String url, File target, File partFile, MessageDigest digest, Progress progress)
+            throws IOException {
+        if(partFile.isFile() && partFile.length() > 0) {
+            progress.resumedBytes = partFile.length();
+            metrics.resumeCount.increment();
+            log.debug("{} 从 {} Bytes 处继续下载.", target.getName(), progress.resumedBytes);
+        }
+        long size = withRetry(() -> fetchRange(url, partFile, 0, -1, digest, progress), progress);
+        verify(size, digest, partFile);
+        AtomicFileWriter.replace(partFile, target);
+        return size;
+    }
+
+    private long downloadChunked(String url, File target, long length, MessageDigest digest, Progress progress)
+            throws IOException {
+        progress.chunked = true;
+        metrics.chunkedCount.increment();
+        long chunkSize = (length + chunkCount - 1) / chunkCount;
+        List<File> chunkFiles = new ArrayList<>(chunkCount);
+        List<Future<Long>> futures = new ArrayList<>(chunkCount);
+        File directory = target.getAbsoluteFile().getParentFile();
+        for (int index = 0; index < chunkCount; index++) {
+            long rangeStart = index * chunkSize;
+            if(rangeStart >= length) {
+                break;
+            }
+            long rangeEnd = Math.min(length, rangeStart + chunkSize) - 1;
+            File chunkFile = new File(directory, target.getName() + PART_FILE_SUFFIX + index + "-" + chunkCount);
+            if(chunkFile.length() > rangeEnd - rangeStart + 1) {
+                // 与当前分块范围不符, 无法续传
+                Files.delete(chunkFile.toPath());
+            }
+            progress.resumedBytes += chunkFile.length();
+            chunkFiles.add(chunkFile);
+            futures.add(chunkExecutor.submit(() ->
+                    withRetry(() -> fetchRange(url, chunkFile, rangeStart, rangeEnd, null, progress), progress)));
+        }
+        if(progress.resumedBytes > 0) {
+            metrics.resumeCount.increment();
+            log.debug("{} 分块下载从 {} Bytes 处继续.", target.getName(), progress.resumedBytes);
+        }
+        awaitChunks(futures);
+
+        File mergedFile = getPartFile(target);
+        List<InputStream> chunkInputs = new ArrayList<>(chunkFiles.size());
+        long size;
+        try {
+            for (File chunkFile : chunkFiles) {
+                chunkInputs.add(new FileInputStream(chunkFile));
+            }
+            try (InputStream input = new SequenceInputStream(Collections.enumeration(chunkInputs))) {
+                size = AtomicFileWriter.write(input, mergedFile, digest, length);
+            }
+        } finally {
+            for (InputStream chunkInput : chunkInputs) {
+                chunkInput.close();
+            }
+        }
+        for (File chunkFile : chunkFiles) {
+            Files.deleteIfExists(chunkFile.toPath());
+        }
+        verify(size, digest, mergedFile);
+        AtomicFileWriter.replace(mergedFile, target);
+        return size;
+    }
+
+    private static void awaitChunks(List<Future<Long>> futures) throws IOException {
+        try {
+            for (Future<Long> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Chunked download interrupted");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void verify(long size, MessageDigest digest, File downloadedFile) throws IOException {
+        boolean sizeMismatch = expectedSize >= 0 && size != expectedSize;
+        if(sizeMismatch || (digest != null && expectedDigest != null &&
+                !MessageDigest.isEqual(expectedDigest, cloneDigest(digest)))) {
+            Files.deleteIfExists(downloadedFile.toPath());
+            metrics.verifyFailureCount.increment();
+            throw new VerificationException("Downloaded data does not match the expected checksum (size: " + size +
+                    ", expected size: " + expectedSize + ")");
+        }
+    }
+
+    /**
+     * 在不重置摘要对象的情况下获取当前摘要, 以便调用方在下载完成后仍可获取摘要
+     */
+    private static byte[] cloneDigest(MessageDigest digest) throws IOException {
+        try {
+            return ((MessageDigest) digest.clone()).digest();
+        } catch (CloneNotSupportedException e) {
+            throw new IOException("MessageDigest does not support clone: " + digest.getAlgorithm(), e);
+        }
+    }
+
+    /**
+     * 检查服务端是否支持 Range 请求
+     * @return 支持时返回文件大小, 否则返回-1
+     */
+    private long probeRangeSupport(String url) {
+        HttpHead request = new HttpHead(url);
+        headers.forEach(request::addHeader);
+        try {
+            HttpResponse response = httpClient.execute(request);
+            EntityUtils.consumeQuietly(response.getEntity());
+            Header acceptRanges = response.getFirstHeader("Accept-Ranges");
+            Header contentLength = response.getFirstHeader("Content-Length");
+            if(response.getStatusLine().getStatusCode() != 200 || acceptRanges == null ||
+                    !"bytes".equalsIgnoreCase(acceptRanges.getValue()) || contentLength == null) {
+                return -1;
+            }
+            return Long.parseLong(contentLength.getValue());
+        } catch (IOException | NumberFormatException e) {
+            log.debug("检查 Range 请求支持时发生异常, 将不分块下载: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * 将指定范围的数据下载到续传文件中, 续传文件已有的数据将被跳过.
+     * @param partFile 续传文件, 保存从 rangeStart 开始的数据
+     * @param rangeStart 范围起始位置
+     * @param rangeEnd 范围结束位置(包含), 小于0表示到文件末尾
+     * @param digest 摘要对象, 不为null时将重置并对续传文件的完整内容计算摘要
+     * @return 返回续传文件的最终大小
+     */
+    private long fetchRange(String url, File partFile, long rangeStart, long rangeEnd,
+                            MessageDigest digest, Progress progress) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(partFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long offset = fileChannel.size();
+            if(rangeEnd >= 0 && offset == rangeEnd - rangeStart + 1) {
+                return offset;
+            }
+            HttpResponse response;
+            try {
+                response = execute(url, rangeStart + offset, rangeEnd);
+            } catch (HttpRequestException e) {
+                if(e.getStatusLine().getStatusCode() == 416 && offset > 0) {
+                    // 续传位置无效(例如远端文件已变化), 丢弃续传数据后由重试从头下载
+                    fileChannel.truncate(0);
+                    throw new IOException("Range not satisfiable, part file discarded: " + url, e);
+                }
+                throw e;
+            }
+            HttpEntity entity = response.getEntity();
+            long expectedLength;
+            if(response.getStatusLine().getStatusCode() == 200) {
+                // 服务端忽略了 Range 请求, 只有从头下载整个文件时可以接受
+                if(rangeStart != 0 || rangeEnd >= 0) {
+                    abort(response);
+                    throw new IOException("Server ignored range request: " + url);
+                }
+                offset = 0;
+                fileChannel.truncate(0);
+                expectedLength = entity.getContentLength();
+            } else {
+                expectedLength = getRangeLength(response);
+            }
+
+            if(digest != null) {
+                digest.reset();
+                digestPrefix(fileChannel, offset, digest);
+            }
+            long written = 0;
+            InputStream content = entity.getContent();
+            boolean completed = false;
+            try {
+                InputStream source = digest == null ? content : new DigestInputStream(content, digest);
+                // 不使用 Channels.newChannel, 其在线程被中断时会在中断方线程中关闭响应流, 而关闭响应流可能阻塞
+                byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+                int length;
+                while((length = source.read(buffer)) != -1) {
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, length);
+                    while(byteBuffer.hasRemaining()) {
+                        written += fileChannel.write(byteBuffer, offset + written);
+                    }
+                    progress.transferred.addAndGet(length);
+                    metrics.transferredBytes.add(length);
+                    if(Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Download interrupted");
+                    }
+                }
+                completed = true;
+            } finally {
+                if(completed) {
+                    content.close();
+                } else {
+                    // 先断开连接再关闭流, 否则关闭流时会尝试读完剩余的数据
+                    abort(response);
+                    closeQuietly(content);
+                }
+            }
+            if(expectedLength >= 0 && written != expectedLength) {
+                throw new IOException("Incomplete data (expected " + expectedLength + " bytes, got " + written + ")");
+            }
+            return offset + written;
+        }
+    }
+
+    private static void digestPrefix(FileChannel fileChannel, long length, MessageDigest digest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long position = 0;
+        while(position < length) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), length - position));
+            int read = fileChannel.read(buffer, position);
+            if(read < 0) {
+                throw new EOFException("Part file truncated while reading");
+            }
+            buffer.flip();
+            digest.update(buffer);
+            position += read;
+        }
+    }
+
+    /**
+     * 发送请求并检查响应状态
+     * @param from 起始位置, 为0且 to 小于0时不发送 Range 请求头
+     * @param to 结束位置(包含), 小于0表示到文件末尾
+     * @return 返回状态码为200或206的响应, 206响应的起始位置已检查与请求一致
+     */
+    private HttpResponse execute(String url, long from, long to) throws IOException {
+        HttpGet request = new HttpGet(url);
+        headers.forEach(request::addHeader);
+        // 续传位置以未压缩的数据计算, 不能让服务端压缩响应
+        request.addHeader("Accept-Encoding", "identity");
+        if(from > 0 || to >= 0) {
+            request.addHeader("Range", "bytes=" + from + "-" + (to >= 0 ? to : ""));
+        }
+        HttpResponse response = httpClient.execute(request);
+        int statusCode = response.getStatusLine().getStatusCode();
+        if(statusCode == 206) {
+            Matcher matcher = parseContentRange(response);
+            if(matcher == null || Long.parseLong(matcher.group(1)) != from) {
+                abort(response);
+                throw new IOException("Unexpected Content-Range: " + response.getFirstHeader("Content-Range"));
+            }
+            return response;
+        } else if(statusCode == 200) {
+            return response;
+        }
+        throw new HttpRequestException(response);
+    }
+
+    private static Matcher parseContentRange(HttpResponse response) {
+        Header contentRange = response.getFirstHeader("Content-Range");
+        if(contentRange == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_RANGE_PATTERN.matcher(contentRange.getValue().trim());
+        return matcher.matches() ? matcher : null;
+    }
+
+    private static long getRangeLength(HttpResponse response) {
+        Matcher matcher = Objects.requireNonNull(parseContentRange(response));
+        return Long.parseLong(matcher.group(2)) - Long.parseLong(matcher.group(1)) + 1;
+    }
+
+    private static void abort(HttpResponse response) {
+        // 不读完剩余数据就关闭连接, 避免连接被放回连接池时阻塞
+        if(response instanceof Closeable) {
+            closeQuietly((Closeable) response);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // 连接已断开, 关闭时的异常无需处理
+        }
+    }
+
+    private <R> R withRetry(IOCallable<R> callable, Progress progress) throws IOException {
+        int attempt = 0;
+        while(true) {
+            try {
+                return callable.call();
+            } catch (IOException e) {
+                if(isInterrupted(e) || !isRetryable(e) || attempt >= maxRetries) {
+                    throw e;
+                }
+                attempt++;
+                progress.retries.incrementAndGet();
+                metrics.retryCount.increment();
+                log.warn("下载时发生异常, 即将重试[{} / {}]: {}", attempt, maxRetries, e.getMessage());
+                try {
+                    Thread.sleep(retryDelay * attempt);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Download interrupted while waiting for retry");
+                }
+            }
+        }
+    }
+
+    private static boolean isInterrupted(IOException e) {
+        return Thread.currentThread().isInterrupted() ||
+                e instanceof ClosedByInterruptException ||
+                // 超时异常也是 InterruptedIOException 的子类, 但应当重试
+                e.getClass() == InterruptedIOException.class;
+    }
+
+    private static boolean isRetryable(IOException e) {
+        if(e instanceof HttpRequestException) {
+            int statusCode = ((HttpRequestException) e).getStatusLine().getStatusCode();
+            return statusCode >= 500 || statusCode == 429;
+        }
+        return true;
+    }
+
+    @FunctionalInterface
+    private interface IOCallable<R> {
+        R call() throws IOException;
+    }
+
+    private final static class Progress {
+        private final AtomicLong transferred = new AtomicLong();
+        private final AtomicInteger retries = new AtomicInteger();
+        private volatile long resumedBytes;
+        private volatile boolean chunked;
+    }
+
+    /**
+     * 读取中断时自动续传的输入流
+     */
+    private final class ResumingInputStream extends InputStream {
+
+        private final String url;
+        private final Progress progress;
+        private final long startTime = System.nanoTime();
+        private HttpResponse response;
+        private InputStream content;
+        private long position;
+        private boolean finished;
+
+        private ResumingInputStream(String url, HttpResponse response, Progress progress) throws IOException {
+            this.url = url;
+            this.progress = progress;
+            this.response = response;
+            this.content = response.getEntity().getContent();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int length = read(buffer, 0, 1);
+            return length == -1 ? -1 : buffer[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(finished) {
+                return -1;
+            }
+            int attempt = 0;
+            while(true) {
+                try {
+                    int length = content.read(b, off, len);
+                    if(length == -1) {
+                        finished = true;
+                        metrics.elapsedNanos.add(System.nanoTime() - startTime);
+                    } else {
+                        position += length;
+                        progress.transferred.addAndGet(length);
+                        metrics.transferredBytes.add(length);
+                    }
+                    return length;
+                } catch (IOException e) {
+                    if(isInterrupted(e) || attempt >= maxRetries) {
+                        metrics.failureCount.increment();
+                        throw e;
+                    }
+                    attempt++;
+                    metrics.retryCount.increment();
+                    log.warn("读取下载流时发生异常, 即将从 {} Bytes 处重试[{} / {}]: {}",
+                            position, attempt, maxRetries, e.getMessage());
+                    abort(response);
+                    closeQuietly(content);
+                    try {
+                        reopen(attempt);
+                    } catch (IOException reopenException) {
+                        metrics.failureCount.increment();
+                        throw reopenException;
+                    }
+                }
+            }
+        }
+
+        private void reopen(int attempt) throws IOException {
+            try {
+                Thread.sleep(retryDelay * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Download interrupted while waiting for retry");
+            }
+            response = execute(url, position, -1);
+            if(response.getStatusLine().getStatusCode() != 206 && position > 0) {
+                abort(response);
+                throw new IOException("Server does not support range requests: " + url);
+            }
+            metrics.resumeCount.increment();
+            content = response.getEntity().getContent();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(finished) {
+                content.close();
+            } else {
+                abort(response);
+                closeQuietly(content);
+            }
+        }
+    }
+
+    /**
+     * 下载的数据与预期的大小或摘要不符时抛出
+     */
+    public final static class VerificationException extends IOException {
+        private VerificationException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 下载结果
+     */
+    public final static class Result {
+        private final long size;
+        private final long transferredBytes;
+        private final long resumedBytes;
+        private final int retries;
+        private final boolean chunked;
+        private final long elapsedNanos;
+
+        private Result(long size, long transferredBytes, long resumedBytes,
+                       int retries, boolean chunked, long elapsedNanos) {
+            this.size = size;
+            this.transferredBytes = transferredBytes;
+            this.resumedBytes = resumedBytes;
+            this.retries = retries;
+            this.chunked = chunked;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * 获取文件大小
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * 获取本次实际通过网络传输的字节数
+         */
+        public long getTransferredBytes() {
+            return transferredBytes;
+        }
+
+        /**
+         * 获取下载开始时已从续传文件中恢复的字节数
+         */
+        public long getResumedBytes() {
+            return resumedBytes;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
+        public boolean isChunked() {
+            return chunked;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    /**
+     * 下载统计信息
+     */
+    public final static class Metrics {
+        private final LongAdder downloadCount = new LongAdder();
+        private final LongAdder failureCount = new LongAdder();
+        private final LongAdder retryCount = new LongAdder();
+        private final LongAdder resumeCount = new LongAdder();
+        private final LongAdder chunkedCount = new LongAdder();
+        private final LongAdder verifyFailureCount = new LongAdder();
+        private final LongAdder transferredBytes = new LongAdder();
+        private final LongAdder elapsedNanos = new LongAdder();
+
+        public long getDownloadCount() {
+            return downloadCount.sum();
+        }
+
+        public long getFailureCount() {
+            return failureCount.sum();
+        }
+
+        public long getRetryCount() {
+            return retryCount.sum();
+        }
+
+        /**
+         * 获取续传次数, 包括从续传文件继续下载和下载流断开后重新连接
+         */
+        public long getResumeCount() {
+            return resumeCount.sum();
+        }
+
+        public long getChunkedCount() {
+            return chunkedCount.sum();
+        }
+
+        /**
+         * 获取下载完成但数据与预期校验信息不符的次数
+         */
+        public long getVerifyFailureCount() {
+            return verifyFailureCount.sum();
+        }
+
+        public long getTransferredBytes() {
+            return transferredBytes.sum();
+        }
+
+        /**
+         * 获取平均下载速度
+         * @return 平均下载速度, 单位字节每秒, 没有下载记录时返回0
+         */
+        public double getThroughput() {
+            long nanos = elapsedNanos.sum();
+            return nanos == 0 ? 0 : transferredBytes.sum() / (nanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("下载次数: %d, 失败次数: %d, 校验失败次数: %d\n" +
+                            "重试次数: %d, 续传次数: %d, 分块下载次数: %d\n" +
+                            "已下载: %.2fMB, 平均速度: %.2fKB/s",
+                    getDownloadCount(), getFailureCount(), getVerifyFailureCount(),
+                    getRetryCount(), getResumeCount(), getChunkedCount(),
+                    getTransferredBytes() / 1048576.0, getThroughput() / 1024);
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+package net.lamgc.cgj.util;
+
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 请求合并加载器.
+ * <p>对于同一个Key, 同一时间只会有一个调用方(Leader)执行加载, 其他并发调用方(Follower)
+ * 将等待并直接获取Leader的加载结果, 不会重复执行加载, 也不需要再次读取缓存.</p>
+ * <p>加载在Leader自身的线程中执行, 加载完成后Key将从合并表中移除, 后续调用将重新执行加载.</p>
+ * @param <K> Key类型
+ * @param <V> 加载结果类型
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, Call<V>> calls = new ConcurrentHashMap<>();
+
+    private final long defaultTimeout;
+
+    private final AtomicLong leaderCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    /**
+     * 构造一个不限制等待时间的请求合并加载器
+     */
+    public SingleFlight() {
+        this(0);
+    }
+
+    /**
+     * 构造一个请求合并加载器
+     * @param defaultTimeout 默认等待时间, 单位毫秒, 如为0或负数则不限制等待时间
+     */
+    public SingleFlight(long defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    /**
+     * 执行加载, 使用默认等待时间
+     * @param key Key
+     * @param loader 加载器
+     * @return 返回加载结果
+     * @see #execute(Object, Callable, long, TimeUnit)
+     */
+    public V execute(K key, Callable<V> loader)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        return execute(key, loader, defaultTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 执行加载.
+     * <p>如果该Key没有正在进行的加载, 则在当前线程执行加载; 否则等待正在进行的加载完成并返回其结果.</p>
+     * @param key Key
+     * @param loader 加载器
+     * @param timeout 等待其他调用方加载完成的最长时间, 如为0或负数则不限制等待时间
+     * @param unit 时间单位
+     * @return 返回加载结果
+     * @throws ExecutionException 当加载过程抛出异常时抛出, 可通过 {@link ExecutionException#getCause()} 获取原异常
+     * @throws InterruptedException 当等待过程中线程被中断时抛出
+     * @throws TimeoutException 当等待时间超出限制时抛出
+     * @throws CancellationException 当加载被 {@link #cancel(Object, boolean)} 取消时抛出
+     */
+    public V execute(K key, Callable<V> loader, long timeout, TimeUnit unit)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(loader);
+        Call<V> newCall = new Call<>(Thread.currentThread());
+        Call<V> call = calls.computeIfAbsent(key, k -> newCall);
+        if(call != newCall) {
+            coalescedCount.incrementAndGet();
+            if(timeout <= 0) {
+                return call.future.get();
+            }
+            try {
+                return call.future.get(timeout, unit);
+            } catch (TimeoutException e) {
+                timeoutCount.incrementAndGet();
+                throw e;
+            }
+        }
+
+        leaderCount.incrementAndGet();
+        try {
+            if(call.start()) {
+                V value = null;
+                Throwable error = null;
+                try {
+                    value = loader.call();
+                } catch (Throwable e) {
+                    error = e;
+                }
+                call.finish(value, error);
+            }
+        } finally {
+            calls.remove(key, call);
+        }
+        return call.future.get();
+    }
+
+    /**
+     * 取消正在进行的加载, 所有等待该加载的调用方将抛出 {@link CancellationException}
+     * @param key Key
+     * @param mayInterruptLeader 是否中断正在执行的加载任务, 仅在加载任务仍在运行时中断,
+     *                           不会中断已完成加载的Leader线程
+     * @return 如果存在正在进行的加载且成功取消, 返回true; 加载已完成(即使结果尚未交付)时返回false
+     */
+    public boolean cancel(K key, boolean mayInterruptLeader) {
+        Call<V> call = calls.get(key);
+        if(call == null || !call.cancel(mayInterruptLeader)) {
+            return false;
+        }
+        calls.remove(key, call);
+        return true;
+    }
+
+    /**
+     * 获取正在进行的加载数量
+     */
+    public int getInFlightCount() {
+        return calls.size();
+    }
+
+    /**
+     * 获取执行加载(Leader)的调用次数
+     */
+    public long getLeaderCount() {
+        return leaderCount.get();
+    }
+
+    /**
+     * 获取被合并(Follower)的调用次数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * 获取等待超时的调用次数
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    private final static class Call<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private final Thread leader;
+        /**
+         * 以下状态均由Call自身的锁保护, 确保取消与加载完成不会交错
+         */
+        private boolean running;
+        private boolean finished;
+        /**
+         * Leader线程是否被 {@link #cancel(boolean)} 中断过
+         */
+        private boolean interruptedByCancel;
+        /**
+         * 被取消中断前, Leader线程是否已处于中断状态
+         */
+        private boolean interruptedBefore;
+
+        Call(Thread leader) {
+            this.leader = leader;
+        }
+
+        /**
+         * 标记加载开始
+         * @return 如果加载在开始前已被取消, 返回false, Leader不应再执行加载
+         */
+        synchronized boolean start() {
+            if(future.isCancelled()) {
+                finished = true;
+                return false;
+            }
+            running = true;
+            return true;
+        }
+
+        /**
+         * 提交加载结果, 并撤销取消时对Leader线程发起的中断
+         */
+        synchronized void finish(V value, Throwable error) {
+            running = false;
+            finished = true;
+            if(error == null) {
+                future.complete(value);
+            } else {
+                future.completeExceptionally(error);
+            }
+            if(interruptedByCancel) {
+                // 中断只用于停止本次加载, 清除由取消发起的中断, 但保留此前已存在的中断状态
+                Thread.interrupted();
+                if(interruptedBefore) {
+                    leader.interrupt();
+                }
+            }
+        }
+
+        /**
+         * 取消加载, 已完成的加载不可取消
+         * @param mayInterruptLeader 加载仍在运行时是否中断Leader线程
+         * @return 如果成功取消, 返回true
+         */
+        synchronized boolean cancel(boolean mayInterruptLeader) {
+            if(finished || !future.cancel(false)) {
+                return false;
+            }
+            if(mayInterruptLeader && running) {
+                interruptedBefore = leader.isInterrupted();
+                interruptedByCancel = true;
+                leader.interrupt();
+            }
+            return true;
+        }
+    }
+
+}
@@ -2,15 +2,23 @@ package net.lamgc.cgj.util;
 
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 带有时间限制的线程池.
  * 当线程超出了限制时间时, 将会对该线程发出中断.
+ * <p>每个任务开始执行时, 在截止时间调度器中登记该任务的截止时间, 任务结束时取消登记,
+ * 到达截止时间时立即中断执行该任务的线程. 没有任务执行时, 调度器线程不会被唤醒.</p>
+ * <p>任务的限制时间默认为线程池的执行时间限制, 可通过 {@link #execute(Runnable, long)} 为单个任务指定,
+ * 或由任务在执行过程中通过 {@link #setCurrentTaskTimeLimit(long)} 调整.</p>
  */
 public class TimeLimitThreadPoolExecutor extends ThreadPoolExecutor {
 
+    /**
+     * 当前线程正在执行的任务的监控信息
+     */
+    private final static ThreadLocal<MonitorInfo> currentMonitorInfo = new ThreadLocal<>();
+
     /**
      * 执行时间限制, 单位毫秒.
      * 默认30s.
@@ -19,13 +27,13 @@ public class TimeLimitThreadPoolExecutor extends ThreadPoolExecutor {
 
     /**
      * 检查间隔时间.
-     * 默认100ms.
+     * 已不再使用, 仅为兼容保留.
      */
     private final AtomicLong timeoutCheckInterval = new AtomicLong(100);
 
-    private final Map<Thread, MonitorInfo> workerThreadMap = new Hashtable<>();
+    private final Map<Thread, MonitorInfo> workerThreadMap = new ConcurrentHashMap<>();
 
-    private final Thread timeoutCheckThread = createTimeoutCheckThread();
+    private final ScheduledThreadPoolExecutor deadlineScheduler = createDeadlineScheduler();
 
     public TimeLimitThreadPoolExecutor(long executeLimitTime,
                                        int corePoolSize,
@@ -35,7 +43,6 @@ public class TimeLimitThreadPoolExecutor extends ThreadPoolExecutor {
                                        BlockingQueue<Runnable> workQueue) {
         super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue);
         setInitialTime(executeLimitTime);
-        timeoutCheckThread.start();
     }
 
     public TimeLimitThreadPoolExecutor(long executeLimitTime,
@@ -47,7 +54,6 @@ public class TimeLimitThreadPoolExecutor extends ThreadPoolExecutor {
                                        ThreadFactory threadFactory) {
         super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory);
         setInitialTime(executeLimitTime);
-        timeoutCheckThread.start();
     }
 
     public TimeLimitThreadPoolExecutor(long executeLimitTime,
@@ -59,7 +65,6 @@ public class TimeLimitThreadPoolExecutor extends ThreadPoolExecutor {
                                        RejectedExecutionHandler handler) {
         super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, handler);
         setInitialTime(executeLimitTime);
-        timeoutCheckThread.start();
     }
 
     public TimeLimitThreadPoolExecutor(long executeLimitTime,
@@ -72,7 +77,6 @@ public class TimeLimitThreadPoolExecutor extends ThreadPoolExecutor {
                                        RejectedExecutionHandler handler) {
         super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
         setInitialTime(executeLimitTime);
-        timeoutCheckThread.start();
     }
 
     private void setInitialTime(long executeLimitTime) {
@@ -98,9 +102,11 @@ public class TimeLimitThreadPoolExecutor extends ThreadPoolExecutor {
 
     /**
      * 设置超时检查间隔.
-     * <p>该方法仅会在当前检查后生效.</p>
+     * <p>任务超时已改为按截止时间调度, 该设置不再影响超时检查.</p>
      * @param time 新的检查间隔(ms)
+     * @deprecated 超时检查不再轮询, 无需设置检查间隔.
      */
+    @Deprecated
     public void setTimeoutCheckInterval(long time) {
         if(time <= 0) {
             throw new IllegalArgumentException("Time is not allowed to be set to 0 or less");
@@ -119,73 +125,161 @@ public class TimeLimitThreadPoolExecutor extends ThreadPoolExecutor {
     /**
      * 获取当前设定的超时检查间隔
      * @return 间隔时间(ms).
+     * @deprecated 超时检查不再轮询, 该值不再使用.
      */
+    @Deprecated
     public long getTimeoutCheckInterval() {
         return timeoutCheckInterval.get();
     }
 
-    private Thread createTimeoutCheckThread() {
-        Thread checkThread = new Thread(() -> {
-            if(executeTimeLimit.get() <= 0) {
-                return;
-            }
-            while (true) {
-                try {
-                    long interval = this.timeoutCheckInterval.get();
-                    //noinspection BusyWait 用于等待超时
-                    Thread.sleep(interval);
-
-                    // 检查是否存在超时的任务
-                    final long executeTimeLimit = this.executeTimeLimit.get();
-                    workerThreadMap.forEach((thread, info) -> {
-                        long currentTime = info.getTimeRemaining().getAndAdd(interval);
-                        if(currentTime > executeTimeLimit) {
-                            if(!info.getNotifyInterrupted().get() && !thread.isInterrupted()) {
-                                thread.interrupt();
-                                info.getNotifyInterrupted().set(true);
-                            }
-                        }
-                    });
-                } catch(InterruptedException ignored) {
-                    break;
-                }
-            }
-        });
+    /**
+     * 获取正在执行的任务数量.
+     * @return 已登记截止时间, 尚未结束的任务数量.
+     */
+    public int getMonitoredTaskCount() {
+        return workerThreadMap.size();
+    }
 
-        checkThread.setName("ThreadPool-" + Integer.toHexString(this.hashCode()) +"-TimeoutCheck");
-        return checkThread;
+    /**
+     * 以指定的限制时间执行任务.
+     * @param command 任务
+     * @param executeTimeLimit 该任务的执行时间限制(ms), 小于等于0则不限制时间
+     */
+    public void execute(Runnable command, long executeTimeLimit) {
+        execute(new TimeLimitedTask(Objects.requireNonNull(command), executeTimeLimit));
+    }
+
+    /**
+     * 调整当前线程所执行任务的限制时间.
+     * <p>新的限制时间从任务开始执行时算起, 如果按新的限制时间任务已经超时, 将立即中断当前线程.</p>
+     * @param executeTimeLimit 新的限制时间(ms), 小于等于0则取消时间限制
+     * @return 如果当前线程不是在本类线程池中执行任务, 返回false.
+     */
+    public static boolean setCurrentTaskTimeLimit(long executeTimeLimit) {
+        MonitorInfo info = currentMonitorInfo.get();
+        if(info == null) {
+            return false;
+        }
+        info.reschedule(executeTimeLimit);
+        return true;
+    }
+
+    private ScheduledThreadPoolExecutor createDeadlineScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable,
+                    "ThreadPool-" + Integer.toHexString(this.hashCode()) + "-TimeoutCheck");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 任务大多在截止时间前结束, 取消时立即移出队列以免堆积
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
     }
 
     @Override
     protected void beforeExecute(Thread t, Runnable r) {
-        workerThreadMap.put(t, new MonitorInfo());
+        long timeLimit = r instanceof TimeLimitedTask ?
+                ((TimeLimitedTask) r).executeTimeLimit : executeTimeLimit.get();
+        MonitorInfo info = new MonitorInfo(t);
+        workerThreadMap.put(t, info);
+        currentMonitorInfo.set(info);
+        info.reschedule(timeLimit);
         super.beforeExecute(t, r);
     }
 
     @Override
     protected void afterExecute(Runnable r, Throwable t) {
-        workerThreadMap.remove(Thread.currentThread());
+        MonitorInfo info = currentMonitorInfo.get();
+        currentMonitorInfo.remove();
+        if(info != null) {
+            info.finish();
+            workerThreadMap.remove(info.thread, info);
+        }
         super.afterExecute(r, t);
     }
 
     @Override
     protected void terminated() {
-        this.timeoutCheckThread.interrupt();
+        this.deadlineScheduler.shutdownNow();
         super.terminated();
     }
 
-    private static class MonitorInfo {
+    /**
+     * 指定了限制时间的任务
+     */
+    private static class TimeLimitedTask implements Runnable {
+
+        private final Runnable task;
+
+        private final long executeTimeLimit;
+
+        private TimeLimitedTask(Runnable task, long executeTimeLimit) {
+            this.task = task;
+            this.executeTimeLimit = executeTimeLimit;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    private class MonitorInfo {
+
+        private final Thread thread;
 
-        private final AtomicLong timeRemaining = new AtomicLong();
+        private final long startTime = System.nanoTime();
 
-        private final AtomicBoolean notifyInterrupted = new AtomicBoolean(false);
+        private ScheduledFuture<?> deadline;
 
-        public AtomicBoolean getNotifyInterrupted() {
-            return notifyInterrupted;
+        private boolean finished = false;
+
+        private boolean notifyInterrupted = false;
+
+        private MonitorInfo(Thread thread) {
+            this.thread = thread;
         }
 
-        public AtomicLong getTimeRemaining() {
-            return timeRemaining;
+        /**
+         * 按新的限制时间重新登记截止时间
+         * @param executeTimeLimit 限制时间(ms), 小于等于0则取消时间限制
+         */
+        private synchronized void reschedule(long executeTimeLimit) {
+            if(finished) {
+                return;
+            }
+            if(deadline != null) {
+                deadline.cancel(false);
+                deadline = null;
+            }
+            if(executeTimeLimit <= 0) {
+                return;
+            }
+            long delay = TimeUnit.MILLISECONDS.toNanos(executeTimeLimit) - (System.nanoTime() - startTime);
+            try {
+                deadline = deadlineScheduler.schedule(this::interrupt, Math.max(delay, 0), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ignored) {
+                // 线程池已终止
+            }
+        }
+
+        /**
+         * 到达截止时间, 中断执行线程.
+         * 与 {@link #finish()} 互斥, 保证不会中断线程接下来执行的其他任务.
+         */
+        private synchronized void interrupt() {
+            if(!finished && !notifyInterrupted) {
+                notifyInterrupted = true;
+                thread.interrupt();
+            }
+        }
+
+        private synchronized void finish() {
+            finished = true;
+            if(deadline != null) {
+                deadline.cancel(false);
+                deadline = null;
+            }
         }
     }
 
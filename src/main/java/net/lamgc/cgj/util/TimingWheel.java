@@ -0,0 +1,364 @@
+package net.lamgc.cgj.util;
+
+import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 分层时间轮定时器.
+ * <p>时间轮共 {@value #LEVELS} 层, 每层 {@value #WHEEL_SIZE} 个槽位,
+ * 第 n 层的每个槽位跨度为 {@code tickDuration * 64^n}, 添加和取消定时任务的开销均为 O(1),
+ * 每个刻度只处理当前到期的槽位, 高层槽位到期时再将其中的任务逐层下放.</p>
+ * <p>添加和取消操作先写入无锁队列, 由时间轮线程统一处理, 到期任务也在时间轮线程中执行,
+ * 所以任务应当尽可能简短, 不能执行阻塞操作.</p>
+ * <p>时间轮中没有任务时, 时间轮线程将会休眠, 直到有新的任务加入.</p>
+ */
+public class TimingWheel {
+
+    private final static Logger log = LoggerFactory.getLogger(TimingWheel.class);
+
+    private final static int LEVEL_BITS = 6;
+    private final static int WHEEL_SIZE = 1 << LEVEL_BITS;
+    private final static int WHEEL_MASK = WHEEL_SIZE - 1;
+    private final static int LEVELS = 4;
+    /**
+     * 时间轮可直接容纳的最大刻度数, 超出范围的任务将先放入最高层, 下放时重新计算位置
+     */
+    private final static long MAX_TICKS = 1L << (LEVEL_BITS * LEVELS);
+
+    private final long tickDuration;
+    private final long startTime = System.nanoTime();
+    private final Bucket[][] wheels = new Bucket[LEVELS][WHEEL_SIZE];
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final Thread workerThread;
+
+    private volatile boolean idle;
+    private volatile boolean stopped;
+
+    // 以下字段仅由时间轮线程修改
+    /**
+     * 下一个待处理的刻度, 处理刻度期间为正在处理的刻度
+     */
+    private long currentTick;
+    private int scheduledCount;
+    private volatile long lastTickExpiredCount;
+    private volatile long totalExpiredCount;
+    private volatile long lastTickLag;
+    private volatile long maxTickLag;
+
+    /**
+     * 构造一个时间轮并启动时间轮线程
+     * @param name 时间轮名称, 用于线程命名
+     * @param tickDuration 刻度间隔
+     * @param unit 刻度间隔的时间单位
+     */
+    public TimingWheel(String name, long tickDuration, TimeUnit unit) {
+        this.tickDuration = unit.toNanos(tickDuration);
+        if(this.tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+        }
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+        workerThread = new Thread(this::runWorker, "Thread-TimingWheel-" + Objects.requireNonNull(name));
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    /**
+     * 添加一个定时任务
+     * @param task 到期后执行的任务
+     * @param delay 延迟时间
+     * @param unit 延迟时间单位
+     * @return 返回定时任务对象, 可用于取消任务
+     * @throws IllegalStateException 当时间轮已停止时抛出
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        Objects.requireNonNull(task);
+        if(stopped) {
+            throw new IllegalStateException("TimingWheel has been stopped");
+        }
+        long deadline = System.nanoTime() + Math.max(0, unit.toNanos(delay)) - startTime;
+        Timeout timeout = new Timeout(this, task, (deadline + tickDuration - 1) / tickDuration);
+        pendingTimeouts.offer(timeout);
+        if(idle) {
+            LockSupport.unpark(workerThread);
+        }
+        return timeout;
+    }
+
+    /**
+     * 停止时间轮, 尚未到期的任务将不再执行.
+     */
+    public void stop() {
+        stopped = true;
+        LockSupport.unpark(workerThread);
+    }
+
+    /**
+     * 获取刻度间隔
+     * @return 刻度间隔, 单位毫秒
+     */
+    public long getTickDuration() {
+        return TimeUnit.NANOSECONDS.toMillis(tickDuration);
+    }
+
+    /**
+     * 获取最近一个刻度中到期的任务数量
+     */
+    public long getLastTickExpiredCount() {
+        return lastTickExpiredCount;
+    }
+
+    /**
+     * 获取累计到期的任务数量
+     */
+    public long getTotalExpiredCount() {
+        return totalExpiredCount;
+    }
+
+    /**
+     * 获取最近一个刻度的处理延迟(实际处理时间与刻度时间之差)
+     * @return 延迟时间, 单位毫秒
+     */
+    public long getLastTickLag() {
+        return lastTickLag;
+    }
+
+    /**
+     * 获取刻度处理延迟的最大值
+     * @return 延迟时间, 单位毫秒
+     */
+    public long getMaxTickLag() {
+        return maxTickLag;
+    }
+
+    private void runWorker() {
+        while(!stopped) {
+            transferCancelledTimeouts();
+            transferPendingTimeouts();
+            long now = System.nanoTime();
+            if(scheduledCount == 0) {
+                idle = true;
+                if(pendingTimeouts.isEmpty() && !stopped) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                // 时间轮为空, 直接跳到当前刻度, 避免逐个补齐休眠期间的空刻度
+                currentTick = Math.max(currentTick,
+                        (System.nanoTime() - startTime + tickDuration - 1) / tickDuration);
+                continue;
+            }
+
+            long tickTime = startTime + currentTick * tickDuration;
+            if(now - tickTime < 0) {
+                LockSupport.parkNanos(this, tickTime - now);
+                continue;
+            }
+
+            long lag = TimeUnit.NANOSECONDS.toMillis(now - tickTime);
+            lastTickLag = lag;
+            if(lag > maxTickLag) {
+                maxTickLag = lag;
+            }
+            // 处理期间 currentTick 保持为正在处理的刻度, 重新放置的任务以该刻度为基准计算位置
+            int expiredCount = processTick(currentTick);
+            currentTick++;
+            lastTickExpiredCount = expiredCount;
+            totalExpiredCount += expiredCount;
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        Timeout timeout;
+        while((timeout = pendingTimeouts.poll()) != null) {
+            if(timeout.state.get() == Timeout.ST_INIT) {
+                scheduledCount++;
+                place(timeout);
+            }
+        }
+    }
+
+    private void transferCancelledTimeouts() {
+        Timeout timeout;
+        while((timeout = cancelledTimeouts.poll()) != null) {
+            if(timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+                scheduledCount--;
+            }
+        }
+    }
+
+    /**
+     * 根据到期刻度将任务放入对应层级的槽位.
+     * <p>位置以 {@link #currentTick} 为基准计算: 剩余刻度小于 64 的任务放入第 0 层,
+     * 其槽位不会与基准刻度的槽位相同(剩余 64 个刻度时已属于第 1 层), 所以处理刻度时重新放置的任务
+     * 不会回到正在清空的槽位中.</p>
+     */
+    private void place(Timeout timeout) {
+        long deadlineTick = Math.max(timeout.deadlineTick, currentTick);
+        long remaining = deadlineTick - currentTick;
+        if(remaining >= MAX_TICKS) {
+            remaining = MAX_TICKS - 1;
+            deadlineTick = currentTick + remaining;
+        }
+        int level = 0;
+        while(remaining >= 1L << (LEVEL_BITS * (level + 1))) {
+            level++;
+        }
+        wheels[level][(int) ((deadlineTick >>> (LEVEL_BITS * level)) & WHEEL_MASK)].add(timeout);
+    }
+
+    /**
+     * 处理一个刻度
+     * @param tick 刻度
+     * @return 该刻度到期的任务数量
+     */
+    private int processTick(long tick) {
+        // 从高层往低层下放: 下放到低层的任务如果在本刻度到期, 会落入本刻度随后处理的第 0 层槽位;
+        // 其余任务按剩余刻度放入其他槽位, 不会落回正在清空的槽位
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if((tick & ((1L << (LEVEL_BITS * level)) - 1)) == 0) {
+                Timeout timeout;
+                Bucket bucket = wheels[level][(int) ((tick >>> (LEVEL_BITS * level)) & WHEEL_MASK)];
+                while((timeout = bucket.poll()) != null) {
+                    place(timeout);
+                }
+            }
+        }
+
+        int expiredCount = 0;
+        Bucket bucket = wheels[0][(int) (tick & WHEEL_MASK)];
+        Timeout timeout;
+        while((timeout = bucket.poll()) != null) {
+            if(timeout.deadlineTick > tick) {
+                place(timeout);
+                continue;
+            }
+            scheduledCount--;
+            if(timeout.expire()) {
+                expiredCount++;
+            }
+        }
+        return expiredCount;
+    }
+
+    /**
+     * 定时任务
+     */
+    public final static class Timeout {
+
+        private final static int ST_INIT = 0;
+        private final static int ST_CANCELLED = 1;
+        private final static int ST_EXPIRED = 2;
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadlineTick;
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+        // 以下字段仅由时间轮线程访问
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadlineTick) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * 取消定时任务
+         * @return 如果任务尚未到期且未被取消, 返回true
+         */
+        public boolean cancel() {
+            if(state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                wheel.cancelledTimeouts.offer(this);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 任务是否已被取消
+         */
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        /**
+         * 任务是否已到期
+         */
+        public boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+
+        private boolean expire() {
+            if(!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                return false;
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.error("定时任务 {} 执行时发生异常:\n{}", task, Throwables.getStackTraceAsString(e));
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 时间轮槽位, 使用双向链表存储任务
+     */
+    private final static class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if(tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if(timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if(timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        Timeout poll() {
+            Timeout timeout = head;
+            if(timeout != null) {
+                remove(timeout);
+            }
+            return timeout;
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package net.lamgc.cgj.benchmark;
+
+import net.lamgc.cgj.util.ExecutorMode;
+import net.lamgc.cgj.util.TimeLimitThreadPoolExecutor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比两种 {@link ExecutorMode} 下命令处理线程池的排队延迟.
+ * <p>线程池参数与 BotEventHandler 一致(平台线程模式下最多32个线程, 队列容量1536),
+ * 每轮同时提交一批任务, 每个任务阻塞一段时间以模拟等待Pixiv接口响应,
+ * 测量整批任务完成的时间, 并在结束时输出任务从提交到开始执行的排队延迟分布.</p>
+ * <p>虚拟线程模式需在JDK21及以上运行, 在低版本JDK中只能运行 {@code -p mode=PLATFORM}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ExecutorModeBenchmark {
+
+    private final static int BURST_SIZE = 1000;
+
+    private final static long TASK_BLOCKING_MILLIS = 20;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private ExecutorMode mode;
+
+    private TimeLimitThreadPoolExecutor executor;
+
+    private long[] queueNanos;
+
+    private int samples;
+
+    @Setup
+    public void setup() {
+        if(mode == ExecutorMode.VIRTUAL && !ExecutorMode.isVirtualThreadSupported()) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by the current JDK");
+        }
+        int platformThreads = Math.max(Runtime.getRuntime().availableProcessors(), 4);
+        executor = new TimeLimitThreadPoolExecutor(
+                180000,
+                mode.corePoolSize(platformThreads),
+                mode.maximumPoolSize(Math.min(platformThreads, 32)),
+                30L,
+                TimeUnit.SECONDS,
+                mode.workQueue(1536),
+                mode.threadFactory("BenchmarkCommandProcess-%d"));
+        queueNanos = new long[BURST_SIZE * 16];
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        long[] sorted = Arrays.copyOf(queueNanos, Math.min(samples, queueNanos.length));
+        Arrays.sort(sorted);
+        if(sorted.length != 0) {
+            System.out.printf("%n[%s] 排队延迟: p50 %.2fms, p99 %.2fms, max %.2fms (%d samples)%n", mode,
+                    percentile(sorted, 0.5), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1e6,
+                    sorted.length);
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(sorted.length * percentile))] / 1e6;
+    }
+
+    @Benchmark
+    public void burst() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(BURST_SIZE);
+        int offset = samples;
+        for (int i = 0; i < BURST_SIZE; i++) {
+            int index = offset + i;
+            long submitTime = System.nanoTime();
+            executor.execute(() -> {
+                if(index < queueNanos.length) {
+                    queueNanos[index] = System.nanoTime() - submitTime;
+                }
+                try {
+                    Thread.sleep(TASK_BLOCKING_MILLIS);
+                } catch (InterruptedException ignored) {
+                    // 基准测试结束
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        samples += BURST_SIZE;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExecutorModeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
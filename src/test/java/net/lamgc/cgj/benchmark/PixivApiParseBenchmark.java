@@ -0,0 +1,126 @@
+package net.lamgc.cgj.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import net.lamgc.cgj.pixiv.PixivApiReader;
+import net.lamgc.cgj.pixiv.PixivApiResponse;
+import net.lamgc.cgj.pixiv.RankingSnapshot;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比 Pixiv 接口响应的两种解析方式:
+ * <ul>
+ *     <li>tree: 原有方式, 将响应读取为字符串后, 用新建的 Gson 对象构建完整的Json树;</li>
+ *     <li>streaming: 通过 {@link PixivApiReader} 流式读取, 只提取需要的字段.</li>
+ * </ul>
+ * <p>响应内容来自 documents/interfaces 中记录的数据示例, 排行榜示例中的条目将被复制为完整的一页(50条).</p>
+ * <p>需在项目根目录下运行.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PixivApiParseBenchmark {
+
+    private final static int RANKING_PAGE_SIZE = 50;
+
+    private byte[] rankingPage;
+    private byte[] illustInfo;
+
+    @Setup
+    public void setup() throws IOException {
+        Gson gson = new Gson();
+        JsonObject rankingObject = gson.fromJson(
+                loadSample("documents/interfaces/Pixiv排行榜接口.md"), JsonObject.class);
+        JsonArray contents = rankingObject.getAsJsonArray("contents");
+        JsonObject template = contents.get(0).getAsJsonObject();
+        JsonArray fullContents = new JsonArray();
+        for (int i = 0; i < RANKING_PAGE_SIZE; i++) {
+            JsonObject entry = template.deepCopy();
+            entry.addProperty("rank", i + 1);
+            entry.addProperty("illust_id", template.get("illust_id").getAsInt() + i);
+            fullContents.add(entry);
+        }
+        rankingObject.add("contents", fullContents);
+        rankingPage = gson.toJson(rankingObject).getBytes(StandardCharsets.UTF_8);
+
+        JsonObject illustObject = gson.fromJson(
+                loadSample("documents/interfaces/Pixiv作品信息获取接口.md"), JsonObject.class);
+        illustInfo = gson.toJson(illustObject).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public RankingSnapshot rankingTree() {
+        JsonObject resultObject = new Gson().fromJson(new String(rankingPage, StandardCharsets.UTF_8), JsonObject.class);
+        JsonArray resultArray = resultObject.getAsJsonArray("contents");
+        RankingSnapshot.Builder builder = new RankingSnapshot.Builder(resultArray.size());
+        for (int i = 0; i < resultArray.size(); i++) {
+            JsonObject entry = resultArray.get(i).getAsJsonObject();
+            builder.add(entry.get("rank").getAsInt(), entry.get("illust_id").getAsInt(),
+                    entry.get("title").getAsString(), entry.get("user_id").getAsInt(),
+                    entry.get("user_name").getAsString(), entry.get("illust_page_count").getAsInt(),
+                    entry.get("illust_type").getAsInt());
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public RankingSnapshot rankingStreaming() throws IOException {
+        RankingSnapshot.Builder builder = new RankingSnapshot.Builder(RANKING_PAGE_SIZE);
+        try (JsonReader reader = PixivApiReader.newReader(new ByteArrayInputStream(rankingPage))) {
+            PixivApiReader.readRankingPage(reader, builder, 1, RANKING_PAGE_SIZE);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public JsonObject illustInfoTree() {
+        JsonObject responseObj = new Gson().fromJson(new String(illustInfo, StandardCharsets.UTF_8), JsonObject.class);
+        return responseObj.getAsJsonObject("body").getAsJsonArray("illusts").get(0).getAsJsonObject();
+    }
+
+    @Benchmark
+    public JsonObject illustInfoStreaming() throws IOException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(illustInfo), StandardCharsets.UTF_8)) {
+            PixivApiResponse<List<JsonObject>> response = PixivApiReader.readResponse(reader, PixivApiReader.illusts());
+            return response.getBody().get(0);
+        }
+    }
+
+    /**
+     * 读取接口文档中的第一个Json数据示例, 并去除示例中的省略注释和多余的逗号
+     */
+    private static String loadSample(String path) throws IOException {
+        String document = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+        int start = document.indexOf("```json");
+        if(start == -1) {
+            throw new IOException("No json sample found in " + path);
+        }
+        start = document.indexOf('\n', start) + 1;
+        int end = document.indexOf("```", start);
+        return document.substring(start, end)
+                .replaceAll(",\\s*//[^\\n]*", ",")
+                .replaceAll(",(\\s*[}\\]])", "$1");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PixivApiParseBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
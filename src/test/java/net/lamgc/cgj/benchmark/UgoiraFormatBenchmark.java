@@ -0,0 +1,94 @@
+package net.lamgc.cgj.benchmark;
+
+import net.lamgc.cgj.pixiv.SyntheticUgoira;
+import net.lamgc.cgj.pixiv.UgoiraMeta;
+import net.lamgc.cgj.pixiv.UgoiraRenderer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比不同动图格式和编码预设的渲染耗时和输出大小.
+ * <p>使用 {@link SyntheticUgoira} 生成的100帧压缩包, 输出只统计字节数,
+ * 并在结束时输出每种组合的动图大小. 帧处理并行度为处理器数量.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class UgoiraFormatBenchmark {
+
+    private final static int FRAME_COUNT = 100;
+
+    @Param({"GIF", "APNG"})
+    private UgoiraRenderer.Format format;
+
+    @Param({"SPEED", "SIZE"})
+    private UgoiraRenderer.Preset preset;
+
+    @Param({"600x600"})
+    private String size;
+
+    private List<UgoiraMeta.Frame> frames;
+
+    private byte[] zip;
+
+    private UgoiraRenderer renderer;
+
+    private final CountingOutputStream output = new CountingOutputStream();
+
+    @Setup
+    public void setup() {
+        String[] sizeParts = size.split("x");
+        frames = SyntheticUgoira.createFrames(FRAME_COUNT, 50);
+        zip = SyntheticUgoira.createZip(frames,
+                Integer.parseInt(sizeParts[0]), Integer.parseInt(sizeParts[1]), false);
+        renderer = new UgoiraRenderer(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderer.close();
+        System.out.printf("%n[%s/%s] 动图大小: %.1fKB (帧压缩包: %.1fKB)%n", format, preset,
+                output.lastCount / 1024.0, zip.length / 1024.0);
+    }
+
+    @Benchmark
+    public UgoiraRenderer.Result render() throws IOException {
+        output.count = 0;
+        UgoiraRenderer.Result result = renderer.render(new ByteArrayInputStream(zip), frames, output, format, preset);
+        output.lastCount = output.count;
+        return result;
+    }
+
+    private final static class CountingOutputStream extends OutputStream {
+        private long count;
+        private long lastCount;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UgoiraFormatBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,80 @@
+package net.lamgc.cgj.benchmark;
+
+import net.lamgc.cgj.pixiv.SyntheticUgoira;
+import net.lamgc.cgj.pixiv.UgoiraMeta;
+import net.lamgc.cgj.pixiv.UgoiraRenderer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测量不同并行度下 {@link UgoiraRenderer} 将动图帧压缩包渲染为GIF的耗时.
+ * <p>使用 {@link SyntheticUgoira} 生成的100帧压缩包, 不需要访问Pixiv, 输出写入空输出流.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class UgoiraRenderBenchmark {
+
+    private final static int FRAME_COUNT = 100;
+
+    @Param({"1", "2", "4"})
+    private int parallelism;
+
+    @Param({"600x600"})
+    private String size;
+
+    private List<UgoiraMeta.Frame> frames;
+
+    private byte[] zip;
+
+    private UgoiraRenderer renderer;
+
+    @Setup
+    public void setup() {
+        String[] sizeParts = size.split("x");
+        frames = SyntheticUgoira.createFrames(FRAME_COUNT, 50);
+        zip = SyntheticUgoira.createZip(frames,
+                Integer.parseInt(sizeParts[0]), Integer.parseInt(sizeParts[1]), false);
+        renderer = new UgoiraRenderer(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderer.close();
+    }
+
+    @Benchmark
+    public UgoiraRenderer.Result renderGif() throws IOException {
+        return renderer.renderGif(new ByteArrayInputStream(zip), frames, NullOutputStream.INSTANCE);
+    }
+
+    private final static class NullOutputStream extends OutputStream {
+        private final static NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UgoiraRenderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
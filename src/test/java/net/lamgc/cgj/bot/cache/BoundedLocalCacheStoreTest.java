@@ -0,0 +1,114 @@
+package net.lamgc.cgj.bot.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BoundedLocalCacheStoreTest {
+
+    @Test
+    public void maximumSizeTest() {
+        BoundedLocalCacheStore<String> store = new BoundedLocalCacheStore<>(100);
+        for (int i = 0; i < 1000; i++) {
+            store.update("key" + i, "value" + i, 0);
+        }
+        Assert.assertTrue(store.size() <= 100);
+        Assert.assertEquals(900, store.getEvictionCount());
+    }
+
+    @Test
+    public void maximumWeightTest() {
+        BoundedLocalCacheStore<String> store = new BoundedLocalCacheStore<>(10000, 4096,
+                BoundedLocalCacheStore.Weigher.stringWeigher());
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 256; i++) {
+            builder.append('a');
+        }
+        String value = builder.toString();
+        for (int i = 0; i < 100; i++) {
+            store.update("key" + i, value, 0);
+        }
+        Assert.assertTrue(store.weightedSize() <= 4096);
+        Assert.assertTrue(store.size() < 100);
+    }
+
+    @Test
+    public void frequencyAdmissionTest() {
+        BoundedLocalCacheStore<String> store = new BoundedLocalCacheStore<>(100);
+        for (int i = 0; i < 50; i++) {
+            store.update("hot" + i, "value", 0);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                Assert.assertNotNull(store.getCache("hot" + i));
+            }
+        }
+
+        // 一次性访问的缓存项不应冲刷掉热点数据
+        for (int i = 0; i < 1000; i++) {
+            store.update("scan" + i, "value", 0);
+        }
+
+        int retained = 0;
+        for (int i = 0; i < 50; i++) {
+            if(store.exists("hot" + i)) {
+                retained++;
+            }
+        }
+        Assert.assertTrue("retained: " + retained, retained >= 40);
+    }
+
+    @Test
+    public void expireTest() {
+        AtomicLong clock = new AtomicLong(1000000);
+        BoundedLocalCacheStore<String> store = new BoundedLocalCacheStore<>(100, Long.MAX_VALUE,
+                value -> 0, false, clock::get);
+        store.update("expire", "value", 50);
+        store.update("persistent", "value", 0);
+        Assert.assertEquals("value", store.getCache("expire"));
+        clock.addAndGet(50);
+        Assert.assertEquals("value", store.getCache("expire"));
+        clock.addAndGet(1);
+        Assert.assertNull(store.getCache("expire"));
+        Assert.assertFalse(store.exists("expire"));
+        Assert.assertTrue(store.exists("persistent"));
+
+        store.update("clean", "value", 50);
+        clock.addAndGet(100);
+        store.clean();
+        Assert.assertFalse(store.keys().contains("clean"));
+        Assert.assertEquals(1, store.size());
+    }
+
+    @Test
+    public void sameWeightUpdateTest() {
+        BoundedLocalCacheStore<String> store = new BoundedLocalCacheStore<>(2);
+        store.update("key", "value1", 0);
+        store.update("key", "value2", 0);
+        Assert.assertEquals("value2", store.getCache("key"));
+        Assert.assertTrue(store.remove("key"));
+        // 移除后再次写入权重相同的值, 应作为新缓存项重新加入并计入容量
+        store.update("key", "value3", 0);
+        Assert.assertEquals("value3", store.getCache("key"));
+        Assert.assertEquals(1, store.size());
+        store.update("other1", "value", 0);
+        store.update("other2", "value", 0);
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals(1, store.getEvictionCount());
+    }
+
+    @Test
+    public void updateAndRemoveTest() {
+        BoundedLocalCacheStore<String> store = new BoundedLocalCacheStore<>(10);
+        store.update("key", "value1", 0);
+        store.update("key", "value2", 0);
+        Assert.assertEquals("value2", store.getCache("key"));
+        Assert.assertEquals(1, store.size());
+        Assert.assertTrue(store.remove("key"));
+        Assert.assertFalse(store.remove("key"));
+        Assert.assertNull(store.getCache("key"));
+        Assert.assertEquals(0, store.weightedSize());
+    }
+
+}
@@ -0,0 +1,49 @@
+package net.lamgc.cgj.bot.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class HotDataCacheStoreTest {
+
+    @Test
+    public void batchOperationTest() {
+        LocalHashCacheStore<String> parent = new LocalHashCacheStore<>();
+        LocalHashCacheStore<String> current = new LocalHashCacheStore<>();
+        HotDataCacheStore<String> store = new HotDataCacheStore<>(parent, current, 60000, 0, false);
+
+        Map<String, String> values = new HashMap<>();
+        values.put("a", "1");
+        values.put("b", "2");
+        store.updateAll(values, 0);
+        parent.update("c", "3", 0);
+
+        Map<String, String> result = store.getAll(Arrays.asList("a", "b", "c", "d"));
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals("3", result.get("c"));
+        Assert.assertFalse(result.containsKey("d"));
+        // Parent命中的缓存项应写回Current
+        Assert.assertEquals("3", current.getCache("c"));
+
+        Map<String, Boolean> exists = store.existsAll(Arrays.asList("a", "c", "d"));
+        Assert.assertTrue(exists.get("a"));
+        Assert.assertTrue(exists.get("c"));
+        Assert.assertFalse(exists.get("d"));
+    }
+
+    @Test
+    public void keyIteratorTest() {
+        LocalHashCacheStore<String> parent = new LocalHashCacheStore<>();
+        LocalHashCacheStore<String> current = new LocalHashCacheStore<>();
+        HotDataCacheStore<String> store = new HotDataCacheStore<>(parent, current, 60000, 0, false);
+        store.update("a", "1", 0);
+        parent.update("b", "2", 0);
+
+        List<String> keys = new ArrayList<>();
+        store.keyIterator().forEachRemaining(keys::add);
+        Collections.sort(keys);
+        Assert.assertEquals(Arrays.asList("a", "b"), keys);
+    }
+
+}
@@ -0,0 +1,111 @@
+package net.lamgc.cgj.bot.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+public class ImageIndexTest {
+
+    private static CacheStoreCentral.ImageChecksum createChecksum(int illustId, int page) {
+        CacheStoreCentral.ImageChecksum checksum = CacheStoreCentral.ImageChecksum.create(
+                illustId, page, illustId + "_p" + (page - 1) + ".png", 1024L * page, new byte[32]);
+        checksum.setLastModified(1590000000000L);
+        return checksum;
+    }
+
+    @Test
+    public void reloadTest() throws IOException {
+        File indexFile = File.createTempFile("ImageIndexTest", ".index");
+        try {
+            try (ImageIndex index = ImageIndex.open(indexFile)) {
+                for (int i = 1; i <= 100; i++) {
+                    CacheStoreCentral.ImageChecksum checksum = createChecksum(80000000 + i, 1);
+                    index.put(checksum.getFileName(), checksum);
+                }
+                index.remove("80000001_p0.png");
+                index.put("80000002_p0.png", createChecksum(80000002, 2));
+            }
+
+            try (ImageIndex index = ImageIndex.open(indexFile)) {
+                Assert.assertEquals(99, index.size());
+                Assert.assertNull(index.get("80000001_p0.png"));
+                Assert.assertEquals(createChecksum(80000002, 2), index.get("80000002_p0.png").getChecksum());
+                Assert.assertEquals(createChecksum(80000100, 1), index.get("80000100_p0.png").getChecksum());
+
+                index.compact();
+            }
+
+            try (ImageIndex index = ImageIndex.open(indexFile)) {
+                Assert.assertEquals(99, index.size());
+            }
+        } finally {
+            Assert.assertTrue(indexFile.delete());
+        }
+    }
+
+    @Test
+    public void removeIfIdleTest() {
+        ImageIndex index = ImageIndex.inMemory();
+        index.put("80000001_p0.png", createChecksum(80000001, 1));
+        ImageIndex.Entry entry = index.entries().get(0);
+        long lastAccess = entry.getLastAccess();
+
+        // 选出淘汰对象后又被访问的图片不应被移除
+        while(System.currentTimeMillis() == lastAccess) {
+            Thread.yield();
+        }
+        Assert.assertSame(entry, index.get("80000001_p0.png"));
+        Assert.assertFalse(index.removeIfIdle(entry, lastAccess));
+        Assert.assertEquals(1, index.size());
+
+        // 被替换的索引项不应移除新的索引项
+        index.put("80000001_p0.png", createChecksum(80000001, 1));
+        Assert.assertFalse(index.removeIfIdle(entry, entry.getLastAccess()));
+        Assert.assertEquals(1, index.size());
+
+        ImageIndex.Entry current = index.entries().get(0);
+        Assert.assertTrue(index.removeIfIdle(current, current.getLastAccess()));
+        Assert.assertEquals(0, index.size());
+    }
+
+    @Test
+    public void truncatedRecordTest() throws IOException {
+        File indexFile = File.createTempFile("ImageIndexTest", ".index");
+        try {
+            try (ImageIndex index = ImageIndex.open(indexFile)) {
+                for (int i = 1; i <= 3; i++) {
+                    CacheStoreCentral.ImageChecksum checksum = createChecksum(80000000 + i, 1);
+                    index.put(checksum.getFileName(), checksum);
+                }
+            }
+            // 模拟写入最后一条记录时中断
+            long length = indexFile.length();
+            try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+                file.setLength(length - 5);
+            }
+
+            try (ImageIndex index = ImageIndex.open(indexFile)) {
+                Assert.assertEquals(2, index.size());
+                CacheStoreCentral.ImageChecksum checksum = createChecksum(80000004, 1);
+                index.put(checksum.getFileName(), checksum);
+            }
+            try (ImageIndex index = ImageIndex.open(indexFile)) {
+                Assert.assertEquals(3, index.size());
+                Assert.assertNotNull(index.get("80000004_p0.png"));
+            }
+
+            // 无法识别的文件将被重建
+            Files.write(indexFile.toPath(), new byte[] {1, 2, 3});
+            try (ImageIndex index = ImageIndex.open(indexFile)) {
+                Assert.assertEquals(0, index.size());
+            }
+        } finally {
+            Assert.assertTrue(indexFile.delete());
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package net.lamgc.cgj.bot.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ImageScrubberTest {
+
+    @Test
+    public void scrubTest() throws IOException {
+        File imageFile = File.createTempFile("ImageScrubberTest", ".png");
+        try {
+            byte[] data = new byte[200 * 1024];
+            new Random(1).nextBytes(data);
+            Files.write(imageFile.toPath(), data);
+            CacheStoreCentral.ImageChecksum checksum = CacheStoreCentral.ImageChecksum
+                    .buildImageChecksumFromStream(80000000, 1, imageFile.getName(), new ByteArrayInputStream(data));
+            checksum.setLastModified(imageFile.lastModified());
+            Assert.assertTrue(CacheStoreCentral.ImageChecksum.checkFile(checksum, imageFile));
+            Assert.assertTrue(CacheStoreCentral.ImageChecksum.matchesFileAttributes(checksum, imageFile));
+
+            List<File> corruptedFiles = new ArrayList<>();
+            ImageScrubber scrubber = new ImageScrubber((file, registered) -> corruptedFiles.add(file));
+            scrubber.register(imageFile, checksum);
+            Assert.assertEquals(0, scrubber.scrub());
+
+            // 大小和修改时间不变的损坏只能通过巡检发现
+            data[1024] ^= 0x01;
+            Files.write(imageFile.toPath(), data);
+            Assert.assertTrue(imageFile.setLastModified(checksum.getLastModified()));
+            Assert.assertTrue(CacheStoreCentral.ImageChecksum.matchesFileAttributes(checksum, imageFile));
+            Assert.assertFalse(CacheStoreCentral.ImageChecksum.checkFile(checksum, imageFile));
+
+            Assert.assertEquals(1, scrubber.scrub());
+            Assert.assertEquals(1, corruptedFiles.size());
+            Assert.assertEquals(0, scrubber.size());
+        } finally {
+            Assert.assertTrue(imageFile.delete());
+        }
+    }
+
+}
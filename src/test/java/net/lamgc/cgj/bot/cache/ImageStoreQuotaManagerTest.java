@@ -0,0 +1,153 @@
+package net.lamgc.cgj.bot.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ImageStoreQuotaManagerTest {
+
+    private static File createImage(File dir, String name, long lastModified) throws IOException {
+        File file = new File(dir, name);
+        Files.write(file.toPath(), new byte[100]);
+        Assert.assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    @Test
+    public void evictTest() throws IOException {
+        File storeDir = Files.createTempDirectory("ImageStoreQuotaManagerTest").toFile();
+        File indexFile = new File(storeDir, ".index");
+        try (ImageIndex index = ImageIndex.open(indexFile)) {
+            File oldest = createImage(storeDir, "80000001_p0.png", 1000000000000L);
+            File older = createImage(storeDir, "80000002_p0.png", 1100000000000L);
+            File indexed = createImage(storeDir, "80000003_p0.png", 1000000000000L);
+            index.put(indexed.getName(), CacheStoreCentral.ImageChecksum.create(
+                    80000003, 1, indexed.getName(), 100, new byte[32]));
+
+            AtomicLong quota = new AtomicLong(0);
+            List<ImageIndex.Entry> evictedEntries = new ArrayList<>();
+            ImageStoreQuotaManager manager =
+                    new ImageStoreQuotaManager(storeDir, index, quota::get, evictedEntries::add);
+
+            Assert.assertEquals(0, manager.evictIfNecessary());
+            Assert.assertEquals(300, manager.getStats().getUsedBytes());
+
+            quota.set(250);
+            Assert.assertEquals(1, manager.evictIfNecessary());
+            Assert.assertFalse(oldest.exists());
+            Assert.assertTrue(older.exists());
+
+            // 被索引的图片以最后访问时间排序, 比文件修改时间更晚的未索引图片先被淘汰
+            quota.set(150);
+            Assert.assertEquals(1, manager.evictIfNecessary());
+            Assert.assertFalse(older.exists());
+            Assert.assertTrue(indexed.exists());
+            Assert.assertTrue(evictedEntries.isEmpty());
+
+            quota.set(50);
+            Assert.assertEquals(1, manager.evictIfNecessary());
+            Assert.assertFalse(indexed.exists());
+            Assert.assertEquals(1, evictedEntries.size());
+            Assert.assertEquals(80000003, evictedEntries.get(0).getChecksum().getIllustId());
+            Assert.assertEquals(0, index.size());
+
+            manager.recordHit();
+            manager.recordHit();
+            manager.recordHit();
+            manager.recordMiss();
+            ImageStoreQuotaManager.Stats stats = manager.getStats();
+            Assert.assertEquals(0.75, stats.getHitRatio(), 0.0001);
+            Assert.assertEquals(3, stats.getEvictionCount());
+            Assert.assertEquals(300, stats.getEvictedBytes());
+            Assert.assertEquals(0, stats.getUsedBytes());
+        } finally {
+            File[] files = storeDir.listFiles();
+            if(files != null) {
+                for (File file : files) {
+                    Assert.assertTrue(file.delete());
+                }
+            }
+            Assert.assertTrue(storeDir.delete());
+        }
+    }
+
+    @Test
+    public void partFileTest() throws IOException {
+        File storeDir = Files.createTempDirectory("ImageStoreQuotaManagerTest").toFile();
+        File indexFile = new File(storeDir, ".index");
+        try (ImageIndex index = ImageIndex.open(indexFile)) {
+            long now = System.currentTimeMillis();
+            File image = createImage(storeDir, "80000001_p0.png", now - 60000);
+            // 正在进行的下载(刚修改过)和已放弃的下载(一天以上未修改)
+            File activePart = createImage(storeDir, "80000002_p0.png.part", now - 120000);
+            File abandonedPart = createImage(storeDir, "80000003_p0.png.part1-4", now - 2 * 24 * 60 * 60 * 1000L);
+
+            AtomicLong quota = new AtomicLong(0);
+            ImageStoreQuotaManager manager = new ImageStoreQuotaManager(storeDir, index, quota::get, entry -> {});
+
+            Assert.assertEquals(0, manager.evictIfNecessary());
+            Assert.assertFalse(abandonedPart.exists());
+            Assert.assertEquals(200, manager.getStats().getUsedBytes());
+
+            // 续传文件计入占用, 但不会被淘汰
+            quota.set(50);
+            Assert.assertEquals(1, manager.evictIfNecessary());
+            Assert.assertFalse(image.exists());
+            Assert.assertTrue(activePart.exists());
+            Assert.assertEquals(100, manager.getStats().getUsedBytes());
+        } finally {
+            File[] files = storeDir.listFiles();
+            if(files != null) {
+                for (File file : files) {
+                    Assert.assertTrue(file.delete());
+                }
+            }
+            Assert.assertTrue(storeDir.delete());
+        }
+    }
+
+    @Test
+    public void removeImageTest() throws IOException {
+        File storeDir = Files.createTempDirectory("ImageStoreQuotaManagerTest").toFile();
+        File indexFile = new File(storeDir, ".index");
+        try (ImageIndex index = ImageIndex.open(indexFile)) {
+            File indexed = createImage(storeDir, "80000001_p0.png", 1000000000000L);
+            File unindexed = createImage(storeDir, "80000002_p0.png", 1000000000000L);
+            index.put(indexed.getName(), CacheStoreCentral.ImageChecksum.create(
+                    80000001, 1, indexed.getName(), 100, new byte[32]));
+
+            List<ImageIndex.Entry> removedEntries = new ArrayList<>();
+            ImageStoreQuotaManager manager =
+                    new ImageStoreQuotaManager(storeDir, index, () -> 0, removedEntries::add);
+            Assert.assertEquals(0, manager.evictIfNecessary());
+            Assert.assertEquals(200, manager.getStats().getUsedBytes());
+
+            // 删除的图片与淘汰一样移除索引项, 扣除占用并通知监听器, 但不计入淘汰统计
+            Assert.assertTrue(manager.removeImage(indexed));
+            Assert.assertFalse(indexed.exists());
+            Assert.assertEquals(0, index.size());
+            Assert.assertEquals(1, removedEntries.size());
+            Assert.assertEquals(100, manager.getStats().getUsedBytes());
+
+            Assert.assertTrue(manager.removeImage(unindexed));
+            Assert.assertEquals(1, removedEntries.size());
+            Assert.assertEquals(0, manager.getStats().getUsedBytes());
+            Assert.assertEquals(0, manager.getStats().getEvictionCount());
+        } finally {
+            File[] files = storeDir.listFiles();
+            if(files != null) {
+                for (File file : files) {
+                    Assert.assertTrue(file.delete());
+                }
+            }
+            Assert.assertTrue(storeDir.delete());
+        }
+    }
+
+}
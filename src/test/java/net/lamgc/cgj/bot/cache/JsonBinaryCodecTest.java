@@ -0,0 +1,86 @@
+package net.lamgc.cgj.bot.cache;
+
+import com.google.gson.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class JsonBinaryCodecTest {
+
+    private final Gson gson = new Gson();
+
+    @Test
+    public void roundTripTest() {
+        JsonObject object = new JsonObject();
+        object.addProperty("illust_id", 80846159);
+        object.addProperty("negative", -42L);
+        object.addProperty("bigInteger", new java.math.BigInteger("123456789012345678901234567890"));
+        object.addProperty("double", 0.1);
+        object.addProperty("title", "色图姬 🌸");
+        object.addProperty("r18", false);
+        object.add("nothing", JsonNull.INSTANCE);
+        JsonArray tags = new JsonArray();
+        tags.add("tag1");
+        tags.add(new JsonObject());
+        object.add("tags", tags);
+
+        JsonBinaryCodec codec = new JsonBinaryCodec(gson, 0);
+        byte[] data = codec.encode(object);
+        Assert.assertTrue(JsonBinaryCodec.isEncoded(data));
+        JsonElement decoded = codec.decode(data);
+        Assert.assertEquals(gson.toJson(object), gson.toJson(decoded));
+        Assert.assertEquals(80846159, decoded.getAsJsonObject().get("illust_id").getAsInt());
+    }
+
+    @Test
+    public void compressTest() {
+        JsonArray ranking = createRanking(500);
+        byte[] jsonBytes = gson.toJson(ranking).getBytes(StandardCharsets.UTF_8);
+        byte[] data = new JsonBinaryCodec(gson, 1024).encode(ranking);
+        Assert.assertTrue("Encoded: " + data.length + ", Json: " + jsonBytes.length,
+                data.length < jsonBytes.length / 2);
+        Assert.assertEquals(ranking, new JsonBinaryCodec(gson, 0).decode(data));
+    }
+
+    @Test
+    public void legacyAndProjectionTest() {
+        JsonObject entry = createRanking(1).get(0).getAsJsonObject();
+        JsonBinaryCodec codec = new JsonBinaryCodec(gson);
+        HashSet<String> fields = new HashSet<>(Arrays.asList("rank", "title"));
+
+        // 旧版本写入的Json文本
+        byte[] legacy = gson.toJson(entry).getBytes(StandardCharsets.UTF_8);
+        Assert.assertFalse(JsonBinaryCodec.isEncoded(legacy));
+        Assert.assertEquals(entry, codec.decode(legacy));
+
+        for (byte[] data : new byte[][] {legacy, codec.encode(entry)}) {
+            JsonObject projected = codec.decode(data, fields).getAsJsonObject();
+            Assert.assertEquals(2, projected.size());
+            Assert.assertEquals(entry.get("rank"), projected.get("rank"));
+            Assert.assertEquals(entry.get("title"), projected.get("title"));
+        }
+    }
+
+    private static JsonArray createRanking(int size) {
+        JsonArray ranking = new JsonArray();
+        for (int i = 1; i <= size; i++) {
+            JsonObject entry = new JsonObject();
+            JsonArray tags = new JsonArray();
+            tags.add("オリジナル");
+            tags.add("tag" + (i % 7));
+            entry.add("tags", tags);
+            entry.addProperty("illust_id", 80000000 + i);
+            entry.addProperty("rank", i);
+            entry.addProperty("title", "Title " + i);
+            entry.addProperty("user_id", 1000 + i);
+            entry.addProperty("user_name", "User " + i);
+            entry.addProperty("illust_page_count", "1");
+            ranking.add(entry);
+        }
+        return ranking;
+    }
+
+}
@@ -0,0 +1,38 @@
+package net.lamgc.cgj.bot.cache;
+
+import net.lamgc.cgj.pixiv.RankingSnapshot;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RankingSnapshotCodecTest {
+
+    @Test
+    public void roundTripTest() {
+        RankingSnapshot.Builder builder = new RankingSnapshot.Builder(500);
+        for (int i = 1; i <= 500; i++) {
+            builder.add(i, 80000000 + i, "标题 " + i + " 🌸", 1000 + i % 37, "画师 " + i % 37, i % 5 + 1, i % 3);
+        }
+        RankingSnapshot snapshot = builder.build();
+        RankingSnapshotCodec codec = new RankingSnapshotCodec();
+        Assert.assertEquals(snapshot, codec.decode(codec.encode(snapshot)));
+        Assert.assertEquals(RankingSnapshot.empty(), codec.decode(codec.encode(RankingSnapshot.empty())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidDataTest() {
+        new RankingSnapshotCodec().decode("[{\"rank\":1}]".getBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void corruptStringIndexTest() {
+        RankingSnapshot.Builder builder = new RankingSnapshot.Builder(1);
+        builder.add(1, 80000001, "标题", 1001, "画师", 1, 0);
+        RankingSnapshotCodec codec = new RankingSnapshotCodec();
+        byte[] data = codec.encode(builder.build());
+        // 头部(3) + 数量(4) + 字符串表(4 + 8 + 8) + 排名(2) + 作品Id(4), 之后为标题的字符串表索引
+        int titleIndexOffset = 3 + 4 + 4 + 8 + 8 + 2 + 4;
+        data[titleIndexOffset] = 0x7F;
+        codec.decode(data);
+    }
+
+}
@@ -0,0 +1,118 @@
+package net.lamgc.cgj.bot.event;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FairEventSchedulerTest {
+
+    private final List<MessageEvent> dispatched = new ArrayList<>();
+
+    private FairEventScheduler createScheduler(int concurrency, int totalCapacity, int groupCapacity) {
+        return new FairEventScheduler(concurrency, totalCapacity, dispatched::add,
+                sourceId -> groupCapacity, sourceId -> sourceId == 1 ? 2 : 1);
+    }
+
+    private static MessageEvent event(long group, String message) {
+        return new VirtualLoadMessageEvent(group, 10000, message);
+    }
+
+    /**
+     * 依次完成已分派的事件, 返回全部事件的执行顺序
+     */
+    private List<String> drain(FairEventScheduler scheduler) {
+        List<String> order = new ArrayList<>();
+        while(!dispatched.isEmpty()) {
+            MessageEvent event = dispatched.remove(0);
+            order.add(event.getMessage());
+            scheduler.complete(event);
+        }
+        return order;
+    }
+
+    @Test
+    public void concurrencyTest() {
+        FairEventScheduler scheduler = createScheduler(2, 100, 10);
+        Assert.assertEquals(FairEventScheduler.SubmitResult.DISPATCHED, scheduler.submit(event(2, "a")));
+        Assert.assertEquals(FairEventScheduler.SubmitResult.DISPATCHED, scheduler.submit(event(2, "b")));
+        Assert.assertEquals(FairEventScheduler.SubmitResult.QUEUED, scheduler.submit(event(2, "c")));
+        Assert.assertEquals(2, scheduler.getRunningCount());
+        Assert.assertEquals(1, scheduler.getQueuedCount());
+
+        MessageEvent first = dispatched.get(0);
+        scheduler.complete(first);
+        Assert.assertEquals(3, dispatched.size());
+        Assert.assertEquals(0, scheduler.getQueuedCount());
+        // 重复通知不会释放额外的名额
+        scheduler.complete(first);
+        Assert.assertEquals(2, scheduler.getRunningCount());
+    }
+
+    @Test
+    public void roundRobinTest() {
+        FairEventScheduler scheduler = createScheduler(1, 100, 10);
+        scheduler.submit(event(2, "running"));
+        for (int i = 0; i < 4; i++) {
+            scheduler.submit(event(2, "a" + i));
+        }
+        scheduler.submit(event(3, "b0"));
+        scheduler.submit(event(3, "b1"));
+
+        // 群组2先提交了大量命令, 群组3的命令不必等待它们全部完成
+        Assert.assertEquals(Arrays.asList("running", "a0", "b0", "a1", "b1", "a2", "a3"), drain(scheduler));
+    }
+
+    @Test
+    public void weightTest() {
+        FairEventScheduler scheduler = createScheduler(1, 100, 10);
+        scheduler.submit(event(3, "running"));
+        for (int i = 0; i < 4; i++) {
+            scheduler.submit(event(3, "b" + i));
+        }
+        for (int i = 0; i < 4; i++) {
+            scheduler.submit(event(1, "a" + i));
+        }
+
+        // 群组1的权重为2, 每轮可执行两个命令
+        Assert.assertEquals(Arrays.asList("running", "b0", "a0", "a1", "b1", "a2", "a3", "b2", "b3"),
+                drain(scheduler));
+    }
+
+    @Test
+    public void capacityTest() {
+        FairEventScheduler scheduler = createScheduler(1, 3, 2);
+        scheduler.submit(event(2, "running"));
+        Assert.assertEquals(FairEventScheduler.SubmitResult.QUEUED, scheduler.submit(event(2, "a0")));
+        Assert.assertEquals(FairEventScheduler.SubmitResult.QUEUED, scheduler.submit(event(2, "a1")));
+        Assert.assertEquals(FairEventScheduler.SubmitResult.GROUP_QUEUE_FULL, scheduler.submit(event(2, "a2")));
+        Assert.assertEquals(FairEventScheduler.SubmitResult.QUEUED, scheduler.submit(event(3, "b0")));
+        Assert.assertEquals(FairEventScheduler.SubmitResult.QUEUE_FULL, scheduler.submit(event(3, "b1")));
+
+        FairEventScheduler.Snapshot snapshot = scheduler.getSnapshot();
+        Assert.assertEquals(3, snapshot.getQueuedCount());
+        Assert.assertEquals(2, snapshot.getGroupStats().size());
+        FairEventScheduler.GroupStats groupStats = snapshot.getGroupStats().get(0);
+        Assert.assertEquals(2, groupStats.getSourceId());
+        Assert.assertEquals(2, groupStats.getDepth());
+        Assert.assertEquals(4, groupStats.getSubmittedCount());
+        Assert.assertEquals(1, groupStats.getDispatchedCount());
+        Assert.assertEquals(1, groupStats.getRejectedCount());
+
+        drain(scheduler);
+        snapshot = scheduler.getSnapshot();
+        Assert.assertEquals(0, snapshot.getQueuedCount());
+        Assert.assertEquals(0, snapshot.getRunningCount());
+        Assert.assertEquals(2, snapshot.getGroupStats().get(0).getMaxDepth());
+        Assert.assertEquals(3, snapshot.getGroupStats().get(0).getDispatchedCount());
+    }
+
+    @Test
+    public void privateMessageSourceTest() {
+        Assert.assertEquals(2, FairEventScheduler.getSourceId(new VirtualLoadMessageEvent(2, 10000, "")));
+        Assert.assertEquals(-10000, FairEventScheduler.getSourceId(new VirtualLoadMessageEvent(0, 10000, "")));
+    }
+
+}
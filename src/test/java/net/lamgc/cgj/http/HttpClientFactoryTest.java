@@ -0,0 +1,110 @@
+package net.lamgc.cgj.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class HttpClientFactoryTest {
+
+    private HttpServer server;
+
+    private String url;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(Long.parseLong(exchange.getRequestURI().getQuery()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/?";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private ConnectionPoolMetrics.HostStats getLocalHostStats() {
+        for (ConnectionPoolMetrics.HostStats stats : HttpClientFactory.getMetricsSnapshot().getHostStats()) {
+            if(stats.getHost().equals("127.0.0.1:" + server.getAddress().getPort())) {
+                return stats;
+            }
+        }
+        return null;
+    }
+
+    private static void execute(HttpClient httpClient, String url) throws IOException {
+        HttpResponse response = httpClient.execute(new HttpGet(url));
+        Assert.assertEquals("ok", EntityUtils.toString(response.getEntity()));
+    }
+
+    @Test
+    public void connectionReuseTest() throws IOException {
+        HttpClient httpClient = HttpClientFactory.builder().build();
+        for (int i = 0; i < 5; i++) {
+            execute(httpClient, url + "0");
+        }
+        ConnectionPoolMetrics.HostStats after = getLocalHostStats();
+        Assert.assertNotNull(after);
+        Assert.assertEquals(5, after.getLeaseCount());
+        // 连接使用完毕后应当归还连接池
+        Assert.assertEquals(0, after.getPoolStats().getLeased());
+        Assert.assertEquals(1, after.getPoolStats().getAvailable());
+    }
+
+    @Test
+    public void saturationTest() throws Exception {
+        int maxPerRoute = Integer.getInteger("cgj.http.maxPerRoute", 16);
+        int requestCount = maxPerRoute + 4;
+        ExecutorService executor = Executors.newFixedThreadPool(requestCount);
+        try {
+            List<Future<?>> futures = new ArrayList<>(requestCount);
+            for (int i = 0; i < requestCount; i++) {
+                if(i == maxPerRoute) {
+                    // 等待前面的请求占满连接池
+                    Thread.sleep(100);
+                }
+                futures.add(executor.submit(() -> {
+                    execute(HttpClientFactory.getDefaultClient(), url + "300");
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        ConnectionPoolMetrics.HostStats stats = getLocalHostStats();
+        Assert.assertNotNull(stats);
+        Assert.assertTrue(stats.getSaturatedCount() > 0);
+        Assert.assertTrue(stats.getMaxWaitMillis() > 0);
+        Assert.assertTrue(stats.getPoolStats().getAvailable() <= maxPerRoute);
+    }
+
+}
@@ -0,0 +1,172 @@
+package net.lamgc.cgj.image;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 用于测试的APNG解码器.
+ * <p>将每一帧的数据组装为独立的PNG交给ImageIO解码, 再按帧的位置绘制到画布上, 得到每一帧显示的完整画面.
+ * 只支持 {@link ApngWriter} 写出的格式(真彩色, 处置方式为保留, 混合方式为覆盖).</p>
+ */
+public final class ApngDecoder {
+
+    private final int frameCount;
+    private final int playCount;
+    private final List<BufferedImage> frames = new ArrayList<>();
+    private final List<int[]> regions = new ArrayList<>();
+    private final List<Double> delays = new ArrayList<>();
+
+    /**
+     * 解码APNG, 同时检查数据块的CRC和序列号
+     * @param data APNG数据
+     * @throws IOException 格式错误时抛出
+     */
+    public ApngDecoder(byte[] data) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+        byte[] signature = new byte[8];
+        input.readFully(signature);
+        byte[] header = null;
+        int declaredFrames = -1;
+        int plays = -1;
+        int expectedSequence = 0;
+        BufferedImage canvas = null;
+        int[] control = null;
+        ByteArrayOutputStream frameData = new ByteArrayOutputStream();
+        while(true) {
+            int length = input.readInt();
+            byte[] typeBytes = new byte[4];
+            input.readFully(typeBytes);
+            byte[] chunk = new byte[length];
+            input.readFully(chunk);
+            CRC32 crc = new CRC32();
+            crc.update(typeBytes);
+            crc.update(chunk);
+            if((int) crc.getValue() != input.readInt()) {
+                throw new IOException("CRC mismatch");
+            }
+            String type = new String(typeBytes, StandardCharsets.US_ASCII);
+            DataInputStream chunkInput = new DataInputStream(new ByteArrayInputStream(chunk));
+            if("IHDR".equals(type)) {
+                header = chunk;
+                canvas = new BufferedImage(chunkInput.readInt(), chunkInput.readInt(), BufferedImage.TYPE_INT_RGB);
+            } else if("acTL".equals(type)) {
+                declaredFrames = chunkInput.readInt();
+                plays = chunkInput.readInt();
+            } else if("fcTL".equals(type) || "IEND".equals(type)) {
+                if(control != null) {
+                    canvas = drawFrame(canvas, header, control, frameData.toByteArray());
+                    frameData.reset();
+                }
+                if("IEND".equals(type)) {
+                    break;
+                }
+                if(chunkInput.readInt() != expectedSequence++) {
+                    throw new IOException("Unexpected sequence number");
+                }
+                control = new int[] {chunkInput.readInt(), chunkInput.readInt(),
+                        chunkInput.readInt(), chunkInput.readInt()};
+                int delayNumerator = chunkInput.readUnsignedShort();
+                int delayDenominator = chunkInput.readUnsignedShort();
+                delays.add(delayNumerator * 1000.0 / (delayDenominator == 0 ? 100 : delayDenominator));
+            } else if("IDAT".equals(type)) {
+                frameData.write(chunk);
+            } else if("fdAT".equals(type)) {
+                if(chunkInput.readInt() != expectedSequence++) {
+                    throw new IOException("Unexpected sequence number");
+                }
+                frameData.write(chunk, 4, chunk.length - 4);
+            }
+        }
+        this.frameCount = declaredFrames;
+        this.playCount = plays;
+    }
+
+    private BufferedImage drawFrame(BufferedImage canvas, byte[] header, int[] control, byte[] data)
+            throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        png.write(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        byte[] frameHeader = Arrays.copyOf(header, header.length);
+        putInt(frameHeader, 0, control[0]);
+        putInt(frameHeader, 4, control[1]);
+        writeChunk(png, "IHDR", frameHeader);
+        writeChunk(png, "IDAT", data);
+        writeChunk(png, "IEND", new byte[0]);
+        BufferedImage frame = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+        if(frame == null) {
+            throw new IOException("Unable to decode frame");
+        }
+        BufferedImage next = new BufferedImage(canvas.getWidth(), canvas.getHeight(), BufferedImage.TYPE_INT_RGB);
+        next.setData(canvas.getData());
+        for (int y = 0; y < control[1]; y++) {
+            for (int x = 0; x < control[0]; x++) {
+                next.setRGB(control[2] + x, control[3] + y, frame.getRGB(x, y));
+            }
+        }
+        frames.add(next);
+        regions.add(control.clone());
+        return next;
+    }
+
+    private static void writeChunk(ByteArrayOutputStream output, String type, byte[] data) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] buffer = new byte[4];
+        putInt(buffer, 0, data.length);
+        output.write(buffer, 0, 4);
+        output.write(typeBytes, 0, 4);
+        output.write(data, 0, data.length);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        putInt(buffer, 0, (int) crc.getValue());
+        output.write(buffer, 0, 4);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * 获取文件头中声明的帧数
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public int getPlayCount() {
+        return playCount;
+    }
+
+    /**
+     * 获取每一帧显示的完整画面
+     */
+    public List<BufferedImage> getFrames() {
+        return frames;
+    }
+
+    /**
+     * 获取每一帧的区域, 依次为宽度, 高度, 左边界, 上边界
+     */
+    public List<int[]> getRegions() {
+        return regions;
+    }
+
+    /**
+     * 获取每一帧的显示时间, 单位毫秒
+     */
+    public List<Double> getDelays() {
+        return delays;
+    }
+
+}
@@ -0,0 +1,107 @@
+package net.lamgc.cgj.image;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+public class ApngWriterTest {
+
+    private static int[] createPixels(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] rgb = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // 渐变加噪点, 使各种过滤方式都有机会被选中
+                rgb[y * width + x] = (x * 3) << 16 | (y * 5 & 0xFF) << 8 | random.nextInt(32);
+            }
+        }
+        return rgb;
+    }
+
+    @Test
+    public void writeFramesTest() throws IOException {
+        int width = 67;
+        int height = 45;
+        int[] first = createPixels(width, height, 1);
+        int[] second = createPixels(width, height, 2);
+        for (boolean adaptive : new boolean[] {false, true}) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ApngWriter writer = new ApngWriter(output, width, height, 3, 0);
+            int level = adaptive ? Deflater.BEST_COMPRESSION : Deflater.BEST_SPEED;
+            writer.writeFrame(ApngWriter.encode(first, width, 0, 0, width, height, level, adaptive), 0, 0, 100);
+            writer.writeFrame(ApngWriter.encode(second, width, 0, 0, width, height, level, adaptive), 0, 0, 70000);
+            // 子矩形帧: 将第一帧的一部分绘制回画布
+            writer.writeFrame(ApngWriter.encode(first, width, 10, 5, 20, 15, level, adaptive), 10, 5, 40);
+            writer.finish();
+
+            // 不支持APNG的解码器只显示第一帧
+            BufferedImage defaultImage = ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+            assertPixels(first, width, defaultImage);
+
+            ApngDecoder decoder = new ApngDecoder(output.toByteArray());
+            Assert.assertEquals(3, decoder.getFrameCount());
+            Assert.assertEquals(0, decoder.getPlayCount());
+            Assert.assertEquals(3, decoder.getFrames().size());
+            assertPixels(first, width, decoder.getFrames().get(0));
+            assertPixels(second, width, decoder.getFrames().get(1));
+            BufferedImage third = decoder.getFrames().get(2);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    boolean inRegion = x >= 10 && x < 30 && y >= 5 && y < 20;
+                    int expected = (inRegion ? first : second)[y * width + x];
+                    Assert.assertEquals(expected, third.getRGB(x, y) & 0xFFFFFF);
+                }
+            }
+            Assert.assertEquals(100, decoder.getDelays().get(0), 0.001);
+            Assert.assertEquals(70000, decoder.getDelays().get(1), 0.001);
+            Assert.assertEquals(40, decoder.getDelays().get(2), 0.001);
+        }
+    }
+
+    @Test
+    public void paddingFramesTest() throws IOException {
+        int[] rgb = createPixels(8, 8, 3);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ApngWriter writer = new ApngWriter(output, 8, 8, 3, 1);
+        writer.writeFrame(ApngWriter.encode(rgb, 8, 0, 0, 8, 8, Deflater.BEST_SPEED, false), 0, 0, 50);
+        writer.finish();
+
+        ApngDecoder decoder = new ApngDecoder(output.toByteArray());
+        Assert.assertEquals(3, decoder.getFrames().size());
+        // 补充的帧不改变画面, 也不占用显示时间
+        for (int i = 1; i < 3; i++) {
+            assertPixels(rgb, 8, decoder.getFrames().get(i));
+            Assert.assertEquals(0, decoder.getDelays().get(i), 0.001);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partialFirstFrameTest() throws IOException {
+        int[] rgb = createPixels(8, 8, 4);
+        ApngWriter writer = new ApngWriter(new ByteArrayOutputStream(), 8, 8, 2, 0);
+        writer.writeFrame(ApngWriter.encode(rgb, 8, 1, 1, 4, 4, Deflater.BEST_SPEED, false), 1, 1, 50);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void tooManyFramesTest() throws IOException {
+        int[] rgb = createPixels(4, 4, 5);
+        ApngWriter writer = new ApngWriter(new ByteArrayOutputStream(), 4, 4, 1, 0);
+        ApngWriter.EncodedFrame frame = ApngWriter.encode(rgb, 4, 0, 0, 4, 4, Deflater.BEST_SPEED, false);
+        writer.writeFrame(frame, 0, 0, 50);
+        writer.writeFrame(frame, 0, 0, 50);
+    }
+
+    private static void assertPixels(int[] expected, int width, BufferedImage actual) {
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals("pixel " + i, expected[i], actual.getRGB(i % width, i / width) & 0xFFFFFF);
+        }
+    }
+
+}
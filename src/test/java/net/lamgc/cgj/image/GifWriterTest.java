@@ -0,0 +1,102 @@
+package net.lamgc.cgj.image;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+public class GifWriterTest {
+
+    private static ImageReader openGif(byte[] data) throws IOException {
+        ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data));
+        ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        reader.setInput(input);
+        return reader;
+    }
+
+    private static int getDelay(IIOMetadata metadata) {
+        org.w3c.dom.Node root = metadata.getAsTree(metadata.getNativeMetadataFormatName());
+        for (org.w3c.dom.Node node = root.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if("GraphicControlExtension".equals(node.getNodeName())) {
+                return Integer.parseInt(node.getAttributes().getNamedItem("delayTime").getNodeValue());
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void writeFramesTest() throws IOException {
+        int width = 97;
+        int height = 61;
+        Random random = new Random(42);
+        int[] palette = new int[256];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = random.nextInt(0x1000000);
+        }
+        // 随机像素可以使LZW编码表多次填满并重置
+        byte[] first = new byte[width * height];
+        random.nextBytes(first);
+        byte[] second = new byte[width * height];
+        for (int i = 0; i < second.length; i++) {
+            second[i] = (byte) (i % 3);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        GifWriter writer = new GifWriter(output, width, height, 0);
+        writer.writeFrame(new IndexedImage(width, height, palette, first, -1), 0, 0, 100);
+        writer.writeFrame(new IndexedImage(width, height, new int[] {0xFF0000, 0x00FF00, 0x0000FF}, second, -1),
+                0, 0, 45);
+        writer.finish();
+
+        ImageReader reader = openGif(output.toByteArray());
+        Assert.assertEquals(2, reader.getNumImages(true));
+        BufferedImage image = reader.read(0);
+        Assert.assertEquals(width, image.getWidth());
+        Assert.assertEquals(height, image.getHeight());
+        for (int i = 0; i < first.length; i += 7) {
+            Assert.assertEquals(palette[first[i] & 0xFF], image.getRGB(i % width, i / width) & 0xFFFFFF);
+        }
+        Assert.assertEquals(10, getDelay(reader.getImageMetadata(0)));
+        Assert.assertEquals(5, getDelay(reader.getImageMetadata(1)));
+        BufferedImage secondImage = reader.read(1);
+        Assert.assertEquals(0x00FF00, secondImage.getRGB(1, 0) & 0xFFFFFF);
+        Assert.assertEquals(0x0000FF, secondImage.getRGB(2, 0) & 0xFFFFFF);
+        reader.dispose();
+    }
+
+    @Test
+    public void subImageTest() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        GifWriter writer = new GifWriter(output, 8, 8, -1);
+        writer.writeFrame(new IndexedImage(8, 8, new int[] {0xFFFFFF}, new byte[64], -1), 0, 0, 50);
+        byte[] indices = new byte[4 * 2];
+        indices[0] = 1;
+        writer.writeFrame(new IndexedImage(4, 2, new int[] {0x000000, 0xFF0000}, indices, 0), 2, 3, 50);
+        writer.finish();
+
+        ImageReader reader = openGif(output.toByteArray());
+        Assert.assertEquals(2, reader.getNumImages(true));
+        BufferedImage frame = reader.read(1);
+        Assert.assertEquals(4, frame.getWidth());
+        Assert.assertEquals(2, frame.getHeight());
+        Assert.assertEquals(0xFF0000, frame.getRGB(0, 0) & 0xFFFFFF);
+        // 透明像素的Alpha为0
+        Assert.assertEquals(0, frame.getRGB(1, 0) >>> 24);
+        reader.dispose();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outOfCanvasTest() throws IOException {
+        GifWriter writer = new GifWriter(new ByteArrayOutputStream(), 4, 4, 0);
+        writer.writeFrame(new IndexedImage(4, 4, new int[] {0}, new byte[16], -1), 1, 0, 10);
+    }
+
+}
@@ -0,0 +1,70 @@
+package net.lamgc.cgj.image;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MedianCutQuantizerTest {
+
+    @Test
+    public void fewColorsTest() {
+        int[] colors = {0xFF0000, 0x00FF00, 0x0000FF, 0xFFFFFF};
+        int[] rgb = new int[16 * 16];
+        for (int i = 0; i < rgb.length; i++) {
+            rgb[i] = colors[(i / 16 + i % 16) % colors.length];
+        }
+        IndexedImage image = new MedianCutQuantizer(256).quantize(rgb, 16, 16);
+        // 颜色数少于上限时, 每种颜色单独占一项且颜色不变
+        Assert.assertEquals(colors.length, image.getPalette().length);
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                Assert.assertEquals(rgb[y * 16 + x], image.getRgb(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void gradientTest() {
+        int width = 256;
+        int height = 64;
+        int[] rgb = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                rgb[y * width + x] = x << 16 | (y * 4) << 8 | (255 - x);
+            }
+        }
+        IndexedImage image = new MedianCutQuantizer(64).quantize(rgb, width, height);
+        Assert.assertTrue(image.getPalette().length <= 64);
+        Assert.assertEquals(-1, image.getTransparentIndex());
+        long totalError = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int expected = rgb[y * width + x];
+                int actual = image.getRgb(x, y);
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    totalError += Math.abs(((expected >> shift) & 0xFF) - ((actual >> shift) & 0xFF));
+                }
+            }
+        }
+        double averageError = (double) totalError / (width * height * 3);
+        Assert.assertTrue("averageError: " + averageError, averageError < 12);
+    }
+
+    @Test
+    public void regionTest() {
+        int[] rgb = new int[8 * 8];
+        for (int i = 0; i < rgb.length; i++) {
+            rgb[i] = (i % 8) >= 4 && (i / 8) >= 4 ? 0x00FF00 : 0xFF0000;
+        }
+        IndexedImage image = new MedianCutQuantizer(16).quantize(rgb, 8, 4, 4, 4, 4);
+        Assert.assertEquals(4, image.getWidth());
+        Assert.assertEquals(4, image.getHeight());
+        Assert.assertEquals(1, image.getPalette().length);
+        Assert.assertEquals(0x00FF00, image.getRgb(3, 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxColorsTest() {
+        new MedianCutQuantizer(257);
+    }
+
+}
@@ -0,0 +1,106 @@
+package net.lamgc.cgj.pixiv;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PixivApiReaderTest {
+
+    @Test
+    public void pageUrlsTest() throws IOException {
+        String content = "{\"error\":false,\"message\":\"\",\"body\":[" +
+                "{\"urls\":{\"regular\":\"r0\",\"original\":\"o0\"},\"width\":100,\"height\":100}," +
+                "{\"urls\":{\"regular\":\"r1\",\"original\":\"o1\"},\"width\":100,\"height\":100}]}";
+        PixivApiResponse<List<String>> response =
+                PixivApiReader.readResponse(new StringReader(content), PixivApiReader.pageUrls("original"));
+        Assert.assertFalse(response.isError());
+        Assert.assertEquals(Arrays.asList("o0", "o1"), response.getBody());
+    }
+
+    @Test
+    public void errorResponseTest() throws IOException {
+        String content = "{\"error\":true,\"message\":\"尚无此页\",\"body\":[]}";
+        PixivApiResponse<List<JsonObject>> response =
+                PixivApiReader.readResponse(new StringReader(content), PixivApiReader.illusts());
+        Assert.assertTrue(response.isError());
+        Assert.assertEquals("尚无此页", response.getMessage());
+        Assert.assertNull(response.getBody());
+    }
+
+    @Test
+    public void bodyBeforeErrorTest() throws IOException {
+        String errorContent = "{\"body\":[],\"error\":true,\"message\":\"尚无此页\"}";
+        PixivApiResponse<List<JsonObject>> errorResponse =
+                PixivApiReader.readResponse(new StringReader(errorContent), PixivApiReader.illusts());
+        Assert.assertTrue(errorResponse.isError());
+        Assert.assertEquals("尚无此页", errorResponse.getMessage());
+        Assert.assertNull(errorResponse.getBody());
+
+        String content = "{\"body\":{\"illusts\":[{\"illustId\":\"82030844\"}]},\"error\":false}";
+        PixivApiResponse<List<JsonObject>> response =
+                PixivApiReader.readResponse(new StringReader(content), PixivApiReader.illusts());
+        Assert.assertFalse(response.isError());
+        Assert.assertEquals(82030844, response.getBody().get(0).get("illustId").getAsInt());
+    }
+
+    @Test
+    public void illustsTest() throws IOException {
+        String content = "{\"error\":false,\"message\":\"\",\"body\":{\"illusts\":" +
+                "[{\"illustId\":\"82030844\",\"width\":1500,\"height\":844,\"tags\":[\"a\",\"b\"]}]}}";
+        PixivApiResponse<List<JsonObject>> response =
+                PixivApiReader.readResponse(new StringReader(content), PixivApiReader.illusts());
+        Assert.assertEquals(1, response.getBody().size());
+        JsonObject illust = response.getBody().get(0);
+        Assert.assertEquals(82030844, illust.get("illustId").getAsInt());
+        Assert.assertEquals(2, illust.getAsJsonArray("tags").size());
+    }
+
+    @Test
+    public void ugoiraMetaTest() throws IOException {
+        String content = "{\"error\":false,\"message\":\"\",\"body\":{" +
+                "\"src\":\"https://i.pximg.net/img-zip-ugoira/img/81163967_ugoira600x600.zip\"," +
+                "\"originalSrc\":\"https://i.pximg.net/img-zip-ugoira/img/81163967_ugoira1920x1080.zip\"," +
+                "\"mime_type\":\"image/jpeg\"," +
+                "\"frames\":[{\"file\":\"000000.jpg\",\"delay\":40},{\"file\":\"000001.jpg\",\"delay\":60}]}}";
+        UgoiraMeta meta = PixivApiReader.readResponse(new StringReader(content), PixivApiReader.ugoiraMeta()).getBody();
+        Assert.assertTrue(meta.getSrc(true).endsWith("1920x1080.zip"));
+        Assert.assertEquals("image/jpeg", meta.getMimeType());
+        Assert.assertEquals(Arrays.asList(new UgoiraMeta.Frame("000000.jpg", 40),
+                new UgoiraMeta.Frame("000001.jpg", 60)), meta.getFrames());
+        Assert.assertEquals(meta.getFrames(), UgoiraMeta.fromJson(meta.toJson()).getFrames());
+    }
+
+    @Test
+    public void rankingContentsTest() throws IOException {
+        StringBuilder builder = new StringBuilder("{\"contents\":[");
+        for (int i = 1; i <= 50; i++) {
+            if(i != 1) {
+                builder.append(',');
+            }
+            builder.append("{\"rank\":").append(i).append(",\"illust_id\":").append(80000000 + i)
+                    .append(",\"title\":\"Title ").append(i).append("\",\"user_id\":").append(1000 + i)
+                    .append(",\"user_name\":\"User\",\"illust_page_count\":\"2\",\"illust_type\":\"0\"}");
+        }
+        builder.append("],\"mode\":\"daily\",\"next\":false}");
+
+        List<JsonObject> results = new ArrayList<>();
+        Assert.assertFalse(PixivApiReader.readRankingContents(
+                new JsonReader(new StringReader(builder.toString())), 10, 5, results));
+        Assert.assertEquals(5, results.size());
+        Assert.assertEquals(11, results.get(0).get("rank").getAsInt());
+
+        RankingSnapshot.Builder snapshotBuilder = new RankingSnapshot.Builder(10);
+        PixivApiReader.readRankingPage(new JsonReader(new StringReader(builder.toString())), snapshotBuilder, 41, 60);
+        RankingSnapshot snapshot = snapshotBuilder.build();
+        Assert.assertEquals(10, snapshot.size());
+        Assert.assertEquals(new RankingEntry(41, 80000041, "Title 41", 1041, "User", 2, 0), snapshot.get(0));
+    }
+
+}
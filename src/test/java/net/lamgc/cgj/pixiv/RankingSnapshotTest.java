@@ -0,0 +1,46 @@
+package net.lamgc.cgj.pixiv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class RankingSnapshotTest {
+
+    @Test
+    public void entriesTest() {
+        RankingSnapshot snapshot = createSnapshot(50);
+        Assert.assertEquals(50, snapshot.size());
+        Assert.assertEquals(new RankingEntry(1, 80000001, "Title 1", 1001, "User 1", 1, 0), snapshot.get(0));
+
+        List<RankingEntry> entries = snapshot.getEntries(45, 10);
+        Assert.assertEquals(5, entries.size());
+        Assert.assertEquals(46, entries.get(0).getRank());
+        Assert.assertTrue(snapshot.getEntries(60, 10).isEmpty());
+        // 同一用户名只保留一份
+        Assert.assertSame(snapshot.getUserName(1), snapshot.getUserName(11));
+    }
+
+    @Test
+    public void randomTest() {
+        RankingSnapshot snapshot = createSnapshot(50);
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            RankingEntry entry = snapshot.random(random, 10, 99);
+            Assert.assertTrue(entry.getRank() >= 11 && entry.getRank() <= 50);
+        }
+        Assert.assertNull(snapshot.random(random, 50, 99));
+        Assert.assertNull(RankingSnapshot.empty().random(random, 0, 10));
+    }
+
+    static RankingSnapshot createSnapshot(int size) {
+        RankingSnapshot.Builder builder = new RankingSnapshot.Builder(0);
+        for (int i = 1; i <= size; i++) {
+            builder.add(i, 80000000 + i, "Title " + i, 1000 + i % 10,
+                    new String("User " + i % 10), 1, 0);
+        }
+        return builder.build();
+    }
+
+}
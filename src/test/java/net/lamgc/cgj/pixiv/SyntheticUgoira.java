@@ -0,0 +1,83 @@
+package net.lamgc.cgj.pixiv;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 生成用于测试的动图帧压缩包.
+ * <p>每一帧为渐变背景上的一个移动的色块, 与实际动图一样, 相邻帧之间只有一小块区域不同.</p>
+ */
+public final class SyntheticUgoira {
+
+    private SyntheticUgoira() {}
+
+    /**
+     * 生成帧信息列表, 帧文件名格式与Pixiv相同(000000.jpg)
+     * @param frameCount 帧数
+     * @param delay 每帧的延迟, 单位毫秒
+     */
+    public static List<UgoiraMeta.Frame> createFrames(int frameCount, int delay) {
+        List<UgoiraMeta.Frame> frames = new ArrayList<>(frameCount);
+        for (int i = 0; i < frameCount; i++) {
+            frames.add(new UgoiraMeta.Frame(String.format("%06d.jpg", i), delay));
+        }
+        return frames;
+    }
+
+    /**
+     * 绘制指定的帧
+     * @param index 帧序号
+     * @param width 宽度
+     * @param height 高度
+     */
+    public static BufferedImage createFrameImage(int index, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(40, 80, 160), width, height, new Color(230, 200, 120)));
+        graphics.fillRect(0, 0, width, height);
+        int size = Math.max(Math.min(width, height) / 6, 1);
+        graphics.setColor(new Color(200, 30, 60));
+        graphics.fillOval((index * size / 2) % Math.max(width - size, 1), height / 2 - size / 2, size, size);
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * 生成帧压缩包
+     * @param frames 帧信息
+     * @param width 帧宽度
+     * @param height 帧高度
+     * @param shuffle 是否打乱压缩包内帧的顺序
+     * @return 返回压缩包数据
+     */
+    public static byte[] createZip(List<UgoiraMeta.Frame> frames, int width, int height, boolean shuffle) {
+        List<Integer> order = new ArrayList<>(frames.size());
+        for (int i = 0; i < frames.size(); i++) {
+            order.add(i);
+        }
+        if(shuffle) {
+            Collections.reverse(order);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutput = new ZipOutputStream(output)) {
+            for (int index : order) {
+                zipOutput.putNextEntry(new ZipEntry(frames.get(index).getFile()));
+                ImageIO.write(createFrameImage(index, width, height), "jpg", zipOutput);
+                zipOutput.closeEntry();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+}
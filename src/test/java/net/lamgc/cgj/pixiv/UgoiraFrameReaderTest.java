@@ -0,0 +1,158 @@
+package net.lamgc.cgj.pixiv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UgoiraFrameReaderTest {
+
+    private static List<String> readAll(UgoiraFrameReader<String> reader) throws IOException {
+        List<String> names = new ArrayList<>();
+        String name;
+        while((name = reader.next()) != null) {
+            names.add(name);
+        }
+        return names;
+    }
+
+    private static List<String> names(List<UgoiraMeta.Frame> frames) {
+        List<String> names = new ArrayList<>();
+        frames.forEach(frame -> names.add(frame.getFile()));
+        return names;
+    }
+
+    private static UgoiraFrameReader<String> nameReader(InputStream input, List<UgoiraMeta.Frame> frames,
+                                                        int lookAhead) {
+        return new UgoiraFrameReader<>(input, frames, lookAhead, (frame, data) -> frame.getFile(), Runnable::run);
+    }
+
+    @Test
+    public void readInOrderTest() throws IOException {
+        List<UgoiraMeta.Frame> frames = SyntheticUgoira.createFrames(12, 50);
+        byte[] zip = SyntheticUgoira.createZip(frames, 64, 48, false);
+        try (UgoiraFrameReader<String> reader = nameReader(new ByteArrayInputStream(zip), frames, 2)) {
+            Assert.assertEquals(names(frames), readAll(reader));
+        }
+    }
+
+    @Test
+    public void readOutOfOrderTest() throws IOException {
+        List<UgoiraMeta.Frame> frames = SyntheticUgoira.createFrames(6, 50);
+        byte[] zip = SyntheticUgoira.createZip(frames, 32, 32, true);
+        try (UgoiraFrameReader<String> reader = nameReader(new ByteArrayInputStream(zip), frames, 1)) {
+            Assert.assertEquals(names(frames), readAll(reader));
+        }
+    }
+
+    @Test
+    public void missingFrameTest() throws IOException {
+        List<UgoiraMeta.Frame> frames = SyntheticUgoira.createFrames(4, 50);
+        byte[] zip = SyntheticUgoira.createZip(frames.subList(0, 3), 32, 32, false);
+        try (UgoiraFrameReader<String> reader = nameReader(new ByteArrayInputStream(zip), frames, 2)) {
+            Assert.assertEquals(names(frames.subList(0, 3)), readAll(reader));
+        }
+    }
+
+    @Test
+    public void parallelProcessTest() throws IOException {
+        List<UgoiraMeta.Frame> frames = SyntheticUgoira.createFrames(24, 50);
+        byte[] zip = SyntheticUgoira.createZip(frames, 32, 32, false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Random random = new Random(1);
+        try (UgoiraFrameReader<String> reader = new UgoiraFrameReader<>(new ByteArrayInputStream(zip), frames, 6,
+                (frame, data) -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(random.nextInt(20));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    return frame.getFile();
+                }, executor)) {
+            // 并行处理的帧仍按元数据顺序输出
+            Assert.assertEquals(names(frames), readAll(reader));
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertTrue("maxRunning: " + maxRunning.get(), maxRunning.get() > 1 && maxRunning.get() <= 4);
+    }
+
+    @Test
+    public void decodeTest() throws IOException {
+        List<UgoiraMeta.Frame> frames = SyntheticUgoira.createFrames(2, 50);
+        byte[] zip = SyntheticUgoira.createZip(frames, 40, 30, false);
+        int expected = SyntheticUgoira.createFrameImage(0, 40, 30).getRGB(0, 0) & 0xFFFFFF;
+        List<BufferedImage> images = new ArrayList<>();
+        UgoiraFrameReader.ImagePool imagePool = new UgoiraFrameReader.ImagePool();
+        try (UgoiraFrameReader<int[]> reader = new UgoiraFrameReader<>(new ByteArrayInputStream(zip), frames, 1,
+                (frame, data) -> {
+                    BufferedImage image = imagePool.decode(frame.getFile(), data);
+                    images.add(image);
+                    int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData().clone();
+                    imagePool.release(image);
+                    return rgb;
+                }, Runnable::run)) {
+            int[] rgb = reader.next();
+            Assert.assertNotNull(rgb);
+            Assert.assertEquals(40 * 30, rgb.length);
+            int actual = rgb[0] & 0xFFFFFF;
+            // JPEG有损压缩, 只比较近似颜色
+            for (int shift = 0; shift <= 16; shift += 8) {
+                Assert.assertTrue(Math.abs(((expected >> shift) & 0xFF) - ((actual >> shift) & 0xFF)) < 24);
+            }
+            Assert.assertNotNull(reader.next());
+            Assert.assertNull(reader.next());
+        }
+        // 归还到图像池的图像将被复用
+        Assert.assertEquals(2, images.size());
+        Assert.assertSame(images.get(0), images.get(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void brokenStreamTest() throws IOException {
+        List<UgoiraMeta.Frame> frames = SyntheticUgoira.createFrames(4, 50);
+        byte[] zip = SyntheticUgoira.createZip(frames, 32, 32, false);
+        // 接收到一半时连接断开
+        InputStream input = new ByteArrayInputStream(zip, 0, zip.length / 2) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                int length = super.read(b, off, len);
+                if(length == -1) {
+                    throw new UncheckedIOException(new IOException("Simulated connection reset"));
+                }
+                return length;
+            }
+        };
+        try (UgoiraFrameReader<String> reader = nameReader(input, frames, 2)) {
+            readAll(reader);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void processFailureTest() throws IOException {
+        List<UgoiraMeta.Frame> frames = SyntheticUgoira.createFrames(4, 50);
+        byte[] zip = SyntheticUgoira.createZip(frames, 32, 32, false);
+        try (UgoiraFrameReader<String> reader = new UgoiraFrameReader<>(new ByteArrayInputStream(zip), frames, 2,
+                (frame, data) -> {
+                    throw new IOException("Broken frame: " + frame.getFile());
+                }, Runnable::run)) {
+            readAll(reader);
+        }
+    }
+
+}
@@ -0,0 +1,213 @@
+package net.lamgc.cgj.pixiv;
+
+import net.lamgc.cgj.image.ApngDecoder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class UgoiraRendererTest {
+
+    @Test
+    public void renderGifTest() throws IOException {
+        int width = 80;
+        int height = 60;
+        List<UgoiraMeta.Frame> frames = SyntheticUgoira.createFrames(10, 60);
+        byte[] zip = SyntheticUgoira.createZip(frames, width, height, true);
+        for (UgoiraRenderer.Preset preset : UgoiraRenderer.Preset.values()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            UgoiraRenderer.Result result;
+            try (UgoiraRenderer renderer = new UgoiraRenderer(3)) {
+                result = renderer.render(new ByteArrayInputStream(zip), frames, output,
+                        UgoiraRenderer.Format.GIF, preset);
+            }
+            Assert.assertEquals(width, result.getWidth());
+            Assert.assertEquals(height, result.getHeight());
+            Assert.assertEquals(frames.size(), result.getFrameCount());
+
+            GifFrames gif = readGif(output.toByteArray());
+            Assert.assertEquals(frames.size(), gif.frames.size());
+            // 每帧与对应原始帧的颜色误差应明显小于与其它帧的误差
+            for (int i = 0; i < frames.size(); i++) {
+                BufferedImage actual = gif.frames.get(i);
+                double matched = difference(SyntheticUgoira.createFrameImage(i, width, height), actual);
+                double other = difference(SyntheticUgoira.createFrameImage((i + 5) % frames.size(), width, height),
+                        actual);
+                Assert.assertTrue(preset + " frame " + i + ": " + matched + " / " + other,
+                        matched < 6 && matched < other);
+                Assert.assertEquals(6, gif.delays.get(i).intValue());
+            }
+            // 相邻帧只有色块移动, 除第一帧外都应只写入变化的区域
+            Assert.assertEquals(width * height, gif.regionSizes.get(0).intValue());
+            for (int i = 1; i < frames.size(); i++) {
+                Assert.assertTrue(preset + " frame " + i, gif.regionSizes.get(i) < width * height / 2);
+            }
+        }
+    }
+
+    @Test
+    public void mergeDuplicateFramesTest() throws IOException {
+        List<UgoiraMeta.Frame> frames = SyntheticUgoira.createFrames(6, 50);
+        // 第1~3帧画面相同, 第4~5帧画面相同
+        int[] imageIndices = {0, 1, 1, 1, 2, 2};
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutput = new ZipOutputStream(zip)) {
+            for (int i = 0; i < frames.size(); i++) {
+                zipOutput.putNextEntry(new ZipEntry(frames.get(i).getFile()));
+                ImageIO.write(SyntheticUgoira.createFrameImage(imageIndices[i] * 4, 48, 32), "jpg", zipOutput);
+                zipOutput.closeEntry();
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        UgoiraRenderer.Result result;
+        try (UgoiraRenderer renderer = new UgoiraRenderer(2)) {
+            result = renderer.renderGif(new ByteArrayInputStream(zip.toByteArray()), frames, output);
+        }
+        Assert.assertEquals(3, result.getFrameCount());
+        GifFrames gif = readGif(output.toByteArray());
+        Assert.assertEquals(3, gif.frames.size());
+        Assert.assertEquals(Arrays.asList(5, 15, 10), gif.delays);
+        for (int i = 0; i < 3; i++) {
+            double matched = difference(SyntheticUgoira.createFrameImage(i * 4, 48, 32), gif.frames.get(i));
+            Assert.assertTrue("frame " + i + ": " + matched, matched < 6);
+        }
+    }
+
+    private final static class GifFrames {
+        private final List<BufferedImage> frames = new ArrayList<>();
+        private final List<Integer> delays = new ArrayList<>();
+        private final List<Integer> regionSizes = new ArrayList<>();
+    }
+
+    /**
+     * 读取GIF, 将每帧按位置和透明色绘制到画布上, 得到每帧显示的完整画面
+     */
+    private static GifFrames readGif(byte[] data) throws IOException {
+        ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        reader.setInput(ImageIO.createImageInputStream(new ByteArrayInputStream(data)));
+        GifFrames result = new GifFrames();
+        BufferedImage canvas = null;
+        int count = reader.getNumImages(true);
+        for (int i = 0; i < count; i++) {
+            BufferedImage frame = reader.read(i);
+            IIOMetadata metadata = reader.getImageMetadata(i);
+            Node root = metadata.getAsTree(metadata.getNativeMetadataFormatName());
+            int left = 0;
+            int top = 0;
+            for (Node node = root.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if("ImageDescriptor".equals(node.getNodeName())) {
+                    left = Integer.parseInt(node.getAttributes().getNamedItem("imageLeftPosition").getNodeValue());
+                    top = Integer.parseInt(node.getAttributes().getNamedItem("imageTopPosition").getNodeValue());
+                } else if("GraphicControlExtension".equals(node.getNodeName())) {
+                    result.delays.add(Integer.parseInt(
+                            node.getAttributes().getNamedItem("delayTime").getNodeValue()));
+                }
+            }
+            if(canvas == null) {
+                canvas = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+            }
+            BufferedImage next = new BufferedImage(canvas.getWidth(), canvas.getHeight(), BufferedImage.TYPE_INT_RGB);
+            next.setData(canvas.getData());
+            for (int y = 0; y < frame.getHeight(); y++) {
+                for (int x = 0; x < frame.getWidth(); x++) {
+                    int argb = frame.getRGB(x, y);
+                    if((argb >>> 24) != 0) {
+                        next.setRGB(left + x, top + y, argb);
+                    }
+                }
+            }
+            result.frames.add(next);
+            result.regionSizes.add(frame.getWidth() * frame.getHeight());
+            canvas = next;
+        }
+        reader.dispose();
+        return result;
+    }
+
+    @Test
+    public void renderApngTest() throws IOException {
+        int width = 80;
+        int height = 60;
+        List<UgoiraMeta.Frame> frames = SyntheticUgoira.createFrames(10, 60);
+        byte[] zip = SyntheticUgoira.createZip(frames, width, height, false);
+        for (UgoiraRenderer.Preset preset : UgoiraRenderer.Preset.values()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            UgoiraRenderer.Result result;
+            try (UgoiraRenderer renderer = new UgoiraRenderer(3)) {
+                result = renderer.render(new ByteArrayInputStream(zip), frames, output,
+                        UgoiraRenderer.Format.APNG, preset);
+            }
+            Assert.assertEquals(frames.size(), result.getFrameCount());
+
+            ApngDecoder decoder = new ApngDecoder(output.toByteArray());
+            Assert.assertEquals(frames.size(), decoder.getFrames().size());
+            for (int i = 0; i < frames.size(); i++) {
+                Assert.assertEquals(60, decoder.getDelays().get(i), 0.001);
+                BufferedImage actual = decoder.getFrames().get(i);
+                double matched = difference(SyntheticUgoira.createFrameImage(i, width, height), actual);
+                double other = difference(SyntheticUgoira.createFrameImage((i + 5) % frames.size(), width, height),
+                        actual);
+                // 真彩色只有JPEG本身的误差
+                Assert.assertTrue(preset + " frame " + i + ": " + matched, matched < 4 && matched < other);
+            }
+            if(preset == UgoiraRenderer.Preset.SIZE) {
+                // 相邻帧只有色块移动, 除第一帧外都应只编码变化的区域
+                for (int i = 1; i < frames.size(); i++) {
+                    int[] region = decoder.getRegions().get(i);
+                    Assert.assertTrue(preset + " frame " + i, region[0] * region[1] < width * height / 2);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void apngMissingFrameTest() throws IOException {
+        List<UgoiraMeta.Frame> frames = SyntheticUgoira.createFrames(5, 60);
+        byte[] zip = SyntheticUgoira.createZip(frames.subList(0, 3), 16, 16, false);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (UgoiraRenderer renderer = new UgoiraRenderer(2)) {
+            renderer.render(new ByteArrayInputStream(zip), frames, output,
+                    UgoiraRenderer.Format.APNG, UgoiraRenderer.Preset.SIZE);
+        }
+        ApngDecoder decoder = new ApngDecoder(output.toByteArray());
+        // 缺少的帧以不占用显示时间的空白帧补齐
+        Assert.assertEquals(5, decoder.getFrameCount());
+        Assert.assertEquals(0, decoder.getDelays().get(4), 0.001);
+    }
+
+    @Test(expected = IOException.class)
+    public void emptyZipTest() throws IOException {
+        List<UgoiraMeta.Frame> frames = SyntheticUgoira.createFrames(3, 60);
+        byte[] zip = SyntheticUgoira.createZip(frames.subList(0, 0), 8, 8, false);
+        try (UgoiraRenderer renderer = new UgoiraRenderer(1)) {
+            renderer.renderGif(new ByteArrayInputStream(zip), frames, new ByteArrayOutputStream());
+        }
+    }
+
+    private static double difference(BufferedImage expected, BufferedImage actual) {
+        long total = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int a = expected.getRGB(x, y);
+                int b = actual.getRGB(x, y);
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    total += Math.abs(((a >> shift) & 0xFF) - ((b >> shift) & 0xFF));
+                }
+            }
+        }
+        return (double) total / (expected.getWidth() * expected.getHeight() * 3);
+    }
+
+}
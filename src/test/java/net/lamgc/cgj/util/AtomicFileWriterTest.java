@@ -0,0 +1,66 @@
+package net.lamgc.cgj.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class AtomicFileWriterTest {
+
+    private File folder;
+
+    @Before
+    public void createFolder() throws IOException {
+        folder = Files.createTempDirectory("AtomicFileWriterTest").toFile();
+    }
+
+    @After
+    public void deleteFolder() throws IOException {
+        try (Stream<Path> paths = Files.walk(folder.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void writeTest() throws IOException, NoSuchAlgorithmException {
+        byte[] data = new byte[3 * 1024 * 1024 + 123];
+        new Random(1).nextBytes(data);
+        File target = new File(folder, "images/80000000_p0.png");
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        long size = AtomicFileWriter.write(new ByteArrayInputStream(data), target, digest, data.length);
+
+        Assert.assertEquals(data.length, size);
+        Assert.assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), digest.digest());
+        Assert.assertEquals(1, target.getParentFile().list().length);
+    }
+
+    @Test
+    public void incompleteTest() throws IOException {
+        File target = new File(folder, "80000000_p0.png");
+        Files.write(target.toPath(), "old".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            AtomicFileWriter.write(new ByteArrayInputStream(new byte[100]), target, null, 200);
+            Assert.fail("Incomplete data was accepted");
+        } catch (IOException ignored) {
+        }
+        // 目标文件保持不变, 临时文件已被删除
+        Assert.assertEquals("old", new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8));
+        Assert.assertEquals(1, folder.list().length);
+    }
+
+}
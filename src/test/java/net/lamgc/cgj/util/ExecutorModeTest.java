@@ -0,0 +1,67 @@
+package net.lamgc.cgj.util;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ExecutorModeTest {
+
+    @Test
+    public void resolveTest() {
+        Assert.assertEquals(ExecutorMode.PLATFORM, ExecutorMode.resolve(null));
+        Assert.assertEquals(ExecutorMode.PLATFORM, ExecutorMode.resolve(" "));
+        Assert.assertEquals(ExecutorMode.PLATFORM, ExecutorMode.resolve("unknown"));
+        Assert.assertEquals(ExecutorMode.PLATFORM, ExecutorMode.resolve("Platform"));
+        Assert.assertEquals(ExecutorMode.isVirtualThreadSupported() ? ExecutorMode.VIRTUAL : ExecutorMode.PLATFORM,
+                ExecutorMode.resolve("virtual"));
+    }
+
+    @Test
+    public void poolParametersTest() {
+        Assert.assertEquals(4, ExecutorMode.PLATFORM.corePoolSize(4));
+        Assert.assertEquals(6, ExecutorMode.PLATFORM.maximumPoolSize(6));
+        Assert.assertEquals(100, ExecutorMode.PLATFORM.workQueue(100).remainingCapacity());
+
+        Assert.assertEquals(0, ExecutorMode.VIRTUAL.corePoolSize(4));
+        Assert.assertTrue(ExecutorMode.VIRTUAL.maximumPoolSize(6) > 6);
+        Assert.assertTrue(ExecutorMode.VIRTUAL.workQueue(100) instanceof SynchronousQueue);
+    }
+
+    @Test
+    public void platformThreadFactoryTest() {
+        Thread thread = ExecutorMode.PLATFORM.threadFactory("Test-%d").newThread(() -> {});
+        Assert.assertEquals("Test-0", thread.getName());
+    }
+
+    @Test
+    public void virtualTimeLimitTest() throws InterruptedException {
+        Assume.assumeTrue(ExecutorMode.isVirtualThreadSupported());
+        ExecutorMode mode = ExecutorMode.VIRTUAL;
+        TimeLimitThreadPoolExecutor executor = new TimeLimitThreadPoolExecutor(300,
+                mode.corePoolSize(1), mode.maximumPoolSize(1), 30, TimeUnit.SECONDS,
+                mode.workQueue(10), mode.threadFactory("VirtualTest-%d"));
+        AtomicReference<String> threadName = new AtomicReference<>();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> {
+            threadName.set(Thread.currentThread().getName());
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            } finally {
+                latch.countDown();
+            }
+        });
+        Assert.assertTrue(latch.await(3, TimeUnit.SECONDS));
+        Assert.assertTrue(interrupted.get());
+        Assert.assertEquals("VirtualTest-0", threadName.get());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(3, TimeUnit.SECONDS));
+    }
+
+}
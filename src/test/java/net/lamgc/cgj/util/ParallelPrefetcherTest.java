@@ -0,0 +1,76 @@
+package net.lamgc.cgj.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParallelPrefetcherTest {
+
+    @Test
+    public void concurrencyLimitTest() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        ParallelPrefetcher prefetcher = new ParallelPrefetcher(3, 10, TimeUnit.SECONDS);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            int value = i;
+            futures.add(prefetcher.submit(() -> CompletableFuture.supplyAsync(() -> {
+                int current = running.incrementAndGet();
+                maxRunning.accumulateAndGet(current, Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return value;
+            }, executor)));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            Assert.assertEquals(Integer.valueOf(i), prefetcher.await(futures.get(i), -1));
+        }
+        Assert.assertTrue("maxRunning: " + maxRunning.get(), maxRunning.get() <= 3);
+        executor.shutdown();
+    }
+
+    @Test
+    public void deadlineTest() throws InterruptedException, ExecutionException {
+        ParallelPrefetcher prefetcher = new ParallelPrefetcher(1, 100, TimeUnit.MILLISECONDS);
+        CompletableFuture<String> completed = prefetcher.submit(() -> CompletableFuture.completedFuture("done"));
+        CompletableFuture<String> never = prefetcher.submit(CompletableFuture::new);
+        CompletableFuture<String> queued = prefetcher.submit(() -> CompletableFuture.completedFuture("queued"));
+
+        Assert.assertEquals("done", prefetcher.await(completed, "timeout"));
+        long start = System.currentTimeMillis();
+        Assert.assertEquals("timeout", prefetcher.await(never, "timeout"));
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        Assert.assertTrue(prefetcher.isExpired());
+
+        // 并发数为1, 第三个任务仍在排队, 应当可以被取消
+        Assert.assertEquals(1, prefetcher.cancelPending());
+        Assert.assertTrue(queued.isCancelled());
+    }
+
+    @Test
+    public void exceptionTest() throws InterruptedException {
+        ParallelPrefetcher prefetcher = new ParallelPrefetcher(2, 1, TimeUnit.SECONDS);
+        CompletableFuture<String> future = prefetcher.submit(() -> {
+            CompletableFuture<String> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("Test"));
+            return failed;
+        });
+        try {
+            prefetcher.await(future, "timeout");
+            Assert.fail("No exception thrown");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+}
@@ -0,0 +1,201 @@
+package net.lamgc.cgj.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+public class ResumableDownloaderTest {
+
+    private final static Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final byte[] data = new byte[1024 * 1024 + 123];
+
+    private final List<String> rangeHeaders = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicInteger brokenResponses = new AtomicInteger();
+
+    private HttpServer server;
+
+    private HttpClient httpClient;
+
+    private File folder;
+
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(1).nextBytes(data);
+        folder = Files.createTempDirectory("ResumableDownloaderTest").toFile();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/image.png", this::handle);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/image.png";
+        httpClient = HttpClientBuilder.create().build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop(0);
+        try (Stream<Path> paths = Files.walk(folder.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        if("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().add("Content-Length", String.valueOf(data.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        int start = 0;
+        int end = data.length - 1;
+        int status = 200;
+        if(range != null) {
+            rangeHeaders.add(range);
+            Matcher matcher = RANGE_PATTERN.matcher(range);
+            Assert.assertTrue(matcher.matches());
+            start = Integer.parseInt(matcher.group(1));
+            if(!matcher.group(2).isEmpty()) {
+                end = Integer.parseInt(matcher.group(2));
+            }
+            status = 206;
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+        }
+        int length = end - start + 1;
+        exchange.sendResponseHeaders(status, length);
+        OutputStream output = exchange.getResponseBody();
+        if(brokenResponses.getAndDecrement() > 0) {
+            // 只发送一半数据后断开连接
+            output.write(data, start, length / 2);
+            output.flush();
+            throw new IOException("Simulated connection reset");
+        }
+        output.write(data, start, length);
+        exchange.close();
+    }
+
+    @Test
+    public void downloadTest() throws IOException, NoSuchAlgorithmException {
+        File target = new File(folder, "80000000_p0.png");
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        ResumableDownloader.Result result = new ResumableDownloader(httpClient, new ResumableDownloader.Metrics())
+                .download(url, target, digest);
+
+        Assert.assertEquals(data.length, result.getSize());
+        Assert.assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), digest.digest());
+        Assert.assertTrue(rangeHeaders.isEmpty());
+        Assert.assertFalse(ResumableDownloader.getPartFile(target).exists());
+    }
+
+    @Test
+    public void resumeFromPartFileTest() throws IOException, NoSuchAlgorithmException {
+        File target = new File(folder, "80000000_p0.png");
+        int existing = 400 * 1024;
+        Files.write(ResumableDownloader.getPartFile(target).toPath(), Arrays.copyOf(data, existing));
+
+        ResumableDownloader.Metrics metrics = new ResumableDownloader.Metrics();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        ResumableDownloader.Result result = new ResumableDownloader(httpClient, metrics)
+                .download(url, target, digest);
+
+        Assert.assertEquals(Collections.singletonList("bytes=" + existing + "-"), rangeHeaders);
+        Assert.assertEquals(existing, result.getResumedBytes());
+        Assert.assertEquals(data.length - existing, result.getTransferredBytes());
+        Assert.assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), digest.digest());
+        Assert.assertEquals(1, metrics.getResumeCount());
+    }
+
+    @Test
+    public void retryAfterConnectionResetTest() throws IOException, NoSuchAlgorithmException {
+        File target = new File(folder, "80000000_p0.png");
+        brokenResponses.set(1);
+
+        ResumableDownloader.Metrics metrics = new ResumableDownloader.Metrics();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        ResumableDownloader.Result result = new ResumableDownloader(httpClient, metrics)
+                .setRetry(2, 10)
+                .download(url, target, digest);
+
+        Assert.assertEquals(1, result.getRetries());
+        Assert.assertEquals(1, metrics.getRetryCount());
+        Assert.assertEquals(1, rangeHeaders.size());
+        Assert.assertTrue(rangeHeaders.get(0).matches("bytes=[1-9]\\d*-"));
+        Assert.assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), digest.digest());
+    }
+
+    @Test
+    public void chunkedDownloadTest() throws IOException, NoSuchAlgorithmException {
+        File target = new File(folder, "80000000_p0.png");
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        ResumableDownloader.Result result = new ResumableDownloader(httpClient, new ResumableDownloader.Metrics())
+                .setChunking(3, 1024)
+                .download(url, target, digest);
+
+        Assert.assertTrue(result.isChunked());
+        Assert.assertEquals(3, rangeHeaders.size());
+        Assert.assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+        Assert.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), digest.digest());
+        String[] remaining = folder.list();
+        Assert.assertNotNull(remaining);
+        Assert.assertEquals(Collections.singletonList(target.getName()), Arrays.asList(remaining));
+    }
+
+    @Test
+    public void expectedChecksumMismatchTest() throws IOException, NoSuchAlgorithmException {
+        File target = new File(folder, "80000000_p0.png");
+        ResumableDownloader.Metrics metrics = new ResumableDownloader.Metrics();
+        ResumableDownloader downloader = new ResumableDownloader(httpClient, metrics)
+                .setExpected(data.length, new byte[32]);
+        try {
+            downloader.download(url, target, MessageDigest.getInstance("SHA-256"));
+            Assert.fail("Expected checksum mismatch");
+        } catch (ResumableDownloader.VerificationException expected) {
+            // 期望抛出异常
+        }
+        Assert.assertFalse(target.exists());
+        Assert.assertFalse(ResumableDownloader.getPartFile(target).exists());
+        Assert.assertEquals(1, metrics.getVerifyFailureCount());
+        Assert.assertEquals(1, metrics.getFailureCount());
+    }
+
+    @Test
+    public void openStreamResumeTest() throws IOException {
+        brokenResponses.set(1);
+        ResumableDownloader.Metrics metrics = new ResumableDownloader.Metrics();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream input = new ResumableDownloader(httpClient, metrics).setRetry(2, 10).openStream(url)) {
+            byte[] buffer = new byte[8192];
+            int length;
+            while((length = input.read(buffer)) != -1) {
+                output.write(buffer, 0, length);
+            }
+        }
+        Assert.assertArrayEquals(data, output.toByteArray());
+        Assert.assertEquals(1, metrics.getResumeCount());
+        Assert.assertEquals(data.length, metrics.getTransferredBytes());
+    }
+
+}
@@ -0,0 +1,136 @@
+package net.lamgc.cgj.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SingleFlightTest {
+
+    @Test
+    public void coalesceTest() throws InterruptedException, ExecutionException {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> singleFlight.execute("key", () -> {
+            loadStarted.countDown();
+            releaseLoad.await();
+            return loadCount.incrementAndGet();
+        })));
+        Assert.assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 7; i++) {
+            futures.add(executor.submit(() -> singleFlight.execute("key", loadCount::incrementAndGet)));
+        }
+        while(singleFlight.getCoalescedCount() < 7) {
+            Thread.sleep(10);
+        }
+        releaseLoad.countDown();
+        for (Future<Integer> future : futures) {
+            Assert.assertEquals(Integer.valueOf(1), future.get());
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(1, loadCount.get());
+        Assert.assertEquals(1, singleFlight.getLeaderCount());
+        Assert.assertEquals(7, singleFlight.getCoalescedCount());
+        Assert.assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void exceptionTest() throws InterruptedException, TimeoutException {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        try {
+            singleFlight.execute("key", () -> {
+                throw new IOException("Test");
+            });
+            Assert.fail("No exception thrown");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        Assert.assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void timeoutAndCancelTest() throws InterruptedException {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        AtomicReference<Exception> leaderException = new AtomicReference<>();
+        AtomicBoolean leaderInterrupted = new AtomicBoolean(true);
+        Thread leader = new Thread(() -> {
+            try {
+                singleFlight.execute("key", () -> {
+                    loadStarted.countDown();
+                    Thread.sleep(10000);
+                    return 1;
+                });
+            } catch (Exception e) {
+                leaderException.set(e);
+            }
+            leaderInterrupted.set(Thread.currentThread().isInterrupted());
+        });
+        leader.start();
+        Assert.assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        try {
+            singleFlight.execute("key", () -> 2, 50, TimeUnit.MILLISECONDS);
+            Assert.fail("No exception thrown");
+        } catch (TimeoutException ignored) {
+        } catch (ExecutionException e) {
+            Assert.fail("Unexpected exception: " + e);
+        }
+        Assert.assertEquals(1, singleFlight.getTimeoutCount());
+
+        Assert.assertTrue(singleFlight.cancel("key", true));
+        leader.join(5000);
+        Assert.assertFalse(leader.isAlive());
+        Assert.assertTrue(leaderException.get() instanceof CancellationException);
+        // 取消加载产生的中断不应遗留在Leader线程中
+        Assert.assertFalse(leaderInterrupted.get());
+        Assert.assertFalse(singleFlight.cancel("key", true));
+    }
+
+    @Test
+    public void cancelKeepsExternalInterruptTest() throws InterruptedException {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        AtomicBoolean releaseLoad = new AtomicBoolean();
+        AtomicReference<Exception> leaderException = new AtomicReference<>();
+        AtomicBoolean leaderInterrupted = new AtomicBoolean(false);
+        Thread leader = new Thread(() -> {
+            try {
+                singleFlight.execute("key", () -> {
+                    loadStarted.countDown();
+                    // 不响应中断, 以便在取消前观察到外部中断
+                    while(!releaseLoad.get()) {
+                        Thread.yield();
+                    }
+                    return 1;
+                });
+            } catch (Exception e) {
+                leaderException.set(e);
+            }
+            leaderInterrupted.set(Thread.currentThread().isInterrupted());
+        });
+        leader.start();
+        Assert.assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        leader.interrupt();
+        Assert.assertTrue(singleFlight.cancel("key", true));
+        releaseLoad.set(true);
+        leader.join(5000);
+        Assert.assertFalse(leader.isAlive());
+        Assert.assertTrue(leaderException.get() instanceof CancellationException);
+        // 来自外部的中断不应被取消操作清除
+        Assert.assertTrue(leaderInterrupted.get());
+    }
+
+}
@@ -6,7 +6,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class TimeLimitThreadPoolExecutorTest {
 
@@ -38,4 +41,77 @@ public class TimeLimitThreadPoolExecutorTest {
         Assert.assertTrue(executor.awaitTermination(5 * 1000, TimeUnit.MILLISECONDS));
     }
 
+    /**
+     * 执行任务直到被中断, 返回任务开始到被中断的时间(ms), 超过5秒未被中断则返回-1
+     */
+    private static long awaitInterrupt(TimeLimitThreadPoolExecutor executor, long timeLimit, Runnable beforeSleep)
+            throws InterruptedException {
+        AtomicLong elapsed = new AtomicLong(-1);
+        CountDownLatch latch = new CountDownLatch(1);
+        Runnable task = () -> {
+            long startTime = System.nanoTime();
+            try {
+                beforeSleep.run();
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                elapsed.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            } finally {
+                latch.countDown();
+            }
+        };
+        if(timeLimit > 0) {
+            executor.execute(task, timeLimit);
+        } else {
+            executor.execute(task);
+        }
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return elapsed.get();
+    }
+
+    @Test
+    public void deadlineTest() throws InterruptedException {
+        TimeLimitThreadPoolExecutor executor = new TimeLimitThreadPoolExecutor(250, 1, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(50));
+        // 任务不会在限制时间前被中断; 中断时间的上限受调度延迟影响, 只做宽松检查, 再比较不同限制时间的先后
+        long defaultElapsed = awaitInterrupt(executor, 0, () -> {});
+        Assert.assertTrue("elapsed: " + defaultElapsed, defaultElapsed >= 240 && defaultElapsed < 2250);
+
+        // 单个任务指定限制时间
+        long taskElapsed = awaitInterrupt(executor, 600, () -> {});
+        Assert.assertTrue("elapsed: " + taskElapsed, taskElapsed >= 590 && taskElapsed < 2600);
+
+        // 任务执行中调整限制时间
+        long adjustedElapsed = awaitInterrupt(executor, 0,
+                () -> Assert.assertTrue(TimeLimitThreadPoolExecutor.setCurrentTaskTimeLimit(100)));
+        Assert.assertTrue("elapsed: " + adjustedElapsed, adjustedElapsed >= 90 && adjustedElapsed < 2100);
+        Assert.assertTrue("adjusted: " + adjustedElapsed + ", task: " + taskElapsed, adjustedElapsed < taskElapsed);
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, executor.getMonitoredTaskCount());
+        Assert.assertFalse(TimeLimitThreadPoolExecutor.setCurrentTaskTimeLimit(100));
+    }
+
+    @Test
+    public void finishedTaskNotInterruptedTest() throws InterruptedException {
+        TimeLimitThreadPoolExecutor executor = new TimeLimitThreadPoolExecutor(1000, 1, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(50));
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch latch = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            // 每个任务都远早于限制时间结束, 前一个任务的截止时间不能影响后面的任务
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertFalse(interrupted.get());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
 }
@@ -0,0 +1,93 @@
+package net.lamgc.cgj.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TimingWheelTest {
+
+    @Test
+    public void expireTest() throws InterruptedException {
+        TimingWheel timingWheel = new TimingWheel("Test", 1, TimeUnit.MILLISECONDS);
+        // 覆盖第 0 层和第 1 层槽位(第 1 层从 64 个刻度开始)
+        long[] delays = {0, 5, 30, 63, 64, 100, 300};
+        CountDownLatch latch = new CountDownLatch(delays.length);
+        AtomicBoolean early = new AtomicBoolean();
+        for (long delay : delays) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            timingWheel.newTimeout(() -> {
+                if(System.nanoTime() < deadline) {
+                    early.set(true);
+                }
+                latch.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        Assert.assertFalse("Timeout expired earlier than deadline", early.get());
+        // 计数在任务执行后才更新, 稍等时间轮线程处理完当前刻度
+        long countDeadline = System.currentTimeMillis() + 1000;
+        while(timingWheel.getTotalExpiredCount() < delays.length && System.currentTimeMillis() < countDeadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(delays.length, timingWheel.getTotalExpiredCount());
+        Assert.assertTrue(timingWheel.getMaxTickLag() >= 0);
+        timingWheel.stop();
+    }
+
+    @Test
+    public void levelTwoCascadeTest() throws InterruptedException {
+        TimingWheel timingWheel = new TimingWheel("Test", 1, TimeUnit.MILLISECONDS);
+        // 第 2 层从 4096 个刻度开始, 其中部分任务下放时恰好位于 "当前刻度 + 64"
+        int count = 59;
+        CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            timingWheel.newTimeout(latch::countDown, 4100 + i, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertTrue("Expired: " + (count - latch.getCount()), latch.await(10, TimeUnit.SECONDS));
+
+        // 下放后时间轮仍能正常处理新任务
+        CountDownLatch afterLatch = new CountDownLatch(1);
+        timingWheel.newTimeout(afterLatch::countDown, 10, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(afterLatch.await(1, TimeUnit.SECONDS));
+        timingWheel.stop();
+    }
+
+    @Test
+    public void cancelTest() throws InterruptedException {
+        TimingWheel timingWheel = new TimingWheel("Test", 1, TimeUnit.MILLISECONDS);
+        AtomicLong executeCount = new AtomicLong();
+        TimingWheel.Timeout cancelled = timingWheel.newTimeout(executeCount::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        TimingWheel.Timeout timeout = timingWheel.newTimeout(executeCount::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(cancelled.cancel());
+        Assert.assertFalse(cancelled.cancel());
+        Assert.assertTrue(cancelled.isCancelled());
+
+        Thread.sleep(300);
+        Assert.assertEquals(1, executeCount.get());
+        Assert.assertTrue(timeout.isExpired());
+        Assert.assertFalse(timeout.cancel());
+        timingWheel.stop();
+    }
+
+    @Test
+    public void idleWakeUpTest() throws InterruptedException {
+        TimingWheel timingWheel = new TimingWheel("Test", 10, TimeUnit.MILLISECONDS);
+        CountDownLatch latch = new CountDownLatch(1);
+        timingWheel.newTimeout(latch::countDown, 20, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+        // 时间轮空闲一段时间后, 新任务仍应按时到期
+        Thread.sleep(200);
+        CountDownLatch secondLatch = new CountDownLatch(1);
+        long start = System.currentTimeMillis();
+        timingWheel.newTimeout(secondLatch::countDown, 50, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(secondLatch.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 50);
+        timingWheel.stop();
+    }
+
+}